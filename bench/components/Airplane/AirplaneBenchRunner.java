@@ -0,0 +1,45 @@
+package components.Airplane;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the Airplane benchmarks with the GC profiler attached, so every result
+ * comes with its allocation rate. If this JVM runs with
+ * -Dairplane.stats=true, so do the forked benchmark JVMs.
+ */
+public final class AirplaneBenchRunner {
+
+    /**
+     * No instances.
+     */
+    private AirplaneBenchRunner() {
+    }
+
+    /**
+     * Main method.
+     *
+     * @param args
+     *            optional regular expression selecting the benchmarks to run;
+     *            defaults to every benchmark in this package
+     * @throws RunnerException
+     *             if JMH fails to run
+     */
+    public static void main(String[] args) throws RunnerException {
+        String include = "components\\.Airplane\\..*Bench";
+        if (args.length > 0) {
+            include = args[0];
+        }
+        ChainedOptionsBuilder builder = new OptionsBuilder().include(include)
+                .addProfiler(GCProfiler.class);
+        if (AirplaneStats.ENABLED) {
+            builder = builder.jvmArgsAppend("-Dairplane.stats=true");
+        }
+        Options opt = builder.build();
+        new Runner(opt).run();
+    }
+}
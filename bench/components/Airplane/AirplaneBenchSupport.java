@@ -0,0 +1,94 @@
+package components.Airplane;
+
+import components.Airplane.AirplaneKernel.Mode;
+
+/**
+ * Shared helpers for the Airplane benchmarks.
+ */
+final class AirplaneBenchSupport {
+
+    /**
+     * Number of entries in a precomputed mode sequence; a power of two so the
+     * index can be wrapped with a mask.
+     */
+    static final int SEQUENCE_LENGTH = 1024;
+
+    /**
+     * Value used for every defined metric; valid for every mode.
+     */
+    static final double METRIC_VALUE = 180.0;
+
+    /**
+     * No instances.
+     */
+    private AirplaneBenchSupport() {
+    }
+
+    /**
+     * Creates a new, empty airplane of the named kernel implementation.
+     *
+     * @param impl
+     *            the simple class name of the implementation
+     * @return a new airplane
+     */
+    static Airplane create(String impl) {
+        switch (impl) {
+            case "Airplane1":
+                return new Airplane1();
+            case "Airplane2":
+                return new Airplane2();
+            case "Airplane3":
+                return new Airplane3();
+            default:
+                throw new IllegalArgumentException(
+                        "Unknown implementation: " + impl);
+        }
+    }
+
+    /**
+     * Defines the first {@code count} modes of {@code airplane}.
+     *
+     * @param airplane
+     *            the airplane to fill
+     * @param count
+     *            the number of modes to define, 0 to Mode.values().length
+     */
+    static void define(Airplane airplane, int count) {
+        Mode[] modes = Mode.values();
+        for (int i = 0; i < count; i++) {
+            airplane.setMetric(modes[i], METRIC_VALUE);
+        }
+    }
+
+    /**
+     * Builds a sequence of modes in which roughly {@code hitRatio} of the
+     * entries are among the first {@code definedModes} modes. When every mode
+     * is defined (or none is) the sequence is all hits (or all misses).
+     *
+     * @param definedModes
+     *            the number of defined modes
+     * @param hitRatio
+     *            the fraction of entries that should be defined modes
+     * @return the sequence, of length SEQUENCE_LENGTH
+     */
+    static Mode[] sequence(int definedModes, double hitRatio) {
+        Mode[] modes = Mode.values();
+        int undefinedModes = modes.length - definedModes;
+        Mode[] seq = new Mode[SEQUENCE_LENGTH];
+        // Deterministic spread of hits so every fork sees the same sequence
+        double acc = 0.0;
+        for (int i = 0; i < SEQUENCE_LENGTH; i++) {
+            acc += hitRatio;
+            boolean hit = acc >= 1.0;
+            if (hit) {
+                acc -= 1.0;
+            }
+            if ((hit && definedModes > 0) || undefinedModes == 0) {
+                seq[i] = modes[i % definedModes];
+            } else {
+                seq[i] = modes[definedModes + i % undefinedModes];
+            }
+        }
+        return seq;
+    }
+}
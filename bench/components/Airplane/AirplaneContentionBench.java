@@ -0,0 +1,131 @@
+package components.Airplane;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import components.Airplane.AirplaneKernel.Mode;
+
+/**
+ * Throughput of the kernel methods when several threads share one airplane.
+ * The writer only overwrites modes that are already defined, so neither
+ * kernel changes structure and the race is benign; what is measured is the
+ * cost of the shared cache lines, not thread safety.
+ */
+@State(Scope.Group)
+@BenchmarkMode(org.openjdk.jmh.annotations.Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class AirplaneContentionBench {
+
+    /**
+     * Kernel implementation under test.
+     */
+    @Param({ "Airplane1", "Airplane2", "Airplane3" })
+    private String impl;
+
+    /**
+     * Number of modes defined before each measurement.
+     */
+    @Param({ "3", "6" })
+    private int definedModes;
+
+    /**
+     * Shared airplane.
+     */
+    private Airplane airplane;
+
+    /**
+     * Defined modes, cycled through by every thread.
+     */
+    private Mode[] defined;
+
+    /**
+     * Per-thread position in the mode sequence.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        /**
+         * Position.
+         */
+        private int position;
+
+        /**
+         * Advances the position.
+         *
+         * @return the next index
+         */
+        int next() {
+            this.position = (this.position + 1)
+                    & (AirplaneBenchSupport.SEQUENCE_LENGTH - 1);
+            return this.position;
+        }
+    }
+
+    /**
+     * Builds the shared airplane.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.airplane = AirplaneBenchSupport.create(this.impl);
+        AirplaneBenchSupport.define(this.airplane, this.definedModes);
+        this.defined = AirplaneBenchSupport.sequence(this.definedModes, 1.0);
+    }
+
+    /**
+     * Reader side of the mixed group.
+     *
+     * @param cursor
+     *            the thread's cursor
+     * @return a metric
+     */
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(3)
+    public double reader(Cursor cursor) {
+        return this.airplane.getMetric(this.defined[cursor.next()]);
+    }
+
+    /**
+     * Writer side of the mixed group.
+     *
+     * @param cursor
+     *            the thread's cursor
+     */
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public void writer(Cursor cursor) {
+        this.airplane.setMetric(this.defined[cursor.next()],
+                AirplaneBenchSupport.METRIC_VALUE);
+    }
+
+    /**
+     * Read-only contention: every thread probes the same airplane.
+     *
+     * @param cursor
+     *            the thread's cursor
+     * @return whether the mode is defined
+     */
+    @Benchmark
+    @Threads(4)
+    public boolean sharedIsDefined(Cursor cursor) {
+        return this.airplane.isDefined(this.defined[cursor.next()]);
+    }
+}
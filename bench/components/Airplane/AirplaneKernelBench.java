@@ -0,0 +1,184 @@
+package components.Airplane;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import components.Airplane.AirplaneKernel.Mode;
+
+/**
+ * Single-operation latency of the AirplaneKernel methods for each kernel
+ * implementation. Run with {@code -prof gc} to see the allocation rate.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(org.openjdk.jmh.annotations.Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class AirplaneKernelBench {
+
+    /**
+     * Kernel implementation under test.
+     */
+    @Param({ "Airplane1", "Airplane2", "Airplane3" })
+    private String impl;
+
+    /**
+     * Number of modes defined before each measurement.
+     */
+    @Param({ "1", "3", "6" })
+    private int definedModes;
+
+    /**
+     * Airplane under test.
+     */
+    private Airplane airplane;
+
+    /**
+     * Second airplane used as the transferFrom source.
+     */
+    private Airplane other;
+
+    /**
+     * Modes known to be defined, for getMetric and setMetric.
+     */
+    private Mode[] defined;
+
+    /**
+     * Position in the probe sequences.
+     */
+    private int cursor;
+
+    /**
+     * Builds the airplanes and mode sequences.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.airplane = AirplaneBenchSupport.create(this.impl);
+        this.other = AirplaneBenchSupport.create(this.impl);
+        AirplaneBenchSupport.define(this.airplane, this.definedModes);
+        this.defined = AirplaneBenchSupport.sequence(this.definedModes, 1.0);
+    }
+
+    /**
+     * Advances the cursor.
+     *
+     * @return the next index into the mode sequences
+     */
+    private int next() {
+        this.cursor = (this.cursor + 1)
+                & (AirplaneBenchSupport.SEQUENCE_LENGTH - 1);
+        return this.cursor;
+    }
+
+    /**
+     * Overwrites an already defined metric.
+     */
+    @Benchmark
+    public void setMetric() {
+        this.airplane.setMetric(this.defined[this.next()],
+                AirplaneBenchSupport.METRIC_VALUE);
+    }
+
+    /**
+     * Adds zero to a defined metric, leaving the state unchanged.
+     */
+    @Benchmark
+    public void addToMetric() {
+        this.airplane.addToMetric(this.defined[this.next()], 0.0);
+    }
+
+    /**
+     * Reads a defined metric.
+     *
+     * @return the metric
+     */
+    @Benchmark
+    public double getMetric() {
+        return this.airplane.getMetric(this.defined[this.next()]);
+    }
+
+    /**
+     * Probes a mode that is defined with probability hitRatio.
+     *
+     * @param probes
+     *            the modes to probe
+     * @return whether the mode is defined
+     */
+    @Benchmark
+    public boolean isDefined(Probes probes) {
+        return this.airplane.isDefined(probes.next());
+    }
+
+    /**
+     * Moves the state back and forth between two airplanes.
+     *
+     * @return the airplane now holding the state
+     */
+    @Benchmark
+    public Airplane transferFrom() {
+        this.other.transferFrom(this.airplane);
+        Airplane tmp = this.airplane;
+        this.airplane = this.other;
+        this.other = tmp;
+        return this.airplane;
+    }
+
+    /**
+     * Modes probed by isDefined, mixing hits and misses. Kept apart from the
+     * benchmark's own state so that only isDefined is run for each hitRatio.
+     */
+    @State(Scope.Thread)
+    public static class Probes {
+
+        /**
+         * Fraction of isDefined calls that hit a defined mode.
+         */
+        @Param({ "0.0", "0.5", "1.0" })
+        private double hitRatio;
+
+        /**
+         * Modes probed, in order.
+         */
+        private Mode[] modes;
+
+        /**
+         * Position in the probe sequence.
+         */
+        private int cursor;
+
+        /**
+         * Builds the probe sequence for the benchmark's defined modes.
+         *
+         * @param bench
+         *            the benchmark state
+         */
+        @Setup(Level.Trial)
+        public void setUp(AirplaneKernelBench bench) {
+            this.modes = AirplaneBenchSupport.sequence(bench.definedModes,
+                    this.hitRatio);
+        }
+
+        /**
+         * Returns the next mode to probe.
+         *
+         * @return the mode
+         */
+        Mode next() {
+            this.cursor = (this.cursor + 1)
+                    & (AirplaneBenchSupport.SEQUENCE_LENGTH - 1);
+            return this.modes[this.cursor];
+        }
+    }
+}
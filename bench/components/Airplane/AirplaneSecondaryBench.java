@@ -0,0 +1,92 @@
+package components.Airplane;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Single-operation latency of the AirplaneSecondary methods for each kernel
+ * implementation. Run with {@code -prof gc} to see the allocation rate.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(org.openjdk.jmh.annotations.Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class AirplaneSecondaryBench {
+
+    /**
+     * Kernel implementation under test.
+     */
+    @Param({ "Airplane1", "Airplane2", "Airplane3" })
+    private String impl;
+
+    /**
+     * Number of modes defined on both airplanes; toString needs at least the
+     * first two (ALTITUDE and DIRECTION).
+     */
+    @Param({ "2", "4", "6" })
+    private int definedModes;
+
+    /**
+     * Airplane under test.
+     */
+    private Airplane airplane;
+
+    /**
+     * An equal airplane in a distinct object.
+     */
+    private Airplane twin;
+
+    /**
+     * Builds the two airplanes.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.airplane = AirplaneBenchSupport.create(this.impl);
+        this.twin = AirplaneBenchSupport.create(this.impl);
+        AirplaneBenchSupport.define(this.airplane, this.definedModes);
+        AirplaneBenchSupport.define(this.twin, this.definedModes);
+    }
+
+    /**
+     * Compares two equal airplanes, the worst case for equals.
+     *
+     * @return true
+     */
+    @Benchmark
+    public boolean equalsEqual() {
+        return this.airplane.equals(this.twin);
+    }
+
+    /**
+     * Hashes the airplane.
+     *
+     * @return the hash code
+     */
+    @Benchmark
+    public int hashCodeAirplane() {
+        return this.airplane.hashCode();
+    }
+
+    /**
+     * Formats the airplane.
+     *
+     * @return the string form
+     */
+    @Benchmark
+    public String toStringAirplane() {
+        return this.airplane.toString();
+    }
+}
@@ -0,0 +1,148 @@
+package components.Airplane;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import components.Airplane.AirplaneKernel.Mode;
+
+/**
+ * Sensor-style contention on one thread-safe airplane: separate threads write
+ * altitude, speed and fuel while a monitor thread takes consistent snapshots.
+ * Compares the lock-free Airplane3 with a synchronized Airplane1.
+ */
+@State(Scope.Group)
+@BenchmarkMode(org.openjdk.jmh.annotations.Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ConcurrentAirplaneBench {
+
+    /**
+     * Implementation under test.
+     */
+    @Param({ "Airplane3", "SynchronizedAirplane1" })
+    private String impl;
+
+    /**
+     * The lock-free airplane, when impl is Airplane3.
+     */
+    private Airplane3 lockFree;
+
+    /**
+     * The locking airplane, when impl is SynchronizedAirplane1.
+     */
+    private SynchronizedAirplane1 locking;
+
+    /**
+     * The airplane under test, whichever it is.
+     */
+    private Airplane airplane;
+
+    /**
+     * Builds the airplane with altitude, speed and fuel defined.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        if (this.impl.equals("Airplane3")) {
+            this.lockFree = new Airplane3();
+            this.airplane = this.lockFree;
+        } else {
+            this.locking = new SynchronizedAirplane1();
+            this.airplane = this.locking;
+        }
+        this.airplane.setMetric(Mode.ALTITUDE,
+                AirplaneBenchSupport.METRIC_VALUE);
+        this.airplane.setMetric(Mode.SPEED, AirplaneBenchSupport.METRIC_VALUE);
+        this.airplane.setMetric(Mode.FUEL_QUANTITY,
+                AirplaneBenchSupport.METRIC_VALUE);
+    }
+
+    /**
+     * Per-thread buffer for snapshots.
+     */
+    @State(Scope.Thread)
+    public static class Buffer {
+
+        /**
+         * Snapshot values.
+         */
+        private final double[] values = new double[Mode.values().length];
+    }
+
+    /**
+     * Altitude sensor.
+     */
+    @Benchmark
+    @Group("sensors")
+    @GroupThreads(1)
+    public void altitudeWriter() {
+        this.airplane.setMetric(Mode.ALTITUDE,
+                AirplaneBenchSupport.METRIC_VALUE);
+    }
+
+    /**
+     * Speed sensor.
+     */
+    @Benchmark
+    @Group("sensors")
+    @GroupThreads(1)
+    public void speedWriter() {
+        this.airplane.setMetric(Mode.SPEED, AirplaneBenchSupport.METRIC_VALUE);
+    }
+
+    /**
+     * Fuel sensor.
+     */
+    @Benchmark
+    @Group("sensors")
+    @GroupThreads(1)
+    public void fuelWriter() {
+        this.airplane.addToMetric(Mode.FUEL_QUANTITY, 0.0);
+    }
+
+    /**
+     * Monitor taking consistent snapshots.
+     *
+     * @param buffer
+     *            the thread's snapshot buffer
+     * @return the defined mask
+     */
+    @Benchmark
+    @Group("sensors")
+    @GroupThreads(1)
+    public int snapshotReader(Buffer buffer) {
+        int mask;
+        if (this.lockFree != null) {
+            mask = this.lockFree.snapshotInto(buffer.values);
+        } else {
+            mask = this.locking.snapshotInto(buffer.values);
+        }
+        return mask;
+    }
+
+    /**
+     * Display reading single metrics.
+     *
+     * @return a metric
+     */
+    @Benchmark
+    @Group("sensors")
+    @GroupThreads(1)
+    public double metricReader() {
+        return this.airplane.getMetric(Mode.ALTITUDE);
+    }
+}
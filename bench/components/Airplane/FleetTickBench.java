@@ -0,0 +1,137 @@
+package components.Airplane;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import components.Airplane.AirplaneKernel.Mode;
+
+/**
+ * Cost of one single-threaded tick over a whole AirplaneFleet: the batched
+ * FlightPhysics pass versus applying the same constant deltas to each slot
+ * with applyDeltas, as FleetSimulator.simulatePhase does. Scores are per
+ * tick.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(org.openjdk.jmh.annotations.Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = "-Xmx2g")
+public class FleetTickBench {
+
+    /**
+     * Fuel loaded in every airplane; enough that no tick of the run empties
+     * a tank.
+     */
+    private static final double FUEL = 1e12;
+
+    /**
+     * Climb per tick, in feet.
+     */
+    private static final double CLIMB = 1;
+
+    /**
+     * Acceleration per tick, in knots.
+     */
+    private static final double ACCELERATION = 0.001;
+
+    /**
+     * Fuel burned per tick by the constant deltas.
+     */
+    private static final double BURN = 0.5;
+
+    /**
+     * Number of airplanes in the fleet.
+     */
+    @Param({ "1000000" })
+    private int size;
+
+    /**
+     * The fleet.
+     */
+    private AirplaneFleet fleet;
+
+    /**
+     * The physics stage, with one-second ticks.
+     */
+    private FlightPhysics physics;
+
+    /**
+     * No airplane is frozen.
+     */
+    private long[] frozen;
+
+    /**
+     * Ground speeds computed by the physics stage.
+     */
+    private double[] groundSpeeds;
+
+    /**
+     * Deltas applied by the constant-delta tick, indexed by Mode.ordinal().
+     */
+    private double[] deltas;
+
+    /**
+     * Builds a fleet with every metric the physics stage reads.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        final int degrees = 360;
+        final int winds = 40;
+        final int temperatures = 60;
+        final double coldest = 250;
+        final double speed = 250;
+        this.fleet = new AirplaneFleet(this.size);
+        for (int slot = 0; slot < this.size; slot++) {
+            this.fleet.setMetric(slot, Mode.FUEL_QUANTITY, FUEL);
+            this.fleet.setMetric(slot, Mode.SPEED, speed);
+            this.fleet.setMetric(slot, Mode.DIRECTION, slot % degrees);
+            this.fleet.setMetric(slot, Mode.WIND_SPEED, slot % winds);
+            this.fleet.setMetric(slot, Mode.OUTSIDE_AIR_TEMPERATURE,
+                    coldest + slot % temperatures);
+        }
+        this.physics = new FlightPhysics(1, 0);
+        this.frozen = new long[(this.size + Long.SIZE - 1) / Long.SIZE];
+        this.groundSpeeds = new double[this.size];
+        this.deltas = new double[Mode.values().length];
+        this.deltas[Mode.ALTITUDE.ordinal()] = CLIMB;
+        this.deltas[Mode.SPEED.ordinal()] = ACCELERATION;
+        this.deltas[Mode.FUEL_QUANTITY.ordinal()] = -BURN;
+    }
+
+    /**
+     * One tick of the batched physics stage.
+     *
+     * @return the fleet
+     */
+    @Benchmark
+    public AirplaneFleet physics() {
+        this.physics.integrate(this.fleet, 0, this.size, CLIMB, ACCELERATION,
+                this.frozen, this.groundSpeeds);
+        return this.fleet;
+    }
+
+    /**
+     * One tick of constant deltas, slot by slot.
+     *
+     * @return the fleet
+     */
+    @Benchmark
+    public AirplaneFleet constantDeltas() {
+        for (int slot = 0; slot < this.size; slot++) {
+            this.fleet.applyDeltas(slot, this.deltas);
+        }
+        return this.fleet;
+    }
+}
@@ -0,0 +1,93 @@
+package components.Airplane;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import components.Airplane.AirplaneKernel.Mode;
+
+/**
+ * Throughput of deduplicating a million airplane states in a HashSet, the
+ * workload that hashCode and equals decide. Every state defines the same
+ * modes, so a hash that looked only at which modes are defined would put them
+ * all in one bucket. Scores are per state.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(org.openjdk.jmh.annotations.Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class StateDedupBench {
+
+    /**
+     * Number of states deduplicated per invocation.
+     */
+    private static final int STATES = 1_000_000;
+
+    /**
+     * Kernel implementation under test.
+     */
+    @Param({ "Airplane1", "Airplane2", "Airplane3" })
+    private String impl;
+
+    /**
+     * Number of distinct altitudes; each state draws one, so about
+     * STATES - distinct of the states are duplicates of another.
+     */
+    @Param({ "1000", "500000" })
+    private int distinct;
+
+    /**
+     * The states, in random order.
+     */
+    private Airplane[] states;
+
+    /**
+     * Builds the states.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        final double speed = 450;
+        final double fuel = 20_000;
+        Random random = new Random(42);
+        this.states = new Airplane[STATES];
+        for (int i = 0; i < STATES; i++) {
+            Airplane airplane = AirplaneBenchSupport.create(this.impl);
+            AirplaneBenchSupport.define(airplane, Mode.values().length);
+            airplane.setMetric(Mode.ALTITUDE, random.nextInt(this.distinct));
+            airplane.setMetric(Mode.SPEED, speed);
+            airplane.setMetric(Mode.FUEL_QUANTITY, fuel);
+            this.states[i] = airplane;
+        }
+    }
+
+    /**
+     * Adds every state to a HashSet.
+     *
+     * @return the number of distinct states
+     */
+    @Benchmark
+    @OperationsPerInvocation(STATES)
+    public int dedup() {
+        Set<Airplane> seen = new HashSet<>();
+        for (Airplane state : this.states) {
+            seen.add(state);
+        }
+        return seen.size();
+    }
+}
@@ -0,0 +1,148 @@
+package components.Airplane;
+
+/**
+ * Airplane1 made thread-safe the simplest way: every method synchronizes on
+ * the wrapper. Used as the baseline for the concurrent benchmarks.
+ */
+final class SynchronizedAirplane1 extends AirplaneSecondary {
+
+    /**
+     * Lock taken first when two airplanes have the same identity hash code.
+     */
+    private static final Object TIE_LOCK = new Object();
+
+    /**
+     * Wrapped airplane.
+     */
+    private final Airplane1 airplane = new Airplane1();
+
+    /**
+     * Copies every metric into {@code into} while holding the lock, with
+     * undefined metrics as 0.0.
+     *
+     * @param into
+     *            the array to fill, indexed by Mode.ordinal()
+     * @return the bitmask of defined modes
+     */
+    synchronized int snapshotInto(double[] into) {
+        int mask = 0;
+        for (Mode mode : Mode.values()) {
+            into[mode.ordinal()] = 0.0;
+            if (this.airplane.isDefined(mode)) {
+                into[mode.ordinal()] = this.airplane.getMetric(mode);
+                mask |= 1 << mode.ordinal();
+            }
+        }
+        return mask;
+    }
+
+    @Override
+    public synchronized double getMetric(Mode mode) {
+        return this.airplane.getMetric(mode);
+    }
+
+    @Override
+    public synchronized void setMetric(Mode mode, double value) {
+        this.airplane.setMetric(mode, value);
+    }
+
+    @Override
+    public synchronized boolean isDefined(Mode mode) {
+        return this.airplane.isDefined(mode);
+    }
+
+    @Override
+    public synchronized void addToMetric(Mode mode, double delta) {
+        this.airplane.addToMetric(mode, delta);
+    }
+
+    @Override
+    public synchronized void applyDeltas(double[] deltasByOrdinal) {
+        this.airplane.applyDeltas(deltasByOrdinal);
+    }
+
+    @Override
+    public synchronized void clear() {
+        this.airplane.clear();
+    }
+
+    @Override
+    public Airplane newInstance() {
+        return new SynchronizedAirplane1();
+    }
+
+    /**
+     * Moves the state of {@code source}, another SynchronizedAirplane1, into
+     * this airplane while holding both locks. The locks are taken in order of
+     * identity hash code, so two opposite transfers cannot deadlock.
+     *
+     * @param source
+     *            the airplane to transfer from; left empty
+     * @throws IllegalArgumentException
+     *             if source is not a SynchronizedAirplane1
+     */
+    @Override
+    public void transferFrom(Airplane source) {
+        if (!(source instanceof SynchronizedAirplane1)) {
+            throw new IllegalArgumentException("Invalid source for transfer");
+        }
+        SynchronizedAirplane1 src = (SynchronizedAirplane1) source;
+        if (src == this) {
+            return;
+        }
+        int mine = System.identityHashCode(this);
+        int theirs = System.identityHashCode(src);
+        SynchronizedAirplane1 first = this;
+        SynchronizedAirplane1 second = src;
+        if (theirs < mine) {
+            first = src;
+            second = this;
+        }
+        Object tie = first;
+        if (mine == theirs) {
+            tie = TIE_LOCK;
+        }
+        synchronized (tie) {
+            synchronized (first) {
+                synchronized (second) {
+                    this.airplane.transferFrom(src.airplane);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void setAltitude(double altitude) {
+        this.setMetric(Mode.ALTITUDE, altitude);
+    }
+
+    @Override
+    public double getAltitude() {
+        return this.getMetric(Mode.ALTITUDE);
+    }
+
+    @Override
+    public void setSpeed(double speed) {
+        this.setMetric(Mode.SPEED, speed);
+    }
+
+    @Override
+    public double getSpeed() {
+        return this.getMetric(Mode.SPEED);
+    }
+
+    @Override
+    public void setDirection(int direction) {
+        this.setMetric(Mode.DIRECTION, direction);
+    }
+
+    @Override
+    public int getDirection() {
+        return (int) this.getMetric(Mode.DIRECTION);
+    }
+
+    @Override
+    public double getFuelQuantity() {
+        return this.getMetric(Mode.FUEL_QUANTITY);
+    }
+}
@@ -1,140 +1,192 @@
+import javax.management.JMException;
+
 import components.Airplane.Airplane1;
 import components.Airplane.AirplaneKernel.Mode;
+import components.Airplane.AirplaneStats;
+import components.Airplane.FlightPlan;
 
 /**
  * Simulates the operation of an airplane through various phases such as
  * takeoff, cruising, and landing.
  */
 public class AirplaneSimulator {
+    /**
+     * Simulated length of one iteration, in milliseconds.
+     */
+    private static final long TIMESTEP_MILLIS = 1000;
+
+    /**
+     * Fuel quantity loaded before takeoff; enough for every phase.
+     */
+    private static final double INITIAL_FUEL = 5000;
+
+    /**
+     * Time between the stats dumps printed by main, in milliseconds.
+     */
+    private static final long STATS_PERIOD_MILLIS = 1000;
+
+    /**
+     * The phases of every simulated flight.
+     */
+    private static final FlightPlan PLAN = FlightPlan.builder()
+            .phase("Takeoff", 3, deltas(2000, 100, -50))
+            .phase("Cruising", 3, deltas(0, 0, -200))
+            .phase("Landing", 3, deltas(-2000, -100, 0)).build();
+
     /**
      * Airplane.
      */
     private final Airplane1 airplane;
 
     /**
-     * Constructs a new AirplaneSimulator instance and initializes the airplane.
+     * Engine that paces the iterations.
+     */
+    private final SimulationEngine engine;
+
+    /**
+     * Sink the simulation reports to, or null to report to a console sink
+     * opened and closed by each run.
+     */
+    private final TelemetrySink sink;
+
+    /**
+     * Constructs a new AirplaneSimulator instance that runs in real time and
+     * initializes the airplane. Each run reports to standard output through a
+     * console sink that it closes when it ends.
      */
     public AirplaneSimulator() {
-        this.airplane = new Airplane1();
+        this(SimulationClock.realTime());
     }
 
     /**
-     * Starts the simulation by simulating the takeoff, cruising, and landing
-     * phases. Outputs the airplane's metrics at each step.
+     * Constructs a new AirplaneSimulator instance paced by the given clock and
+     * initializes the airplane. Each run reports to standard output through a
+     * console sink that it closes when it ends.
+     *
+     * @param clock
+     *            The clock that paces the simulation.
      */
-    public void startSimulation() {
-        System.out.println("Starting Airplane Simulation...\n");
-
-        // Simulate the phases of the flight
-        this.simulatePhase("Takeoff", 3, 2000, 100, -50);
-        // Simulate takeoff
-        this.simulatePhase("Cruising", 3, 0, 0, -200);
-        // Simulate cruising
-        this.simulatePhase("Landing", 3, -2000, -100, 0);
-        // Simulate landing
+    public AirplaneSimulator(SimulationClock clock) {
+        this(clock, null);
+    }
 
-        System.out.println("\nSimulation Complete!");
+    /**
+     * Constructs a new AirplaneSimulator instance paced by the given clock
+     * and reporting to the given sink, and initializes the airplane with its
+     * fuel load. The sink is flushed, but not closed, at the end of the
+     * simulation.
+     *
+     * @param clock
+     *            The clock that paces the simulation.
+     * @param sink
+     *            The sink the simulation reports to.
+     */
+    public AirplaneSimulator(SimulationClock clock, TelemetrySink sink) {
+        this.airplane = new Airplane1();
+        this.airplane.setMetric(Mode.FUEL_QUANTITY, INITIAL_FUEL);
+        this.engine = new SimulationEngine(clock, TIMESTEP_MILLIS);
+        this.sink = sink;
     }
 
     /**
-     * Simulates a specific phase of the flight by updating altitude, speed, and
-     * fuel quantity over a given duration.
+     * Returns the per-iteration deltas of a phase.
      *
-     * @param phaseName
-     *            The name of the phase (e.g., "Takeoff", "Cruising",
-     *            "Landing").
-     * @param duration
-     *            The number of iterations (representing time) for the phase.
      * @param altitudeChange
      *            The change in altitude for each iteration.
      * @param speedChange
      *            The change in speed for each iteration.
      * @param fuelChange
      *            The change in fuel quantity for each iteration.
+     * @return The deltas, indexed by Mode.ordinal().
      */
-    private void simulatePhase(String phaseName, int duration,
-            double altitudeChange, double speedChange, double fuelChange) {
-        System.out.println("Phase: " + phaseName);
-
-        // Update metrics for each iteration in the phase
-        for (int i = 0; i < duration; i++) {
-            this.updateMetricWithoutTernary(Mode.ALTITUDE, altitudeChange);
-            this.updateMetricWithoutTernary(Mode.SPEED, speedChange);
-            this.updateMetricWithoutTernary(Mode.FUEL_QUANTITY, fuelChange);
-
-            // Display the current metrics after updating
-            this.displayMetrics();
-            this.sleep(1000);
-            // Simulate a time delay of 1 second
-        }
+    private static double[] deltas(double altitudeChange, double speedChange,
+            double fuelChange) {
+        double[] deltas = new double[Mode.values().length];
+        deltas[Mode.ALTITUDE.ordinal()] = altitudeChange;
+        deltas[Mode.SPEED.ordinal()] = speedChange;
+        deltas[Mode.FUEL_QUANTITY.ordinal()] = fuelChange;
+        return deltas;
     }
 
     /**
-     * Updates the specified metric (altitude, speed, or fuel) by the given
-     * change. If the metric is defined, it adds the change to the current
-     * value, otherwise sets it.
+     * Returns the flight plan every simulation follows: takeoff, cruising and
+     * landing.
      *
-     * @param mode
-     *            The mode of the metric to update (e.g., ALTITUDE, SPEED,
-     *            FUEL_QUANTITY).
-     * @param change
-     *            The value to change the metric by.
-     */
-    private void updateMetricWithoutTernary(Mode mode, double change) {
-        if (this.airplane.isDefined(mode)) {
-            // If the metric is defined, update it by adding the change
-            double currentValue = this.airplane.getMetric(mode);
-            this.airplane.setMetric(mode, currentValue + change);
-        } else {
-            // If the metric is not defined, set it to the change value
-            this.airplane.setMetric(mode, change);
-        }
+     * @return The flight plan.
+     */
+    public static FlightPlan flightPlan() {
+        return PLAN;
     }
 
     /**
-     * Displays the current values of the airplane's altitude, speed, and fuel
-     * quantity. If a metric is not defined, it prints "Not Defined".
+     * Starts the simulation by simulating the takeoff, cruising, and landing
+     * phases. Outputs the airplane's metrics at each step. If the calling
+     * thread is interrupted, the simulation stops at the end of the current
+     * step.
      */
-    private void displayMetrics() {
-        // Display Altitude
-        System.out.print("Altitude: ");
-        if (this.airplane.isDefined(Mode.ALTITUDE)) {
-            System.out.println(this.airplane.getMetric(Mode.ALTITUDE));
+    public void startSimulation() {
+        if (this.sink == null) {
+            try (TelemetrySink console = TelemetrySink
+                    .console(TelemetrySink.Backpressure.BLOCK)) {
+                this.run(console);
+            }
         } else {
-            System.out.println("Not Defined");
+            this.run(this.sink);
         }
+    }
 
-        // Display Speed
-        System.out.print("Speed: ");
-        if (this.airplane.isDefined(Mode.SPEED)) {
-            System.out.println(this.airplane.getMetric(Mode.SPEED));
-        } else {
-            System.out.println("Not Defined");
+    /**
+     * Runs the simulation, reporting to {@code out}, and flushes it.
+     *
+     * @param out
+     *            The sink to report to.
+     */
+    private void run(TelemetrySink out) {
+        out.message("Starting Airplane Simulation...\n");
+        this.engine.start();
+
+        // Simulate the phases of the flight: takeoff, cruising, landing
+        for (int p = 0; p < PLAN.phaseCount(); p++) {
+            this.simulatePhase(out, PLAN.phaseName(p), PLAN.phaseDuration(p),
+                    PLAN.phaseDeltas(p));
         }
 
-        // Display Fuel Quantity
-        System.out.print("Fuel Quantity: ");
-        if (this.airplane.isDefined(Mode.FUEL_QUANTITY)) {
-            System.out.println(this.airplane.getMetric(Mode.FUEL_QUANTITY));
+        if (Thread.currentThread().isInterrupted()) {
+            out.message("\nSimulation Cancelled!");
         } else {
-            System.out.println("Not Defined");
+            out.message("\nSimulation Complete!");
         }
-        System.out.println();
+        out.flush();
     }
 
     /**
-     * Pauses the simulation for the specified number of milliseconds.
+     * Simulates a specific phase of the flight by updating altitude, speed, and
+     * fuel quantity over a given duration.
      *
-     * @param milliseconds
-     *            The number of milliseconds to pause.
-     */
-    private void sleep(int milliseconds) {
-        try {
-            // Pause for the specified time
-            Thread.sleep(milliseconds);
-        } catch (InterruptedException e) {
-            // If interrupted, restore the interrupt status
-            Thread.currentThread().interrupt();
+     * @param out
+     *            The sink to report to.
+     * @param phaseName
+     *            The name of the phase (e.g., "Takeoff", "Cruising",
+     *            "Landing").
+     * @param duration
+     *            The number of iterations (representing time) for the phase.
+     * @param deltas
+     *            The changes applied at every iteration, indexed by
+     *            Mode.ordinal().
+     */
+    private void simulatePhase(TelemetrySink out, String phaseName,
+            int duration, double[] deltas) {
+        out.phase(phaseName);
+
+        // Update metrics for each iteration in the phase, until interrupted
+        for (int i = 0; i < duration
+                && !Thread.currentThread().isInterrupted(); i++) {
+            this.airplane.applyDeltas(deltas);
+
+            // Report the current metrics after updating
+            out.metrics(this.airplane);
+            this.engine.advance();
+            // Wait until the clock allows the next iteration
         }
     }
 
@@ -142,10 +194,29 @@ public class AirplaneSimulator {
      * The main method that initializes and starts the airplane simulation.
      *
      * @param args
-     *            Command-line arguments (not used in this case).
+     *            Command-line arguments: none for real time, "unpaced" to run
+     *            as fast as possible, or "scaled" followed by a speed-up
+     *            factor (e.g., "scaled 100"). With
+     *            {@code -Dairplane.stats=true}, the stats are also registered
+     *            over JMX and printed to standard error every second.
+     * @throws JMException
+     *             if the stats MBean cannot be registered.
      */
-    public static void main(String[] args) {
-        AirplaneSimulator simulator = new AirplaneSimulator();
-        simulator.startSimulation();
+    public static void main(String[] args) throws JMException {
+        SimulationClock clock = SimulationClock.realTime();
+        if (args.length > 0 && args[0].equals("unpaced")) {
+            clock = SimulationClock.unpaced();
+        } else if (args.length > 1 && args[0].equals("scaled")) {
+            clock = SimulationClock.scaled(Double.parseDouble(args[1]));
+        }
+        AirplaneStats.Dumping dumps = AirplaneStats.export(System.err,
+                STATS_PERIOD_MILLIS);
+        try (TelemetrySink sink = TelemetrySink
+                .console(TelemetrySink.Backpressure.BLOCK)) {
+            AirplaneSimulator simulator = new AirplaneSimulator(clock, sink);
+            simulator.startSimulation();
+        } finally {
+            dumps.close();
+        }
     }
 }
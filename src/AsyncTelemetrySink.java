@@ -0,0 +1,519 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import components.Airplane.Airplane;
+import components.Airplane.AirplaneKernel.Mode;
+
+/**
+ * A telemetry sink that copies each report into a bounded ring buffer of
+ * preallocated primitive slots and leaves the formatting and writing to a
+ * background thread. The writer drains the buffer in batches, formats a whole
+ * batch into one reused StringBuilder and hands it to the output in a single
+ * write, so producers never wait for I/O unless the buffer is full and the
+ * backpressure policy is BLOCK.
+ *
+ * <p>
+ * Reports are written in the text format AirplaneSimulator has always printed:
+ * "Phase: name", then "Altitude: ", "Speed: " and "Fuel Quantity: " lines
+ * (with "Not Defined" for an undefined metric) followed by a blank line.
+ * </p>
+ */
+public final class AsyncTelemetrySink implements TelemetrySink {
+
+    /**
+     * Default number of reports the buffer holds.
+     */
+    static final int DEFAULT_CAPACITY = 4096;
+
+    /**
+     * Most reports the writer takes from the buffer at a time.
+     */
+    private static final int BATCH_SIZE = 256;
+
+    /**
+     * Under SAMPLE, one metrics report in this many is kept once the buffer is
+     * half full.
+     */
+    private static final int SAMPLE_RATE = 8;
+
+    /**
+     * Number of modes, i.e., the number of metrics per report.
+     */
+    private static final int MODE_COUNT = Mode.values().length;
+
+    /**
+     * Modes indexed by ordinal.
+     */
+    private static final Mode[] MODES = Mode.values();
+
+    /**
+     * Kind of a free-form message report.
+     */
+    private static final int MESSAGE = 0;
+
+    /**
+     * Kind of a phase report.
+     */
+    private static final int PHASE = 1;
+
+    /**
+     * Kind of a metrics report.
+     */
+    private static final int METRICS = 2;
+
+    /**
+     * Line separator, as println would write it.
+     */
+    private static final String NEWLINE = System.lineSeparator();
+
+    /**
+     * Output the writer thread writes to.
+     */
+    private final Writer out;
+
+    /**
+     * Whether close also closes out.
+     */
+    private final boolean closeOut;
+
+    /**
+     * What to do when the buffer is full.
+     */
+    private final Backpressure backpressure;
+
+    /**
+     * Number of slots in the buffer; a power of two.
+     */
+    private final int capacity;
+
+    /**
+     * Guards the buffer, its counters and the closed and failure flags.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Signalled when a report is added or the sink is closed.
+     */
+    private final Condition notEmpty = this.lock.newCondition();
+
+    /**
+     * Signalled when reports are removed from the buffer.
+     */
+    private final Condition notFull = this.lock.newCondition();
+
+    /**
+     * Signalled when a batch has been written.
+     */
+    private final Condition written = this.lock.newCondition();
+
+    /**
+     * Kind of each buffered report.
+     */
+    private final int[] kinds;
+
+    /**
+     * Text of each buffered message or phase report.
+     */
+    private final String[] texts;
+
+    /**
+     * Defined-mode mask of each buffered metrics report.
+     */
+    private final int[] masks;
+
+    /**
+     * Metrics of each buffered metrics report, MODE_COUNT per slot.
+     */
+    private final double[] values;
+
+    /**
+     * Number of reports ever taken out of the buffer; the oldest buffered
+     * report is at slot head mod capacity.
+     */
+    private long head;
+
+    /**
+     * Number of reports ever added to the buffer.
+     */
+    private long tail;
+
+    /**
+     * Number of reports added to the buffer and since written out or
+     * discarded; flush waits for it to reach tail.
+     */
+    private long done;
+
+    /**
+     * Number of reports discarded by the backpressure policy.
+     */
+    private long dropped;
+
+    /**
+     * Number of metrics reports offered while sampling.
+     */
+    private long sampled;
+
+    /**
+     * Whether close has been called.
+     */
+    private boolean closed;
+
+    /**
+     * First write failure, reported by flush and close.
+     */
+    private IOException failure;
+
+    /**
+     * Background writer thread.
+     */
+    private final Thread writer;
+
+    /**
+     * Constructs a sink and starts its writer thread.
+     *
+     * @param out
+     *            The output to write to.
+     * @param closeOut
+     *            Whether closing the sink also closes out.
+     * @param backpressure
+     *            What to do when the buffer is full.
+     * @param capacity
+     *            The minimum number of reports the buffer holds; rounded up
+     *            to a power of two.
+     */
+    AsyncTelemetrySink(Writer out, boolean closeOut, Backpressure backpressure,
+            int capacity) {
+        this.out = out;
+        this.closeOut = closeOut;
+        this.backpressure = backpressure;
+        this.capacity = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.kinds = new int[this.capacity];
+        this.texts = new String[this.capacity];
+        this.masks = new int[this.capacity];
+        this.values = new double[this.capacity * MODE_COUNT];
+        this.writer = new Thread(this::drain, "telemetry-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Reports how many reports the backpressure policy has discarded.
+     *
+     * @return The number of discarded reports.
+     */
+    public long dropped() {
+        this.lock.lock();
+        try {
+            return this.dropped;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Reserves a slot for a new report, applying the backpressure policy.
+     * Must be called with the lock held.
+     *
+     * @param kind
+     *            The kind of report.
+     * @return The slot to fill, or -1 if the report is to be discarded.
+     */
+    private int reserve(int kind) {
+        if (this.closed) {
+            throw new IllegalStateException("Telemetry sink is closed.");
+        }
+        if (this.backpressure == Backpressure.SAMPLE && kind == METRICS
+                && this.tail - this.head >= this.capacity / 2) {
+            this.sampled++;
+            if (this.sampled % SAMPLE_RATE != 0) {
+                // Never enqueued, so never counted in tail or done
+                this.dropped++;
+                return -1;
+            }
+        }
+        while (this.tail - this.head == this.capacity) {
+            if (this.backpressure == Backpressure.DROP_OLDEST) {
+                this.texts[(int) (this.head & (this.capacity - 1))] = null;
+                this.head++;
+                this.dropped++;
+                this.done++;
+            } else {
+                this.notFull.awaitUninterruptibly();
+            }
+        }
+        int slot = (int) (this.tail & (this.capacity - 1));
+        this.kinds[slot] = kind;
+        return slot;
+    }
+
+    /**
+     * Publishes the report in the slot just reserved. Must be called with the
+     * lock held.
+     */
+    private void publish() {
+        this.tail++;
+        this.notEmpty.signal();
+    }
+
+    @Override
+    public void message(String text) {
+        this.text(MESSAGE, text);
+    }
+
+    @Override
+    public void phase(String phaseName) {
+        this.text(PHASE, phaseName);
+    }
+
+    /**
+     * Records a text report.
+     *
+     * @param kind
+     *            MESSAGE or PHASE.
+     * @param text
+     *            The text.
+     */
+    private void text(int kind, String text) {
+        this.lock.lock();
+        try {
+            int slot = this.reserve(kind);
+            if (slot >= 0) {
+                this.texts[slot] = text;
+                this.publish();
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public void metrics(Airplane airplane) {
+        this.lock.lock();
+        try {
+            int slot = this.reserve(METRICS);
+            if (slot >= 0) {
+                int mask = 0;
+                int base = slot * MODE_COUNT;
+                for (Mode mode : MODES) {
+                    double value = 0.0;
+                    if (airplane.isDefined(mode)) {
+                        value = airplane.getMetric(mode);
+                        mask |= 1 << mode.ordinal();
+                    }
+                    this.values[base + mode.ordinal()] = value;
+                }
+                this.texts[slot] = null;
+                this.masks[slot] = mask;
+                this.publish();
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public void flush() {
+        this.lock.lock();
+        try {
+            long target = this.tail;
+            while (this.done < target && this.failure == null) {
+                this.written.awaitUninterruptibly();
+            }
+            if (this.failure != null) {
+                throw new UncheckedIOException(this.failure);
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        this.lock.lock();
+        try {
+            if (this.closed) {
+                return;
+            }
+            this.closed = true;
+            this.notEmpty.signal();
+        } finally {
+            this.lock.unlock();
+        }
+        boolean interrupted = false;
+        while (this.writer.isAlive()) {
+            try {
+                this.writer.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            if (this.closeOut) {
+                this.out.close();
+            } else {
+                this.out.flush();
+            }
+        } catch (IOException e) {
+            this.fail(e);
+        }
+        this.lock.lock();
+        try {
+            if (this.failure != null) {
+                throw new UncheckedIOException(this.failure);
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Records a write failure and wakes up anyone waiting on the writer.
+     *
+     * @param e
+     *            The failure.
+     */
+    private void fail(IOException e) {
+        this.lock.lock();
+        try {
+            if (this.failure == null) {
+                this.failure = e;
+            }
+            this.written.signalAll();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Body of the writer thread: takes batches out of the buffer, formats
+     * them and writes them until the sink is closed and the buffer is empty.
+     */
+    private void drain() {
+        StringBuilder text = new StringBuilder();
+        int[] batchKinds = new int[BATCH_SIZE];
+        String[] batchTexts = new String[BATCH_SIZE];
+        int[] batchMasks = new int[BATCH_SIZE];
+        double[] batchValues = new double[BATCH_SIZE * MODE_COUNT];
+        while (true) {
+            int count;
+            boolean empty;
+            this.lock.lock();
+            try {
+                while (this.head == this.tail && !this.closed) {
+                    this.notEmpty.awaitUninterruptibly();
+                }
+                if (this.head == this.tail) {
+                    return;
+                }
+                count = (int) Math.min(BATCH_SIZE, this.tail - this.head);
+                for (int i = 0; i < count; i++) {
+                    int slot = (int) ((this.head + i) & (this.capacity - 1));
+                    batchKinds[i] = this.kinds[slot];
+                    batchTexts[i] = this.texts[slot];
+                    batchMasks[i] = this.masks[slot];
+                    System.arraycopy(this.values, slot * MODE_COUNT,
+                            batchValues, i * MODE_COUNT, MODE_COUNT);
+                    this.texts[slot] = null;
+                }
+                this.head += count;
+                empty = this.head == this.tail;
+                this.notFull.signalAll();
+            } finally {
+                this.lock.unlock();
+            }
+
+            text.setLength(0);
+            for (int i = 0; i < count; i++) {
+                format(text, batchKinds[i], batchTexts[i], batchMasks[i],
+                        batchValues, i * MODE_COUNT);
+            }
+            try {
+                this.out.append(text);
+                if (empty) {
+                    this.out.flush();
+                }
+            } catch (IOException e) {
+                this.fail(e);
+            }
+
+            this.lock.lock();
+            try {
+                this.done += count;
+                this.written.signalAll();
+            } finally {
+                this.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Appends one report in AirplaneSimulator's text format.
+     *
+     * @param text
+     *            The builder to append to.
+     * @param kind
+     *            The kind of report.
+     * @param message
+     *            The text of a message or phase report.
+     * @param mask
+     *            The defined-mode mask of a metrics report.
+     * @param metrics
+     *            The array holding the metrics of a metrics report.
+     * @param base
+     *            The index of the report's first metric in metrics.
+     */
+    private static void format(StringBuilder text, int kind, String message,
+            int mask, double[] metrics, int base) {
+        switch (kind) {
+            case MESSAGE:
+                text.append(message).append(NEWLINE);
+                break;
+            case PHASE:
+                text.append("Phase: ").append(message).append(NEWLINE);
+                break;
+            case METRICS:
+                formatMetric(text, "Altitude: ", Mode.ALTITUDE, mask, metrics,
+                        base);
+                formatMetric(text, "Speed: ", Mode.SPEED, mask, metrics, base);
+                formatMetric(text, "Fuel Quantity: ", Mode.FUEL_QUANTITY, mask,
+                        metrics, base);
+                text.append(NEWLINE);
+                break;
+            default:
+                throw new IllegalStateException("Unknown report kind " + kind);
+        }
+    }
+
+    /**
+     * Appends one metric line, or "Not Defined" if the metric is undefined.
+     *
+     * @param text
+     *            The builder to append to.
+     * @param label
+     *            The label that starts the line.
+     * @param mode
+     *            The metric's mode.
+     * @param mask
+     *            The defined-mode mask of the report.
+     * @param metrics
+     *            The array holding the report's metrics.
+     * @param base
+     *            The index of the report's first metric in metrics.
+     */
+    private static void formatMetric(StringBuilder text, String label,
+            Mode mode, int mask, double[] metrics, int base) {
+        text.append(label);
+        if ((mask & (1 << mode.ordinal())) != 0) {
+            text.append(metrics[base + mode.ordinal()]);
+        } else {
+            text.append("Not Defined");
+        }
+        text.append(NEWLINE);
+    }
+}
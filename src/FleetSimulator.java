@@ -0,0 +1,750 @@
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.management.JMException;
+
+import components.Airplane.AirplaneFleet;
+import components.Airplane.AirplaneStats;
+import components.Airplane.ConflictGrid;
+import components.Airplane.ConflictListener;
+import components.Airplane.FleetCheckpoint;
+import components.Airplane.FleetCheckpointWriter;
+import components.Airplane.FleetSnapshot;
+import components.Airplane.FlightPhysics;
+import components.Airplane.PositionTracker;
+import components.Airplane.AirplaneKernel.Mode;
+
+/**
+ * Simulates a whole fleet of airplanes through the same phases as
+ * {@link AirplaneSimulator}, one tick at a time. Each tick splits the fleet
+ * into contiguous slot ranges that a {@link ForkJoinPool} updates in parallel;
+ * the tick ends only when every range is done. Every airplane's update reads
+ * and writes only its own slot, so the results are bit-identical to a
+ * sequential run whatever the number of threads.
+ *
+ * <p>
+ * An airplane whose update is rejected (e.g., its fuel would go negative) is
+ * halted, just as that update would stop an {@code AirplaneSimulator}: it
+ * keeps its state from before the rejected tick and is not updated again.
+ * </p>
+ *
+ * <p>
+ * Other threads can read the fleet while it runs through
+ * {@link #requestSnapshot()}, which takes a {@link FleetSnapshot} at the end
+ * of the next tick. Taking it copies nothing, so the ticks do not pause.
+ * </p>
+ *
+ * <p>
+ * The same snapshots let {@link #checkpointTo} write the fleet, the halted
+ * airplanes, their positions if tracked and the progress through the phases
+ * to a checkpoint file in the background; a simulator built on a restored
+ * {@link FleetCheckpoint} and given it through {@link #resumeFrom} skips the
+ * ticks already simulated. Ground speeds are not checkpointed; the next
+ * physics tick recomputes them. Copying the positions for a checkpoint takes
+ * time proportional to the fleet's size.
+ * </p>
+ *
+ * <p>
+ * Given a {@link PositionTracker} and a {@link ConflictGrid} through
+ * {@link #trackConflicts}, each tick also moves the airplanes that are not
+ * halted by dead reckoning, in the same parallel ranges, and between ticks
+ * reports the pairs of flying airplanes closer than the separation minima.
+ * </p>
+ */
+public final class FleetSimulator {
+
+    /**
+     * Simulated length of one tick, in milliseconds.
+     */
+    private static final long TIMESTEP_MILLIS = 1000;
+
+    /**
+     * Number of milliseconds in a second.
+     */
+    private static final double MILLIS_PER_SECOND = 1000;
+
+    /**
+     * log2 of the number of bits in a bitset word.
+     */
+    private static final int WORD_SHIFT = 6;
+
+    /**
+     * Number of bits in a bitset word; ranges are aligned to this so no two
+     * tasks ever write the same word of the halted bitset.
+     */
+    private static final int WORD_SIZE = 1 << WORD_SHIFT;
+
+    /**
+     * Smallest range worth handing to a separate task.
+     */
+    private static final int MIN_RANGE = 1024;
+
+    /**
+     * Number of ranges per worker thread, so that threads that finish early
+     * can steal the remaining work.
+     */
+    private static final int RANGES_PER_THREAD = 4;
+
+    /**
+     * Default fleet size for main.
+     */
+    private static final int DEFAULT_FLEET_SIZE = 1_000_000;
+
+    /**
+     * Initial fuel quantity given to every airplane by main.
+     */
+    private static final double INITIAL_FUEL = 5000;
+
+    /**
+     * Speed of the strongest wind given to an airplane by main, in knots.
+     */
+    private static final int MAX_WIND = 40;
+
+    /**
+     * Coldest outside air temperature given to an airplane by main, in
+     * kelvin.
+     */
+    private static final double COLDEST_AIR = 250;
+
+    /**
+     * Spread of the outside air temperatures given by main, in kelvin.
+     */
+    private static final int AIR_TEMPERATURES = 60;
+
+    /**
+     * Number of whole degrees of heading.
+     */
+    private static final int DEGREES = 360;
+
+    /**
+     * Distance between neighbouring airplanes placed by main, in nautical
+     * miles.
+     */
+    private static final double SPACING = 6;
+
+    /**
+     * Horizontal separation minimum used by main, in nautical miles.
+     */
+    private static final double HORIZONTAL_MINIMUM = 5;
+
+    /**
+     * Vertical separation minimum used by main, in feet.
+     */
+    private static final double VERTICAL_MINIMUM = 1000;
+
+    /**
+     * Time between the stats dumps printed by main, in milliseconds.
+     */
+    private static final long STATS_PERIOD_MILLIS = 1000;
+
+    /**
+     * Fleet being simulated.
+     */
+    private final AirplaneFleet fleet;
+
+    /**
+     * Pool that runs the ranges.
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * Engine that paces the ticks.
+     */
+    private final SimulationEngine engine;
+
+    /**
+     * Sink the phases and their results are reported to.
+     */
+    private final TelemetrySink sink;
+
+    /**
+     * Bitset of halted airplanes, indexed by slot.
+     */
+    private final long[] halted;
+
+    /**
+     * Number of slots below which a range is updated without splitting.
+     */
+    private final int rangeSize;
+
+    /**
+     * Physics stage used by physics phases.
+     */
+    private final FlightPhysics physics;
+
+    /**
+     * Ground speed of each airplane after the last physics tick, indexed by
+     * slot; allocated by the first physics phase.
+     */
+    private double[] groundSpeeds;
+
+    /**
+     * Number of phases simulated so far.
+     */
+    private int phase;
+
+    /**
+     * Phase to resume from; earlier phases are skipped.
+     */
+    private int resumePhase;
+
+    /**
+     * Number of ticks of resumePhase already simulated.
+     */
+    private long resumeTick;
+
+    /**
+     * Writer of checkpoints, or null.
+     */
+    private FleetCheckpointWriter checkpoints;
+
+    /**
+     * Number of ticks between checkpoints.
+     */
+    private int checkpointInterval;
+
+    /**
+     * Number of ticks simulated since the simulator was constructed.
+     */
+    private long ticks;
+
+    /**
+     * Completion of the last checkpoint requested, or null.
+     */
+    private CompletableFuture<Void> lastCheckpoint;
+
+    /**
+     * Positions moved each tick, or null.
+     */
+    private PositionTracker positions;
+
+    /**
+     * Grid that finds conflicts between ticks, or null.
+     */
+    private ConflictGrid grid;
+
+    /**
+     * Listener told of the conflicts found after each tick.
+     */
+    private ConflictListener conflictListener;
+
+    /**
+     * Number of conflicting pairs after the last tick.
+     */
+    private int conflictCount;
+
+    /**
+     * Snapshot requested for the end of the next tick, or null.
+     */
+    private final AtomicReference<CompletableFuture<FleetSnapshot>> requested =
+            new AtomicReference<>();
+
+    /**
+     * Constructs a fleet simulator that reports nothing.
+     *
+     * @param fleet
+     *            The fleet to simulate.
+     * @param pool
+     *            The pool that updates the ranges; its parallelism is the
+     *            number of threads used.
+     * @param clock
+     *            The clock that paces the ticks.
+     */
+    public FleetSimulator(AirplaneFleet fleet, ForkJoinPool pool,
+            SimulationClock clock) {
+        this(fleet, pool, clock, TelemetrySink.none());
+    }
+
+    /**
+     * Constructs a fleet simulator that reports each phase, and the number
+     * of airplanes halted by its end, to the given sink. The sink is not
+     * closed by the simulator.
+     *
+     * @param fleet
+     *            The fleet to simulate.
+     * @param pool
+     *            The pool that updates the ranges; its parallelism is the
+     *            number of threads used.
+     * @param clock
+     *            The clock that paces the ticks.
+     * @param sink
+     *            The sink to report to.
+     */
+    public FleetSimulator(AirplaneFleet fleet, ForkJoinPool pool,
+            SimulationClock clock, TelemetrySink sink) {
+        this.fleet = fleet;
+        this.sink = sink;
+        this.pool = pool;
+        this.engine = new SimulationEngine(clock, TIMESTEP_MILLIS);
+        this.physics = new FlightPhysics(
+                TIMESTEP_MILLIS / MILLIS_PER_SECOND, 0);
+        this.halted = new long[(fleet.capacity() + WORD_SIZE - 1)
+                >>> WORD_SHIFT];
+        int perRange = fleet.capacity()
+                / (pool.getParallelism() * RANGES_PER_THREAD);
+        this.rangeSize = Math.max(MIN_RANGE,
+                (perRange + WORD_SIZE - 1) & -WORD_SIZE);
+    }
+
+    /**
+     * Writes a checkpoint to {@code writer} at the end of every
+     * {@code everyTicks}-th tick from now on. Writing happens in the
+     * background; if a checkpoint fails, the tick after it is found to have
+     * failed throws.
+     *
+     * @param writer
+     *            The checkpoint writer, for the fleet's capacity.
+     * @param everyTicks
+     *            The number of ticks between checkpoints.
+     * @throws IllegalArgumentException
+     *             if everyTicks is not positive.
+     */
+    public void checkpointTo(FleetCheckpointWriter writer, int everyTicks) {
+        if (everyTicks <= 0) {
+            throw new IllegalArgumentException(
+                    "Checkpoint interval must be positive.");
+        }
+        this.checkpoints = writer;
+        this.checkpointInterval = everyTicks;
+    }
+
+    /**
+     * Moves the airplanes in {@code tracker} every tick from now on, and
+     * after each tick updates {@code conflicts} and reports every pair of
+     * airplanes in conflict to {@code listener}. Halted airplanes stay where
+     * they are and are left out of the grid. Positions are checkpointed; a
+     * resumed simulator is given {@link FleetCheckpoint#positions()} here.
+     *
+     * @param tracker
+     *            The positions, for the fleet's capacity.
+     * @param conflicts
+     *            The grid, for the fleet's capacity.
+     * @param listener
+     *            The listener to call for each pair; it must not change the
+     *            grid.
+     * @throws IllegalArgumentException
+     *             if a capacity differs from the fleet's.
+     */
+    public void trackConflicts(PositionTracker tracker,
+            ConflictGrid conflicts, ConflictListener listener) {
+        if (tracker.capacity() != this.fleet.capacity()
+                || conflicts.capacity() != this.fleet.capacity()) {
+            throw new IllegalArgumentException("Capacity does not match.");
+        }
+        this.positions = tracker;
+        this.grid = conflicts;
+        this.conflictListener = listener;
+    }
+
+    /**
+     * Resumes the simulation where {@code checkpoint} left it: the
+     * airplanes halted then are halted again, and the phases and ticks
+     * simulated before it are skipped. The simulator must have been
+     * constructed with {@code checkpoint.fleet()}, and the same phases must
+     * be simulated again in the same order.
+     *
+     * @param checkpoint
+     *            The restored checkpoint.
+     * @throws IllegalArgumentException
+     *             if the simulator's fleet is not the checkpoint's.
+     */
+    public void resumeFrom(FleetCheckpoint checkpoint) {
+        if (checkpoint.fleet() != this.fleet) {
+            throw new IllegalArgumentException(
+                    "Simulator does not run the checkpoint's fleet.");
+        }
+        long[] flags = checkpoint.flags();
+        System.arraycopy(flags, 0, this.halted, 0, this.halted.length);
+        this.resumePhase = checkpoint.phase();
+        this.resumeTick = checkpoint.tick();
+    }
+
+    /**
+     * Resets simulated time to zero and starts the clock.
+     */
+    public void start() {
+        this.engine.start();
+    }
+
+    /**
+     * Simulates a phase of the flight for every airplane in the fleet.
+     *
+     * @param phaseName
+     *            The name of the phase (e.g., "Takeoff").
+     * @param duration
+     *            The number of ticks in the phase.
+     * @param altitudeChange
+     *            The change in altitude for each tick.
+     * @param speedChange
+     *            The change in speed for each tick.
+     * @param fuelChange
+     *            The change in fuel quantity for each tick.
+     */
+    public void simulatePhase(String phaseName, int duration,
+            double altitudeChange, double speedChange, double fuelChange) {
+        this.sink.phase(phaseName);
+        double[] deltas = new double[Mode.values().length];
+        deltas[Mode.ALTITUDE.ordinal()] = altitudeChange;
+        deltas[Mode.SPEED.ordinal()] = speedChange;
+        deltas[Mode.FUEL_QUANTITY.ordinal()] = fuelChange;
+        this.runTicks(duration,
+                (lo, hi) -> this.updateRange(lo, hi, deltas));
+        this.reportPhase();
+    }
+
+    /**
+     * Simulates a phase of the flight for every airplane in the fleet with
+     * {@link FlightPhysics}: each airplane climbs and burns fuel according to
+     * its own speed, heading, wind and temperature. Halted airplanes stay
+     * as they are.
+     *
+     * @param phaseName
+     *            The name of the phase (e.g., "Takeoff").
+     * @param duration
+     *            The number of ticks in the phase.
+     * @param climbRate
+     *            The commanded climb rate, in feet per second.
+     * @param acceleration
+     *            The commanded acceleration, in knots per second.
+     */
+    public void simulatePhysicsPhase(String phaseName, int duration,
+            double climbRate, double acceleration) {
+        this.sink.phase(phaseName);
+        if (this.groundSpeeds == null) {
+            this.groundSpeeds = new double[this.fleet.capacity()];
+        }
+        double[] ground = this.groundSpeeds;
+        this.runTicks(duration,
+                (lo, hi) -> this.physics.integrate(this.fleet, lo, hi,
+                        climbRate, acceleration, this.halted, ground));
+        this.reportPhase();
+    }
+
+    /**
+     * Reports the number of halted airplanes and, if tracked, of conflicts at
+     * the end of a phase.
+     */
+    private void reportPhase() {
+        this.sink.message("Halted: " + this.haltedCount());
+        if (this.grid != null) {
+            this.sink.message("Conflicts: " + this.conflictCount);
+        }
+    }
+
+    /**
+     * Runs ticks, each updating every range of the fleet in parallel.
+     *
+     * @param duration
+     *            The number of ticks.
+     * @param update
+     *            The update of one range.
+     */
+    private void runTicks(int duration, RangeUpdate update) {
+        long first = 0;
+        if (this.phase < this.resumePhase) {
+            first = duration;
+        } else if (this.phase == this.resumePhase) {
+            first = Math.min(duration, this.resumeTick);
+        }
+        RangeUpdate tick = update;
+        if (this.positions != null) {
+            double seconds = TIMESTEP_MILLIS / MILLIS_PER_SECOND;
+            tick = (lo, hi) -> {
+                update.update(lo, hi);
+                this.positions.advance(this.fleet, lo, hi, seconds,
+                        this.halted);
+            };
+        }
+        for (long i = first; i < duration; i++) {
+            // invoke returns only once every range is done: the tick barrier
+            this.pool.invoke(new RangeTask(0, this.fleet.capacity(), tick));
+            this.findConflicts();
+            this.takeRequestedSnapshot();
+            this.takeCheckpoint(i + 1);
+            this.engine.advance();
+        }
+        this.phase++;
+    }
+
+    /**
+     * Updates the conflict grid, if any, and reports the conflicts; called
+     * between ticks.
+     */
+    private void findConflicts() {
+        if (this.grid != null) {
+            this.grid.update(this.positions, this.fleet, this.halted);
+            this.conflictCount = this.grid.conflicts(this.conflictListener);
+        }
+    }
+
+    /**
+     * Reports the number of pairs of airplanes in conflict after the last
+     * tick.
+     *
+     * @return The number of pairs, or 0 if conflicts are not tracked.
+     */
+    public int conflictCount() {
+        return this.conflictCount;
+    }
+
+    /**
+     * Requests a checkpoint if one is due at the end of this tick; called
+     * between ticks.
+     *
+     * @param tick
+     *            The number of ticks of the current phase simulated.
+     */
+    private void takeCheckpoint(long tick) {
+        this.ticks++;
+        if (this.checkpoints != null
+                && this.ticks % this.checkpointInterval == 0) {
+            if (this.lastCheckpoint != null
+                    && this.lastCheckpoint.isCompletedExceptionally()) {
+                // Rethrows the failure
+                this.lastCheckpoint.join();
+            }
+            this.lastCheckpoint = this.checkpoints.write(this.fleet.snapshot(),
+                    this.phase, tick, this.halted, this.positions);
+        }
+    }
+
+    /**
+     * Reports the ground speed of an airplane after the last physics tick.
+     *
+     * @param slot
+     *            The airplane's slot.
+     * @return The ground speed in knots, or 0 if no physics phase ran.
+     */
+    public double groundSpeed(int slot) {
+        double speed = 0;
+        if (this.groundSpeeds != null) {
+            speed = this.groundSpeeds[slot];
+        }
+        return speed;
+    }
+
+    /**
+     * Requests a consistent view of the whole fleet, taken at the end of the
+     * next tick, when no airplane is being updated. May be called from any
+     * thread; requests made before the same tick end share one snapshot.
+     *
+     * @return A future completed with the snapshot.
+     */
+    public CompletableFuture<FleetSnapshot> requestSnapshot() {
+        CompletableFuture<FleetSnapshot> request = new CompletableFuture<>();
+        CompletableFuture<FleetSnapshot> pending = this.requested
+                .compareAndExchange(null, request);
+        if (pending != null) {
+            request = pending;
+        }
+        return request;
+    }
+
+    /**
+     * Completes the pending snapshot request, if any, with a snapshot of the
+     * fleet; called between ticks.
+     */
+    private void takeRequestedSnapshot() {
+        CompletableFuture<FleetSnapshot> request = this.requested
+                .getAndSet(null);
+        if (request != null) {
+            request.complete(this.fleet.snapshot());
+        }
+    }
+
+    /**
+     * Reports whether the airplane in the given slot has been halted.
+     *
+     * @param slot
+     *            The airplane's slot.
+     * @return True if an update of that airplane was rejected.
+     */
+    public boolean isHalted(int slot) {
+        return (this.halted[slot >>> WORD_SHIFT] & (1L << slot)) != 0;
+    }
+
+    /**
+     * Counts the halted airplanes.
+     *
+     * @return The number of airplanes whose update was rejected.
+     */
+    public int haltedCount() {
+        int count = 0;
+        for (long word : this.halted) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    /**
+     * Updates the airplanes in slots lo up to hi - 1.
+     *
+     * @param lo
+     *            The first slot.
+     * @param hi
+     *            One past the last slot.
+     * @param deltas
+     *            The changes to apply, indexed by Mode.ordinal().
+     */
+    private void updateRange(int lo, int hi, double[] deltas) {
+        for (int slot = lo; slot < hi; slot++) {
+            if (!this.isHalted(slot)) {
+                try {
+                    this.fleet.applyDeltas(slot, deltas);
+                } catch (IllegalArgumentException e) {
+                    this.halted[slot >>> WORD_SHIFT] |= 1L << slot;
+                }
+            }
+        }
+    }
+
+    /**
+     * The update of one tick applied to a range of slots.
+     */
+    private interface RangeUpdate {
+
+        /**
+         * Updates the airplanes in slots lo up to hi - 1.
+         *
+         * @param lo
+         *            The first slot.
+         * @param hi
+         *            One past the last slot.
+         */
+        void update(int lo, int hi);
+    }
+
+    /**
+     * Updates a contiguous range of slots, splitting it in two while it is
+     * larger than rangeSize. Split points are multiples of WORD_SIZE.
+     */
+    private final class RangeTask extends RecursiveAction {
+
+        /**
+         * Serial version, unused.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * The first slot.
+         */
+        private final int lo;
+
+        /**
+         * One past the last slot.
+         */
+        private final int hi;
+
+        /**
+         * The update to apply; not serialized, as tasks never are.
+         */
+        private final transient RangeUpdate update;
+
+        /**
+         * Constructor.
+         *
+         * @param lo
+         *            The first slot.
+         * @param hi
+         *            One past the last slot.
+         * @param update
+         *            The update to apply.
+         */
+        RangeTask(int lo, int hi, RangeUpdate update) {
+            this.lo = lo;
+            this.hi = hi;
+            this.update = update;
+        }
+
+        @Override
+        protected void compute() {
+            int mid = this.lo + (((this.hi - this.lo) >>> 1) & -WORD_SIZE);
+            if (this.hi - this.lo <= FleetSimulator.this.rangeSize
+                    || mid == this.lo) {
+                this.update.update(this.lo, this.hi);
+            } else {
+                invokeAll(new RangeTask(this.lo, mid, this.update),
+                        new RangeTask(mid, this.hi, this.update));
+            }
+        }
+    }
+
+    /**
+     * The main method that simulates a fleet through takeoff, cruising and
+     * landing with {@link FlightPhysics}, as fast as possible, and reports
+     * the elapsed time. Airplanes are spread over every heading, wind speed
+     * and outside air temperature, so each burns its own amount of fuel,
+     * and start on a square grid, whose conflicts are counted as they fly.
+     *
+     * <p>
+     * With {@code -Dairplane.stats=true}, the stats are also registered over
+     * JMX and printed to standard error every {@link #STATS_PERIOD_MILLIS}
+     * milliseconds while the fleet flies.
+     * </p>
+     *
+     * @param args
+     *            Command-line arguments: optionally the fleet size, then the
+     *            number of threads (defaults to one per core).
+     * @throws JMException
+     *             if the stats MBean cannot be registered.
+     */
+    public static void main(String[] args) throws JMException {
+        int size = DEFAULT_FLEET_SIZE;
+        int threads = Runtime.getRuntime().availableProcessors();
+        if (args.length > 0) {
+            size = Integer.parseInt(args[0]);
+        }
+        if (args.length > 1) {
+            threads = Integer.parseInt(args[1]);
+        }
+
+        AirplaneFleet fleet = new AirplaneFleet(size);
+        PositionTracker tracker = new PositionTracker(size);
+        int side = (int) Math.ceil(Math.sqrt(size));
+        for (int slot = 0; slot < size; slot++) {
+            tracker.setPosition(slot, slot % side * SPACING,
+                    slot / side * SPACING);
+            fleet.setMetric(slot, Mode.FUEL_QUANTITY, INITIAL_FUEL);
+            fleet.setMetric(slot, Mode.DIRECTION, slot % DEGREES);
+            fleet.setMetric(slot, Mode.WIND_SPEED, slot % (MAX_WIND + 1));
+            fleet.setMetric(slot, Mode.OUTSIDE_AIR_TEMPERATURE,
+                    COLDEST_AIR + slot % AIR_TEMPERATURES);
+        }
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        AirplaneStats.Dumping dumps = AirplaneStats.export(System.err,
+                STATS_PERIOD_MILLIS);
+        try (TelemetrySink sink = TelemetrySink
+                .console(TelemetrySink.Backpressure.BLOCK)) {
+            FleetSimulator simulator = new FleetSimulator(fleet, pool,
+                    SimulationClock.unpaced(), sink);
+            simulator.trackConflicts(tracker,
+                    new ConflictGrid(size, HORIZONTAL_MINIMUM,
+                            VERTICAL_MINIMUM),
+                    (first, second) -> {
+                    });
+
+            sink.message("Starting Fleet Simulation of " + size
+                    + " airplanes on " + threads + " threads...\n");
+            long startNanos = System.nanoTime();
+            simulator.start();
+            simulator.simulatePhysicsPhase("Takeoff", 3, 2000, 100);
+            simulator.simulatePhysicsPhase("Cruising", 3, 0, 0);
+            simulator.simulatePhysicsPhase("Landing", 3, -2000, -100);
+            long elapsedMillis = (System.nanoTime() - startNanos)
+                    / 1_000_000;
+            pool.shutdown();
+
+            sink.message("Total Fuel Quantity: "
+                    + fleet.sum(Mode.FUEL_QUANTITY));
+            sink.message("\nSimulation Complete in " + elapsedMillis
+                    + " ms!");
+            if (AirplaneStats.ENABLED) {
+                sink.message("\n" + AirplaneStats.dump());
+            }
+        } finally {
+            dumps.close();
+        }
+    }
+}
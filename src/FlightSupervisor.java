@@ -0,0 +1,314 @@
+import java.lang.reflect.Method;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs many flights concurrently, one thread per flight, and supervises them
+ * as a group: all flights are started through the supervisor, joined
+ * together, and cancelled together if any one of them fails or the owner
+ * cancels. A flight that blocks (pacing, scripted input, sensor replay) only
+ * blocks its own thread.
+ *
+ * <p>
+ * On a JDK with virtual threads, each flight runs on its own virtual thread,
+ * so a blocked flight costs a parked continuation rather than a platform
+ * thread and hundreds of thousands of flights fit in one JVM. On older JDKs
+ * the supervisor falls back to platform threads, which limits it to a few
+ * thousand flights.
+ * </p>
+ *
+ * <p>
+ * Like a structured task scope, a supervisor is owned by the thread that
+ * creates it: only that thread may call {@code start}, {@code join} and
+ * {@code close}. Neither {@code join} nor {@code close} returns while a
+ * flight is still running, even one that has been cancelled.
+ * </p>
+ */
+public final class FlightSupervisor implements AutoCloseable {
+
+    /**
+     * Default number of flights for main.
+     */
+    private static final int DEFAULT_FLIGHTS = 100_000;
+
+    /**
+     * Default number of flights for main when each needs a platform thread.
+     */
+    private static final int DEFAULT_PLATFORM_FLIGHTS = 1_000;
+
+    /**
+     * Default speed-up of simulated time for main.
+     */
+    private static final double DEFAULT_SCALE = 100;
+
+    /**
+     * Executor that gives each flight its own thread.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * Threads running a flight right now.
+     */
+    private final Set<Thread> runners;
+
+    /**
+     * Lock guarding running, and notified when it drops to zero.
+     */
+    private final Object exits = new Object();
+
+    /**
+     * Number of flights started that have not exited yet.
+     */
+    private int running;
+
+    /**
+     * First failure of any flight, or null.
+     */
+    private final AtomicReference<Throwable> failure;
+
+    /**
+     * Whether the flights have been cancelled; flights started afterwards
+     * are cancelled at once.
+     */
+    private volatile boolean cancelled;
+
+    /**
+     * Constructs a supervisor that runs each flight on a virtual thread when
+     * the JDK supports them, and on a platform thread otherwise.
+     */
+    public FlightSupervisor() {
+        this(newThreadPerFlightExecutor());
+    }
+
+    /**
+     * Constructs a supervisor that runs flights on the given executor. The
+     * supervisor shuts the executor down when it is closed.
+     *
+     * @param executor
+     *            The executor that runs the flights.
+     */
+    public FlightSupervisor(ExecutorService executor) {
+        this.executor = executor;
+        this.runners = ConcurrentHashMap.newKeySet();
+        this.failure = new AtomicReference<>();
+    }
+
+    /**
+     * Reports whether this JDK can run each flight on a virtual thread.
+     *
+     * @return True if virtual threads are available.
+     */
+    public static boolean virtualThreadsAvailable() {
+        return virtualThreadFactoryMethod() != null;
+    }
+
+    /**
+     * Looks up Executors.newVirtualThreadPerTaskExecutor, which only exists
+     * on JDK 21 and later.
+     *
+     * @return The factory method, or null if this JDK does not have it.
+     */
+    private static Method virtualThreadFactoryMethod() {
+        try {
+            return Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Creates an executor that starts a new thread per task: virtual threads
+     * when available, platform threads otherwise.
+     *
+     * @return The executor.
+     */
+    private static ExecutorService newThreadPerFlightExecutor() {
+        Method factory = virtualThreadFactoryMethod();
+        if (factory != null) {
+            try {
+                return (ExecutorService) factory.invoke(null);
+            } catch (ReflectiveOperationException e) {
+                // Fall through to platform threads
+            }
+        }
+        return Executors.newCachedThreadPool();
+    }
+
+    /**
+     * Starts a flight on its own thread. If the flight throws, every flight
+     * of this supervisor is cancelled and {@code join} reports the failure.
+     * A flight started after the supervisor was cancelled does not run.
+     *
+     * @param flight
+     *            The flight to run; it must stop promptly when its thread is
+     *            interrupted.
+     * @throws RejectedExecutionException
+     *             if the supervisor has been closed.
+     */
+    public void start(Runnable flight) {
+        synchronized (this.exits) {
+            this.running++;
+        }
+        try {
+            this.executor.execute(() -> this.run(flight));
+        } catch (RejectedExecutionException e) {
+            this.exited();
+            throw e;
+        }
+    }
+
+    /**
+     * Runs a flight on the current thread, unless the supervisor has been
+     * cancelled, and records its failure.
+     *
+     * @param flight
+     *            The flight.
+     */
+    private void run(Runnable flight) {
+        Thread runner = Thread.currentThread();
+        // Registered before the check, so a later cancel interrupts it
+        this.runners.add(runner);
+        try {
+            if (!this.cancelled) {
+                flight.run();
+            }
+        } catch (RuntimeException | Error e) {
+            if (this.failure.compareAndSet(null, e)) {
+                this.cancel();
+            }
+        } finally {
+            this.runners.remove(runner);
+            // Do not leave a cancel's interrupt to the thread's next task
+            Thread.interrupted();
+            this.exited();
+        }
+    }
+
+    /**
+     * Records that a flight has exited.
+     */
+    private void exited() {
+        synchronized (this.exits) {
+            this.running--;
+            if (this.running == 0) {
+                this.exits.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Cancels every flight, interrupting those still running. Flights that
+     * have not started will not run, nor will flights started from now on.
+     */
+    public void cancel() {
+        this.cancelled = true;
+        for (Thread runner : this.runners) {
+            runner.interrupt();
+        }
+    }
+
+    /**
+     * Waits for every flight to exit, whether it finished or was cancelled.
+     *
+     * @throws InterruptedException
+     *             if the owner is interrupted while waiting; the flights are
+     *             cancelled before this is thrown.
+     * @throws ExecutionException
+     *             if any flight failed; its failure is the cause.
+     */
+    public void join() throws InterruptedException, ExecutionException {
+        try {
+            synchronized (this.exits) {
+                while (this.running > 0) {
+                    this.exits.wait();
+                }
+            }
+        } catch (InterruptedException e) {
+            this.cancel();
+            throw e;
+        }
+        Throwable cause = this.failure.get();
+        if (cause != null) {
+            throw new ExecutionException("A flight failed", cause);
+        }
+    }
+
+    /**
+     * Cancels any flights still running, shuts down the executor and waits
+     * for every flight to exit. If the owner is interrupted while waiting,
+     * it keeps waiting and its interrupt status is set on return.
+     */
+    @Override
+    public void close() {
+        this.cancel();
+        this.executor.shutdown();
+        boolean interrupted = false;
+        boolean terminated = false;
+        while (!terminated) {
+            try {
+                terminated = this.executor.awaitTermination(1,
+                        TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * The main method that flies many airplanes concurrently, each through
+     * the takeoff, cruising and landing phases of an AirplaneSimulator.
+     *
+     * @param args
+     *            Command-line arguments: optionally the number of flights,
+     *            then the speed-up of simulated time. Without virtual
+     *            threads, fewer flights are run by default.
+     * @throws InterruptedException
+     *             if interrupted while waiting for the flights.
+     * @throws ExecutionException
+     *             if any flight failed.
+     */
+    public static void main(String[] args)
+            throws InterruptedException, ExecutionException {
+        int count = DEFAULT_PLATFORM_FLIGHTS;
+        if (virtualThreadsAvailable()) {
+            count = DEFAULT_FLIGHTS;
+        }
+        double scale = DEFAULT_SCALE;
+        if (args.length > 0) {
+            count = Integer.parseInt(args[0]);
+        }
+        if (args.length > 1) {
+            scale = Double.parseDouble(args[1]);
+        }
+
+        String threads = "platform";
+        if (virtualThreadsAvailable()) {
+            threads = "virtual";
+        }
+        System.out.println("Starting " + count + " flights on " + threads
+                + " threads...");
+        long startNanos = System.nanoTime();
+        try (FlightSupervisor supervisor = new FlightSupervisor()) {
+            for (int i = 0; i < count; i++) {
+                // Individual flight reports would drown the summary
+                AirplaneSimulator flight = new AirplaneSimulator(
+                        SimulationClock.scaled(scale), TelemetrySink.none());
+                supervisor.start(flight::startSimulation);
+            }
+            supervisor.join();
+        }
+        long elapsedMillis = (System.nanoTime() - startNanos) / 1_000_000;
+        System.out.println("All flights complete in " + elapsedMillis
+                + " ms!");
+    }
+}
@@ -0,0 +1,43 @@
+import components.Airplane.Airplane;
+
+/**
+ * A telemetry sink that discards every report.
+ */
+public final class NullTelemetrySink implements TelemetrySink {
+
+    /**
+     * The only instance; it has no state.
+     */
+    static final NullTelemetrySink INSTANCE = new NullTelemetrySink();
+
+    /**
+     * Use {@link TelemetrySink#none()}.
+     */
+    private NullTelemetrySink() {
+    }
+
+    @Override
+    public void message(String text) {
+        // Discarded
+    }
+
+    @Override
+    public void phase(String phaseName) {
+        // Discarded
+    }
+
+    @Override
+    public void metrics(Airplane airplane) {
+        // Discarded
+    }
+
+    @Override
+    public void flush() {
+        // Nothing is ever buffered
+    }
+
+    @Override
+    public void close() {
+        // Nothing to release
+    }
+}
@@ -27,11 +27,14 @@ public final class ResetAirplane {
         // Initialize a new Airplane instance
         Airplane1 airplane = new Airplane1();
 
-        // Simulate the "Takeoff" phase of the flight
-        simulatePhase("Takeoff", airplane, 1, 2, 1, -1);
+        try (TelemetrySink sink = TelemetrySink
+                .console(TelemetrySink.Backpressure.BLOCK)) {
+            // Simulate the "Takeoff" phase of the flight
+            simulatePhase("Takeoff", airplane, 1, 2, 1, -1, sink);
 
-        // Output message indicating simulation completion
-        System.out.println("Simulation Complete!");
+            // Output message indicating simulation completion
+            sink.message("Simulation Complete!");
+        }
     }
 
     /**
@@ -51,51 +54,23 @@ public final class ResetAirplane {
      *            The change in speed for each iteration.
      * @param fuelChange
      *            The change in fuel quantity for each iteration.
+     * @param sink
+     *            The sink the phase and metrics are reported to.
      */
     public static void simulatePhase(String phaseName, Airplane1 airplane,
             int duration, double altitudeChange, double speedChange,
-            double fuelChange) {
-        System.out.println("Phase: " + phaseName);
+            double fuelChange, TelemetrySink sink) {
+        sink.phase(phaseName);
 
         // Update metrics for each iteration in the phase
         for (int i = 0; i < duration; i++) {
-            // Update Altitude
-            if (airplane.isDefined(Mode.ALTITUDE)) {
-                // If altitude is defined, add the change to the current value
-                airplane.setMetric(Mode.ALTITUDE,
-                        airplane.getMetric(Mode.ALTITUDE) + altitudeChange);
-            } else {
-                // If altitude is not defined, set it to the change value
-                airplane.setMetric(Mode.ALTITUDE, altitudeChange);
-            }
-
-            // Update Speed
-            if (airplane.isDefined(Mode.SPEED)) {
-                // If speed is defined, add the change to the current value
-                airplane.setMetric(Mode.SPEED,
-                        airplane.getMetric(Mode.SPEED) + speedChange);
-            } else {
-                // If speed is not defined, set it to the change value
-                airplane.setMetric(Mode.SPEED, speedChange);
-            }
-
-            // Update Fuel Quantity
-            if (airplane.isDefined(Mode.FUEL_QUANTITY)) {
-                // If fuel quantity is defined, add the change to the current value
-                airplane.setMetric(Mode.FUEL_QUANTITY,
-                        airplane.getMetric(Mode.FUEL_QUANTITY) + fuelChange);
-            } else {
-                // If fuel quantity is not defined, set it to the change value
-                airplane.setMetric(Mode.FUEL_QUANTITY, fuelChange);
-            }
+            // Add each change to the current value, or set it if undefined
+            airplane.addToMetric(Mode.ALTITUDE, altitudeChange);
+            airplane.addToMetric(Mode.SPEED, speedChange);
+            airplane.addToMetric(Mode.FUEL_QUANTITY, fuelChange);
 
-            // Display the updated metrics after each iteration
-            System.out
-                    .println("Altitude: " + airplane.getMetric(Mode.ALTITUDE));
-            System.out.println("Speed: " + airplane.getMetric(Mode.SPEED));
-            System.out.println(
-                    "Fuel Quantity: " + airplane.getMetric(Mode.FUEL_QUANTITY));
-            System.out.println();
+            // Report the updated metrics after each iteration
+            sink.metrics(airplane);
         }
     }
 }
@@ -0,0 +1,61 @@
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A clock that runs simulated time a fixed factor faster than wall-clock time.
+ * Deadlines are computed from the start instant rather than from the previous
+ * step, so time spent computing a step does not accumulate as drift.
+ */
+public final class ScaledClock implements SimulationClock {
+
+    /**
+     * Nanoseconds per millisecond.
+     */
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+    /**
+     * Speed-up of simulated time over wall-clock time.
+     */
+    private final double factor;
+
+    /**
+     * System.nanoTime() at simulated time zero.
+     */
+    private long startNanos;
+
+    /**
+     * Constructor.
+     *
+     * @param factor
+     *            The speed-up; must be positive.
+     * @throws IllegalArgumentException
+     *             if factor is not positive.
+     */
+    public ScaledClock(double factor) {
+        if (!(factor > 0)) {
+            throw new IllegalArgumentException("Factor must be positive.");
+        }
+        this.factor = factor;
+    }
+
+    @Override
+    public void start() {
+        this.startNanos = System.nanoTime();
+    }
+
+    @Override
+    public void awaitSimulatedTime(long simulatedMillis) {
+        long deadline = this.startNanos
+                + (long) (simulatedMillis * NANOS_PER_MILLI / this.factor);
+        long remaining = deadline - System.nanoTime();
+        while (remaining > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(remaining);
+            } catch (InterruptedException e) {
+                // If interrupted, restore the interrupt status
+                Thread.currentThread().interrupt();
+                return;
+            }
+            remaining = deadline - System.nanoTime();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+/**
+ * Decides how simulated time maps onto wall-clock time. A simulation advances
+ * by fixed timesteps regardless of the clock; the clock only decides how long
+ * the caller waits before each step is taken.
+ */
+public interface SimulationClock {
+
+    /**
+     * Marks the wall-clock instant at which simulated time zero occurs. Must
+     * be called before the first call to {@code awaitSimulatedTime}.
+     */
+    void start();
+
+    /**
+     * Blocks until the wall clock has caught up with the given simulated time
+     * (measured from {@code start}). Returns immediately if it already has,
+     * or if the calling thread is interrupted, in which case the interrupt
+     * status is restored.
+     *
+     * @param simulatedMillis
+     *            The simulated time, in milliseconds since start.
+     */
+    void awaitSimulatedTime(long simulatedMillis);
+
+    /**
+     * Returns a clock that runs simulated time at wall-clock speed.
+     *
+     * @return A real-time clock.
+     */
+    static SimulationClock realTime() {
+        return new ScaledClock(1.0);
+    }
+
+    /**
+     * Returns a clock that runs simulated time {@code factor} times faster
+     * than wall-clock time, e.g., 100 for one simulated second every 10 ms.
+     *
+     * @param factor
+     *            The speed-up; must be positive.
+     * @return A scaled clock.
+     */
+    static SimulationClock scaled(double factor) {
+        return new ScaledClock(factor);
+    }
+
+    /**
+     * Returns a clock that never waits, so the simulation runs as fast as it
+     * can compute.
+     *
+     * @return An unpaced clock.
+     */
+    static SimulationClock unpaced() {
+        return new UnpacedClock();
+    }
+}
@@ -0,0 +1,103 @@
+import components.Airplane.AirplaneStats;
+
+/**
+ * Advances a simulation by fixed timesteps, paced by a {@link SimulationClock}.
+ * The simulated time after n steps is always n times the timestep, whatever
+ * the clock, so a simulation produces the same results in every clock mode.
+ * When {@link AirplaneStats} is enabled, the time each step spends computing,
+ * excluding the wait for the clock, is recorded as a tick duration.
+ */
+public final class SimulationEngine {
+
+    /**
+     * Clock that paces the steps.
+     */
+    private final SimulationClock clock;
+
+    /**
+     * Simulated milliseconds per step.
+     */
+    private final long timestepMillis;
+
+    /**
+     * Number of steps taken since start.
+     */
+    private long tick;
+
+    /**
+     * System.nanoTime() at which the current step began computing; used only
+     * when AirplaneStats is enabled.
+     */
+    private long stepStartNanos;
+
+    /**
+     * Constructor.
+     *
+     * @param clock
+     *            The clock that paces the steps.
+     * @param timestepMillis
+     *            The simulated milliseconds per step; must be positive.
+     * @throws IllegalArgumentException
+     *             if timestepMillis is not positive.
+     */
+    public SimulationEngine(SimulationClock clock, long timestepMillis) {
+        if (timestepMillis <= 0) {
+            throw new IllegalArgumentException("Timestep must be positive.");
+        }
+        this.clock = clock;
+        this.timestepMillis = timestepMillis;
+    }
+
+    /**
+     * Resets simulated time to zero and starts the clock.
+     */
+    public void start() {
+        this.tick = 0;
+        this.clock.start();
+        if (AirplaneStats.ENABLED) {
+            this.stepStartNanos = System.nanoTime();
+        }
+    }
+
+    /**
+     * Completes the current step: advances simulated time by one timestep and
+     * waits until the clock allows the next step to begin.
+     */
+    public void advance() {
+        if (AirplaneStats.ENABLED) {
+            AirplaneStats.recordTick(System.nanoTime() - this.stepStartNanos);
+        }
+        this.tick++;
+        this.clock.awaitSimulatedTime(this.simulatedMillis());
+        if (AirplaneStats.ENABLED) {
+            this.stepStartNanos = System.nanoTime();
+        }
+    }
+
+    /**
+     * Reports the number of steps completed since start.
+     *
+     * @return The current tick.
+     */
+    public long tick() {
+        return this.tick;
+    }
+
+    /**
+     * Reports the simulated time elapsed since start.
+     *
+     * @return The simulated time, in milliseconds.
+     */
+    public long simulatedMillis() {
+        return this.tick * this.timestepMillis;
+    }
+
+    /**
+     * Reports the simulated length of one step.
+     *
+     * @return The timestep, in milliseconds.
+     */
+    public long timestepMillis() {
+        return this.timestepMillis;
+    }
+}
@@ -0,0 +1,118 @@
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import components.Airplane.Airplane;
+
+/**
+ * Destination for the reports a simulation produces: free-form messages,
+ * phase changes and the airplane's metrics after each step. Implementations
+ * decide where the reports go and when they are written; callers only need
+ * {@code flush} to know that everything recorded so far has been written.
+ */
+public interface TelemetrySink extends AutoCloseable {
+
+    /**
+     * What a buffering sink does when a report arrives and its buffer is full.
+     */
+    enum Backpressure {
+        /**
+         * The caller waits until there is room.
+         */
+        BLOCK,
+
+        /**
+         * The oldest buffered report is discarded to make room.
+         */
+        DROP_OLDEST,
+
+        /**
+         * Once the buffer is half full, only one metrics report in every
+         * few is kept; the rest are discarded. Messages and phase changes are
+         * never sampled out.
+         */
+        SAMPLE
+    }
+
+    /**
+     * Records a free-form line of text.
+     *
+     * @param text
+     *            The text, without a trailing line separator.
+     */
+    void message(String text);
+
+    /**
+     * Records the start of a phase.
+     *
+     * @param phaseName
+     *            The name of the phase.
+     */
+    void phase(String phaseName);
+
+    /**
+     * Records the airplane's current metrics. The metrics are copied before
+     * this returns, so the airplane may change right after.
+     *
+     * @param airplane
+     *            The airplane to report.
+     */
+    void metrics(Airplane airplane);
+
+    /**
+     * Waits until every report recorded so far has been written.
+     */
+    void flush();
+
+    /**
+     * Writes every report recorded so far and releases the sink's resources.
+     * Nothing may be recorded after closing.
+     */
+    @Override
+    void close();
+
+    /**
+     * Returns a sink that writes to standard output from a background thread.
+     * Closing it does not close standard output.
+     *
+     * @param backpressure
+     *            What to do when the buffer is full.
+     * @return A console sink.
+     */
+    static TelemetrySink console(Backpressure backpressure) {
+        return new AsyncTelemetrySink(
+                new OutputStreamWriter(System.out, StandardCharsets.UTF_8),
+                false, backpressure, AsyncTelemetrySink.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Returns a sink that writes to a file, replacing its contents, from a
+     * background thread through a buffered writer.
+     *
+     * @param file
+     *            The file to write.
+     * @param backpressure
+     *            What to do when the buffer is full.
+     * @return A file sink.
+     * @throws IOException
+     *             if the file cannot be opened.
+     */
+    static TelemetrySink file(Path file, Backpressure backpressure)
+            throws IOException {
+        return new AsyncTelemetrySink(
+                Files.newBufferedWriter(file, StandardCharsets.UTF_8), true,
+                backpressure, AsyncTelemetrySink.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Returns a sink that discards every report, for benchmarks and for
+     * simulations nobody watches.
+     *
+     * @return A no-op sink.
+     */
+    static TelemetrySink none() {
+        return NullTelemetrySink.INSTANCE;
+    }
+}
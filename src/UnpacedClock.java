@@ -0,0 +1,15 @@
+/**
+ * A clock that never waits, so the simulation runs as fast as it can compute.
+ */
+public final class UnpacedClock implements SimulationClock {
+
+    @Override
+    public void start() {
+        // Nothing to record: simulated time is never compared to wall time
+    }
+
+    @Override
+    public void awaitSimulatedTime(long simulatedMillis) {
+        // Never wait
+    }
+}
@@ -57,4 +57,27 @@ public interface Airplane extends AirplaneKernel {
      * @return The current fuel quantity.
      */
     double getFuelQuantity();
+
+    /**
+     * Returns an immutable copy of the airplane's current state. Later changes
+     * to this airplane do not show in the copy, and every method of the copy
+     * that would change it throws UnsupportedOperationException.
+     * Implementations may share storage with the copy and copy it only when
+     * this airplane next changes, so a snapshot can be taken in constant time.
+     *
+     * @return The snapshot.
+     */
+    Airplane snapshot();
+
+    /**
+     * Replaces this airplane's metrics with copies of {@code source}'s, which
+     * may be of any implementation and is left unchanged. Modes undefined in
+     * source become undefined here.
+     *
+     * @param source
+     *            The airplane to copy.
+     * @throws IllegalArgumentException
+     *             if source is null.
+     */
+    void copyFrom(Airplane source);
 }
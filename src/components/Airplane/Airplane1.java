@@ -1,15 +1,31 @@
 package components.Airplane;
 
-import java.util.HashMap;
+import java.util.EnumMap;
 import java.util.Map;
 
 /**
  * Kernel Implementation of AirplaneKernel using a Map for initialization of
  * metrics.
  *
+ * <p>
+ * Each mode's metric lives in a one-element array cell allocated with the
+ * airplane, and the map holds the cells of the defined modes. Being an
+ * EnumMap, it stores entries in an array indexed by ordinal, so setting,
+ * reading and clearing metrics neither box values nor allocate entries.
+ * </p>
+ *
+ * <p>
+ * Unlike Airplane2, this kernel does not share its storage with snapshots:
+ * its cells are written in place, so {@code snapshot()} is the one inherited
+ * from AirplaneSecondary and copies the defined metrics, at most one per Mode,
+ * each time.
+ * </p>
+ *
  * @convention: The metrics for each mode are stored in a Map, where the key is
- *              the Mode enum and the value is a Double representing the metric.
- *              If a mode is not present in the map, it is considered undefined.
+ *              the Mode enum and the value is cells[mode.ordinal()], a
+ *              one-element array holding the metric. If a mode is not present
+ *              in the map, it is considered undefined. cells.length =
+ *              Mode.values().length and every cell has length 1.
  *
  * @correspondence: Mode.ALTITUDE corresponds to the key Mode.ALTITUDE in the
  *                  map. Mode.SPEED corresponds to the key Mode.SPEED, and so
@@ -17,16 +33,57 @@ import java.util.Map;
  */
 public class Airplane1 extends AirplaneSecondary {
 
+    /**
+     * Modes indexed by ordinal.
+     */
+    private static final Mode[] MODES = Mode.values();
+
     /**
      * Metrics map.
      */
-    private final Map<Mode, Double> metrics;
+    private final Map<Mode, double[]> metrics;
+
+    /**
+     * Metric cells indexed by Mode.ordinal(), whether defined or not.
+     */
+    private final double[][] cells;
 
     /**
      * Constructor initializes an empty Map for metrics.
      */
     public Airplane1() {
-        this.metrics = new HashMap<>();
+        this.metrics = new EnumMap<>(Mode.class);
+        this.cells = new double[MODES.length][1];
+    }
+
+    /**
+     * Stores {@code value} as the metric for {@code mode}, defining it.
+     *
+     * @param mode
+     *            The mode to store.
+     * @param value
+     *            The value to store.
+     */
+    private void store(Mode mode, double value) {
+        double[] cell = this.cells[mode.ordinal()];
+        cell[0] = value;
+        this.metrics.put(mode, cell);
+    }
+
+    /**
+     * Returns the metric for {@code mode}, or 0.0 if it is not defined.
+     *
+     * @param mode
+     *            The mode to read.
+     * @return The metric, or 0.0.
+     */
+    private double valueOrZero(Mode mode) {
+        double[] cell = this.metrics.get(mode);
+        double value = 0.0;
+        if (cell != null) {
+            value = cell[0];
+        }
+        return value;
     }
 
     /**
@@ -39,18 +96,12 @@ public class Airplane1 extends AirplaneSecondary {
      */
     @Override
     public void setMetric(Mode mode, double value) {
-        // Direction-specific validation
-        if (mode == Mode.DIRECTION && (value < 0 || value >= 360)) {
-            throw new IllegalArgumentException(
-                    "Direction must be between 0 and 359.");
-        }
-        // Other validations
-        if (value < 0) {
-            throw new IllegalArgumentException(
-                    mode.name() + " must be non-negative.");
+        if (AirplaneStats.ENABLED) {
+            AirplaneStats.countSet(mode, value);
         }
+        MetricRules.check(mode, value);
 
-        this.metrics.put(mode, value);
+        this.store(mode, value);
     }
 
     /**
@@ -62,10 +113,14 @@ public class Airplane1 extends AirplaneSecondary {
      */
     @Override
     public double getMetric(Mode mode) {
-        if (!this.isDefined(mode)) {
+        if (AirplaneStats.ENABLED) {
+            AirplaneStats.increment(AirplaneStats.Op.GET_METRIC, mode);
+        }
+        double[] cell = this.metrics.get(mode);
+        if (cell == null) {
             throw new IllegalStateException(mode.name() + " is not defined.");
         }
-        return this.metrics.get(mode);
+        return cell[0];
     }
 
     /**
@@ -77,7 +132,58 @@ public class Airplane1 extends AirplaneSecondary {
      */
     @Override
     public boolean isDefined(Mode mode) {
-        return this.metrics.containsKey(mode);
+        boolean defined = this.metrics.containsKey(mode);
+        if (AirplaneStats.ENABLED) {
+            AirplaneStats.countIsDefined(mode, defined);
+        }
+        return defined;
+    }
+
+    /**
+     * Adds delta to the metric for the given mode, or sets it to delta if it
+     * is not defined.
+     *
+     * @param mode
+     *            The mode to update.
+     * @param delta
+     *            The change to apply.
+     */
+    @Override
+    public void addToMetric(Mode mode, double delta) {
+        if (AirplaneStats.ENABLED) {
+            AirplaneStats.increment(AirplaneStats.Op.ADD_TO_METRIC, mode);
+        }
+        double value = this.valueOrZero(mode) + delta;
+        MetricRules.check(mode, value);
+
+        this.store(mode, value);
+    }
+
+    /**
+     * Adds each non-zero delta to the metric for its mode, all or nothing.
+     *
+     * @param deltasByOrdinal
+     *            The deltas, indexed by Mode.ordinal().
+     */
+    @Override
+    public void applyDeltas(double[] deltasByOrdinal) {
+        if (AirplaneStats.ENABLED) {
+            AirplaneStats.increment(AirplaneStats.Op.APPLY_DELTAS);
+        }
+        MetricRules.checkDeltas(deltasByOrdinal);
+        // Validate every result before changing anything
+        for (Mode mode : MODES) {
+            double delta = deltasByOrdinal[mode.ordinal()];
+            if (delta != 0) {
+                MetricRules.check(mode, this.valueOrZero(mode) + delta);
+            }
+        }
+        for (Mode mode : MODES) {
+            double delta = deltasByOrdinal[mode.ordinal()];
+            if (delta != 0) {
+                this.store(mode, this.valueOrZero(mode) + delta);
+            }
+        }
     }
 
     /**
@@ -107,18 +213,91 @@ public class Airplane1 extends AirplaneSecondary {
      */
     @Override
     public void transferFrom(Airplane source) {
+        long start = 0;
+        if (AirplaneStats.ENABLED) {
+            start = System.nanoTime();
+        }
         if (source == null || !(source instanceof Airplane1)) {
             throw new IllegalArgumentException("Invalid source for transfer");
         }
 
         Airplane1 src = (Airplane1) source;
 
-        // Transfer all entries from the source map to the current map
-        this.metrics.clear();
-        this.metrics.putAll(src.metrics);
+        // Copy the source's defined metrics into this airplane's own cells
+        this.copyFrom(src);
 
         // Clear the source object
         src.clear();
+        if (AirplaneStats.ENABLED) {
+            AirplaneStats.recordTransfer(start);
+        }
+    }
+
+    /**
+     * Copies {@code source}; from another Airplane1 this copies cell values
+     * without going through the kernel methods.
+     *
+     * @param source
+     *            The airplane to copy.
+     */
+    @Override
+    public void copyFrom(Airplane source) {
+        if (!(source instanceof Airplane1)) {
+            super.copyFrom(source);
+            return;
+        }
+        Airplane1 src = (Airplane1) source;
+        for (Mode mode : MODES) {
+            double[] cell = src.metrics.get(mode);
+            if (cell == null) {
+                this.metrics.remove(mode);
+            } else {
+                this.store(mode, cell[0]);
+            }
+        }
+    }
+
+    /**
+     * Compares the cells of the two maps mode by mode.
+     *
+     * @param other
+     *            An Airplane1.
+     * @return True if both airplanes have equal state.
+     */
+    @Override
+    boolean sameState(AirplaneSecondary other) {
+        Airplane1 that = (Airplane1) other;
+        for (Mode mode : MODES) {
+            double[] mine = this.metrics.get(mode);
+            double[] theirs = that.metrics.get(mode);
+            if ((mine == null) != (theirs == null)) {
+                return false;
+            }
+            if (mine != null && Double.doubleToLongBits(mine[0]) != Double
+                    .doubleToLongBits(theirs[0])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Computes the hash code from the map's cells.
+     *
+     * @return The hash code.
+     */
+    @Override
+    int stateHash() {
+        long mixed = 0;
+        int mask = 0;
+        for (Mode mode : MODES) {
+            double[] cell = this.metrics.get(mode);
+            if (cell != null) {
+                mixed = mixMetric(mixed, cell[0]);
+                mask |= 1 << mode.ordinal();
+            }
+        }
+        return finishHash(mixed, mask);
     }
 
     @Override
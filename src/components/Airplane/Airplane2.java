@@ -0,0 +1,369 @@
+package components.Airplane;
+
+/**
+ * Kernel Implementation of AirplaneKernel using a primitive array of metrics
+ * and a bitmask of defined modes. {@link #snapshot()} shares the array with
+ * the snapshot, and the airplane copies it before its next change.
+ *
+ * @convention: metrics.length = Mode.values().length and defined has no bits
+ *              set at or above position Mode.values().length. For every mode
+ *              whose bit is clear in defined, metrics[mode.ordinal()] = 0.0.
+ *
+ * @correspondence: Mode m is defined iff bit m.ordinal() of defined is set, in
+ *                  which case its metric is metrics[m.ordinal()].
+ */
+public class Airplane2 extends AirplaneSecondary {
+
+    /**
+     * Number of modes, i.e., the length of the metrics array.
+     */
+    private static final int MODE_COUNT = Mode.values().length;
+
+    /**
+     * Modes indexed by ordinal.
+     */
+    private static final Mode[] MODES = Mode.values();
+
+    /**
+     * Metrics indexed by Mode.ordinal().
+     */
+    private double[] metrics;
+
+    /**
+     * Bitmask of defined modes; bit i is set iff the mode with ordinal i is
+     * defined.
+     */
+    private int defined;
+
+    /**
+     * Cached hash code, or 0 if it has not been computed since the last
+     * change.
+     */
+    private int hash;
+
+    /**
+     * Whether metrics is shared with a snapshot, and so must be copied before
+     * it is changed.
+     */
+    private boolean shared;
+
+    /**
+     * Creator of initial representation.
+     */
+    private void createNewRep() {
+        this.metrics = new double[MODE_COUNT];
+        this.defined = 0;
+        this.hash = 0;
+        this.shared = false;
+    }
+
+    /**
+     * Makes the metrics array this airplane's own before a change, copying
+     * it if a snapshot shares it.
+     */
+    private void unshare() {
+        if (this.shared) {
+            this.metrics = this.metrics.clone();
+            this.shared = false;
+        }
+    }
+
+    /**
+     * Constructor initializes an empty array of metrics.
+     */
+    public Airplane2() {
+        this.createNewRep();
+    }
+
+    /**
+     * Validates and sets a metric value for the given mode.
+     *
+     * @param mode
+     *            The mode to set.
+     * @param value
+     *            The value to set.
+     */
+    @Override
+    public void setMetric(Mode mode, double value) {
+        if (AirplaneStats.ENABLED) {
+            AirplaneStats.countSet(mode, value);
+        }
+        MetricRules.check(mode, value);
+
+        this.unshare();
+        int i = mode.ordinal();
+        this.metrics[i] = value;
+        this.defined |= 1 << i;
+        this.hash = 0;
+    }
+
+    /**
+     * Retrieves the value of a metric for the given mode.
+     *
+     * @param mode
+     *            The mode to retrieve.
+     * @return The value of the metric.
+     */
+    @Override
+    public double getMetric(Mode mode) {
+        if (AirplaneStats.ENABLED) {
+            AirplaneStats.increment(AirplaneStats.Op.GET_METRIC, mode);
+        }
+        if ((this.defined & (1 << mode.ordinal())) == 0) {
+            throw new IllegalStateException(mode.name() + " is not defined.");
+        }
+        return this.metrics[mode.ordinal()];
+    }
+
+    /**
+     * Checks if a metric is defined for the given mode.
+     *
+     * @param mode
+     *            The mode to check.
+     * @return True if the metric is defined, otherwise false.
+     */
+    @Override
+    public boolean isDefined(Mode mode) {
+        boolean defined = (this.defined & (1 << mode.ordinal())) != 0;
+        if (AirplaneStats.ENABLED) {
+            AirplaneStats.countIsDefined(mode, defined);
+        }
+        return defined;
+    }
+
+    /**
+     * Adds delta to the metric for the given mode, or sets it to delta if it
+     * is not defined. Since an undefined metric is stored as 0.0, both cases
+     * are the same sum.
+     *
+     * @param mode
+     *            The mode to update.
+     * @param delta
+     *            The change to apply.
+     */
+    @Override
+    public void addToMetric(Mode mode, double delta) {
+        if (AirplaneStats.ENABLED) {
+            AirplaneStats.increment(AirplaneStats.Op.ADD_TO_METRIC, mode);
+        }
+        int i = mode.ordinal();
+        double value = this.metrics[i] + delta;
+        MetricRules.check(mode, value);
+
+        this.unshare();
+        this.metrics[i] = value;
+        this.defined |= 1 << i;
+        this.hash = 0;
+    }
+
+    /**
+     * Adds each non-zero delta to the metric for its mode, all or nothing.
+     *
+     * @param deltasByOrdinal
+     *            The deltas, indexed by Mode.ordinal().
+     */
+    @Override
+    public void applyDeltas(double[] deltasByOrdinal) {
+        if (AirplaneStats.ENABLED) {
+            AirplaneStats.increment(AirplaneStats.Op.APPLY_DELTAS);
+        }
+        MetricRules.checkDeltas(deltasByOrdinal);
+        // Validate every result before changing anything
+        for (int i = 0; i < MODE_COUNT; i++) {
+            if (deltasByOrdinal[i] != 0) {
+                MetricRules.check(MODES[i],
+                        this.metrics[i] + deltasByOrdinal[i]);
+            }
+        }
+        this.unshare();
+        for (int i = 0; i < MODE_COUNT; i++) {
+            if (deltasByOrdinal[i] != 0) {
+                this.metrics[i] += deltasByOrdinal[i];
+                this.defined |= 1 << i;
+            }
+        }
+        this.hash = 0;
+    }
+
+    /**
+     * Clears all metrics, resetting the airplane's state. Does not allocate
+     * unless a snapshot shares the metrics array.
+     */
+    @Override
+    public void clear() {
+        if (this.shared) {
+            this.metrics = new double[MODE_COUNT];
+            this.shared = false;
+        } else {
+            for (int i = 0; i < MODE_COUNT; i++) {
+                this.metrics[i] = 0.0;
+            }
+        }
+        this.defined = 0;
+        this.hash = 0;
+    }
+
+    /**
+     * Transfers the state from another Airplane object to this one by swapping
+     * representations, so it runs in constant time.
+     *
+     * @param source
+     *            The source airplane to transfer state from.
+     * @throws IllegalArgumentException
+     *             if the source is null or not an instance of Airplane2.
+     */
+    @Override
+    public void transferFrom(Airplane source) {
+        long start = 0;
+        if (AirplaneStats.ENABLED) {
+            start = System.nanoTime();
+        }
+        if (source == null || !(source instanceof Airplane2)) {
+            throw new IllegalArgumentException("Invalid source for transfer");
+        }
+
+        Airplane2 src = (Airplane2) source;
+        if (src == this) {
+            return;
+        }
+
+        // Take the source's array and hand it this one's, then clear it
+        double[] tmp = this.metrics;
+        boolean tmpShared = this.shared;
+        this.metrics = src.metrics;
+        this.defined = src.defined;
+        this.hash = src.hash;
+        this.shared = src.shared;
+        src.metrics = tmp;
+        src.shared = tmpShared;
+        src.clear();
+        if (AirplaneStats.ENABLED) {
+            AirplaneStats.recordTransfer(start);
+        }
+    }
+
+    /**
+     * Copies {@code source}; from another Airplane2 this is one array copy,
+     * and from any other implementation it goes through the kernel methods.
+     *
+     * @param source
+     *            The airplane to copy.
+     */
+    @Override
+    public void copyFrom(Airplane source) {
+        if (!(source instanceof Airplane2)) {
+            super.copyFrom(source);
+            return;
+        }
+        Airplane2 src = (Airplane2) source;
+        if (src == this) {
+            return;
+        }
+        if (this.shared) {
+            this.metrics = src.metrics.clone();
+            this.shared = false;
+        } else {
+            System.arraycopy(src.metrics, 0, this.metrics, 0, MODE_COUNT);
+        }
+        this.defined = src.defined;
+        this.hash = src.hash;
+    }
+
+    /**
+     * Returns an immutable snapshot sharing this airplane's metrics array, in
+     * constant time and without copying; the array is copied only if this
+     * airplane changes while the snapshot shares it.
+     *
+     * @return The snapshot.
+     */
+    @Override
+    public Airplane snapshot() {
+        this.shared = true;
+        return new FrozenAirplane(this.metrics, this.defined);
+    }
+
+    /**
+     * Compares masks, then the metric arrays, which hold 0.0 for every
+     * undefined mode in both airplanes.
+     *
+     * @param other
+     *            An Airplane2.
+     * @return True if both airplanes have equal state.
+     */
+    @Override
+    boolean sameState(AirplaneSecondary other) {
+        Airplane2 that = (Airplane2) other;
+        if (this.defined != that.defined) {
+            return false;
+        }
+        for (int i = 0; i < MODE_COUNT; i++) {
+            if (Double.doubleToLongBits(this.metrics[i]) != Double
+                    .doubleToLongBits(that.metrics[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Computes the hash code from the mask and array, and caches it until the
+     * next change.
+     *
+     * @return The hash code.
+     */
+    @Override
+    int stateHash() {
+        int h = this.hash;
+        if (h == 0) {
+            long mixed = 0;
+            for (int i = 0; i < MODE_COUNT; i++) {
+                if ((this.defined & (1 << i)) != 0) {
+                    mixed = mixMetric(mixed, this.metrics[i]);
+                }
+            }
+            h = finishHash(mixed, this.defined);
+            this.hash = h;
+        }
+        return h;
+    }
+
+    @Override
+    public Airplane newInstance() {
+        return new Airplane2();
+    }
+
+    @Override
+    public void setAltitude(double altitude) {
+        this.setMetric(Mode.ALTITUDE, altitude);
+    }
+
+    @Override
+    public double getAltitude() {
+        return this.getMetric(Mode.ALTITUDE);
+    }
+
+    @Override
+    public void setSpeed(double speed) {
+        this.setMetric(Mode.SPEED, speed);
+    }
+
+    @Override
+    public double getSpeed() {
+        return this.getMetric(Mode.SPEED);
+    }
+
+    @Override
+    public void setDirection(int direction) {
+        this.setMetric(Mode.DIRECTION, direction);
+    }
+
+    @Override
+    public int getDirection() {
+        return (int) this.getMetric(Mode.DIRECTION);
+    }
+
+    @Override
+    public double getFuelQuantity() {
+        return this.getMetric(Mode.FUEL_QUANTITY);
+    }
+}
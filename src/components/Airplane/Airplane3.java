@@ -0,0 +1,496 @@
+package components.Airplane;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread-safe Kernel Implementation of AirplaneKernel. Each metric is the bits
+ * of a double in an AtomicLongArray, with a reserved NaN pattern marking an
+ * undefined metric, so every metric is one self-contained atomic word: writes
+ * to different metrics never block one another and single-metric reads never
+ * block at all.
+ *
+ * <p>
+ * Readers that need several metrics from the same instant use
+ * {@link #snapshot()} or {@link #snapshotInto(double[])}. These work like a
+ * seqlock that allows many writers: every write is bracketed by incrementing
+ * {@code started} before and {@code finished} after, and a reader keeps its
+ * copy only if no write was in progress when it began and none started while
+ * it copied. Writers never wait for readers; a reader retries while writes
+ * keep overlapping its copy.
+ * </p>
+ *
+ * <p>
+ * Compound writes (applyDeltas, clear, transferFrom) are one bracket, so a
+ * snapshot sees all of their changes or none. Each of their per-metric updates
+ * is atomic, but they are not atomic with respect to concurrent writers of the
+ * same metrics.
+ * </p>
+ *
+ * @convention: metrics.length() = Mode.values().length, and no element of
+ *              metrics is a NaN pattern other than UNDEFINED or the canonical
+ *              NaN. finished <= started.
+ *
+ * @correspondence: Mode m is defined iff metrics[m.ordinal()] != UNDEFINED, in
+ *                  which case its metric is
+ *                  Double.longBitsToDouble(metrics[m.ordinal()]).
+ */
+public class Airplane3 extends AirplaneSecondary {
+
+    /**
+     * Number of modes, i.e., the length of the metrics array.
+     */
+    private static final int MODE_COUNT = Mode.values().length;
+
+    /**
+     * Modes indexed by ordinal.
+     */
+    private static final Mode[] MODES = Mode.values();
+
+    /**
+     * Bits stored for an undefined metric: a NaN that Double.doubleToLongBits
+     * never produces, so no metric value can collide with it.
+     */
+    private static final long UNDEFINED = 0x7FF0_0000_0000_0001L;
+
+    /**
+     * Bits of each metric, or UNDEFINED, indexed by Mode.ordinal().
+     */
+    private final AtomicLongArray metrics;
+
+    /**
+     * Number of writes started.
+     */
+    private final AtomicLong started;
+
+    /**
+     * Number of writes finished.
+     */
+    private final AtomicLong finished;
+
+    /**
+     * Constructor initializes every metric as undefined.
+     */
+    public Airplane3() {
+        this.metrics = new AtomicLongArray(MODE_COUNT);
+        for (int i = 0; i < MODE_COUNT; i++) {
+            this.metrics.set(i, UNDEFINED);
+        }
+        this.started = new AtomicLong();
+        this.finished = new AtomicLong();
+    }
+
+    /**
+     * Marks the start of a write.
+     */
+    private void beginWrite() {
+        this.started.incrementAndGet();
+    }
+
+    /**
+     * Marks the end of a write.
+     */
+    private void endWrite() {
+        this.finished.incrementAndGet();
+    }
+
+    /**
+     * Returns the value stored in the given bits, treating UNDEFINED as 0.0.
+     *
+     * @param bits
+     *            The stored bits.
+     * @return The value, or 0.0 if undefined.
+     */
+    private static double valueOf(long bits) {
+        double value = 0.0;
+        if (bits != UNDEFINED) {
+            value = Double.longBitsToDouble(bits);
+        }
+        return value;
+    }
+
+    /**
+     * Validates and sets a metric value for the given mode.
+     *
+     * @param mode
+     *            The mode to set.
+     * @param value
+     *            The value to set.
+     */
+    @Override
+    public void setMetric(Mode mode, double value) {
+        if (AirplaneStats.ENABLED) {
+            AirplaneStats.countSet(mode, value);
+        }
+        MetricRules.check(mode, value);
+
+        this.beginWrite();
+        try {
+            this.metrics.set(mode.ordinal(), Double.doubleToLongBits(value));
+        } finally {
+            this.endWrite();
+        }
+    }
+
+    /**
+     * Retrieves the value of a metric for the given mode.
+     *
+     * @param mode
+     *            The mode to retrieve.
+     * @return The value of the metric.
+     */
+    @Override
+    public double getMetric(Mode mode) {
+        if (AirplaneStats.ENABLED) {
+            AirplaneStats.increment(AirplaneStats.Op.GET_METRIC, mode);
+        }
+        long bits = this.metrics.get(mode.ordinal());
+        if (bits == UNDEFINED) {
+            throw new IllegalStateException(mode.name() + " is not defined.");
+        }
+        return Double.longBitsToDouble(bits);
+    }
+
+    /**
+     * Checks if a metric is defined for the given mode.
+     *
+     * @param mode
+     *            The mode to check.
+     * @return True if the metric is defined, otherwise false.
+     */
+    @Override
+    public boolean isDefined(Mode mode) {
+        boolean defined = this.metrics.get(mode.ordinal()) != UNDEFINED;
+        if (AirplaneStats.ENABLED) {
+            AirplaneStats.countIsDefined(mode, defined);
+        }
+        return defined;
+    }
+
+    /**
+     * Atomically adds delta to the metric for the given mode, or sets it to
+     * delta if it is not defined.
+     *
+     * @param mode
+     *            The mode to update.
+     * @param delta
+     *            The change to apply.
+     */
+    @Override
+    public void addToMetric(Mode mode, double delta) {
+        if (AirplaneStats.ENABLED) {
+            AirplaneStats.increment(AirplaneStats.Op.ADD_TO_METRIC, mode);
+        }
+        this.beginWrite();
+        try {
+            this.add(mode, delta);
+        } finally {
+            this.endWrite();
+        }
+    }
+
+    /**
+     * Adds delta to one metric with a compare-and-set loop, inside a write
+     * bracket opened by the caller.
+     *
+     * @param mode
+     *            The mode to update.
+     * @param delta
+     *            The change to apply.
+     */
+    private void add(Mode mode, double delta) {
+        int i = mode.ordinal();
+        long bits;
+        double value;
+        do {
+            bits = this.metrics.get(i);
+            value = valueOf(bits) + delta;
+            MetricRules.check(mode, value);
+        } while (!this.metrics.compareAndSet(i, bits,
+                Double.doubleToLongBits(value)));
+    }
+
+    /**
+     * Adds each non-zero delta to the metric for its mode. Every result is
+     * validated against a snapshot before anything is written, and snapshots
+     * see all of the updates or none.
+     *
+     * @param deltasByOrdinal
+     *            The deltas, indexed by Mode.ordinal().
+     */
+    @Override
+    public void applyDeltas(double[] deltasByOrdinal) {
+        if (AirplaneStats.ENABLED) {
+            AirplaneStats.increment(AirplaneStats.Op.APPLY_DELTAS);
+        }
+        MetricRules.checkDeltas(deltasByOrdinal);
+        // Validate every result before changing anything
+        String violation = this.violationOf(deltasByOrdinal);
+        if (violation != null) {
+            throw new IllegalArgumentException(violation);
+        }
+        this.beginWrite();
+        try {
+            for (int i = 0; i < MODE_COUNT; i++) {
+                if (deltasByOrdinal[i] != 0) {
+                    this.add(MODES[i], deltasByOrdinal[i]);
+                }
+            }
+        } finally {
+            this.endWrite();
+        }
+    }
+
+    /**
+     * Validates the result of adding each non-zero delta to the metric for
+     * its mode, against the metrics as of a single instant. Reads the words
+     * directly, under the same retry loop as snapshotInto, so that it does
+     * not allocate.
+     *
+     * @param deltasByOrdinal
+     *            The deltas, indexed by Mode.ordinal().
+     * @return The reason the first invalid result is rejected, or null if
+     *         every result is valid.
+     */
+    private String violationOf(double[] deltasByOrdinal) {
+        while (true) {
+            long before = this.started.get();
+            if (this.finished.get() == before) {
+                int invalid = -1;
+                double result = 0;
+                for (int i = 0; i < MODE_COUNT && invalid < 0; i++) {
+                    if (deltasByOrdinal[i] != 0) {
+                        result = valueOf(this.metrics.get(i))
+                                + deltasByOrdinal[i];
+                        if (!MetricRules.isValid(MODES[i], result)) {
+                            invalid = i;
+                        }
+                    }
+                }
+                // Only report a violation seen by a consistent read
+                if (this.started.get() == before) {
+                    if (invalid < 0) {
+                        return null;
+                    }
+                    return MetricRules.violation(MODES[invalid], result);
+                }
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Copies every metric, as of a single instant, into {@code into}.
+     * Undefined metrics are copied as 0.0.
+     *
+     * @param into
+     *            The array to fill, indexed by Mode.ordinal(); its length must
+     *            be Mode.values().length.
+     * @return The bitmask of modes defined at that instant; bit i is set iff
+     *         the mode with ordinal i was defined.
+     */
+    public int snapshotInto(double[] into) {
+        if (into.length != MODE_COUNT) {
+            throw new IllegalArgumentException(
+                    "Snapshot array must have one entry per mode.");
+        }
+        while (true) {
+            long before = this.started.get();
+            if (this.finished.get() == before) {
+                int mask = 0;
+                for (int i = 0; i < MODE_COUNT; i++) {
+                    long bits = this.metrics.get(i);
+                    into[i] = valueOf(bits);
+                    if (bits != UNDEFINED) {
+                        mask |= 1 << i;
+                    }
+                }
+                if (this.started.get() == before) {
+                    return mask;
+                }
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Returns an immutable copy of this airplane as of a single instant.
+     *
+     * @return The snapshot.
+     */
+    @Override
+    public Airplane snapshot() {
+        double[] values = new double[MODE_COUNT];
+        int mask = this.snapshotInto(values);
+        return new FrozenAirplane(values, mask);
+    }
+
+    /**
+     * Clears all metrics, resetting the airplane's state.
+     */
+    @Override
+    public void clear() {
+        this.beginWrite();
+        try {
+            for (int i = 0; i < MODE_COUNT; i++) {
+                this.metrics.set(i, UNDEFINED);
+            }
+        } finally {
+            this.endWrite();
+        }
+    }
+
+    /**
+     * Copies {@code source} in a single write bracket, so snapshots see all of
+     * the copy or none of it. An Airplane3 source is read with snapshotInto,
+     * so the copy is of a single instant; any other source is read through
+     * the kernel methods.
+     *
+     * @param source
+     *            The airplane to copy.
+     */
+    @Override
+    public void copyFrom(Airplane source) {
+        if (source == null) {
+            throw new IllegalArgumentException("Invalid source for copy");
+        }
+        if (source == this) {
+            return;
+        }
+        double[] values = new double[MODE_COUNT];
+        int mask = 0;
+        if (source instanceof Airplane3) {
+            mask = ((Airplane3) source).snapshotInto(values);
+        } else {
+            for (Mode mode : MODES) {
+                if (source.isDefined(mode)) {
+                    values[mode.ordinal()] = source.getMetric(mode);
+                    mask |= 1 << mode.ordinal();
+                }
+            }
+        }
+        this.beginWrite();
+        try {
+            for (int i = 0; i < MODE_COUNT; i++) {
+                long bits = UNDEFINED;
+                if ((mask & (1 << i)) != 0) {
+                    bits = Double.doubleToLongBits(values[i]);
+                }
+                this.metrics.set(i, bits);
+            }
+        } finally {
+            this.endWrite();
+        }
+    }
+
+    /**
+     * Transfers the state from another Airplane3 to this one: this airplane
+     * takes a snapshot of the source, then the source is cleared. Updates made
+     * to the source between the two are lost.
+     *
+     * @param source
+     *            The source airplane to transfer state from.
+     * @throws IllegalArgumentException
+     *             if the source is null or not an instance of Airplane3.
+     */
+    @Override
+    public void transferFrom(Airplane source) {
+        long start = 0;
+        if (AirplaneStats.ENABLED) {
+            start = System.nanoTime();
+        }
+        if (source == null || !(source instanceof Airplane3)) {
+            throw new IllegalArgumentException("Invalid source for transfer");
+        }
+
+        Airplane3 src = (Airplane3) source;
+        if (src == this) {
+            return;
+        }
+
+        this.copyFrom(src);
+        src.clear();
+        if (AirplaneStats.ENABLED) {
+            AirplaneStats.recordTransfer(start);
+        }
+    }
+
+    /**
+     * Compares the stored bits metric by metric. Like the other multi-metric
+     * reads that do not go through a snapshot, the comparison is not atomic
+     * with respect to concurrent writers.
+     *
+     * @param other
+     *            An Airplane3.
+     * @return True if both airplanes have equal state.
+     */
+    @Override
+    boolean sameState(AirplaneSecondary other) {
+        Airplane3 that = (Airplane3) other;
+        for (int i = 0; i < MODE_COUNT; i++) {
+            if (this.metrics.get(i) != that.metrics.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Computes the hash code from the stored bits.
+     *
+     * @return The hash code.
+     */
+    @Override
+    int stateHash() {
+        long mixed = 0;
+        int mask = 0;
+        for (int i = 0; i < MODE_COUNT; i++) {
+            long bits = this.metrics.get(i);
+            if (bits != UNDEFINED) {
+                mixed = mixMetric(mixed, Double.longBitsToDouble(bits));
+                mask |= 1 << i;
+            }
+        }
+        return finishHash(mixed, mask);
+    }
+
+    @Override
+    public Airplane newInstance() {
+        return new Airplane3();
+    }
+
+    @Override
+    public void setAltitude(double altitude) {
+        this.setMetric(Mode.ALTITUDE, altitude);
+    }
+
+    @Override
+    public double getAltitude() {
+        return this.getMetric(Mode.ALTITUDE);
+    }
+
+    @Override
+    public void setSpeed(double speed) {
+        this.setMetric(Mode.SPEED, speed);
+    }
+
+    @Override
+    public double getSpeed() {
+        return this.getMetric(Mode.SPEED);
+    }
+
+    @Override
+    public void setDirection(int direction) {
+        this.setMetric(Mode.DIRECTION, direction);
+    }
+
+    @Override
+    public int getDirection() {
+        return (int) this.getMetric(Mode.DIRECTION);
+    }
+
+    @Override
+    public double getFuelQuantity() {
+        return this.getMetric(Mode.FUEL_QUANTITY);
+    }
+}
@@ -0,0 +1,375 @@
+package components.Airplane;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+import components.Airplane.AirplaneKernel.Mode;
+
+/**
+ * A fixed-capacity fleet of airplanes stored column by column: one contiguous
+ * double[] per Mode, plus one bitset per Mode recording which slots define it.
+ * Individual airplanes are reached by slot index, or through a flyweight
+ * {@link Airplane} view of a slot. {@link #snapshot()} takes a point-in-time
+ * {@link FleetSnapshot} that copies pages of the columns only as they are
+ * next written.
+ *
+ * @convention: columns.length = defined.length = Mode.values().length, every
+ *              columns[m].length = capacity and every defined[m].length =
+ *              ceil(capacity / 64). No bit at or above position capacity is
+ *              set. For every slot s whose bit is clear in defined[m],
+ *              columns[m][s] = 0.0.
+ *
+ * @correspondence: slot s of the fleet is an airplane in which Mode m is
+ *                  defined iff bit s of defined[m.ordinal()] is set, in which
+ *                  case its metric is columns[m.ordinal()][s].
+ */
+public class AirplaneFleet implements FleetStore {
+
+    /**
+     * Number of modes, i.e., the number of columns.
+     */
+    private static final int MODE_COUNT = Mode.values().length;
+
+    /**
+     * Modes indexed by ordinal.
+     */
+    private static final Mode[] MODES = Mode.values();
+
+    /**
+     * log2 of the number of bits in a bitset word.
+     */
+    private static final int WORD_SHIFT = 6;
+
+    /**
+     * Number of bits in a bitset word.
+     */
+    private static final int WORD_SIZE = 1 << WORD_SHIFT;
+
+    /**
+     * Number of airplanes the fleet holds.
+     */
+    private final int capacity;
+
+    /**
+     * Metric columns, indexed by Mode.ordinal() then slot.
+     */
+    private final double[][] columns;
+
+    /**
+     * Defined bitsets, indexed by Mode.ordinal() then word.
+     */
+    private final long[][] defined;
+
+    /**
+     * Snapshots that may still be in use, newest first, which writers copy
+     * pages into before changing them; replaced, never changed, by snapshot.
+     * The references are weak, so once no one holds a snapshot, writes stop
+     * copying for it.
+     */
+    private volatile List<WeakReference<FleetSnapshot>> snapshots = List.of();
+
+    /**
+     * Constructor for a fleet of {@code capacity} airplanes, none of which has
+     * any metric defined.
+     *
+     * @param capacity
+     *            The number of airplanes.
+     * @throws IllegalArgumentException
+     *             if capacity is negative.
+     */
+    public AirplaneFleet(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException(
+                    "Capacity must be non-negative.");
+        }
+        this.capacity = capacity;
+        int words = (capacity + WORD_SIZE - 1) >>> WORD_SHIFT;
+        this.columns = new double[MODE_COUNT][capacity];
+        this.defined = new long[MODE_COUNT][words];
+    }
+
+    /**
+     * Reports the number of airplanes in the fleet.
+     *
+     * @return The capacity.
+     */
+    @Override
+    public int capacity() {
+        return this.capacity;
+    }
+
+    /**
+     * Checks if a metric is defined for the given slot and mode.
+     *
+     * @param slot
+     *            The airplane's slot.
+     * @param mode
+     *            The mode to check.
+     * @return True if the metric is defined, otherwise false.
+     */
+    @Override
+    public boolean isDefined(int slot, Mode mode) {
+        Objects.checkIndex(slot, this.capacity);
+        return (this.defined[mode.ordinal()][slot >>> WORD_SHIFT]
+                & (1L << slot)) != 0;
+    }
+
+    /**
+     * Retrieves the value of a metric for the given slot and mode.
+     *
+     * @param slot
+     *            The airplane's slot.
+     * @param mode
+     *            The mode to retrieve.
+     * @return The value of the metric.
+     */
+    @Override
+    public double getMetric(int slot, Mode mode) {
+        if (!this.isDefined(slot, mode)) {
+            throw new IllegalStateException(mode.name() + " is not defined.");
+        }
+        return this.columns[mode.ordinal()][slot];
+    }
+
+    /**
+     * Validates and sets a metric value for the given slot and mode.
+     *
+     * @param slot
+     *            The airplane's slot.
+     * @param mode
+     *            The mode to set.
+     * @param value
+     *            The value to set.
+     */
+    @Override
+    public void setMetric(int slot, Mode mode, double value) {
+        Objects.checkIndex(slot, this.capacity);
+        MetricRules.check(mode, value);
+
+        this.preserve(slot);
+        int m = mode.ordinal();
+        this.columns[m][slot] = value;
+        this.defined[m][slot >>> WORD_SHIFT] |= 1L << slot;
+    }
+
+    /**
+     * Adds delta to a metric for the given slot and mode, or sets it to delta
+     * if it is not defined. Since undefined slots hold 0.0, both cases are the
+     * same sum.
+     *
+     * @param slot
+     *            The airplane's slot.
+     * @param mode
+     *            The mode to update.
+     * @param delta
+     *            The change to apply.
+     */
+    @Override
+    public void addToMetric(int slot, Mode mode, double delta) {
+        Objects.checkIndex(slot, this.capacity);
+        int m = mode.ordinal();
+        double value = this.columns[m][slot] + delta;
+        MetricRules.check(mode, value);
+
+        this.preserve(slot);
+        this.columns[m][slot] = value;
+        this.defined[m][slot >>> WORD_SHIFT] |= 1L << slot;
+    }
+
+    /**
+     * Adds each non-zero delta to the metric of its mode for the given slot,
+     * all or nothing.
+     *
+     * @param slot
+     *            The airplane's slot.
+     * @param deltasByOrdinal
+     *            The deltas, indexed by Mode.ordinal().
+     */
+    @Override
+    public void applyDeltas(int slot, double[] deltasByOrdinal) {
+        Objects.checkIndex(slot, this.capacity);
+        MetricRules.checkDeltas(deltasByOrdinal);
+        // Validate every result before changing anything
+        for (int m = 0; m < MODE_COUNT; m++) {
+            if (deltasByOrdinal[m] != 0) {
+                MetricRules.check(MODES[m],
+                        this.columns[m][slot] + deltasByOrdinal[m]);
+            }
+        }
+        this.preserve(slot);
+        int word = slot >>> WORD_SHIFT;
+        long bit = 1L << slot;
+        for (int m = 0; m < MODE_COUNT; m++) {
+            if (deltasByOrdinal[m] != 0) {
+                this.columns[m][slot] += deltasByOrdinal[m];
+                this.defined[m][word] |= bit;
+            }
+        }
+    }
+
+    /**
+     * Clears all metrics of the airplane in the given slot.
+     *
+     * @param slot
+     *            The airplane's slot.
+     */
+    @Override
+    public void clear(int slot) {
+        Objects.checkIndex(slot, this.capacity);
+        this.preserve(slot);
+        for (int m = 0; m < MODE_COUNT; m++) {
+            this.columns[m][slot] = 0.0;
+            this.defined[m][slot >>> WORD_SHIFT] &= ~(1L << slot);
+        }
+    }
+
+    /**
+     * Clears all metrics of every airplane in the fleet.
+     */
+    public void clear() {
+        FleetSnapshot.preserveAll(this.snapshots, this.capacity);
+        for (int m = 0; m < MODE_COUNT; m++) {
+            Arrays.fill(this.columns[m], 0.0);
+            Arrays.fill(this.defined[m], 0L);
+        }
+    }
+
+    /**
+     * Lets the snapshots in use copy the page holding {@code slot} before it
+     * is changed.
+     *
+     * @param slot
+     *            The slot about to be written.
+     */
+    private void preserve(int slot) {
+        List<WeakReference<FleetSnapshot>> live = this.snapshots;
+        if (!live.isEmpty()) {
+            FleetSnapshot.preserve(live, slot);
+        }
+    }
+
+    /**
+     * Lets the snapshots in use copy every page overlapping slots lo up to
+     * hi - 1 before they are changed.
+     *
+     * @param lo
+     *            The first slot about to be written.
+     * @param hi
+     *            One past the last slot about to be written.
+     */
+    void preserveRange(int lo, int hi) {
+        List<WeakReference<FleetSnapshot>> live = this.snapshots;
+        if (!live.isEmpty() && lo < hi) {
+            int last = (hi - 1) & -FleetSnapshot.PAGE_SIZE;
+            for (int page = lo & -FleetSnapshot.PAGE_SIZE; page <= last;
+                    page += FleetSnapshot.PAGE_SIZE) {
+                FleetSnapshot.preserve(live, page);
+            }
+        }
+    }
+
+    /**
+     * Returns the live metric column of {@code mode}, for batched updates in
+     * this package. Writers must call preserveRange first, keep the column
+     * 0.0 where the mode is not defined and keep every metric valid.
+     *
+     * @param mode
+     *            The mode.
+     * @return The column, indexed by slot.
+     */
+    double[] column(Mode mode) {
+        return this.columns[mode.ordinal()];
+    }
+
+    /**
+     * Returns the live defined bitset of {@code mode}, for batched updates in
+     * this package, under the same rules as column.
+     *
+     * @param mode
+     *            The mode.
+     * @return The bitset, indexed by slot / 64.
+     */
+    long[] definedBits(Mode mode) {
+        return this.defined[mode.ordinal()];
+    }
+
+    /**
+     * Returns an immutable view of every airplane in the fleet as of now, in
+     * time proportional to the number of pages and without copying any
+     * metric. Afterwards, the first write to each page copies it into the
+     * snapshot, so readers on other threads can keep reading the snapshot
+     * while the fleet is updated.
+     *
+     * <p>
+     * This method must not run while another thread writes to the fleet; a
+     * simulation takes it between ticks (see FleetSimulator). Older snapshots
+     * stay valid; a page copied for the newest one is shared with them.
+     * </p>
+     *
+     * @return The snapshot.
+     */
+    public FleetSnapshot snapshot() {
+        FleetSnapshot snapshot = new FleetSnapshot(this.columns, this.defined,
+                this.capacity);
+        List<WeakReference<FleetSnapshot>> live = new ArrayList<>();
+        live.add(new WeakReference<>(snapshot));
+        for (WeakReference<FleetSnapshot> ref : this.snapshots) {
+            // Drop the snapshots no one holds any more
+            if (ref.get() != null) {
+                live.add(ref);
+            }
+        }
+        this.snapshots = List.copyOf(live);
+        return snapshot;
+    }
+
+    /**
+     * Counts the airplanes that define the given mode.
+     *
+     * @param mode
+     *            The mode to count.
+     * @return The number of slots in which mode is defined.
+     */
+    public int countDefined(Mode mode) {
+        long[] bits = this.defined[mode.ordinal()];
+        int count = 0;
+        for (int w = 0; w < bits.length; w++) {
+            count += Long.bitCount(bits[w]);
+        }
+        return count;
+    }
+
+    /**
+     * Sums the given metric over every airplane that defines it. Since
+     * undefined slots hold 0.0, this is a straight scan of the column.
+     *
+     * @param mode
+     *            The mode to sum.
+     * @return The sum of the metric over the fleet.
+     */
+    public double sum(Mode mode) {
+        double[] column = this.columns[mode.ordinal()];
+        double total = 0.0;
+        for (int s = 0; s < column.length; s++) {
+            total += column[s];
+        }
+        return total;
+    }
+
+    /**
+     * Returns an Airplane backed by the given slot. Reads and writes through
+     * the view go straight to the fleet's columns, and the view holds no state
+     * of its own besides the slot index.
+     *
+     * @param slot
+     *            The airplane's slot.
+     * @return A view of the airplane in that slot.
+     */
+    public Airplane view(int slot) {
+        Objects.checkIndex(slot, this.capacity);
+        return new FleetSlot(this, slot);
+    }
+}
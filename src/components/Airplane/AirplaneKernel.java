@@ -39,7 +39,6 @@ public interface AirplaneKernel extends Standard<Airplane> {
          * @return Mode Value
          */
         public int getModeValue() {
-            System.out.println(" ");
             return this.modeValue;
         }
     }
@@ -68,4 +67,25 @@ public interface AirplaneKernel extends Standard<Airplane> {
      */
     boolean isDefined(Mode mode);
 
+    /**
+     * Adds delta to the metric of the mode, or sets it to delta if it is not
+     * defined. The result is validated as by setMetric; if it is rejected,
+     * the metric is left unchanged.
+     *
+     * @param mode
+     * @param delta
+     */
+    void addToMetric(Mode mode, double delta);
+
+    /**
+     * Adds deltasByOrdinal[m.ordinal()] to the metric of every mode m whose
+     * delta is not zero, as by addToMetric; modes whose delta is zero are left
+     * as they are. Either every update is applied or, if any result would be
+     * rejected, none is.
+     *
+     * @param deltasByOrdinal
+     *            one delta per mode, indexed by Mode.ordinal()
+     */
+    void applyDeltas(double[] deltasByOrdinal);
+
 }
@@ -0,0 +1,151 @@
+package components.Airplane;
+
+import java.util.Arrays;
+
+/**
+ * Recycles short-lived scratch airplanes of one implementation, so code that
+ * needs many temporary airplanes does not allocate one each time.
+ * {@link #acquire()} returns an idle airplane, or a new one from the
+ * prototype's newInstance if none is idle; {@link #release(Airplane)} clears
+ * an airplane and keeps it for reuse, up to a limit.
+ *
+ * <p>
+ * A pool must be used from one thread at a time, like the kernel
+ * implementations; give each thread its own pool. An airplane must not be
+ * used after it is released, nor released twice.
+ * </p>
+ *
+ * @convention: 0 <= idleCount <= idle.length <= maxIdle, and idle[0..
+ *              idleCount) are cleared airplanes of the prototype's class.
+ */
+public final class AirplanePool {
+
+    /**
+     * Initial capacity of the idle stack.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * The airplane whose newInstance makes new airplanes.
+     */
+    private final Airplane prototype;
+
+    /**
+     * Largest number of idle airplanes kept.
+     */
+    private final int maxIdle;
+
+    /**
+     * Idle airplanes, of which the first idleCount are in use.
+     */
+    private Airplane[] idle;
+
+    /**
+     * Number of idle airplanes.
+     */
+    private int idleCount;
+
+    /**
+     * Number of airplanes created with newInstance.
+     */
+    private long created;
+
+    /**
+     * Constructor.
+     *
+     * @param prototype
+     *            An airplane of the implementation to pool; it is used only
+     *            to create new airplanes.
+     * @param maxIdle
+     *            The largest number of idle airplanes to keep.
+     * @throws IllegalArgumentException
+     *             if maxIdle is negative.
+     */
+    public AirplanePool(Airplane prototype, int maxIdle) {
+        if (maxIdle < 0) {
+            throw new IllegalArgumentException(
+                    "Maximum idle count must be non-negative.");
+        }
+        this.prototype = prototype;
+        this.maxIdle = maxIdle;
+        this.idle = new Airplane[Math.min(maxIdle, INITIAL_CAPACITY)];
+    }
+
+    /**
+     * Returns an airplane with no metric defined, reusing an idle one if
+     * there is any.
+     *
+     * @return The airplane.
+     */
+    public Airplane acquire() {
+        Airplane airplane;
+        if (this.idleCount > 0) {
+            this.idleCount--;
+            airplane = this.idle[this.idleCount];
+            this.idle[this.idleCount] = null;
+        } else {
+            airplane = this.prototype.newInstance();
+            this.created++;
+        }
+        return airplane;
+    }
+
+    /**
+     * Returns an airplane holding a copy of {@code source}'s metrics, reusing
+     * an idle one if there is any.
+     *
+     * @param source
+     *            The airplane to copy; it is left unchanged.
+     * @return The copy.
+     */
+    public Airplane acquireCopyOf(Airplane source) {
+        Airplane airplane = this.acquire();
+        airplane.copyFrom(source);
+        return airplane;
+    }
+
+    /**
+     * Clears an airplane and keeps it for reuse, or drops it if maxIdle
+     * airplanes are already idle.
+     *
+     * @param airplane
+     *            An airplane of the pool's implementation, no longer used.
+     * @throws IllegalArgumentException
+     *             if airplane is not of the prototype's class.
+     */
+    public void release(Airplane airplane) {
+        if (airplane == null
+                || airplane.getClass() != this.prototype.getClass()) {
+            throw new IllegalArgumentException(
+                    "Airplane does not belong to this pool.");
+        }
+        airplane.clear();
+        if (this.idleCount < this.maxIdle) {
+            if (this.idleCount == this.idle.length) {
+                this.idle = Arrays.copyOf(this.idle,
+                        Math.min(this.maxIdle, this.idle.length * 2));
+            }
+            this.idle[this.idleCount] = airplane;
+            this.idleCount++;
+        }
+    }
+
+    /**
+     * Reports the number of idle airplanes.
+     *
+     * @return The idle count.
+     */
+    public int idleCount() {
+        return this.idleCount;
+    }
+
+    /**
+     * Reports the number of airplanes the pool has created, which stays flat
+     * once the pool is warm.
+     *
+     * @return The number of airplanes created.
+     */
+    public long createdCount() {
+        return this.created;
+    }
+}
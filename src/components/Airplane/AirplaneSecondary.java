@@ -2,15 +2,70 @@ package components.Airplane;
 
 /**
  * Airplane Secondary.
+ *
+ * <p>
+ * equals and hashCode neither allocate nor perform I/O, given kernel methods
+ * that do not.
+ * </p>
  */
 public abstract class AirplaneSecondary implements Airplane {
 
+    /**
+     * Modes indexed by ordinal; Mode.values() would allocate a copy per call.
+     */
+    private static final Mode[] MODES = Mode.values();
+
+    /**
+     * Multiplier of the hash mixing steps: 2^64 divided by the golden ratio.
+     */
+    private static final long GOLDEN = 0x9E37_79B9_7F4A_7C15L;
+
+    /**
+     * Distance, in bits, of the rotation in each hash mixing step.
+     */
+    private static final int ROTATION = 31;
+
     @Override
     public final String toString() {
         return "Airplane [" + "Altitude=" + this.getMetric(Mode.ALTITUDE) + ","
                 + "Direction=" + this.getMetric(Mode.DIRECTION) + "]";
     }
 
+    /**
+     * Returns an immutable copy of the current metrics. Implementations that
+     * can share their storage override this to avoid the copy.
+     *
+     * @return The snapshot.
+     */
+    @Override
+    public Airplane snapshot() {
+        return FrozenAirplane.copyOf(this);
+    }
+
+    /**
+     * Copies {@code source} through the kernel methods. Implementations
+     * override this with a direct copy from airplanes of their own
+     * representation.
+     *
+     * @param source
+     *            The airplane to copy.
+     */
+    @Override
+    public void copyFrom(Airplane source) {
+        if (source == null) {
+            throw new IllegalArgumentException("Invalid source for copy");
+        }
+        if (source == this) {
+            return;
+        }
+        this.clear();
+        for (Mode mode : MODES) {
+            if (source.isDefined(mode)) {
+                this.setMetric(mode, source.getMetric(mode));
+            }
+        }
+    }
+
     @Override
     public final boolean equals(Object obj) {
         //  Check if the reference is the same
@@ -21,36 +76,97 @@ public abstract class AirplaneSecondary implements Airplane {
         if (obj == null || this.getClass() != obj.getClass()) {
             return false;
         }
-        // Cast the object to the current class type
-        AirplaneSecondary other = (AirplaneSecondary) obj;
+        // Same class, so the representations can be compared directly
+        return this.sameState((AirplaneSecondary) obj);
+    }
 
-        //  Compare all metrics (each Mode field)
-        for (Mode mode : Mode.values()) {
+    /**
+     * Reports whether {@code other}, an instance of this airplane's class,
+     * has the same defined modes with the same metrics, as compared by
+     * Double.compare. Implementations override this to compare their
+     * representations directly; this version goes through the kernel methods.
+     *
+     * @param other
+     *            An airplane of the same class as this one.
+     * @return True if both airplanes have equal state.
+     */
+    boolean sameState(AirplaneSecondary other) {
+        for (Mode mode : MODES) {
+            boolean defined = this.isDefined(mode);
             // Check if one metric is defined and the other is not
-            if (this.isDefined(mode) != other.isDefined(mode)) {
+            if (defined != other.isDefined(mode)) {
                 return false;
             }
-
             // If both are defined, compare their values
-            if (this.isDefined(mode) && Double.compare(this.getMetric(mode),
+            if (defined && Double.compare(this.getMetric(mode),
                     other.getMetric(mode)) != 0) {
                 return false;
             }
         }
-
-        // If all metrics match, return true
         return true;
     }
 
     @Override
     public final int hashCode() {
-        int result = 2;
-        final int num = 63;
-        for (Mode mode : Mode.values()) {
+        return this.stateHash();
+    }
+
+    /**
+     * Computes the hash code: every defined metric, in ordinal order, is
+     * mixed in with {@link #mixMetric(long, double)}, then the bitmask of
+     * defined modes with {@link #finishHash(long, int)}. Implementations
+     * override this to read their representations directly or to cache the
+     * result, but must produce the same value.
+     *
+     * @return The hash code.
+     */
+    int stateHash() {
+        long hash = 0;
+        int mask = 0;
+        for (Mode mode : MODES) {
             if (this.isDefined(mode)) {
-                result = num * result; //2^6-1
+                hash = mixMetric(hash, this.getMetric(mode));
+                mask |= 1 << mode.ordinal();
             }
         }
-        return result;
+        return finishHash(hash, mask);
+    }
+
+    /**
+     * Mixes one defined metric into a running hash.
+     *
+     * @param hash
+     *            The running hash.
+     * @param value
+     *            The metric.
+     * @return The new running hash.
+     */
+    static long mixMetric(long hash, double value) {
+        long bits = Double.doubleToLongBits(value) * GOLDEN;
+        return Long.rotateLeft(hash ^ bits, ROTATION) * GOLDEN;
+    }
+
+    /**
+     * Mixes the bitmask of defined modes into a running hash and folds it to
+     * an int whose every bit depends on every input bit.
+     *
+     * @param hash
+     *            The running hash.
+     * @param mask
+     *            The bitmask of defined modes.
+     * @return The hash code.
+     */
+    static int finishHash(long hash, int mask) {
+        final int shift1 = 30;
+        final int shift2 = 27;
+        final int shift3 = 31;
+        final long c1 = 0xBF58_476D_1CE4_E5B9L;
+        final long c2 = 0x94D0_49BB_1331_11EBL;
+        // The finalizer of SplitMix64
+        long h = hash ^ mask;
+        h = (h ^ (h >>> shift1)) * c1;
+        h = (h ^ (h >>> shift2)) * c2;
+        h ^= h >>> shift3;
+        return (int) h;
     }
 }
@@ -0,0 +1,483 @@
+package components.Airplane;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+import components.Airplane.AirplaneKernel.Mode;
+
+/**
+ * Process-wide counters and latency histograms for the kernel
+ * implementations and the simulation loops. Counters are LongAdders, which
+ * stripe their updates across cells under contention, kept per operation and
+ * per Mode; transferFrom latencies and simulation tick durations go to
+ * {@link LatencyHistogram}s.
+ *
+ * <p>
+ * Instrumentation is on only when the JVM is started with
+ * {@code -Dairplane.stats=true}. {@link #ENABLED} is a static final constant,
+ * so when it is false the JIT compiler removes every instrumentation branch
+ * and the kernels run exactly as if it were not there.
+ * </p>
+ *
+ * <p>
+ * The numbers can be read directly, through the {@link AirplaneStatsMBean}
+ * registered by {@link #registerMBean()}, or as the text of {@link #dump()},
+ * optionally printed periodically by {@link #startDumping(PrintStream, long)}.
+ * The simulators' main methods do both through
+ * {@link #export(PrintStream, long)}.
+ * </p>
+ */
+public final class AirplaneStats {
+
+    /**
+     * Whether instrumentation is on, from the airplane.stats system property.
+     */
+    public static final boolean ENABLED = Boolean
+            .getBoolean("airplane.stats");
+
+    /**
+     * Name the MBean is registered under.
+     */
+    public static final String MBEAN_NAME =
+            "components.Airplane:type=AirplaneStats";
+
+    /**
+     * Counted kernel operations.
+     */
+    public enum Op {
+        /**
+         * A setMetric call, whether or not it was accepted.
+         */
+        SET_METRIC,
+        /**
+         * A setMetric call rejected by validation.
+         */
+        SET_METRIC_REJECTED,
+        /**
+         * A getMetric call.
+         */
+        GET_METRIC,
+        /**
+         * An isDefined call.
+         */
+        IS_DEFINED,
+        /**
+         * An isDefined call that returned false.
+         */
+        IS_DEFINED_MISS,
+        /**
+         * An addToMetric call.
+         */
+        ADD_TO_METRIC,
+        /**
+         * An applyDeltas call.
+         */
+        APPLY_DELTAS,
+        /**
+         * A transferFrom call.
+         */
+        TRANSFER_FROM
+    }
+
+    /**
+     * Number of modes.
+     */
+    private static final int MODE_COUNT = Mode.values().length;
+
+    /**
+     * Operations indexed by ordinal.
+     */
+    private static final Op[] OPS = Op.values();
+
+    /**
+     * Counters of operations on one mode, indexed by Op.ordinal() *
+     * MODE_COUNT + Mode.ordinal().
+     */
+    private static final LongAdder[] BY_MODE = newAdders(
+            OPS.length * MODE_COUNT);
+
+    /**
+     * Counters of operations on no particular mode, indexed by Op.ordinal().
+     */
+    private static final LongAdder[] UNMODED = newAdders(OPS.length);
+
+    /**
+     * Latencies of transferFrom.
+     */
+    private static final LatencyHistogram TRANSFER_LATENCY =
+            new LatencyHistogram();
+
+    /**
+     * Durations of simulation ticks, excluding the wait for the clock.
+     */
+    private static final LatencyHistogram TICK_DURATION =
+            new LatencyHistogram();
+
+    /**
+     * No instances.
+     */
+    private AirplaneStats() {
+    }
+
+    /**
+     * Returns an array of new counters.
+     *
+     * @param n
+     *            The number of counters.
+     * @return The counters.
+     */
+    private static LongAdder[] newAdders(int n) {
+        LongAdder[] adders = new LongAdder[n];
+        for (int i = 0; i < n; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    /**
+     * Counts one operation on {@code mode}. Callers check ENABLED first.
+     *
+     * @param op
+     *            The operation.
+     * @param mode
+     *            The mode operated on.
+     */
+    static void increment(Op op, Mode mode) {
+        BY_MODE[op.ordinal() * MODE_COUNT + mode.ordinal()].increment();
+    }
+
+    /**
+     * Counts one operation on no particular mode. Callers check ENABLED
+     * first.
+     *
+     * @param op
+     *            The operation.
+     */
+    static void increment(Op op) {
+        UNMODED[op.ordinal()].increment();
+    }
+
+    /**
+     * Counts a setMetric call, and its rejection if value is not valid.
+     * Callers check ENABLED first.
+     *
+     * @param mode
+     *            The mode being set.
+     * @param value
+     *            The value being set.
+     */
+    static void countSet(Mode mode, double value) {
+        increment(Op.SET_METRIC, mode);
+        if (!MetricRules.isValid(mode, value)) {
+            increment(Op.SET_METRIC_REJECTED, mode);
+        }
+    }
+
+    /**
+     * Counts an isDefined call, and its miss if the mode was not defined.
+     * Callers check ENABLED first.
+     *
+     * @param mode
+     *            The mode checked.
+     * @param defined
+     *            The result of the call.
+     */
+    static void countIsDefined(Mode mode, boolean defined) {
+        increment(Op.IS_DEFINED, mode);
+        if (!defined) {
+            increment(Op.IS_DEFINED_MISS, mode);
+        }
+    }
+
+    /**
+     * Counts a transferFrom call and records its latency. Callers check
+     * ENABLED first.
+     *
+     * @param startNanos
+     *            The System.nanoTime() at which the call started.
+     */
+    static void recordTransfer(long startNanos) {
+        increment(Op.TRANSFER_FROM);
+        TRANSFER_LATENCY.record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Records the duration of one simulation tick. Callers check ENABLED
+     * first.
+     *
+     * @param nanos
+     *            The time spent computing the tick, in nanoseconds.
+     */
+    public static void recordTick(long nanos) {
+        TICK_DURATION.record(nanos);
+    }
+
+    /**
+     * Returns the number of {@code op} operations on {@code mode}.
+     *
+     * @param op
+     *            The operation.
+     * @param mode
+     *            The mode.
+     * @return The count.
+     */
+    public static long count(Op op, Mode mode) {
+        return BY_MODE[op.ordinal() * MODE_COUNT + mode.ordinal()].sum();
+    }
+
+    /**
+     * Returns the number of {@code op} operations on any mode.
+     *
+     * @param op
+     *            The operation.
+     * @return The count.
+     */
+    public static long total(Op op) {
+        long total = UNMODED[op.ordinal()].sum();
+        for (int m = 0; m < MODE_COUNT; m++) {
+            total += BY_MODE[op.ordinal() * MODE_COUNT + m].sum();
+        }
+        return total;
+    }
+
+    /**
+     * Returns the histogram of transferFrom latencies.
+     *
+     * @return The histogram.
+     */
+    public static LatencyHistogram transferLatency() {
+        return TRANSFER_LATENCY;
+    }
+
+    /**
+     * Returns the histogram of simulation tick durations.
+     *
+     * @return The histogram.
+     */
+    public static LatencyHistogram tickDuration() {
+        return TICK_DURATION;
+    }
+
+    /**
+     * Resets every counter and histogram.
+     */
+    public static void reset() {
+        for (LongAdder adder : BY_MODE) {
+            adder.reset();
+        }
+        for (LongAdder adder : UNMODED) {
+            adder.reset();
+        }
+        TRANSFER_LATENCY.reset();
+        TICK_DURATION.reset();
+    }
+
+    /**
+     * Returns every counter and histogram as text: one line per operation
+     * with its total and per-mode counts, then one line per histogram.
+     *
+     * @return The text.
+     */
+    public static String dump() {
+        StringBuilder text = new StringBuilder();
+        String newline = System.lineSeparator();
+        text.append("Airplane stats");
+        if (!ENABLED) {
+            text.append(" (disabled; run with -Dairplane.stats=true)");
+        }
+        text.append(newline);
+        for (Op op : OPS) {
+            text.append(op.name()).append(": ").append(total(op));
+            String separator = " (";
+            for (Mode mode : Mode.values()) {
+                long n = BY_MODE[op.ordinal() * MODE_COUNT + mode.ordinal()]
+                        .sum();
+                if (n > 0) {
+                    text.append(separator).append(mode.name()).append('=')
+                            .append(n);
+                    separator = ", ";
+                }
+            }
+            if (!separator.equals(" (")) {
+                text.append(')');
+            }
+            text.append(newline);
+        }
+        text.append("transferFrom latency: ").append(TRANSFER_LATENCY)
+                .append(newline);
+        text.append("tick duration: ").append(TICK_DURATION).append(newline);
+        return text.toString();
+    }
+
+    /**
+     * Registers the {@link AirplaneStatsMBean} with the platform MBean server
+     * under {@link #MBEAN_NAME}, if it is not registered yet.
+     *
+     * @throws JMException
+     *             if registration fails.
+     */
+    public static synchronized void registerMBean() throws JMException {
+        ObjectName name = new ObjectName(MBEAN_NAME);
+        MBeanServer server = ManagementFactory
+                .getPlatformMBeanServer();
+        if (!server.isRegistered(name)) {
+            server.registerMBean(new StandardMBean(new MBeanView(),
+                    AirplaneStatsMBean.class), name);
+        }
+    }
+
+    /**
+     * Handle on periodic dumps; closing it stops them.
+     */
+    public interface Dumping extends AutoCloseable {
+        /**
+         * Stops the dumps. Does nothing if they are already stopped.
+         */
+        @Override
+        void close();
+    }
+
+    /**
+     * Prints {@link #dump()} to {@code out} every {@code periodMillis}
+     * milliseconds, from a daemon thread, until the returned handle is
+     * closed.
+     *
+     * @param out
+     *            The stream to print to.
+     * @param periodMillis
+     *            The time between dumps, in milliseconds.
+     * @return The handle that stops the dumps.
+     */
+    public static Dumping startDumping(PrintStream out, long periodMillis) {
+        ScheduledExecutorService timer = Executors
+                .newSingleThreadScheduledExecutor(task -> {
+                    Thread thread = new Thread(task, "airplane-stats-dump");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        ScheduledFuture<?> dumps = timer.scheduleAtFixedRate(
+                () -> out.print(dump()), periodMillis, periodMillis,
+                TimeUnit.MILLISECONDS);
+        return () -> {
+            dumps.cancel(false);
+            timer.shutdown();
+        };
+    }
+
+    /**
+     * If instrumentation is {@link #ENABLED}, registers the MBean and starts
+     * printing dumps to {@code out} every {@code periodMillis} milliseconds;
+     * otherwise does nothing.
+     *
+     * @param out
+     *            The stream to print to.
+     * @param periodMillis
+     *            The time between dumps, in milliseconds.
+     * @return The handle that stops the dumps; closing it does nothing if
+     *         instrumentation is off.
+     * @throws JMException
+     *             if registration fails.
+     */
+    public static Dumping export(PrintStream out, long periodMillis)
+            throws JMException {
+        if (!ENABLED) {
+            return () -> {
+            };
+        }
+        registerMBean();
+        return startDumping(out, periodMillis);
+    }
+
+    /**
+     * The MBean exposing the stats.
+     */
+    private static final class MBeanView implements AirplaneStatsMBean {
+
+        @Override
+        public boolean isEnabled() {
+            return ENABLED;
+        }
+
+        @Override
+        public long getSetMetricCount() {
+            return total(Op.SET_METRIC);
+        }
+
+        @Override
+        public long getSetMetricRejectedCount() {
+            return total(Op.SET_METRIC_REJECTED);
+        }
+
+        @Override
+        public long getGetMetricCount() {
+            return total(Op.GET_METRIC);
+        }
+
+        @Override
+        public long getIsDefinedCount() {
+            return total(Op.IS_DEFINED);
+        }
+
+        @Override
+        public long getIsDefinedMissCount() {
+            return total(Op.IS_DEFINED_MISS);
+        }
+
+        @Override
+        public long getTransferFromCount() {
+            return total(Op.TRANSFER_FROM);
+        }
+
+        @Override
+        public long getTransferFromP99Nanos() {
+            final double p99 = 99;
+            return TRANSFER_LATENCY.percentile(p99);
+        }
+
+        @Override
+        public long getTransferFromMaxNanos() {
+            return TRANSFER_LATENCY.max();
+        }
+
+        @Override
+        public long getTickCount() {
+            return TICK_DURATION.count();
+        }
+
+        @Override
+        public double getTickMeanNanos() {
+            return TICK_DURATION.mean();
+        }
+
+        @Override
+        public long getTickP99Nanos() {
+            final double p99 = 99;
+            return TICK_DURATION.percentile(p99);
+        }
+
+        @Override
+        public long getTickMaxNanos() {
+            return TICK_DURATION.max();
+        }
+
+        @Override
+        public String dump() {
+            return AirplaneStats.dump();
+        }
+
+        @Override
+        public void reset() {
+            AirplaneStats.reset();
+        }
+    }
+}
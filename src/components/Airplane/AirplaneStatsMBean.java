@@ -0,0 +1,112 @@
+package components.Airplane;
+
+/**
+ * Management interface of {@link AirplaneStats}, registered by
+ * {@link AirplaneStats#registerMBean()} so the counters can be watched from
+ * JConsole or any other JMX client. Times are in nanoseconds.
+ */
+public interface AirplaneStatsMBean {
+
+    /**
+     * Returns whether instrumentation is on.
+     *
+     * @return Whether the JVM was started with -Dairplane.stats=true.
+     */
+    boolean isEnabled();
+
+    /**
+     * Returns the number of setMetric calls.
+     *
+     * @return The count.
+     */
+    long getSetMetricCount();
+
+    /**
+     * Returns the number of setMetric calls rejected by validation.
+     *
+     * @return The count.
+     */
+    long getSetMetricRejectedCount();
+
+    /**
+     * Returns the number of getMetric calls.
+     *
+     * @return The count.
+     */
+    long getGetMetricCount();
+
+    /**
+     * Returns the number of isDefined calls.
+     *
+     * @return The count.
+     */
+    long getIsDefinedCount();
+
+    /**
+     * Returns the number of isDefined calls that returned false.
+     *
+     * @return The count.
+     */
+    long getIsDefinedMissCount();
+
+    /**
+     * Returns the number of transferFrom calls.
+     *
+     * @return The count.
+     */
+    long getTransferFromCount();
+
+    /**
+     * Returns the 99th percentile of transferFrom latency.
+     *
+     * @return The latency.
+     */
+    long getTransferFromP99Nanos();
+
+    /**
+     * Returns the largest transferFrom latency.
+     *
+     * @return The latency.
+     */
+    long getTransferFromMaxNanos();
+
+    /**
+     * Returns the number of simulation ticks recorded.
+     *
+     * @return The count.
+     */
+    long getTickCount();
+
+    /**
+     * Returns the mean simulation tick duration.
+     *
+     * @return The duration.
+     */
+    double getTickMeanNanos();
+
+    /**
+     * Returns the 99th percentile of simulation tick duration.
+     *
+     * @return The duration.
+     */
+    long getTickP99Nanos();
+
+    /**
+     * Returns the largest simulation tick duration.
+     *
+     * @return The duration.
+     */
+    long getTickMaxNanos();
+
+    /**
+     * Returns every counter and histogram as text.
+     *
+     * @return The text.
+     */
+    String dump();
+
+    /**
+     * Resets every counter and histogram.
+     */
+    void reset();
+}
@@ -0,0 +1,661 @@
+package components.Airplane;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import components.Airplane.AirplaneKernel.Mode;
+
+/**
+ * Index of attached airplanes ordered by selected metrics, for questions like
+ * "which 100 airplanes have the least fuel" or "which airplanes are below
+ * 1000 feet", and for alerts when a metric crosses a threshold. Airplanes are
+ * attached with {@link #attach(Airplane)} and detached with
+ * {@link #detach(Airplane)}; each indexed Mode keeps an indexed binary
+ * min-heap of the airplanes defining it, and a change to an attached
+ * airplane moves it to its new place in O(log n). A NaN metric sorts after
+ * every other value and is below no threshold.
+ *
+ * <p>
+ * {@link #lowest(Mode, int)} returns the k lowest airplanes in O(k log k),
+ * and {@link #below(Mode, double)} every airplane under a threshold in time
+ * proportional to the answer. Threshold subscriptions are kept sorted, so a
+ * change finds the thresholds it crossed in O(log s) for s subscriptions,
+ * plus the listeners it calls. Listeners are called as the change is made,
+ * after the index has been updated.
+ * </p>
+ *
+ * <p>
+ * An index and its airplanes must be used from one thread at a time, like
+ * the other kernel implementations, and listeners must not subscribe or
+ * cancel from inside a callback.
+ * </p>
+ *
+ * @convention: for every indexed mode m, heaps[m][0, sizes[m]) holds exactly
+ *              the attached airplanes defining m, each at the position
+ *              recorded in its positions[m], and no entry is greater than
+ *              the entries at 2i + 1 and 2i + 2 by Double.compare, which
+ *              puts NaN above every other value. alerts[m] is sorted by
+ *              threshold. For modes not indexed, heaps[m] and alerts[m] are
+ *              null.
+ */
+public final class AlertIndex {
+
+    /**
+     * Number of modes.
+     */
+    private static final int MODE_COUNT = Mode.values().length;
+
+    /**
+     * Position of an airplane that is not in a heap.
+     */
+    private static final int ABSENT = -1;
+
+    /**
+     * Heap of each indexed mode, indexed by Mode.ordinal().
+     */
+    private final Watch[][] heaps = new Watch[MODE_COUNT][];
+
+    /**
+     * Number of airplanes in each heap.
+     */
+    private final int[] sizes = new int[MODE_COUNT];
+
+    /**
+     * Subscriptions to each indexed mode, sorted by threshold.
+     */
+    private final Alert[][] alerts = new Alert[MODE_COUNT][];
+
+    /**
+     * Constructor.
+     *
+     * @param modes
+     *            The modes to index.
+     */
+    public AlertIndex(Set<Mode> modes) {
+        for (Mode mode : modes) {
+            this.heaps[mode.ordinal()] = new Watch[0];
+            this.alerts[mode.ordinal()] = new Alert[0];
+        }
+    }
+
+    /**
+     * Returns an airplane kept in this index. Its current metrics are indexed
+     * right away, without calling listeners. The index keeps a reference to
+     * it for as long as the airplane defines an indexed mode, until it is
+     * detached.
+     *
+     * @param airplane
+     *            The airplane to index; it must not be changed except through
+     *            the returned wrapper.
+     * @return The indexed wrapper.
+     */
+    public Airplane attach(Airplane airplane) {
+        return new ObservedAirplane(airplane, new Watch());
+    }
+
+    /**
+     * Stops indexing an airplane returned by attach: it is removed from every
+     * heap, without calling listeners, and the index drops its reference to
+     * it. The airplane keeps working. Detaching an airplane that is not
+     * attached to this index has no effect.
+     *
+     * @param attached
+     *            The airplane returned by attach.
+     */
+    public void detach(Airplane attached) {
+        if (!(attached instanceof ObservedAirplane)) {
+            return;
+        }
+        MetricObserver observer = ((ObservedAirplane) attached).observer();
+        if (!(observer instanceof Watch)) {
+            return;
+        }
+        Watch watch = (Watch) observer;
+        if (watch.owner() != this || watch.detached) {
+            return;
+        }
+        for (int m = 0; m < MODE_COUNT; m++) {
+            if (watch.positions[m] != ABSENT) {
+                this.delete(m, watch);
+            }
+        }
+        watch.detached = true;
+    }
+
+    /**
+     * Returns the ordinal of an indexed mode.
+     *
+     * @param mode
+     *            The mode.
+     * @return mode.ordinal().
+     * @throws IllegalArgumentException
+     *             if mode is not indexed.
+     */
+    private int indexed(Mode mode) {
+        int m = mode.ordinal();
+        if (this.heaps[m] == null) {
+            throw new IllegalArgumentException(
+                    mode.name() + " is not indexed.");
+        }
+        return m;
+    }
+
+    /**
+     * Subscribes {@code listener} to crossings of {@code threshold} by the
+     * metric for {@code mode} of any attached airplane. Airplanes already
+     * below the threshold are not reported until they cross it.
+     *
+     * @param mode
+     *            The mode watched.
+     * @param threshold
+     *            The threshold; a metric is below it if it is less.
+     * @param listener
+     *            The listener to call.
+     * @return The subscription, which can be cancelled.
+     * @throws IllegalArgumentException
+     *             if mode is not indexed.
+     */
+    public Alert subscribe(Mode mode, double threshold,
+            AlertListener listener) {
+        int m = this.indexed(mode);
+        Alert alert = new Alert(mode, threshold, listener);
+        Alert[] old = this.alerts[m];
+        int at = firstAbove(old, threshold);
+        Alert[] updated = Arrays.copyOf(old, old.length + 1);
+        System.arraycopy(old, at, updated, at + 1, old.length - at);
+        updated[at] = alert;
+        this.alerts[m] = updated;
+        return alert;
+    }
+
+    /**
+     * Removes a subscription.
+     *
+     * @param alert
+     *            The subscription to remove.
+     */
+    private void cancel(Alert alert) {
+        int m = alert.mode.ordinal();
+        Alert[] old = this.alerts[m];
+        int index = Arrays.asList(old).indexOf(alert);
+        if (index < 0) {
+            return;
+        }
+        Alert[] updated = Arrays.copyOf(old, old.length - 1);
+        System.arraycopy(old, index + 1, updated, index,
+                old.length - 1 - index);
+        this.alerts[m] = updated;
+    }
+
+    /**
+     * Returns the index of the first subscription whose threshold is greater
+     * than {@code value}, or alerts.length if there is none.
+     *
+     * @param alerts
+     *            Subscriptions sorted by threshold.
+     * @param value
+     *            The value.
+     * @return The index.
+     */
+    private static int firstAbove(Alert[] alerts, double value) {
+        int lo = 0;
+        int hi = alerts.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (alerts[mid].threshold > value) {
+                hi = mid;
+            } else {
+                lo = mid + 1;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Calls the listeners of every threshold crossed by a metric moving from
+     * {@code from} to {@code to}; an undefined metric is passed as positive
+     * infinity, which is below no threshold, and NaN is treated the same.
+     *
+     * @param m
+     *            The mode's ordinal.
+     * @param airplane
+     *            The airplane whose metric moved.
+     * @param from
+     *            The old value.
+     * @param to
+     *            The new value.
+     */
+    private void crossed(int m, Airplane airplane, double from, double to) {
+        Alert[] subs = this.alerts[m];
+        if (subs.length == 0) {
+            return;
+        }
+        double fromValue = from;
+        if (Double.isNaN(from)) {
+            fromValue = Double.POSITIVE_INFINITY;
+        }
+        double toValue = to;
+        if (Double.isNaN(to)) {
+            toValue = Double.POSITIVE_INFINITY;
+        }
+        // Thresholds t with (from < t) != (to < t) are those in (low, high]
+        double low = Math.min(fromValue, toValue);
+        double high = Math.max(fromValue, toValue);
+        boolean below = toValue < fromValue;
+        for (int a = firstAbove(subs, low); a < subs.length
+                && subs[a].threshold <= high; a++) {
+            subs[a].listener.thresholdCrossed(airplane, subs[a].mode, below);
+        }
+    }
+
+    /**
+     * Moves the watch at {@code i} of heap m up to its place.
+     *
+     * @param m
+     *            The mode's ordinal.
+     * @param start
+     *            The watch's position.
+     */
+    private void siftUp(int m, int start) {
+        Watch[] heap = this.heaps[m];
+        int i = start;
+        Watch watch = heap[i];
+        double value = watch.values[m];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (Double.compare(heap[parent].values[m], value) <= 0) {
+                break;
+            }
+            heap[i] = heap[parent];
+            heap[i].positions[m] = i;
+            i = parent;
+        }
+        heap[i] = watch;
+        watch.positions[m] = i;
+    }
+
+    /**
+     * Moves the watch at {@code i} of heap m down to its place.
+     *
+     * @param m
+     *            The mode's ordinal.
+     * @param start
+     *            The watch's position.
+     */
+    private void siftDown(int m, int start) {
+        Watch[] heap = this.heaps[m];
+        int size = this.sizes[m];
+        int i = start;
+        Watch watch = heap[i];
+        double value = watch.values[m];
+        int child = 2 * i + 1;
+        while (child < size) {
+            if (child + 1 < size && Double.compare(heap[child + 1].values[m],
+                    heap[child].values[m]) < 0) {
+                child++;
+            }
+            if (Double.compare(value, heap[child].values[m]) <= 0) {
+                break;
+            }
+            heap[i] = heap[child];
+            heap[i].positions[m] = i;
+            i = child;
+            child = 2 * i + 1;
+        }
+        heap[i] = watch;
+        watch.positions[m] = i;
+    }
+
+    /**
+     * Adds a watch to heap m; its value must already be set.
+     *
+     * @param m
+     *            The mode's ordinal.
+     * @param watch
+     *            The watch.
+     */
+    private void insert(int m, Watch watch) {
+        int size = this.sizes[m];
+        if (size == this.heaps[m].length) {
+            this.heaps[m] = Arrays.copyOf(this.heaps[m],
+                    Math.max(1, size * 2));
+        }
+        this.heaps[m][size] = watch;
+        this.sizes[m] = size + 1;
+        this.siftUp(m, size);
+    }
+
+    /**
+     * Removes a watch from heap m.
+     *
+     * @param m
+     *            The mode's ordinal.
+     * @param watch
+     *            The watch.
+     */
+    private void delete(int m, Watch watch) {
+        Watch[] heap = this.heaps[m];
+        int i = watch.positions[m];
+        int last = this.sizes[m] - 1;
+        watch.positions[m] = ABSENT;
+        this.sizes[m] = last;
+        if (i != last) {
+            Watch moved = heap[last];
+            heap[i] = moved;
+            heap[last] = null;
+            this.siftUp(m, i);
+            this.siftDown(m, moved.positions[m]);
+        } else {
+            heap[last] = null;
+        }
+    }
+
+    /**
+     * Reports the number of attached airplanes defining {@code mode}.
+     *
+     * @param mode
+     *            An indexed mode.
+     * @return The number of airplanes.
+     * @throws IllegalArgumentException
+     *             if mode is not indexed.
+     */
+    public int size(Mode mode) {
+        return this.sizes[this.indexed(mode)];
+    }
+
+    /**
+     * Returns the {@code k} attached airplanes with the lowest metric for
+     * {@code mode}, lowest first; fewer if fewer define it. Takes O(k log k)
+     * time, however many airplanes are attached.
+     *
+     * @param mode
+     *            An indexed mode.
+     * @param k
+     *            The number of airplanes wanted.
+     * @return The airplanes.
+     * @throws IllegalArgumentException
+     *             if mode is not indexed or k is negative.
+     */
+    public List<Airplane> lowest(Mode mode, int k) {
+        int m = this.indexed(mode);
+        if (k < 0) {
+            throw new IllegalArgumentException("k must be non-negative.");
+        }
+        Watch[] heap = this.heaps[m];
+        int wanted = Math.min(k, this.sizes[m]);
+        List<Airplane> result = new ArrayList<>(wanted);
+        /*
+         * Candidates are heap positions whose parents were taken; the least
+         * candidate is the next lowest. They form a heap of their own, at
+         * most one larger than the number taken.
+         */
+        int[] candidates = new int[wanted + 1];
+        int count = 0;
+        if (wanted > 0) {
+            candidates[0] = 0;
+            count = 1;
+        }
+        while (result.size() < wanted) {
+            int top = candidates[0];
+            result.add(heap[top].airplane);
+            count--;
+            candidates[0] = candidates[count];
+            this.siftCandidateDown(m, candidates, count);
+            for (int child = 2 * top + 1; child <= 2 * top + 2
+                    && child < this.sizes[m]; child++) {
+                candidates[count] = child;
+                count++;
+                this.siftCandidateUp(m, candidates, count - 1);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Moves the first candidate down to its place in the candidate heap.
+     *
+     * @param m
+     *            The mode's ordinal.
+     * @param candidates
+     *            The candidate heap.
+     * @param count
+     *            The number of candidates.
+     */
+    private void siftCandidateDown(int m, int[] candidates, int count) {
+        Watch[] heap = this.heaps[m];
+        int i = 0;
+        int child = 1;
+        while (child < count) {
+            if (child + 1 < count
+                    && Double.compare(heap[candidates[child + 1]].values[m],
+                            heap[candidates[child]].values[m]) < 0) {
+                child++;
+            }
+            if (Double.compare(heap[candidates[i]].values[m],
+                    heap[candidates[child]].values[m]) <= 0) {
+                break;
+            }
+            int swap = candidates[i];
+            candidates[i] = candidates[child];
+            candidates[child] = swap;
+            i = child;
+            child = 2 * i + 1;
+        }
+    }
+
+    /**
+     * Moves the candidate at {@code i} up to its place in the candidate heap.
+     *
+     * @param m
+     *            The mode's ordinal.
+     * @param candidates
+     *            The candidate heap.
+     * @param start
+     *            The candidate's position.
+     */
+    private void siftCandidateUp(int m, int[] candidates, int start) {
+        Watch[] heap = this.heaps[m];
+        int i = start;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (Double.compare(heap[candidates[parent]].values[m],
+                    heap[candidates[i]].values[m]) <= 0) {
+                break;
+            }
+            int swap = candidates[i];
+            candidates[i] = candidates[parent];
+            candidates[parent] = swap;
+            i = parent;
+        }
+    }
+
+    /**
+     * Returns every attached airplane whose metric for {@code mode} is below
+     * {@code threshold}, in no particular order. Takes time proportional to
+     * the number returned.
+     *
+     * @param mode
+     *            An indexed mode.
+     * @param threshold
+     *            The threshold.
+     * @return The airplanes.
+     * @throws IllegalArgumentException
+     *             if mode is not indexed.
+     */
+    public List<Airplane> below(Mode mode, double threshold) {
+        int m = this.indexed(mode);
+        Watch[] heap = this.heaps[m];
+        int size = this.sizes[m];
+        List<Airplane> result = new ArrayList<>();
+        // Descendants are never lower, so a subtree not below is skipped
+        int[] pending = new int[1];
+        int count = 0;
+        if (size > 0 && heap[0].values[m] < threshold) {
+            count = 1;
+        }
+        while (count > 0) {
+            count--;
+            int i = pending[count];
+            result.add(heap[i].airplane);
+            for (int child = 2 * i + 1; child <= 2 * i + 2
+                    && child < size; child++) {
+                if (heap[child].values[m] < threshold) {
+                    if (count == pending.length) {
+                        pending = Arrays.copyOf(pending, count * 2);
+                    }
+                    pending[count] = child;
+                    count++;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * A listener's subscription to crossings of one threshold.
+     */
+    public final class Alert {
+
+        /**
+         * The mode watched.
+         */
+        private final Mode mode;
+
+        /**
+         * The threshold.
+         */
+        private final double threshold;
+
+        /**
+         * The listener to call.
+         */
+        private final AlertListener listener;
+
+        /**
+         * Constructor.
+         *
+         * @param mode
+         *            The mode watched.
+         * @param threshold
+         *            The threshold.
+         * @param listener
+         *            The listener to call.
+         */
+        Alert(Mode mode, double threshold, AlertListener listener) {
+            this.mode = mode;
+            this.threshold = threshold;
+            this.listener = listener;
+        }
+
+        /**
+         * Stops notifying the listener. Cancelling twice has no effect.
+         */
+        public void cancel() {
+            AlertIndex.this.cancel(this);
+        }
+    }
+
+    /**
+     * Per-airplane state: the indexed metrics and the airplane's place in
+     * each heap.
+     */
+    private final class Watch implements MetricObserver {
+
+        /**
+         * The observed airplane returned by queries and passed to
+         * listeners.
+         */
+        private Airplane airplane;
+
+        /**
+         * Indexed metrics, indexed by Mode.ordinal().
+         */
+        private final double[] values = new double[MODE_COUNT];
+
+        /**
+         * Position in each heap, or ABSENT.
+         */
+        private final int[] positions = new int[MODE_COUNT];
+
+        /**
+         * Whether the airplane has been detached, so its changes are
+         * ignored.
+         */
+        private boolean detached;
+
+        /**
+         * Constructor; the watch is indexed once attached.
+         */
+        Watch() {
+            Arrays.fill(this.positions, ABSENT);
+        }
+
+        /**
+         * Returns the index this watch belongs to.
+         *
+         * @return The index.
+         */
+        AlertIndex owner() {
+            return AlertIndex.this;
+        }
+
+        @Override
+        public void attached(Airplane observed) {
+            this.airplane = observed;
+            AlertIndex index = AlertIndex.this;
+            for (Mode mode : Mode.values()) {
+                int m = mode.ordinal();
+                if (index.heaps[m] != null && observed.isDefined(mode)) {
+                    this.values[m] = observed.getMetric(mode);
+                    index.insert(m, this);
+                }
+            }
+        }
+
+        @Override
+        public void metricChanged(Mode mode, double value) {
+            int m = mode.ordinal();
+            AlertIndex index = AlertIndex.this;
+            if (index.heaps[m] == null || this.detached) {
+                return;
+            }
+            double old = Double.POSITIVE_INFINITY;
+            int at = this.positions[m];
+            if (at == ABSENT) {
+                this.values[m] = value;
+                index.insert(m, this);
+            } else {
+                old = this.values[m];
+                this.values[m] = value;
+                if (Double.compare(value, old) < 0) {
+                    index.siftUp(m, at);
+                } else {
+                    index.siftDown(m, at);
+                }
+            }
+            index.crossed(m, this.airplane, old, value);
+        }
+
+        @Override
+        public void metricsCleared() {
+            AlertIndex index = AlertIndex.this;
+            if (this.detached) {
+                return;
+            }
+            for (int m = 0; m < MODE_COUNT; m++) {
+                if (this.positions[m] != ABSENT) {
+                    index.delete(m, this);
+                    index.crossed(m, this.airplane, this.values[m],
+                            Double.POSITIVE_INFINITY);
+                }
+            }
+        }
+
+        @Override
+        public MetricObserver newObserver() {
+            return new Watch();
+        }
+    }
+}
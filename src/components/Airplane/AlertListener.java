@@ -0,0 +1,25 @@
+package components.Airplane;
+
+import components.Airplane.AirplaneKernel.Mode;
+
+/**
+ * Callback for metrics of airplanes attached to an {@link AlertIndex}
+ * crossing a subscribed threshold.
+ */
+public interface AlertListener {
+
+    /**
+     * Called when the metric for {@code mode} of {@code airplane} went below
+     * the subscribed threshold, or stopped being below it. An undefined
+     * metric is never below a threshold.
+     *
+     * @param airplane
+     *            The airplane whose metric crossed the threshold.
+     * @param mode
+     *            The metric's mode.
+     * @param below
+     *            True if the metric is now below the threshold, false if it
+     *            no longer is.
+     */
+    void thresholdCrossed(Airplane airplane, Mode mode, boolean below);
+}
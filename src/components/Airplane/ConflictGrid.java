@@ -0,0 +1,603 @@
+package components.Airplane;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+import components.Airplane.AirplaneKernel.Mode;
+
+/**
+ * Spatial index of airplane positions for finding airplanes closer than given
+ * separation minima, horizontally and vertically, without comparing every
+ * pair. Space is cut into cells as wide as the horizontal minimum and as
+ * tall as the vertical minimum, so an airplane can only conflict with
+ * airplanes in its own cell and the 26 around it.
+ *
+ * <p>
+ * Each occupied cell keeps a linked list of its airplanes, threaded through
+ * arrays indexed by slot, and the cells are found through an open-addressing
+ * hash table, so only occupied cells take memory. Moving an airplane within
+ * its cell costs O(1), and to another cell O(1) expected.
+ * {@link #conflicts(ConflictListener)} visits each occupied cell once and
+ * compares only airplanes in neighbouring cells, so its time is linear in the
+ * number of airplanes while their density stays bounded.
+ * </p>
+ *
+ * <p>
+ * A grid must be used from one thread at a time.
+ * </p>
+ *
+ * @convention: cells[s] is NOWHERE or the key of the cell holding (xs[s],
+ *              ys[s], zs[s]); every slot whose cells[s] is k is in the list,
+ *              threaded by next and prev, that starts at heads[b] for the
+ *              bucket b with keys[b] = k, and every non-EMPTY head starts a
+ *              non-empty list. occupied is the number of non-EMPTY heads,
+ *              at most half of heads.length, which is a power of two.
+ */
+public final class ConflictGrid {
+
+    /**
+     * Cell key of a slot not in the grid; keys are never negative.
+     */
+    private static final long NOWHERE = -1;
+
+    /**
+     * log2 of the number of bits in a bitset word.
+     */
+    private static final int WORD_SHIFT = 6;
+
+    /**
+     * Head of an empty bucket, and end of a list.
+     */
+    private static final int EMPTY = -1;
+
+    /**
+     * Number of bits of each cell coordinate in a key.
+     */
+    private static final int COORDINATE_BITS = 21;
+
+    /**
+     * Mask of a cell coordinate; coordinates wrap around, which may put far
+     * apart airplanes in one cell but never misses a conflict.
+     */
+    private static final long COORDINATE_MASK = (1L << COORDINATE_BITS) - 1;
+
+    /**
+     * Multiplier spreading keys over the buckets.
+     */
+    private static final long GOLDEN = 0x9E37_79B9_7F4A_7C15L;
+
+    /**
+     * Number of cells along each side of a block of neighbouring cells.
+     */
+    private static final int SIDE = 3;
+
+    /**
+     * Number of cells in a block of neighbouring cells.
+     */
+    private static final int BLOCK = SIDE * SIDE * SIDE;
+
+    /**
+     * Number of the middle cell of a block.
+     */
+    private static final int CENTER = BLOCK / 2;
+
+    /**
+     * Initial number of buckets.
+     */
+    private static final int INITIAL_BUCKETS = 16;
+
+    /**
+     * Horizontal separation minimum, in nautical miles.
+     */
+    private final double horizontal;
+
+    /**
+     * Vertical separation minimum, in feet.
+     */
+    private final double vertical;
+
+    /**
+     * Number of slots.
+     */
+    private final int capacity;
+
+    /**
+     * East offset of each slot in the grid.
+     */
+    private final double[] xs;
+
+    /**
+     * North offset of each slot in the grid.
+     */
+    private final double[] ys;
+
+    /**
+     * Altitude of each slot in the grid.
+     */
+    private final double[] zs;
+
+    /**
+     * Cell key of each slot, or NOWHERE.
+     */
+    private final long[] cells;
+
+    /**
+     * Next slot in the same cell, or EMPTY.
+     */
+    private final int[] next;
+
+    /**
+     * Previous slot in the same cell, or EMPTY.
+     */
+    private final int[] prev;
+
+    /**
+     * Cell key of each bucket.
+     */
+    private long[] keys = new long[INITIAL_BUCKETS];
+
+    /**
+     * First slot in each bucket's cell, or EMPTY.
+     */
+    private int[] heads = emptyHeads(INITIAL_BUCKETS);
+
+    /**
+     * Number of occupied cells.
+     */
+    private int occupied;
+
+    /**
+     * Constructor for an empty grid of {@code capacity} slots.
+     *
+     * @param capacity
+     *            The number of slots.
+     * @param horizontal
+     *            The horizontal separation minimum, in nautical miles.
+     * @param vertical
+     *            The vertical separation minimum, in feet.
+     * @throws IllegalArgumentException
+     *             if capacity is negative or a minimum is not positive.
+     */
+    public ConflictGrid(int capacity, double horizontal, double vertical) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException(
+                    "Capacity must be non-negative.");
+        }
+        if (!(horizontal > 0 && vertical > 0)) {
+            throw new IllegalArgumentException(
+                    "Separation minima must be positive.");
+        }
+        this.capacity = capacity;
+        this.horizontal = horizontal;
+        this.vertical = vertical;
+        this.xs = new double[capacity];
+        this.ys = new double[capacity];
+        this.zs = new double[capacity];
+        this.cells = new long[capacity];
+        Arrays.fill(this.cells, NOWHERE);
+        this.next = new int[capacity];
+        this.prev = new int[capacity];
+    }
+
+    /**
+     * Returns a bucket array with every bucket empty.
+     *
+     * @param length
+     *            The number of buckets.
+     * @return The heads.
+     */
+    private static int[] emptyHeads(int length) {
+        int[] heads = new int[length];
+        Arrays.fill(heads, EMPTY);
+        return heads;
+    }
+
+    /**
+     * Returns the key of the cell with the given coordinates.
+     *
+     * @param cx
+     *            The east coordinate.
+     * @param cy
+     *            The north coordinate.
+     * @param cz
+     *            The vertical coordinate.
+     * @return The key.
+     */
+    private static long key(long cx, long cy, long cz) {
+        return (cx & COORDINATE_MASK) << (2 * COORDINATE_BITS)
+                | (cy & COORDINATE_MASK) << COORDINATE_BITS
+                | cz & COORDINATE_MASK;
+    }
+
+    /**
+     * Returns the coordinate of a cell along one axis.
+     *
+     * @param position
+     *            The position along the axis.
+     * @param size
+     *            The cell size along the axis.
+     * @return The coordinate.
+     */
+    private static long coordinate(double position, double size) {
+        return (long) Math.floor(position / size);
+    }
+
+    /**
+     * Returns the home bucket of a key.
+     *
+     * @param key
+     *            The key.
+     * @return The bucket.
+     */
+    private int home(long key) {
+        long mixed = key * GOLDEN;
+        return (int) (mixed ^ (mixed >>> Integer.SIZE))
+                & (this.heads.length - 1);
+    }
+
+    /**
+     * Returns the bucket holding {@code key}, or the empty bucket where it
+     * would be inserted.
+     *
+     * @param key
+     *            The key.
+     * @return The bucket.
+     */
+    private int bucketOf(long key) {
+        int mask = this.heads.length - 1;
+        int b = this.home(key);
+        while (this.heads[b] != EMPTY && this.keys[b] != key) {
+            b = (b + 1) & mask;
+        }
+        return b;
+    }
+
+    /**
+     * Returns the first slot of the cell with the given key, or EMPTY.
+     *
+     * @param key
+     *            The key.
+     * @return The slot, or EMPTY.
+     */
+    private int headOf(long key) {
+        return this.heads[this.bucketOf(key)];
+    }
+
+    /**
+     * Doubles the number of buckets.
+     */
+    private void grow() {
+        long[] oldKeys = this.keys;
+        int[] oldHeads = this.heads;
+        this.keys = new long[oldKeys.length * 2];
+        this.heads = emptyHeads(oldHeads.length * 2);
+        for (int b = 0; b < oldHeads.length; b++) {
+            if (oldHeads[b] != EMPTY) {
+                int to = this.bucketOf(oldKeys[b]);
+                this.keys[to] = oldKeys[b];
+                this.heads[to] = oldHeads[b];
+            }
+        }
+    }
+
+    /**
+     * Empties a bucket, moving later buckets of the same probe run back so
+     * that every key stays reachable from its home bucket.
+     *
+     * @param bucket
+     *            The bucket.
+     */
+    private void deleteBucket(int bucket) {
+        int mask = this.heads.length - 1;
+        int hole = bucket;
+        int b = (hole + 1) & mask;
+        while (this.heads[b] != EMPTY) {
+            // Distances back to b, along the probe direction
+            int fromHome = (b - this.home(this.keys[b])) & mask;
+            int fromHole = (b - hole) & mask;
+            if (fromHome >= fromHole) {
+                this.keys[hole] = this.keys[b];
+                this.heads[hole] = this.heads[b];
+                hole = b;
+            }
+            b = (b + 1) & mask;
+        }
+        this.heads[hole] = EMPTY;
+        this.occupied--;
+    }
+
+    /**
+     * Adds a slot to the cell with the given key.
+     *
+     * @param slot
+     *            The slot, not in the grid.
+     * @param key
+     *            The cell's key.
+     */
+    private void link(int slot, long key) {
+        int b = this.bucketOf(key);
+        if (this.heads[b] == EMPTY) {
+            if (2 * (this.occupied + 1) > this.heads.length) {
+                this.grow();
+                b = this.bucketOf(key);
+            }
+            this.keys[b] = key;
+            this.occupied++;
+        }
+        int head = this.heads[b];
+        this.next[slot] = head;
+        this.prev[slot] = EMPTY;
+        if (head != EMPTY) {
+            this.prev[head] = slot;
+        }
+        this.heads[b] = slot;
+        this.cells[slot] = key;
+    }
+
+    /**
+     * Removes a slot from its cell.
+     *
+     * @param slot
+     *            The slot, in the grid.
+     */
+    private void unlink(int slot) {
+        int before = this.prev[slot];
+        int after = this.next[slot];
+        if (before != EMPTY) {
+            this.next[before] = after;
+        } else {
+            int b = this.bucketOf(this.cells[slot]);
+            if (after == EMPTY) {
+                this.deleteBucket(b);
+            } else {
+                this.heads[b] = after;
+            }
+        }
+        if (after != EMPTY) {
+            this.prev[after] = before;
+        }
+        this.cells[slot] = NOWHERE;
+    }
+
+    /**
+     * Reports the number of slots.
+     *
+     * @return The capacity.
+     */
+    public int capacity() {
+        return this.capacity;
+    }
+
+    /**
+     * Reports whether a slot is in the grid.
+     *
+     * @param slot
+     *            The slot.
+     * @return True if the slot was moved and not removed since.
+     */
+    public boolean contains(int slot) {
+        return this.cells[slot] != NOWHERE;
+    }
+
+    /**
+     * Puts the airplane in the given slot at a position, adding it to the
+     * grid if it is not in it.
+     *
+     * @param slot
+     *            The airplane's slot.
+     * @param east
+     *            The east offset, in nautical miles.
+     * @param north
+     *            The north offset, in nautical miles.
+     * @param altitude
+     *            The altitude, in feet.
+     */
+    public void move(int slot, double east, double north, double altitude) {
+        Objects.checkIndex(slot, this.capacity);
+        this.xs[slot] = east;
+        this.ys[slot] = north;
+        this.zs[slot] = altitude;
+        long key = key(coordinate(east, this.horizontal),
+                coordinate(north, this.horizontal),
+                coordinate(altitude, this.vertical));
+        if (key != this.cells[slot]) {
+            if (this.cells[slot] != NOWHERE) {
+                this.unlink(slot);
+            }
+            this.link(slot, key);
+        }
+    }
+
+    /**
+     * Removes the airplane in the given slot from the grid, if it is in it.
+     *
+     * @param slot
+     *            The airplane's slot.
+     */
+    public void remove(int slot) {
+        Objects.checkIndex(slot, this.capacity);
+        if (this.cells[slot] != NOWHERE) {
+            this.unlink(slot);
+        }
+    }
+
+    /**
+     * Moves every airplane to its position in {@code tracker} at its ALTITUDE
+     * in {@code fleet}; airplanes with no ALTITUDE, which are on the ground,
+     * and airplanes whose bit is set in {@code frozen}, which are no longer
+     * simulated, are removed. Airplanes that stay in their cells cost O(1)
+     * each.
+     *
+     * @param tracker
+     *            The positions, of the same capacity.
+     * @param fleet
+     *            The fleet, of the same capacity.
+     * @param frozen
+     *            Bitset of slots to remove, indexed by slot / 64.
+     * @throws IllegalArgumentException
+     *             if a capacity differs.
+     */
+    public void update(PositionTracker tracker, AirplaneFleet fleet,
+            long[] frozen) {
+        if (tracker.capacity() != this.capacity
+                || fleet.capacity() != this.capacity) {
+            throw new IllegalArgumentException("Capacity does not match.");
+        }
+        for (int slot = 0; slot < this.capacity; slot++) {
+            boolean halted = (frozen[slot >>> WORD_SHIFT] & (1L << slot)) != 0;
+            if (!halted && fleet.isDefined(slot, Mode.ALTITUDE)) {
+                this.move(slot, tracker.east(slot), tracker.north(slot),
+                        fleet.getMetric(slot, Mode.ALTITUDE));
+            } else {
+                this.remove(slot);
+            }
+        }
+    }
+
+    /**
+     * Reports whether two airplanes in the grid are closer than both minima.
+     *
+     * @param a
+     *            One slot.
+     * @param b
+     *            The other slot.
+     * @return True if they conflict.
+     */
+    private boolean inConflict(int a, int b) {
+        double dx = this.xs[a] - this.xs[b];
+        double dy = this.ys[a] - this.ys[b];
+        return dx * dx + dy * dy < this.horizontal * this.horizontal
+                && Math.abs(this.zs[a] - this.zs[b]) < this.vertical;
+    }
+
+    /**
+     * Fills {@code around} with the first slot, or EMPTY, of the cells around
+     * the cell with the given key, from the cell numbered {@code from} on.
+     * The 27 cells of the 3 x 3 x 3 block are numbered in order of east,
+     * then north, then vertical offset, so the cell itself is CENTER and the
+     * cells after it are half of its neighbours, none the mirror of another.
+     *
+     * @param key
+     *            The key of the middle cell.
+     * @param from
+     *            The number of the first cell wanted.
+     * @param around
+     *            The array to fill, of length 27 - from.
+     */
+    private void headsAround(long key, int from, int[] around) {
+        long cx = key >>> (2 * COORDINATE_BITS);
+        long cy = (key >>> COORDINATE_BITS) & COORDINATE_MASK;
+        long cz = key & COORDINATE_MASK;
+        for (int n = from; n < BLOCK; n++) {
+            long dx = n / (SIDE * SIDE) - 1;
+            long dy = n / SIDE % SIDE - 1;
+            long dz = n % SIDE - 1;
+            around[n - from] = this.headOf(key(cx + dx, cy + dy, cz + dz));
+        }
+    }
+
+    /**
+     * Returns the airplanes in the grid that conflict with the airplane in
+     * the given slot, in ascending order of slot.
+     *
+     * @param slot
+     *            The airplane's slot, in the grid.
+     * @return The conflicting slots.
+     * @throws IllegalStateException
+     *             if slot is not in the grid.
+     */
+    public int[] neighbours(int slot) {
+        Objects.checkIndex(slot, this.capacity);
+        if (this.cells[slot] == NOWHERE) {
+            throw new IllegalStateException("Slot is not in the grid.");
+        }
+        int[] around = new int[BLOCK];
+        this.headsAround(this.cells[slot], 0, around);
+        int[] found = new int[INITIAL_BUCKETS];
+        int count = 0;
+        for (int head : around) {
+            for (int b = head; b != EMPTY; b = this.next[b]) {
+                if (b != slot && this.inConflict(slot, b)) {
+                    if (count == found.length) {
+                        found = Arrays.copyOf(found, count * 2);
+                    }
+                    found[count] = b;
+                    count++;
+                }
+            }
+        }
+        found = Arrays.copyOf(found, count);
+        Arrays.sort(found);
+        return found;
+    }
+
+    /**
+     * Reports every pair of airplanes in the grid that conflict, once per
+     * pair, in no particular order.
+     *
+     * @param listener
+     *            The listener to call for each pair; it must not change the
+     *            grid.
+     * @return The number of pairs.
+     */
+    public int conflicts(ConflictListener listener) {
+        int[] after = new int[BLOCK - CENTER - 1];
+        int pairs = 0;
+        for (int bucket = 0; bucket < this.heads.length; bucket++) {
+            if (this.heads[bucket] != EMPTY) {
+                this.headsAround(this.keys[bucket], CENTER + 1, after);
+                pairs += this.conflictsFrom(this.heads[bucket], after,
+                        listener);
+            }
+        }
+        return pairs;
+    }
+
+    /**
+     * Reports the conflicts of every airplane of one cell with the airplanes
+     * after it in the cell and with the airplanes in the cells after it.
+     *
+     * @param first
+     *            The first slot of the cell.
+     * @param after
+     *            The first slot, or EMPTY, of each cell after it.
+     * @param listener
+     *            The listener to call for each pair.
+     * @return The number of pairs.
+     */
+    private int conflictsFrom(int first, int[] after,
+            ConflictListener listener) {
+        int pairs = 0;
+        for (int a = first; a != EMPTY; a = this.next[a]) {
+            for (int b = this.next[a]; b != EMPTY; b = this.next[b]) {
+                pairs += this.report(a, b, listener);
+            }
+            for (int head : after) {
+                for (int b = head; b != EMPTY; b = this.next[b]) {
+                    pairs += this.report(a, b, listener);
+                }
+            }
+        }
+        return pairs;
+    }
+
+    /**
+     * Reports a pair to the listener, lower slot first, if it conflicts.
+     *
+     * @param a
+     *            One slot.
+     * @param b
+     *            The other slot.
+     * @param listener
+     *            The listener.
+     * @return 1 if the pair conflicts, otherwise 0.
+     */
+    private int report(int a, int b, ConflictListener listener) {
+        int reported = 0;
+        if (this.inConflict(a, b)) {
+            listener.conflict(Math.min(a, b), Math.max(a, b));
+            reported = 1;
+        }
+        return reported;
+    }
+}
@@ -0,0 +1,17 @@
+package components.Airplane;
+
+/**
+ * Callback for pairs of airplanes found too close by a {@link ConflictGrid}.
+ */
+public interface ConflictListener {
+
+    /**
+     * Called for each pair of airplanes closer than the separation minima.
+     *
+     * @param first
+     *            The slot of one airplane.
+     * @param second
+     *            The slot of the other airplane, greater than first.
+     */
+    void conflict(int first, int second);
+}
@@ -0,0 +1,534 @@
+package components.Airplane;
+
+import java.util.Arrays;
+
+import components.Airplane.AirplaneKernel.Mode;
+
+/**
+ * Fleet-wide statistics of every metric, kept up to date as attached
+ * airplanes change, so queries need not visit the airplanes. For each Mode it
+ * keeps the number of airplanes defining it, the sum, minimum and maximum of
+ * their metrics, and a histogram of fixed-width bands. Airplanes are attached
+ * with {@link #attach(Airplane)} and detached with {@link #detach(Airplane)};
+ * every change to an attached airplane, through any method, updates the
+ * statistics in constant time. A NaN metric, which would poison the running
+ * sum for good, is left out of the statistics as if it were undefined.
+ *
+ * <p>
+ * count, sum, mean and the histogram are answered in constant time. So are
+ * min and max, except after the last airplane holding the extreme value
+ * changes it, when the next query rescans the attached airplanes once. The
+ * sum is compensated (Neumaier), so adding and removing values leaves far
+ * less rounding error than a plain running sum.
+ * </p>
+ *
+ * <p>
+ * Like the kernel implementations, the aggregates and their airplanes must be
+ * used from one thread at a time. For ad-hoc questions the statistics do not
+ * answer, see {@link FleetScan}.
+ * </p>
+ *
+ * @convention: for every mode m, counts[m] is the number of attached
+ *              airplanes defining m as a number, sums[m] + compensations[m]
+ *              is the sum of their metrics, and histograms[m * bands + b] is
+ *              the number of those metrics in band b. If counts[m] > 0 and
+ *              minStale[m] is false, mins[m] is the least of those metrics,
+ *              and likewise for maxs[m].
+ */
+public final class FleetAggregates {
+
+    /**
+     * Number of modes.
+     */
+    private static final int MODE_COUNT = Mode.values().length;
+
+    /**
+     * Number of histogram bands per mode.
+     */
+    private final int bands;
+
+    /**
+     * Width of a histogram band, indexed by Mode.ordinal().
+     */
+    private final double[] bandWidths;
+
+    /**
+     * Number of airplanes defining each mode.
+     */
+    private final long[] counts = new long[MODE_COUNT];
+
+    /**
+     * Running sum of each mode's metrics.
+     */
+    private final double[] sums = new double[MODE_COUNT];
+
+    /**
+     * Rounding error lost from each running sum.
+     */
+    private final double[] compensations = new double[MODE_COUNT];
+
+    /**
+     * Least metric of each mode, unless stale.
+     */
+    private final double[] mins = new double[MODE_COUNT];
+
+    /**
+     * Greatest metric of each mode, unless stale.
+     */
+    private final double[] maxs = new double[MODE_COUNT];
+
+    /**
+     * Whether each minimum must be recomputed.
+     */
+    private final boolean[] minStale = new boolean[MODE_COUNT];
+
+    /**
+     * Whether each maximum must be recomputed.
+     */
+    private final boolean[] maxStale = new boolean[MODE_COUNT];
+
+    /**
+     * Band counts, bands per mode, indexed by Mode.ordinal() * bands + band.
+     */
+    private final long[] histograms;
+
+    /**
+     * Attached airplanes, of which the first watchCount are in use.
+     */
+    private Watch[] watches = new Watch[0];
+
+    /**
+     * Number of attached airplanes.
+     */
+    private int watchCount;
+
+    /**
+     * Constructor.
+     *
+     * @param bands
+     *            The number of histogram bands per mode; metrics beyond the
+     *            last band are counted in it.
+     * @param bandWidthsByOrdinal
+     *            The width of a band for each mode, indexed by
+     *            Mode.ordinal().
+     * @throws IllegalArgumentException
+     *             if bands is not positive, or there is not one positive
+     *             width per mode.
+     */
+    public FleetAggregates(int bands, double[] bandWidthsByOrdinal) {
+        if (bands <= 0) {
+            throw new IllegalArgumentException(
+                    "Band count must be positive.");
+        }
+        if (bandWidthsByOrdinal.length != MODE_COUNT) {
+            throw new IllegalArgumentException(
+                    "Band widths must have one entry per mode.");
+        }
+        for (double width : bandWidthsByOrdinal) {
+            if (!(width > 0)) {
+                throw new IllegalArgumentException(
+                        "Band widths must be positive.");
+            }
+        }
+        this.bands = bands;
+        this.bandWidths = bandWidthsByOrdinal.clone();
+        this.histograms = new long[MODE_COUNT * bands];
+    }
+
+    /**
+     * Returns an airplane whose metrics count toward the aggregates. Its
+     * current metrics are counted right away. The aggregates keep a reference
+     * to it until it is detached.
+     *
+     * @param airplane
+     *            The airplane to aggregate; it must not be changed except
+     *            through the returned wrapper.
+     * @return The aggregated wrapper.
+     */
+    public Airplane attach(Airplane airplane) {
+        return new ObservedAirplane(airplane, new Watch());
+    }
+
+    /**
+     * Stops counting an airplane returned by attach: its metrics are removed
+     * from the statistics, and the aggregates drop their reference to it. The
+     * airplane keeps working. Detaching an airplane that is not attached to
+     * these aggregates has no effect.
+     *
+     * @param attached
+     *            The airplane returned by attach.
+     */
+    public void detach(Airplane attached) {
+        if (!(attached instanceof ObservedAirplane)) {
+            return;
+        }
+        MetricObserver observer = ((ObservedAirplane) attached).observer();
+        if (!(observer instanceof Watch)) {
+            return;
+        }
+        Watch watch = (Watch) observer;
+        int index = watch.index;
+        if (watch.owner() != this || index < 0) {
+            return;
+        }
+        watch.metricsCleared();
+        // Move the last watch into the freed entry
+        this.watchCount--;
+        Watch moved = this.watches[this.watchCount];
+        this.watches[index] = moved;
+        moved.index = index;
+        this.watches[this.watchCount] = null;
+        watch.index = -1;
+    }
+
+    /**
+     * Returns the band a metric falls in.
+     *
+     * @param m
+     *            The mode's ordinal.
+     * @param value
+     *            The metric.
+     * @return The band.
+     */
+    private int bandOf(int m, double value) {
+        return (int) Math.min(this.bands - 1, value / this.bandWidths[m]);
+    }
+
+    /**
+     * Adds delta to a compensated running sum.
+     *
+     * @param m
+     *            The mode's ordinal.
+     * @param delta
+     *            The amount to add.
+     */
+    private void addToSum(int m, double delta) {
+        double sum = this.sums[m];
+        double total = sum + delta;
+        if (Math.abs(sum) >= Math.abs(delta)) {
+            this.compensations[m] += (sum - total) + delta;
+        } else {
+            this.compensations[m] += (delta - total) + sum;
+        }
+        this.sums[m] = total;
+    }
+
+    /**
+     * Counts a metric that became defined or took a new value.
+     *
+     * @param m
+     *            The mode's ordinal.
+     * @param value
+     *            The metric.
+     */
+    private void add(int m, double value) {
+        this.counts[m]++;
+        this.addToSum(m, value);
+        this.histograms[m * this.bands + this.bandOf(m, value)]++;
+        if (this.counts[m] == 1) {
+            this.mins[m] = value;
+            this.maxs[m] = value;
+            this.minStale[m] = false;
+            this.maxStale[m] = false;
+        } else {
+            if (!this.minStale[m] && value < this.mins[m]) {
+                this.mins[m] = value;
+            }
+            if (!this.maxStale[m] && value > this.maxs[m]) {
+                this.maxs[m] = value;
+            }
+        }
+    }
+
+    /**
+     * Uncounts a metric that was cleared or is about to take a new value.
+     *
+     * @param m
+     *            The mode's ordinal.
+     * @param value
+     *            The metric's old value.
+     */
+    private void remove(int m, double value) {
+        this.counts[m]--;
+        this.addToSum(m, -value);
+        this.histograms[m * this.bands + this.bandOf(m, value)]--;
+        if (this.counts[m] == 0) {
+            this.sums[m] = 0.0;
+            this.compensations[m] = 0.0;
+        }
+        // The extreme may have been the only one; find out when asked
+        if (value == this.mins[m]) {
+            this.minStale[m] = true;
+        }
+        if (value == this.maxs[m]) {
+            this.maxStale[m] = true;
+        }
+    }
+
+    /**
+     * Recomputes a stale minimum or maximum by visiting every airplane.
+     *
+     * @param m
+     *            The mode's ordinal.
+     */
+    private void rescan(int m) {
+        int bit = 1 << m;
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for (int w = 0; w < this.watchCount; w++) {
+            Watch watch = this.watches[w];
+            if ((watch.mask & bit) != 0) {
+                min = Math.min(min, watch.values[m]);
+                max = Math.max(max, watch.values[m]);
+            }
+        }
+        this.mins[m] = min;
+        this.maxs[m] = max;
+        this.minStale[m] = false;
+        this.maxStale[m] = false;
+    }
+
+    /**
+     * Checks that some airplane defines {@code mode}.
+     *
+     * @param mode
+     *            The mode.
+     * @throws IllegalStateException
+     *             if no attached airplane defines mode.
+     */
+    private void checkDefined(Mode mode) {
+        if (this.counts[mode.ordinal()] == 0) {
+            throw new IllegalStateException(
+                    "No airplane defines " + mode.name() + ".");
+        }
+    }
+
+    /**
+     * Reports the number of attached airplanes.
+     *
+     * @return The number of airplanes.
+     */
+    public int airplaneCount() {
+        return this.watchCount;
+    }
+
+    /**
+     * Reports the number of attached airplanes defining {@code mode}.
+     *
+     * @param mode
+     *            The mode.
+     * @return The count.
+     */
+    public long count(Mode mode) {
+        return this.counts[mode.ordinal()];
+    }
+
+    /**
+     * Reports the sum of the metric over the airplanes defining it.
+     *
+     * @param mode
+     *            The mode.
+     * @return The sum, or 0.0 if no airplane defines mode.
+     */
+    public double sum(Mode mode) {
+        int m = mode.ordinal();
+        return this.sums[m] + this.compensations[m];
+    }
+
+    /**
+     * Reports the mean of the metric over the airplanes defining it.
+     *
+     * @param mode
+     *            The mode.
+     * @return The mean.
+     * @throws IllegalStateException
+     *             if no attached airplane defines mode.
+     */
+    public double mean(Mode mode) {
+        this.checkDefined(mode);
+        return this.sum(mode) / this.counts[mode.ordinal()];
+    }
+
+    /**
+     * Reports the least metric of the airplanes defining it.
+     *
+     * @param mode
+     *            The mode.
+     * @return The minimum.
+     * @throws IllegalStateException
+     *             if no attached airplane defines mode.
+     */
+    public double min(Mode mode) {
+        this.checkDefined(mode);
+        int m = mode.ordinal();
+        if (this.minStale[m]) {
+            this.rescan(m);
+        }
+        return this.mins[m];
+    }
+
+    /**
+     * Reports the greatest metric of the airplanes defining it.
+     *
+     * @param mode
+     *            The mode.
+     * @return The maximum.
+     * @throws IllegalStateException
+     *             if no attached airplane defines mode.
+     */
+    public double max(Mode mode) {
+        this.checkDefined(mode);
+        int m = mode.ordinal();
+        if (this.maxStale[m]) {
+            this.rescan(m);
+        }
+        return this.maxs[m];
+    }
+
+    /**
+     * Reports the number of histogram bands per mode.
+     *
+     * @return The number of bands.
+     */
+    public int bands() {
+        return this.bands;
+    }
+
+    /**
+     * Reports the width of a histogram band of {@code mode}. Band b holds
+     * metrics in [b * width, (b + 1) * width), and the last band also holds
+     * every larger metric.
+     *
+     * @param mode
+     *            The mode.
+     * @return The band width.
+     */
+    public double bandWidth(Mode mode) {
+        return this.bandWidths[mode.ordinal()];
+    }
+
+    /**
+     * Reports the number of airplanes whose metric falls in a band.
+     *
+     * @param mode
+     *            The mode.
+     * @param band
+     *            The band, from 0 to bands() - 1.
+     * @return The count.
+     */
+    public long bandCount(Mode mode, int band) {
+        if (band < 0 || band >= this.bands) {
+            throw new IndexOutOfBoundsException("Band " + band
+                    + " out of bounds for " + this.bands + " bands");
+        }
+        return this.histograms[mode.ordinal() * this.bands + band];
+    }
+
+    /**
+     * Returns a copy of the histogram of {@code mode}.
+     *
+     * @param mode
+     *            The mode.
+     * @return The count of each band.
+     */
+    public long[] histogram(Mode mode) {
+        int from = mode.ordinal() * this.bands;
+        return Arrays.copyOfRange(this.histograms, from, from + this.bands);
+    }
+
+    /**
+     * Per-airplane state: the metrics last counted.
+     *
+     * @convention: watches[index] = this while attached, and index = -1
+     *              before and after.
+     */
+    private final class Watch implements MetricObserver {
+
+        /**
+         * Metrics last counted, indexed by Mode.ordinal().
+         */
+        private final double[] values = new double[MODE_COUNT];
+
+        /**
+         * Bitmask of modes counted: those defined and not NaN.
+         */
+        private int mask;
+
+        /**
+         * Position in FleetAggregates.watches, or -1 if not attached.
+         */
+        private int index = -1;
+
+        /**
+         * Returns the aggregates this watch counts toward.
+         *
+         * @return The aggregates.
+         */
+        FleetAggregates owner() {
+            return FleetAggregates.this;
+        }
+
+        @Override
+        public void attached(Airplane observed) {
+            FleetAggregates aggregates = FleetAggregates.this;
+            if (aggregates.watchCount == aggregates.watches.length) {
+                aggregates.watches = Arrays.copyOf(aggregates.watches,
+                        Math.max(1, aggregates.watchCount * 2));
+            }
+            aggregates.watches[aggregates.watchCount] = this;
+            this.index = aggregates.watchCount;
+            aggregates.watchCount++;
+            for (Mode mode : Mode.values()) {
+                if (observed.isDefined(mode)) {
+                    this.metricChanged(mode, observed.getMetric(mode));
+                }
+            }
+        }
+
+        @Override
+        public void metricChanged(Mode mode, double value) {
+            if (this.index < 0) {
+                return;
+            }
+            int m = mode.ordinal();
+            int bit = 1 << m;
+            FleetAggregates aggregates = FleetAggregates.this;
+            if (Double.isNaN(value)) {
+                // Leave it out, as if undefined
+                if ((this.mask & bit) != 0) {
+                    aggregates.remove(m, this.values[m]);
+                    this.mask &= ~bit;
+                }
+                return;
+            }
+            if ((this.mask & bit) == 0) {
+                aggregates.add(m, value);
+            } else if (Double.compare(this.values[m], value) != 0) {
+                // Add first, so an extreme moving further out never goes stale
+                aggregates.add(m, value);
+                aggregates.remove(m, this.values[m]);
+            }
+            this.values[m] = value;
+            this.mask |= bit;
+        }
+
+        @Override
+        public void metricsCleared() {
+            if (this.index < 0) {
+                return;
+            }
+            FleetAggregates aggregates = FleetAggregates.this;
+            for (int m = 0; m < MODE_COUNT; m++) {
+                if ((this.mask & (1 << m)) != 0) {
+                    aggregates.remove(m, this.values[m]);
+                }
+            }
+            this.mask = 0;
+        }
+
+        @Override
+        public MetricObserver newObserver() {
+            return new Watch();
+        }
+    }
+}
@@ -0,0 +1,530 @@
+package components.Airplane;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import components.Airplane.AirplaneKernel.Mode;
+
+/**
+ * Simulation state restored from a checkpoint file written by
+ * {@link FleetCheckpointWriter}: a fleet with every airplane's defined modes
+ * and metrics, the phase and tick the simulation had reached, a bitset of
+ * per-slot flags, such as the airplanes a simulator has halted, and the
+ * airplanes' positions.
+ *
+ * <p>
+ * The file starts with a {@value #FILE_HEADER_SIZE}-byte header (magic
+ * number, format version, number of modes and fleet capacity), followed by
+ * frames, each the int length of its body and then the body: a kind byte,
+ * the phase (int) and tick (long), then for each Mode the changed slots, then
+ * the changed words of the flags, then the slots whose east and then north
+ * offsets changed. Changes are listed as an int count followed by entries of
+ * the gap since the previous entry, as an unsigned LEB128 varint, a byte
+ * {@code n}, and the XOR of the old and new 8 bytes shifted right by
+ * {@code n} bits, as a varint. The 8 bytes are the metric's bits,
+ * {@link #UNDEFINED} for an undefined metric, the flag word or the offset's
+ * bits; a metric that was undefined is XORed with 0 instead. A
+ * {@value #KEYFRAME} frame lists changes from an empty fleet with no flags
+ * and every airplane at the origin, a {@value #DELTA} frame changes from the
+ * previous frame. All fixed-size values are little-endian.
+ * </p>
+ *
+ * <p>
+ * {@link #restore(Path)} applies the frames in order, each mapped into memory
+ * in turn, so its time is proportional to the size of the file, which the
+ * writer keeps to one keyframe and the deltas after it; the file may be
+ * larger than 2 GB. A last frame cut short, as by a crash while it was
+ * written, is ignored.
+ * </p>
+ */
+public final class FleetCheckpoint {
+
+    /**
+     * Magic number identifying a checkpoint file ("ACKP").
+     */
+    static final int MAGIC = 0x41434B50;
+
+    /**
+     * Version of the frame layout.
+     */
+    static final int VERSION = 2;
+
+    /**
+     * Size in bytes of the file header.
+     */
+    static final int FILE_HEADER_SIZE = 64;
+
+    /**
+     * Offset of the magic number in the file header.
+     */
+    static final int MAGIC_OFFSET = 0;
+
+    /**
+     * Offset of the format version in the file header.
+     */
+    static final int VERSION_OFFSET = 4;
+
+    /**
+     * Offset of the number of modes in the file header.
+     */
+    static final int MODES_OFFSET = 8;
+
+    /**
+     * Offset of the fleet capacity in the file header.
+     */
+    static final int CAPACITY_OFFSET = 12;
+
+    /**
+     * Kind of a frame listing changes from an empty fleet.
+     */
+    static final byte KEYFRAME = 0;
+
+    /**
+     * Kind of a frame listing changes from the previous frame.
+     */
+    static final byte DELTA = 1;
+
+    /**
+     * Bits recorded for an undefined metric.
+     */
+    static final long UNDEFINED = FleetSnapshot.UNDEFINED;
+
+    /**
+     * Bits of the offsets of an airplane at the origin.
+     */
+    static final long ORIGIN = Double.doubleToLongBits(0.0);
+
+    /**
+     * Number of modes.
+     */
+    private static final int MODE_COUNT = Mode.values().length;
+
+    /**
+     * Modes indexed by ordinal.
+     */
+    private static final Mode[] MODES = Mode.values();
+
+    /**
+     * log2 of the number of bits in a bitset word.
+     */
+    private static final int WORD_SHIFT = 6;
+
+    /**
+     * Number of bits in a bitset word.
+     */
+    private static final int WORD_SIZE = 1 << WORD_SHIFT;
+
+    /**
+     * Number of value bits in a varint byte.
+     */
+    private static final int VARINT_BITS = 7;
+
+    /**
+     * Mask of the value bits of a varint byte.
+     */
+    private static final int VARINT_MASK = (1 << VARINT_BITS) - 1;
+
+    /**
+     * Mask of the shift byte of a change.
+     */
+    private static final int BYTE_MASK = 0xFF;
+
+    /**
+     * The restored fleet.
+     */
+    private final AirplaneFleet fleet;
+
+    /**
+     * The restored phase.
+     */
+    private final int phase;
+
+    /**
+     * The restored tick.
+     */
+    private final long tick;
+
+    /**
+     * The restored flags, indexed by slot / 64.
+     */
+    private final long[] flags;
+
+    /**
+     * The restored positions.
+     */
+    private final PositionTracker positions;
+
+    /**
+     * Constructor.
+     *
+     * @param fleet
+     *            The restored fleet.
+     * @param phase
+     *            The restored phase.
+     * @param tick
+     *            The restored tick.
+     * @param flags
+     *            The restored flags.
+     * @param positions
+     *            The restored positions.
+     */
+    private FleetCheckpoint(AirplaneFleet fleet, int phase, long tick,
+            long[] flags, PositionTracker positions) {
+        this.fleet = fleet;
+        this.phase = phase;
+        this.tick = tick;
+        this.flags = flags;
+        this.positions = positions;
+    }
+
+    /**
+     * Returns the number of flag words for a fleet.
+     *
+     * @param capacity
+     *            The fleet's capacity.
+     * @return The number of 64-bit words.
+     */
+    static int flagWords(int capacity) {
+        return (capacity + WORD_SIZE - 1) >>> WORD_SHIFT;
+    }
+
+    /**
+     * Returns a new file header.
+     *
+     * @param capacity
+     *            The fleet's capacity.
+     * @return The header, ready to be written.
+     */
+    static ByteBuffer header(int capacity) {
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC_OFFSET, MAGIC);
+        header.putInt(VERSION_OFFSET, VERSION);
+        header.putInt(MODES_OFFSET, MODE_COUNT);
+        header.putInt(CAPACITY_OFFSET, capacity);
+        return header;
+    }
+
+    /**
+     * Restores the state of the last complete checkpoint in {@code file}.
+     *
+     * @param file
+     *            The checkpoint file.
+     * @return The restored state.
+     * @throws IOException
+     *             if the file cannot be read, is not a compatible checkpoint
+     *             file, holds no complete checkpoint or is corrupt.
+     */
+    public static FleetCheckpoint restore(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < FILE_HEADER_SIZE) {
+                throw new IOException(
+                        file + " is not a compatible checkpoint.");
+            }
+            ByteBuffer header = map(channel, 0, FILE_HEADER_SIZE);
+            if (header.getInt(MAGIC_OFFSET) != MAGIC
+                    || header.getInt(VERSION_OFFSET) != VERSION
+                    || header.getInt(MODES_OFFSET) != MODE_COUNT
+                    || header.getInt(CAPACITY_OFFSET) < 0) {
+                throw new IOException(
+                        file + " is not a compatible checkpoint.");
+            }
+            int capacity = header.getInt(CAPACITY_OFFSET);
+            AirplaneFleet fleet = new AirplaneFleet(capacity);
+            long[] flags = new long[flagWords(capacity)];
+            PositionTracker positions = new PositionTracker(capacity);
+            double[] east = positions.eastColumn();
+            double[] north = positions.northColumn();
+            int phase = 0;
+            long tick = 0;
+            boolean restored = false;
+            long position = FILE_HEADER_SIZE;
+            int length = frameLength(channel, position, size);
+            while (length >= 0) {
+                ByteBuffer in = map(channel, position + Integer.BYTES, length);
+                try {
+                    byte kind = in.get();
+                    if (kind == KEYFRAME) {
+                        fleet.clear();
+                        Arrays.fill(flags, 0L);
+                        Arrays.fill(east, 0.0);
+                        Arrays.fill(north, 0.0);
+                    } else if (kind != DELTA || !restored) {
+                        throw new IOException(file + " is corrupt.");
+                    }
+                    phase = in.getInt();
+                    tick = in.getLong();
+                    for (Mode mode : MODES) {
+                        applyMetrics(in, fleet, mode);
+                    }
+                    applyFlags(in, flags);
+                    applyPositions(in, east);
+                    applyPositions(in, north);
+                } catch (RuntimeException e) {
+                    throw new IOException(file + " is corrupt.", e);
+                }
+                if (in.hasRemaining()) {
+                    throw new IOException(file + " is corrupt.");
+                }
+                restored = true;
+                position += Integer.BYTES + length;
+                length = frameLength(channel, position, size);
+            }
+            if (!restored) {
+                throw new IOException(
+                        file + " holds no complete checkpoint.");
+            }
+            return new FleetCheckpoint(fleet, phase, tick, flags,
+                    positions);
+        }
+    }
+
+    /**
+     * Maps part of a file into memory.
+     *
+     * @param channel
+     *            The file's channel.
+     * @param position
+     *            The offset of the first byte.
+     * @param length
+     *            The number of bytes.
+     * @return The little-endian buffer.
+     * @throws IOException
+     *             if the file cannot be mapped.
+     */
+    private static ByteBuffer map(FileChannel channel, long position,
+            int length) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, length)
+                .order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Returns the length of the body of the frame at {@code position}, if
+     * the whole frame is in the file.
+     *
+     * @param channel
+     *            The file's channel.
+     * @param position
+     *            The offset of the frame.
+     * @param size
+     *            The size of the file.
+     * @return The length, or -1 if no complete frame starts there.
+     * @throws IOException
+     *             if the file cannot be read.
+     */
+    private static int frameLength(FileChannel channel, long position,
+            long size) throws IOException {
+        int length = -1;
+        if (size - position >= Integer.BYTES) {
+            int recorded = map(channel, position, Integer.BYTES).getInt(0);
+            if (recorded >= 0
+                    && recorded <= size - position - Integer.BYTES) {
+                length = recorded;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Returns the bits a metric's change is XORed with: its old bits, or 0
+     * if it was undefined, so that defining a metric costs no more than
+     * writing its value.
+     *
+     * @param old
+     *            The old bits, or UNDEFINED.
+     * @return The bits to XOR with.
+     */
+    static long base(long old) {
+        long base = old;
+        if (old == UNDEFINED) {
+            base = 0;
+        }
+        return base;
+    }
+
+    /**
+     * Reads one varint.
+     *
+     * @param in
+     *            The buffer.
+     * @return The value.
+     */
+    private static long readVarint(ByteBuffer in) {
+        long value = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = in.get();
+            value |= (long) (b & VARINT_MASK) << shift;
+            shift += VARINT_BITS;
+        } while (b < 0);
+        return value;
+    }
+
+    /**
+     * Reads the gap before a change.
+     *
+     * @param in
+     *            The buffer.
+     * @return The number of slots or words skipped, plus one.
+     */
+    private static int readStep(ByteBuffer in) {
+        return Math.toIntExact(readVarint(in) + 1);
+    }
+
+    /**
+     * Reads one change and applies it to the old bits.
+     *
+     * @param in
+     *            The buffer, after the change's gap.
+     * @param old
+     *            The bits the change was XORed with.
+     * @return The new bits.
+     */
+    private static long readChange(ByteBuffer in, long old) {
+        int shift = in.get() & BYTE_MASK;
+        if (shift >= Long.SIZE) {
+            throw new IllegalArgumentException("Invalid change.");
+        }
+        return old ^ (readVarint(in) << shift);
+    }
+
+    /**
+     * Applies the changed metrics of one mode in a frame.
+     *
+     * @param in
+     *            The buffer, at the mode's count.
+     * @param fleet
+     *            The fleet.
+     * @param mode
+     *            The mode.
+     */
+    private static void applyMetrics(ByteBuffer in, AirplaneFleet fleet,
+            Mode mode) {
+        double[] column = fleet.column(mode);
+        long[] defined = fleet.definedBits(mode);
+        int count = in.getInt();
+        int slot = -1;
+        for (int i = 0; i < count; i++) {
+            slot += readStep(in);
+            long bit = 1L << slot;
+            long old = UNDEFINED;
+            if ((defined[slot >>> WORD_SHIFT] & bit) != 0) {
+                old = Double.doubleToLongBits(column[slot]);
+            }
+            long bits = readChange(in, base(old));
+            if (bits == UNDEFINED) {
+                defined[slot >>> WORD_SHIFT] &= ~bit;
+                column[slot] = 0.0;
+            } else {
+                double value = Double.longBitsToDouble(bits);
+                if (!MetricRules.isValid(mode, value)) {
+                    throw new IllegalArgumentException(
+                            "Invalid " + mode.name() + ".");
+                }
+                defined[slot >>> WORD_SHIFT] |= bit;
+                column[slot] = value;
+            }
+        }
+    }
+
+    /**
+     * Applies the changed flag words in a frame.
+     *
+     * @param in
+     *            The buffer, at the flags' count.
+     * @param flags
+     *            The flags.
+     */
+    private static void applyFlags(ByteBuffer in, long[] flags) {
+        int count = in.getInt();
+        int word = -1;
+        for (int i = 0; i < count; i++) {
+            word += readStep(in);
+            flags[word] = readChange(in, flags[word]);
+        }
+    }
+
+    /**
+     * Applies the changed offsets along one axis in a frame.
+     *
+     * @param in
+     *            The buffer, at the axis's count.
+     * @param offsets
+     *            The offsets.
+     */
+    private static void applyPositions(ByteBuffer in, double[] offsets) {
+        int count = in.getInt();
+        int slot = -1;
+        for (int i = 0; i < count; i++) {
+            slot += readStep(in);
+            long bits = readChange(in,
+                    Double.doubleToLongBits(offsets[slot]));
+            offsets[slot] = Double.longBitsToDouble(bits);
+        }
+    }
+
+    /**
+     * Returns the restored fleet. It is the caller's to use from now on.
+     *
+     * @return The fleet.
+     */
+    public AirplaneFleet fleet() {
+        return this.fleet;
+    }
+
+    /**
+     * Returns the phase the simulation had reached.
+     *
+     * @return The phase.
+     */
+    public int phase() {
+        return this.phase;
+    }
+
+    /**
+     * Returns the tick the simulation had reached within its phase.
+     *
+     * @return The tick.
+     */
+    public long tick() {
+        return this.tick;
+    }
+
+    /**
+     * Reports whether the flag of a slot was set.
+     *
+     * @param slot
+     *            The airplane's slot.
+     * @return True if the flag was set.
+     */
+    public boolean isFlagged(int slot) {
+        return (this.flags[slot >>> WORD_SHIFT] & (1L << slot)) != 0;
+    }
+
+    /**
+     * Returns the restored positions, all at the origin if none were
+     * checkpointed. They are the caller's to use from now on.
+     *
+     * @return The positions.
+     */
+    public PositionTracker positions() {
+        return this.positions;
+    }
+
+    /**
+     * Returns a copy of the flags.
+     *
+     * @return The flags, indexed by slot / 64.
+     */
+    public long[] flags() {
+        return this.flags.clone();
+    }
+}
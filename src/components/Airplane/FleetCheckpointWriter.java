@@ -0,0 +1,578 @@
+package components.Airplane;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import components.Airplane.AirplaneKernel.Mode;
+
+/**
+ * Writes checkpoints of a simulation to a file from a background thread, in
+ * the format described by {@link FleetCheckpoint}, which restores them. A
+ * checkpoint is taken from a {@link FleetSnapshot}, which costs the
+ * simulation nothing to take, so the simulation keeps running while the
+ * checkpoint is encoded and written. The positions of a
+ * {@link PositionTracker}, if any, are copied when the checkpoint is
+ * requested.
+ *
+ * <p>
+ * Each checkpoint is written as the slots and flag words that changed since
+ * the previous one, each as the XOR of its old and new bits, so a checkpoint
+ * of a fleet in which few airplanes changed, and those by little, is small.
+ * Every {@code keyframeInterval}-th checkpoint, starting with the first,
+ * lists the whole state instead. A keyframe starts a new file, written
+ * beside the old one and then moved over it, so the file never holds more
+ * than one keyframe and its deltas, and a crash while a keyframe is written
+ * leaves the old file in place. Each frame is forced to the storage device
+ * before the next one is started.
+ * </p>
+ *
+ * <p>
+ * If writing a frame fails, the file is cut back to the last complete frame
+ * and the writer fails every later checkpoint.
+ * </p>
+ *
+ * <p>
+ * {@link #write(FleetSnapshot, int, long, long[], PositionTracker)} may be
+ * called from any thread; checkpoints are written in the order of the calls.
+ * </p>
+ */
+public final class FleetCheckpointWriter implements Closeable {
+
+    /**
+     * Number of modes.
+     */
+    private static final int MODE_COUNT = Mode.values().length;
+
+    /**
+     * Largest size in bytes of one change: a five-byte varint gap, the shift
+     * byte and a ten-byte varint of the shifted XOR.
+     */
+    private static final int MAX_ENTRY_SIZE = 5 + 1 + 10;
+
+    /**
+     * Size in bytes of a frame before its changes: length, kind, phase and
+     * tick.
+     */
+    private static final int FRAME_HEADER_SIZE = Integer.BYTES + 1
+            + Integer.BYTES + Long.BYTES;
+
+    /**
+     * Initial size of the frame buffer.
+     */
+    private static final int INITIAL_BUFFER = 1 << 16;
+
+    /**
+     * Number of value bits in a varint byte.
+     */
+    private static final int VARINT_BITS = 7;
+
+    /**
+     * Continuation bit of a varint byte.
+     */
+    private static final int VARINT_MORE = 1 << VARINT_BITS;
+
+    /**
+     * Suffix of the file a keyframe is written to before it replaces the
+     * checkpoint file.
+     */
+    private static final String NEXT_SUFFIX = ".next";
+
+    /**
+     * The checkpoint file.
+     */
+    private final Path file;
+
+    /**
+     * The file a keyframe is written to before it is moved to file.
+     */
+    private final Path next;
+
+    /**
+     * Channel of the checkpoint file; used only by the writer thread once
+     * constructed.
+     */
+    private FileChannel channel;
+
+    /**
+     * Failure of an earlier checkpoint, or null.
+     */
+    private volatile IOException failure;
+
+    /**
+     * Thread that encodes and writes the checkpoints.
+     */
+    private final ExecutorService writer;
+
+    /**
+     * Number of airplanes in the fleet.
+     */
+    private final int capacity;
+
+    /**
+     * Number of checkpoints per keyframe.
+     */
+    private final int keyframeInterval;
+
+    /**
+     * Metric bits of the previous checkpoint, or UNDEFINED, indexed by
+     * Mode.ordinal() then slot; used only by the writer thread.
+     */
+    private final long[][] previous;
+
+    /**
+     * Flags of the previous checkpoint; used only by the writer thread.
+     */
+    private final long[] previousFlags;
+
+    /**
+     * Bits of the east and north offsets of the previous checkpoint, in that
+     * order, indexed by slot; used only by the writer thread.
+     */
+    private final long[][] previousPositions;
+
+    /**
+     * Frame being encoded; used only by the writer thread.
+     */
+    private ByteBuffer frame = ByteBuffer.allocate(INITIAL_BUFFER)
+            .order(ByteOrder.LITTLE_ENDIAN);
+
+    /**
+     * Number of checkpoints written; used only by the writer thread.
+     */
+    private long written;
+
+    /**
+     * Creates a new checkpoint file at {@code file}, replacing any existing
+     * file, for a fleet of {@code capacity} airplanes.
+     *
+     * @param file
+     *            The checkpoint file.
+     * @param capacity
+     *            The number of airplanes in the fleet.
+     * @param keyframeInterval
+     *            The number of checkpoints per full checkpoint.
+     * @throws IOException
+     *             if the file cannot be created.
+     * @throws IllegalArgumentException
+     *             if capacity is negative or keyframeInterval is not
+     *             positive.
+     */
+    public FleetCheckpointWriter(Path file, int capacity,
+            int keyframeInterval) throws IOException {
+        if (capacity < 0 || keyframeInterval <= 0) {
+            throw new IllegalArgumentException(
+                    "Capacity must be non-negative and interval positive.");
+        }
+        this.capacity = capacity;
+        this.keyframeInterval = keyframeInterval;
+        this.previous = new long[MODE_COUNT][capacity];
+        this.previousFlags = new long[FleetCheckpoint.flagWords(capacity)];
+        this.previousPositions = new long[2][capacity];
+        this.file = file;
+        this.next = file.resolveSibling(file.getFileName() + NEXT_SUFFIX);
+        this.channel = this.create(file);
+        this.writer = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "fleet-checkpoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Writes a checkpoint with no positions in the background; as
+     * {@link #write(FleetSnapshot, int, long, long[], PositionTracker)} with
+     * a null tracker.
+     *
+     * @param snapshot
+     *            The fleet as of the checkpoint; of the same capacity.
+     * @param phase
+     *            The phase the simulation has reached.
+     * @param tick
+     *            The tick the simulation has reached within the phase.
+     * @param flags
+     *            Per-slot flags, indexed by slot / 64; copied before this
+     *            method returns.
+     * @return A future completed once the checkpoint is on the storage
+     *         device, or exceptionally if writing it failed.
+     */
+    public CompletableFuture<Void> write(FleetSnapshot snapshot, int phase,
+            long tick, long[] flags) {
+        return this.write(snapshot, phase, tick, flags, null);
+    }
+
+    /**
+     * Writes a checkpoint in the background.
+     *
+     * @param snapshot
+     *            The fleet as of the checkpoint; of the same capacity.
+     * @param phase
+     *            The phase the simulation has reached.
+     * @param tick
+     *            The tick the simulation has reached within the phase.
+     * @param flags
+     *            Per-slot flags, indexed by slot / 64; copied before this
+     *            method returns.
+     * @param positions
+     *            The airplanes' positions, copied before this method
+     *            returns, or null to record every airplane at the origin.
+     * @return A future completed once the checkpoint is on the storage
+     *         device, or exceptionally if writing it failed.
+     * @throws IllegalArgumentException
+     *             if the capacity of the snapshot or the tracker, or the
+     *             number of flag words, does not match.
+     * @throws IllegalStateException
+     *             if an earlier checkpoint failed.
+     */
+    public CompletableFuture<Void> write(FleetSnapshot snapshot, int phase,
+            long tick, long[] flags, PositionTracker positions) {
+        if (snapshot.capacity() != this.capacity
+                || flags.length != this.previousFlags.length
+                || (positions != null
+                        && positions.capacity() != this.capacity)) {
+            throw new IllegalArgumentException("Capacity does not match.");
+        }
+        if (this.failure != null) {
+            throw new IllegalStateException("An earlier checkpoint failed.",
+                    this.failure);
+        }
+        long[] flagsCopy = flags.clone();
+        double[][] positionsCopy = null;
+        if (positions != null) {
+            positionsCopy = new double[][] {
+                    positions.eastColumn().clone(),
+                    positions.northColumn().clone() };
+        }
+        double[][] offsets = positionsCopy;
+        return CompletableFuture.runAsync(() -> {
+            try {
+                if (this.failure != null) {
+                    // Queued before the failure was seen
+                    throw new IOException("An earlier checkpoint failed.",
+                            this.failure);
+                }
+                this.writeFrame(snapshot, phase, tick, flagsCopy, offsets);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, this.writer);
+    }
+
+    /**
+     * Creates {@code path}, replacing any existing file, and writes the file
+     * header to it.
+     *
+     * @param path
+     *            The file to create.
+     * @return Its channel, positioned after the header.
+     * @throws IOException
+     *             if the file cannot be created or written.
+     */
+    private FileChannel create(Path path) throws IOException {
+        FileChannel created = FileChannel.open(path,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        try {
+            ByteBuffer header = FleetCheckpoint.header(this.capacity);
+            while (header.hasRemaining()) {
+                created.write(header);
+            }
+        } catch (IOException e) {
+            created.close();
+            throw e;
+        }
+        return created;
+    }
+
+    /**
+     * Encodes a checkpoint and writes it; runs on the writer thread.
+     *
+     * @param snapshot
+     *            The fleet as of the checkpoint.
+     * @param phase
+     *            The phase.
+     * @param tick
+     *            The tick.
+     * @param flags
+     *            The flags.
+     * @param positions
+     *            The east and north offsets, or null.
+     * @throws IOException
+     *             if the write fails.
+     */
+    private void writeFrame(FleetSnapshot snapshot, int phase, long tick,
+            long[] flags, double[][] positions) throws IOException {
+        boolean keyframe = this.written % this.keyframeInterval == 0;
+        this.encode(snapshot, phase, tick, flags, positions, keyframe);
+        try {
+            if (keyframe) {
+                this.writeKeyframe();
+            } else {
+                this.appendDelta();
+            }
+        } catch (IOException e) {
+            // previous describes a frame not in the file: accept no more
+            this.failure = e;
+            throw e;
+        }
+        this.written++;
+    }
+
+    /**
+     * Writes the encoded frame to a new file and moves it over the
+     * checkpoint file, which from then on receives the deltas.
+     *
+     * @throws IOException
+     *             if the write fails; the checkpoint file is unchanged.
+     */
+    private void writeKeyframe() throws IOException {
+        FileChannel started = this.create(this.next);
+        try {
+            while (this.frame.hasRemaining()) {
+                started.write(this.frame);
+            }
+            started.force(false);
+            Files.move(this.next, this.file,
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            started.close();
+            Files.deleteIfExists(this.next);
+            throw e;
+        }
+        this.channel.close();
+        this.channel = started;
+    }
+
+    /**
+     * Appends the encoded frame to the checkpoint file.
+     *
+     * @throws IOException
+     *             if the write fails; the file is cut back to where the
+     *             frame started, if it can be.
+     */
+    private void appendDelta() throws IOException {
+        long start = this.channel.position();
+        try {
+            while (this.frame.hasRemaining()) {
+                this.channel.write(this.frame);
+            }
+            this.channel.force(false);
+        } catch (IOException e) {
+            try {
+                this.channel.truncate(start);
+            } catch (IOException truncating) {
+                e.addSuppressed(truncating);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Encodes a checkpoint into the frame buffer, ready to be written, and
+     * records it as the previous checkpoint.
+     *
+     * @param snapshot
+     *            The fleet as of the checkpoint.
+     * @param phase
+     *            The phase.
+     * @param tick
+     *            The tick.
+     * @param flags
+     *            The flags.
+     * @param positions
+     *            The east and north offsets, or null.
+     * @param keyframe
+     *            Whether to list the whole state.
+     */
+    private void encode(FleetSnapshot snapshot, int phase, long tick,
+            long[] flags, double[][] positions, boolean keyframe) {
+        if (keyframe) {
+            for (long[] bits : this.previous) {
+                Arrays.fill(bits, FleetCheckpoint.UNDEFINED);
+            }
+            Arrays.fill(this.previousFlags, 0L);
+            for (long[] bits : this.previousPositions) {
+                Arrays.fill(bits, FleetCheckpoint.ORIGIN);
+            }
+        }
+        this.frame.clear();
+        this.frame.putInt(0);
+        byte kind = FleetCheckpoint.DELTA;
+        if (keyframe) {
+            kind = FleetCheckpoint.KEYFRAME;
+        }
+        this.frame.put(kind);
+        this.frame.putInt(phase);
+        this.frame.putLong(tick);
+        for (int m = 0; m < MODE_COUNT; m++) {
+            long[] before = this.previous[m];
+            int countAt = this.reserveCount();
+            int count = 0;
+            int last = -1;
+            for (int slot = 0; slot < this.capacity; slot++) {
+                long bits = snapshot.bitsOf(slot, m);
+                if (bits != before[slot]) {
+                    this.putEntry(slot - last - 1,
+                            bits ^ FleetCheckpoint.base(before[slot]));
+                    before[slot] = bits;
+                    last = slot;
+                    count++;
+                }
+            }
+            this.frame.putInt(countAt, count);
+        }
+        int countAt = this.reserveCount();
+        int count = 0;
+        int last = -1;
+        for (int w = 0; w < flags.length; w++) {
+            if (flags[w] != this.previousFlags[w]) {
+                this.putEntry(w - last - 1, flags[w] ^ this.previousFlags[w]);
+                this.previousFlags[w] = flags[w];
+                last = w;
+                count++;
+            }
+        }
+        this.frame.putInt(countAt, count);
+        for (int axis = 0; axis < this.previousPositions.length; axis++) {
+            double[] offsets = null;
+            if (positions != null) {
+                offsets = positions[axis];
+            }
+            this.encodePositions(this.previousPositions[axis], offsets);
+        }
+        this.frame.putInt(0, this.frame.position() - Integer.BYTES);
+        this.frame.flip();
+    }
+
+    /**
+     * Appends the changed offsets along one axis to the frame, and records
+     * them as the previous ones.
+     *
+     * @param before
+     *            The bits of the previous offsets.
+     * @param offsets
+     *            The offsets, or null if every airplane is at the origin.
+     */
+    private void encodePositions(long[] before, double[] offsets) {
+        int countAt = this.reserveCount();
+        int count = 0;
+        int last = -1;
+        for (int slot = 0; slot < this.capacity; slot++) {
+            long bits = FleetCheckpoint.ORIGIN;
+            if (offsets != null) {
+                bits = Double.doubleToLongBits(offsets[slot]);
+            }
+            if (bits != before[slot]) {
+                this.putEntry(slot - last - 1, bits ^ before[slot]);
+                before[slot] = bits;
+                last = slot;
+                count++;
+            }
+        }
+        this.frame.putInt(countAt, count);
+    }
+
+    /**
+     * Makes room for an int count in the frame and skips it.
+     *
+     * @return The count's offset in the frame.
+     */
+    private int reserveCount() {
+        this.ensureRoom(Integer.BYTES);
+        int at = this.frame.position();
+        this.frame.putInt(0);
+        return at;
+    }
+
+    /**
+     * Appends one change to the frame: the gap, the number of trailing zero
+     * bits of the change, and the change shifted right by that many bits.
+     * Values that change little keep their sign, exponent and high mantissa
+     * bits, and round values end in zero bits, so most changes take a few
+     * bytes rather than eight.
+     *
+     * @param gap
+     *            The number of slots or words skipped since the previous
+     *            change.
+     * @param change
+     *            The XOR of the old and new values.
+     */
+    private void putEntry(int gap, long change) {
+        this.ensureRoom(MAX_ENTRY_SIZE);
+        this.putVarint(gap);
+        int shift = 0;
+        if (change != 0) {
+            shift = Long.numberOfTrailingZeros(change);
+        }
+        this.frame.put((byte) shift);
+        this.putVarint(change >>> shift);
+    }
+
+    /**
+     * Appends an unsigned LEB128 varint to the frame.
+     *
+     * @param value
+     *            The value, taken as unsigned.
+     */
+    private void putVarint(long value) {
+        long rest = value;
+        while ((rest & -VARINT_MORE) != 0) {
+            this.frame.put((byte) (rest | VARINT_MORE));
+            rest >>>= VARINT_BITS;
+        }
+        this.frame.put((byte) rest);
+    }
+
+    /**
+     * Grows the frame buffer if fewer than {@code bytes} bytes remain.
+     *
+     * @param bytes
+     *            The number of bytes about to be appended.
+     */
+    private void ensureRoom(int bytes) {
+        if (this.frame.remaining() < bytes) {
+            ByteBuffer larger = ByteBuffer
+                    .allocate(Math.max(this.frame.capacity() * 2,
+                            FRAME_HEADER_SIZE + bytes))
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            this.frame.flip();
+            larger.put(this.frame);
+            this.frame = larger;
+        }
+    }
+
+    /**
+     * Waits for every checkpoint requested so far to be written, then closes
+     * the file.
+     *
+     * @throws IOException
+     *             if closing the file fails, or the wait is interrupted.
+     */
+    @Override
+    public void close() throws IOException {
+        this.writer.shutdown();
+        try {
+            while (!this.writer.awaitTermination(1, TimeUnit.SECONDS)) {
+                continue;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while closing.", e);
+        } finally {
+            this.channel.close();
+        }
+    }
+}
@@ -0,0 +1,781 @@
+package components.Airplane;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import components.Airplane.AirplaneKernel.Mode;
+
+/**
+ * Streams rows of recorded flight data from a text file into a fleet. Each
+ * row holds an airplane's slot followed by one field per Mode, in ordinal
+ * order: altitude, direction, speed, fuel quantity, outside air temperature
+ * and wind speed. An empty field leaves that mode undefined. A row replaces
+ * the whole state of its airplane, so when a file holds a track of several
+ * rows per airplane, the last one wins.
+ *
+ * <p>
+ * Rows are either delimited ({@link #csv()}) or fixed-width
+ * ({@link #fixedWidth(int...)}), one per line. If the first line starts with
+ * a letter it is taken as a header and skipped. Rows whose slot is not in the
+ * fleet, whose fields are not numbers, or whose values fail the setMetric
+ * rules are rejected as a whole and listed in the returned {@link Report}.
+ * </p>
+ *
+ * <p>
+ * The file is memory-mapped in chunks that end on a line boundary. Each
+ * round, one chunk per thread of the common fork/join pool is parsed in
+ * parallel straight from the mapped bytes into reused primitive arrays; the
+ * rows are then applied to the fleet in file order. Memory use therefore
+ * depends on the chunk size and thread count, not on the file size, and no
+ * String or Double is created for a well-formed row.
+ * </p>
+ */
+public final class FleetLoader {
+
+    /**
+     * Number of modes.
+     */
+    private static final int MODE_COUNT = Mode.values().length;
+
+    /**
+     * Modes indexed by ordinal.
+     */
+    private static final Mode[] MODES = Mode.values();
+
+    /**
+     * Number of fields in a row: the slot, then one per Mode.
+     */
+    private static final int FIELD_COUNT = MODE_COUNT + 1;
+
+    /**
+     * Default size in bytes of a mapped chunk.
+     */
+    private static final int CHUNK_BYTES = 1 << 24;
+
+    /**
+     * Largest number of rejected rows listed in a report.
+     */
+    private static final int MAX_REPORTED = 100;
+
+    /**
+     * Largest number of significant digits parsed without Double.parseDouble.
+     */
+    private static final int MAX_FAST_DIGITS = 15;
+
+    /**
+     * Exact powers of ten, up to the largest exactly representable one.
+     */
+    private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4,
+            1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16,
+            1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+    /**
+     * Field separator of delimited rows; unused for fixed-width rows.
+     */
+    private final byte delimiter;
+
+    /**
+     * Width of each field of fixed-width rows, or null for delimited rows.
+     */
+    private final int[] widths;
+
+    /**
+     * Size in bytes of a mapped chunk.
+     */
+    private final int chunkBytes;
+
+    /**
+     * Constructor.
+     *
+     * @param delimiter
+     *            The field separator of delimited rows.
+     * @param widths
+     *            The field widths of fixed-width rows, or null.
+     * @param chunkBytes
+     *            The size in bytes of a mapped chunk.
+     */
+    FleetLoader(byte delimiter, int[] widths, int chunkBytes) {
+        this.delimiter = delimiter;
+        this.widths = widths;
+        this.chunkBytes = chunkBytes;
+    }
+
+    /**
+     * Returns a loader for comma-separated rows.
+     *
+     * @return The loader.
+     */
+    public static FleetLoader csv() {
+        return new FleetLoader((byte) ',', null, CHUNK_BYTES);
+    }
+
+    /**
+     * Returns a loader for fixed-width rows. Spaces around a field's value are
+     * ignored, and a line shorter than the full width leaves the remaining
+     * fields empty.
+     *
+     * @param widths
+     *            The width in bytes of the slot field, then of each Mode's
+     *            field in ordinal order.
+     * @return The loader.
+     * @throws IllegalArgumentException
+     *             if there is not one positive width per field.
+     */
+    public static FleetLoader fixedWidth(int... widths) {
+        if (widths.length != FIELD_COUNT) {
+            throw new IllegalArgumentException(
+                    "Widths must have one entry per field.");
+        }
+        for (int width : widths) {
+            if (width <= 0) {
+                throw new IllegalArgumentException(
+                        "Widths must be positive.");
+            }
+        }
+        return new FleetLoader((byte) 0, widths.clone(), CHUNK_BYTES);
+    }
+
+    /**
+     * Loads every row of {@code file} into {@code fleet}.
+     *
+     * @param file
+     *            The file to load.
+     * @param fleet
+     *            The fleet to load into.
+     * @return The report of loaded and rejected rows.
+     * @throws IOException
+     *             if the file cannot be read, or holds a line longer than a
+     *             chunk.
+     */
+    public Report load(Path file, AirplaneFleet fleet) throws IOException {
+        return this.load(file, (FleetStore) fleet);
+    }
+
+    /**
+     * Loads every row of {@code file} into {@code fleet}.
+     *
+     * @param file
+     *            The file to load.
+     * @param fleet
+     *            The fleet to load into.
+     * @return The report of loaded and rejected rows.
+     * @throws IOException
+     *             if the file cannot be read, or holds a line longer than a
+     *             chunk.
+     */
+    public Report load(Path file, MappedAirplaneFleet fleet)
+            throws IOException {
+        return this.load(file, (FleetStore) fleet);
+    }
+
+    /**
+     * Loads every row of {@code file} into {@code store}.
+     *
+     * @param file
+     *            The file to load.
+     * @param store
+     *            The store to load into.
+     * @return The report of loaded and rejected rows.
+     * @throws IOException
+     *             if the file cannot be read, or holds a line longer than a
+     *             chunk.
+     */
+    private Report load(Path file, FleetStore store) throws IOException {
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        Chunk[] round = new Chunk[Math.max(1, pool.getParallelism())];
+        for (int i = 0; i < round.length; i++) {
+            round[i] = new Chunk(store.capacity());
+        }
+        Report report = new Report();
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.READ)) {
+            long size = channel.size();
+            long offset = 0;
+            while (offset < size) {
+                // Map the next chunks, each ending after a newline
+                int count = 0;
+                while (count < round.length && offset < size) {
+                    int length = (int) Math.min(this.chunkBytes,
+                            size - offset);
+                    MappedByteBuffer buffer = channel
+                            .map(FileChannel.MapMode.READ_ONLY, offset, length);
+                    int end = length;
+                    if (offset + length < size) {
+                        end = lastNewline(buffer, length) + 1;
+                        if (end == 0) {
+                            throw new IOException(file + " has a line longer "
+                                    + "than " + this.chunkBytes + " bytes at "
+                                    + offset + ".");
+                        }
+                    }
+                    round[count].reinitialize();
+                    round[count].reset(buffer, end, offset == 0);
+                    offset += end;
+                    count++;
+                }
+                // Parse them in parallel, then apply them in file order
+                for (int i = 1; i < count; i++) {
+                    pool.execute(round[i]);
+                }
+                round[0].invoke();
+                for (int i = 0; i < count; i++) {
+                    round[i].join();
+                    round[i].applyTo(store, report);
+                }
+            }
+        }
+        return report;
+    }
+
+    /**
+     * Returns the position of the last newline before {@code end}.
+     *
+     * @param buffer
+     *            The bytes to search.
+     * @param end
+     *            One past the last position to search.
+     * @return The position, or -1 if there is none.
+     */
+    private static int lastNewline(ByteBuffer buffer, int end) {
+        int i = end - 1;
+        while (i >= 0 && buffer.get(i) != '\n') {
+            i--;
+        }
+        return i;
+    }
+
+    /**
+     * Reports whether {@code b} is a space or tab.
+     *
+     * @param b
+     *            The byte.
+     * @return True if b is blank.
+     */
+    private static boolean isBlank(byte b) {
+        return b == ' ' || b == '\t';
+    }
+
+    /**
+     * Parses the decimal number in bytes {@code from} up to {@code to} - 1 of
+     * {@code buffer}. Plain decimals with few enough digits, which is what
+     * recorded data holds, are computed exactly from the digits; anything
+     * else (e.g., an exponent) falls back to Double.parseDouble.
+     *
+     * @param buffer
+     *            The bytes to parse.
+     * @param from
+     *            The first byte of the number.
+     * @param to
+     *            One past the last byte of the number.
+     * @return The value, or NaN if the bytes are not a number.
+     */
+    static double parseNumber(ByteBuffer buffer, int from, int to) {
+        int i = from;
+        boolean negative = false;
+        if (i < to && (buffer.get(i) == '-' || buffer.get(i) == '+')) {
+            negative = buffer.get(i) == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean point = false;
+        for (; i < to; i++) {
+            byte b = buffer.get(i);
+            if (b >= '0' && b <= '9') {
+                mantissa = mantissa * 10 + (b - '0');
+                digits++;
+                if (point) {
+                    scale++;
+                }
+                if (digits > MAX_FAST_DIGITS) {
+                    return parseSlowly(buffer, from, to);
+                }
+            } else if (b == '.' && !point) {
+                point = true;
+            } else if ((b == 'e' || b == 'E') && digits > 0) {
+                return parseSlowly(buffer, from, to);
+            } else {
+                return Double.NaN;
+            }
+        }
+        if (digits == 0) {
+            return Double.NaN;
+        }
+        // Both operands are exact, so the division is correctly rounded
+        double value = mantissa / POWERS_OF_TEN[scale];
+        if (negative) {
+            value = -value;
+        }
+        return value;
+    }
+
+    /**
+     * Parses a number that parseNumber cannot compute exactly.
+     *
+     * @param buffer
+     *            The bytes to parse.
+     * @param from
+     *            The first byte of the number.
+     * @param to
+     *            One past the last byte of the number.
+     * @return The value, or NaN if the bytes are not a finite number.
+     */
+    private static double parseSlowly(ByteBuffer buffer, int from, int to) {
+        byte[] bytes = new byte[to - from];
+        buffer.get(from, bytes);
+        double value;
+        try {
+            value = Double.parseDouble(
+                    new String(bytes, StandardCharsets.US_ASCII));
+        } catch (NumberFormatException e) {
+            value = Double.NaN;
+        }
+        if (Double.isInfinite(value)) {
+            value = Double.NaN;
+        }
+        return value;
+    }
+
+    /**
+     * One mapped chunk of the file, parsed into primitive arrays that are
+     * reused, and grown if needed, from one round to the next.
+     */
+    private final class Chunk extends RecursiveAction {
+
+        /**
+         * Serial version, unused.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Rejection code: the row has the wrong number of fields.
+         */
+        private static final int WRONG_FIELD_COUNT = -1;
+
+        /**
+         * Capacity of the fleet being loaded.
+         */
+        private final int capacity;
+
+        /**
+         * The mapped bytes; not serialized, as tasks never are.
+         */
+        private transient ByteBuffer buffer;
+
+        /**
+         * One past the last byte of the chunk.
+         */
+        private int end;
+
+        /**
+         * Whether the chunk starts the file, so may start with a header.
+         */
+        private boolean first;
+
+        /**
+         * Number of lines in the chunk.
+         */
+        private int lines;
+
+        /**
+         * Number of rows parsed.
+         */
+        private int rows;
+
+        /**
+         * Line of each row, counted from the start of the chunk.
+         */
+        private int[] rowLines;
+
+        /**
+         * Slot of each row.
+         */
+        private int[] slots;
+
+        /**
+         * Defined-mode mask of each row.
+         */
+        private int[] masks;
+
+        /**
+         * Values of each row, MODE_COUNT per row.
+         */
+        private double[] values;
+
+        /**
+         * Number of rows rejected.
+         */
+        private int rejected;
+
+        /**
+         * Lines of the first rejected rows, counted from the start of the
+         * chunk.
+         */
+        private final int[] rejectedLines = new int[MAX_REPORTED];
+
+        /**
+         * Reasons the first rejected rows were rejected.
+         */
+        private final String[] reasons = new String[MAX_REPORTED];
+
+        /**
+         * Scratch values of the row being parsed.
+         */
+        private final double[] row = new double[MODE_COUNT];
+
+        /**
+         * Constructor.
+         *
+         * @param capacity
+         *            The capacity of the fleet being loaded.
+         */
+        Chunk(int capacity) {
+            this.capacity = capacity;
+            final int initialRows = 1024;
+            this.rowLines = new int[initialRows];
+            this.slots = new int[initialRows];
+            this.masks = new int[initialRows];
+            this.values = new double[initialRows * MODE_COUNT];
+        }
+
+        /**
+         * Points the chunk at new bytes and forgets the previous rows.
+         *
+         * @param bytes
+         *            The mapped bytes.
+         * @param length
+         *            One past the last byte of the chunk.
+         * @param start
+         *            Whether the chunk starts the file.
+         */
+        void reset(ByteBuffer bytes, int length, boolean start) {
+            this.buffer = bytes;
+            this.end = length;
+            this.first = start;
+            this.lines = 0;
+            this.rows = 0;
+            this.rejected = 0;
+        }
+
+        @Override
+        protected void compute() {
+            int pos = 0;
+            while (pos < this.end) {
+                int lineEnd = pos;
+                while (lineEnd < this.end && this.buffer.get(lineEnd) != '\n') {
+                    lineEnd++;
+                }
+                int stop = lineEnd;
+                if (stop > pos && this.buffer.get(stop - 1) == '\r') {
+                    stop--;
+                }
+                boolean header = this.first && this.lines == 0 && stop > pos
+                        && Character.isLetter((char) this.buffer.get(pos));
+                if (!header && !this.isBlankLine(pos, stop)) {
+                    this.parseRow(pos, stop);
+                }
+                this.lines++;
+                pos = lineEnd + 1;
+            }
+        }
+
+        /**
+         * Reports whether a line holds only blanks.
+         *
+         * @param from
+         *            The first byte of the line.
+         * @param to
+         *            One past the last byte of the line.
+         * @return True if the line is blank.
+         */
+        private boolean isBlankLine(int from, int to) {
+            int i = from;
+            while (i < to && isBlank(this.buffer.get(i))) {
+                i++;
+            }
+            return i == to;
+        }
+
+        /**
+         * Parses one row and keeps it, or records why it was rejected.
+         *
+         * @param from
+         *            The first byte of the line.
+         * @param to
+         *            One past the last byte of the line, without the line
+         *            terminator.
+         */
+        private void parseRow(int from, int to) {
+            int slot = -1;
+            int mask = 0;
+            int fieldStart = from;
+            for (int f = 0; f < FIELD_COUNT; f++) {
+                int fieldEnd = this.fieldEnd(f, fieldStart, to);
+                if (fieldEnd < 0) {
+                    this.reject(WRONG_FIELD_COUNT, null);
+                    return;
+                }
+                // Trim blanks
+                int a = fieldStart;
+                int b = fieldEnd;
+                while (a < b && isBlank(this.buffer.get(a))) {
+                    a++;
+                }
+                while (b > a && isBlank(this.buffer.get(b - 1))) {
+                    b--;
+                }
+                if (a < b || f == 0) {
+                    double value = parseNumber(this.buffer, a, b);
+                    if (Double.isNaN(value)) {
+                        this.reject(f, null);
+                        return;
+                    }
+                    if (f == 0) {
+                        if (value < 0 || value >= this.capacity
+                                || value != Math.rint(value)) {
+                            this.reject(f, "Slot " + value
+                                    + " is not in the fleet.");
+                            return;
+                        }
+                        slot = (int) value;
+                    } else {
+                        Mode mode = MODES[f - 1];
+                        String violation = MetricRules.violation(mode, value);
+                        if (violation != null) {
+                            this.reject(f, violation);
+                            return;
+                        }
+                        this.row[f - 1] = value;
+                        mask |= 1 << (f - 1);
+                    }
+                }
+                fieldStart = this.nextFieldStart(fieldEnd);
+            }
+            if (FleetLoader.this.widths == null && fieldStart <= to) {
+                // A delimiter followed the last field
+                this.reject(WRONG_FIELD_COUNT, null);
+                return;
+            }
+            this.keep(slot, mask);
+        }
+
+        /**
+         * Returns where field {@code f} ends: at the next delimiter for
+         * delimited rows, after its width for fixed-width rows.
+         *
+         * @param f
+         *            The field index.
+         * @param start
+         *            The first byte of the field.
+         * @param to
+         *            One past the last byte of the line.
+         * @return One past the last byte of the field, or -1 if a delimited
+         *         row ends before the field does.
+         */
+        private int fieldEnd(int f, int start, int to) {
+            int[] fieldWidths = FleetLoader.this.widths;
+            if (fieldWidths != null) {
+                return Math.min(to, start + fieldWidths[f]);
+            }
+            int i = start;
+            while (i < to && this.buffer.get(i) != FleetLoader.this.delimiter) {
+                i++;
+            }
+            if (i == to && f < FIELD_COUNT - 1) {
+                i = -1;
+            }
+            return i;
+        }
+
+        /**
+         * Returns where the field after one ending at {@code fieldEnd}
+         * starts: after the delimiter for delimited rows, right away for
+         * fixed-width rows.
+         *
+         * @param fieldEnd
+         *            One past the last byte of the previous field.
+         * @return The first byte of the next field.
+         */
+        private int nextFieldStart(int fieldEnd) {
+            int start = fieldEnd;
+            if (FleetLoader.this.widths == null) {
+                start++;
+            }
+            return start;
+        }
+
+        /**
+         * Keeps the row just parsed.
+         *
+         * @param slot
+         *            The row's slot.
+         * @param mask
+         *            The row's defined-mode mask.
+         */
+        private void keep(int slot, int mask) {
+            if (this.rows == this.slots.length) {
+                int grown = this.rows * 2;
+                this.rowLines = Arrays.copyOf(this.rowLines, grown);
+                this.slots = Arrays.copyOf(this.slots, grown);
+                this.masks = Arrays.copyOf(this.masks, grown);
+                this.values = Arrays.copyOf(this.values,
+                        grown * MODE_COUNT);
+            }
+            this.rowLines[this.rows] = this.lines;
+            this.slots[this.rows] = slot;
+            this.masks[this.rows] = mask;
+            System.arraycopy(this.row, 0, this.values, this.rows * MODE_COUNT,
+                    MODE_COUNT);
+            this.rows++;
+        }
+
+        /**
+         * Records that the row being parsed was rejected.
+         *
+         * @param field
+         *            The index of the bad field, or WRONG_FIELD_COUNT.
+         * @param reason
+         *            Why the field is bad, or null if it is not a number.
+         */
+        private void reject(int field, String reason) {
+            if (this.rejected < MAX_REPORTED) {
+                String text = reason;
+                if (field == WRONG_FIELD_COUNT) {
+                    text = "Expected " + FIELD_COUNT + " fields.";
+                } else if (text == null) {
+                    text = "Field " + (field + 1) + " is not a number.";
+                }
+                this.rejectedLines[this.rejected] = this.lines;
+                this.reasons[this.rejected] = text;
+            }
+            this.rejected++;
+        }
+
+        /**
+         * Applies the kept rows to {@code store} in file order and adds this
+         * chunk's counts and rejections to {@code report}.
+         *
+         * @param store
+         *            The store to load into.
+         * @param report
+         *            The report of the whole load.
+         */
+        void applyTo(FleetStore store, Report report) {
+            for (int r = 0; r < this.rows; r++) {
+                int slot = this.slots[r];
+                int mask = this.masks[r];
+                int base = r * MODE_COUNT;
+                store.clear(slot);
+                for (int m = 0; m < MODE_COUNT; m++) {
+                    if ((mask & (1 << m)) != 0) {
+                        store.setMetric(slot, MODES[m], this.values[base + m]);
+                    }
+                }
+            }
+            int listed = Math.min(this.rejected, MAX_REPORTED);
+            for (int i = 0; i < listed; i++) {
+                report.addRejection(
+                        report.linesBefore + this.rejectedLines[i] + 1,
+                        this.reasons[i]);
+            }
+            report.rowsLoaded += this.rows;
+            report.rowsRejected += this.rejected;
+            report.linesBefore += this.lines;
+            // Release the mapping before the next round
+            this.buffer = null;
+        }
+    }
+
+    /**
+     * Outcome of a load: how many rows were loaded and rejected, and why the
+     * first {@value FleetLoader#MAX_REPORTED} rejected rows were rejected.
+     */
+    public static final class Report {
+
+        /**
+         * Number of rows loaded.
+         */
+        private long rowsLoaded;
+
+        /**
+         * Number of rows rejected.
+         */
+        private long rowsRejected;
+
+        /**
+         * Number of lines in the chunks applied so far.
+         */
+        private long linesBefore;
+
+        /**
+         * Descriptions of the first rejected rows.
+         */
+        private final List<String> rejections = new ArrayList<>();
+
+        /**
+         * Constructor.
+         */
+        Report() {
+        }
+
+        /**
+         * Adds a rejected row to the list, if it is not full.
+         *
+         * @param line
+         *            The row's line number, counting from 1.
+         * @param reason
+         *            Why the row was rejected.
+         */
+        void addRejection(long line, String reason) {
+            if (this.rejections.size() < MAX_REPORTED) {
+                this.rejections.add("Line " + line + ": " + reason);
+            }
+        }
+
+        /**
+         * Returns the number of rows loaded into the fleet.
+         *
+         * @return The number of rows loaded.
+         */
+        public long rowsLoaded() {
+            return this.rowsLoaded;
+        }
+
+        /**
+         * Returns the number of rows rejected.
+         *
+         * @return The number of rows rejected.
+         */
+        public long rowsRejected() {
+            return this.rowsRejected;
+        }
+
+        /**
+         * Returns a description of each of the first rejected rows, in file
+         * order, e.g. "Line 12: Direction must be between 0 and 359.".
+         *
+         * @return The descriptions.
+         */
+        public List<String> rejections() {
+            return Collections.unmodifiableList(this.rejections);
+        }
+
+        @Override
+        public String toString() {
+            return "Loaded " + this.rowsLoaded + " rows, rejected "
+                    + this.rowsRejected + ".";
+        }
+    }
+}
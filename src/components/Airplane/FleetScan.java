@@ -0,0 +1,316 @@
+package components.Airplane;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.DoublePredicate;
+import java.util.function.IntPredicate;
+
+import components.Airplane.AirplaneKernel.Mode;
+
+/**
+ * Parallel scans over slot ranges, for questions about a fleet that
+ * {@link FleetAggregates} does not answer, such as "which airplanes have less
+ * than 500 units of fuel". The slots are split into contiguous ranges aligned
+ * to 64, as {@code FleetSimulator} splits its ticks, and the ranges are
+ * scanned by the pool's threads; selected slots are always returned in
+ * ascending order.
+ *
+ * <p>
+ * A scan reads the fleet while it runs, so it must not overlap writes to the
+ * fleet; to scan while a simulation runs, scan a {@link FleetSnapshot}
+ * through the predicate instead.
+ * </p>
+ */
+public final class FleetScan {
+
+    /**
+     * Number of slots in a bitset word; range splits are multiples of this.
+     */
+    private static final int WORD_SIZE = 64;
+
+    /**
+     * Smallest range worth handing to a separate task.
+     */
+    private static final int MIN_RANGE = 1024;
+
+    /**
+     * Number of ranges per worker thread, so that threads that finish early
+     * can steal the remaining work.
+     */
+    private static final int RANGES_PER_THREAD = 4;
+
+    /**
+     * Pool that scans the ranges.
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * Constructor.
+     *
+     * @param pool
+     *            The pool that scans the ranges; its parallelism is the
+     *            number of threads used.
+     */
+    public FleetScan(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Returns the number of slots below which a range is scanned without
+     * splitting.
+     *
+     * @param size
+     *            The number of slots scanned.
+     * @return The range size.
+     */
+    private int rangeSize(int size) {
+        int perRange = size / (this.pool.getParallelism() * RANGES_PER_THREAD);
+        return Math.max(MIN_RANGE, (perRange + WORD_SIZE - 1) & -WORD_SIZE);
+    }
+
+    /**
+     * Checks that size is not negative.
+     *
+     * @param size
+     *            The number of slots.
+     */
+    private static void checkSize(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Size must be non-negative.");
+        }
+    }
+
+    /**
+     * Counts the slots in [0, size) satisfying {@code test}. The test may be
+     * called from several threads at once.
+     *
+     * @param size
+     *            The number of slots.
+     * @param test
+     *            The test of a slot.
+     * @return The number of slots satisfying test.
+     */
+    public int count(int size, IntPredicate test) {
+        checkSize(size);
+        return this.pool
+                .invoke(new CountTask(0, size, this.rangeSize(size), test));
+    }
+
+    /**
+     * Returns the slots in [0, size) satisfying {@code test}, in ascending
+     * order. The test may be called from several threads at once.
+     *
+     * @param size
+     *            The number of slots.
+     * @param test
+     *            The test of a slot.
+     * @return The slots satisfying test.
+     */
+    public int[] select(int size, IntPredicate test) {
+        checkSize(size);
+        return this.pool
+                .invoke(new SelectTask(0, size, this.rangeSize(size), test));
+    }
+
+    /**
+     * Returns the test of a slot of {@code fleet}: whether it defines mode
+     * with a metric satisfying test.
+     *
+     * @param fleet
+     *            The fleet.
+     * @param mode
+     *            The mode tested.
+     * @param test
+     *            The test of the metric.
+     * @return The test of a slot.
+     */
+    private static IntPredicate metricTest(FleetStore fleet, Mode mode,
+            DoublePredicate test) {
+        return slot -> fleet.isDefined(slot, mode)
+                && test.test(fleet.getMetric(slot, mode));
+    }
+
+    /**
+     * Counts the airplanes of {@code fleet}, an {@link AirplaneFleet} or a
+     * {@link MappedAirplaneFleet}, that define {@code mode} with a metric
+     * satisfying {@code test}.
+     *
+     * @param fleet
+     *            The fleet.
+     * @param mode
+     *            The mode tested.
+     * @param test
+     *            The test of the metric.
+     * @return The number of airplanes.
+     */
+    public int count(FleetStore fleet, Mode mode, DoublePredicate test) {
+        return this.count(fleet.capacity(), metricTest(fleet, mode, test));
+    }
+
+    /**
+     * Returns the slots of {@code fleet}, an {@link AirplaneFleet} or a
+     * {@link MappedAirplaneFleet}, that define {@code mode} with a metric
+     * satisfying {@code test}, in ascending order.
+     *
+     * @param fleet
+     *            The fleet.
+     * @param mode
+     *            The mode tested.
+     * @param test
+     *            The test of the metric.
+     * @return The slots.
+     */
+    public int[] select(FleetStore fleet, Mode mode, DoublePredicate test) {
+        return this.select(fleet.capacity(), metricTest(fleet, mode, test));
+    }
+
+    /**
+     * Counts the slots of a range satisfying a test, splitting the range in
+     * two while it is larger than the range size.
+     */
+    private static final class CountTask extends RecursiveTask<Integer> {
+
+        /**
+         * Serial version, unused.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * The first slot.
+         */
+        private final int lo;
+
+        /**
+         * One past the last slot.
+         */
+        private final int hi;
+
+        /**
+         * Number of slots below which the range is not split.
+         */
+        private final int rangeSize;
+
+        /**
+         * The test of a slot; not serialized, as tasks never are.
+         */
+        private final transient IntPredicate test;
+
+        /**
+         * Constructor.
+         *
+         * @param lo
+         *            The first slot.
+         * @param hi
+         *            One past the last slot.
+         * @param rangeSize
+         *            Number of slots below which the range is not split.
+         * @param test
+         *            The test of a slot.
+         */
+        CountTask(int lo, int hi, int rangeSize, IntPredicate test) {
+            this.lo = lo;
+            this.hi = hi;
+            this.rangeSize = rangeSize;
+            this.test = test;
+        }
+
+        @Override
+        protected Integer compute() {
+            int mid = this.lo + (((this.hi - this.lo) >>> 1) & -WORD_SIZE);
+            if (this.hi - this.lo <= this.rangeSize || mid == this.lo) {
+                int count = 0;
+                for (int slot = this.lo; slot < this.hi; slot++) {
+                    if (this.test.test(slot)) {
+                        count++;
+                    }
+                }
+                return count;
+            }
+            CountTask right = new CountTask(mid, this.hi, this.rangeSize,
+                    this.test);
+            right.fork();
+            int left = new CountTask(this.lo, mid, this.rangeSize, this.test)
+                    .compute();
+            return left + right.join();
+        }
+    }
+
+    /**
+     * Selects the slots of a range satisfying a test, splitting the range in
+     * two while it is larger than the range size.
+     */
+    private static final class SelectTask extends RecursiveTask<int[]> {
+
+        /**
+         * Serial version, unused.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * The first slot.
+         */
+        private final int lo;
+
+        /**
+         * One past the last slot.
+         */
+        private final int hi;
+
+        /**
+         * Number of slots below which the range is not split.
+         */
+        private final int rangeSize;
+
+        /**
+         * The test of a slot; not serialized, as tasks never are.
+         */
+        private final transient IntPredicate test;
+
+        /**
+         * Constructor.
+         *
+         * @param lo
+         *            The first slot.
+         * @param hi
+         *            One past the last slot.
+         * @param rangeSize
+         *            Number of slots below which the range is not split.
+         * @param test
+         *            The test of a slot.
+         */
+        SelectTask(int lo, int hi, int rangeSize, IntPredicate test) {
+            this.lo = lo;
+            this.hi = hi;
+            this.rangeSize = rangeSize;
+            this.test = test;
+        }
+
+        @Override
+        protected int[] compute() {
+            int mid = this.lo + (((this.hi - this.lo) >>> 1) & -WORD_SIZE);
+            if (this.hi - this.lo <= this.rangeSize || mid == this.lo) {
+                int[] selected = new int[this.hi - this.lo];
+                int n = 0;
+                for (int slot = this.lo; slot < this.hi; slot++) {
+                    if (this.test.test(slot)) {
+                        selected[n] = slot;
+                        n++;
+                    }
+                }
+                return Arrays.copyOf(selected, n);
+            }
+            SelectTask right = new SelectTask(mid, this.hi, this.rangeSize,
+                    this.test);
+            right.fork();
+            int[] left = new SelectTask(this.lo, mid, this.rangeSize,
+                    this.test).compute();
+            int[] rightSelected = right.join();
+            int[] selected = Arrays.copyOf(left,
+                    left.length + rightSelected.length);
+            System.arraycopy(rightSelected, 0, selected, left.length,
+                    rightSelected.length);
+            return selected;
+        }
+    }
+}
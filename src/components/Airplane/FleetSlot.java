@@ -0,0 +1,154 @@
+package components.Airplane;
+
+/**
+ * Flyweight Airplane over one slot of a {@link FleetStore}. Reads and writes
+ * go straight to the store, and the view holds no state of its own besides
+ * the store and slot index.
+ */
+final class FleetSlot extends AirplaneSecondary {
+
+    /**
+     * Modes indexed by ordinal.
+     */
+    private static final Mode[] MODES = Mode.values();
+
+    /**
+     * The store this view reads and writes.
+     */
+    private final FleetStore store;
+
+    /**
+     * The slot this view reads and writes.
+     */
+    private final int slot;
+
+    /**
+     * Constructor.
+     *
+     * @param store
+     *            The store this view reads and writes.
+     * @param slot
+     *            The slot this view reads and writes.
+     */
+    FleetSlot(FleetStore store, int slot) {
+        this.store = store;
+        this.slot = slot;
+    }
+
+    @Override
+    public void setMetric(Mode mode, double value) {
+        this.store.setMetric(this.slot, mode, value);
+    }
+
+    @Override
+    public double getMetric(Mode mode) {
+        return this.store.getMetric(this.slot, mode);
+    }
+
+    @Override
+    public boolean isDefined(Mode mode) {
+        return this.store.isDefined(this.slot, mode);
+    }
+
+    @Override
+    public void addToMetric(Mode mode, double delta) {
+        this.store.addToMetric(this.slot, mode, delta);
+    }
+
+    @Override
+    public void applyDeltas(double[] deltasByOrdinal) {
+        this.store.applyDeltas(this.slot, deltasByOrdinal);
+    }
+
+    @Override
+    public void clear() {
+        this.store.clear(this.slot);
+    }
+
+    /**
+     * Copies the defined metrics of any Airplane into this slot, then clears
+     * the source.
+     *
+     * @param source
+     *            The source airplane to transfer state from.
+     * @throws IllegalArgumentException
+     *             if the source is null.
+     */
+    @Override
+    public void transferFrom(Airplane source) {
+        if (source == null) {
+            throw new IllegalArgumentException("Invalid source for transfer");
+        }
+        if (this.isSameSlot(source)) {
+            return;
+        }
+        this.clear();
+        for (Mode mode : MODES) {
+            if (source.isDefined(mode)) {
+                this.setMetric(mode, source.getMetric(mode));
+            }
+        }
+        source.clear();
+    }
+
+    /**
+     * Reports whether {@code other} is a view of this same slot.
+     *
+     * @param other
+     *            The airplane to compare with.
+     * @return True if other reads and writes the same slot of the same store
+     *         as this view.
+     */
+    private boolean isSameSlot(Airplane other) {
+        if (!(other instanceof FleetSlot)) {
+            return false;
+        }
+        FleetSlot view = (FleetSlot) other;
+        return view.store == this.store && view.slot == this.slot;
+    }
+
+    /**
+     * Creates a fresh, empty airplane backed by a one-slot on-heap fleet.
+     *
+     * @return A new empty airplane.
+     */
+    @Override
+    public Airplane newInstance() {
+        return new AirplaneFleet(1).view(0);
+    }
+
+    @Override
+    public void setAltitude(double altitude) {
+        this.setMetric(Mode.ALTITUDE, altitude);
+    }
+
+    @Override
+    public double getAltitude() {
+        return this.getMetric(Mode.ALTITUDE);
+    }
+
+    @Override
+    public void setSpeed(double speed) {
+        this.setMetric(Mode.SPEED, speed);
+    }
+
+    @Override
+    public double getSpeed() {
+        return this.getMetric(Mode.SPEED);
+    }
+
+    @Override
+    public void setDirection(int direction) {
+        this.setMetric(Mode.DIRECTION, direction);
+    }
+
+    @Override
+    public int getDirection() {
+        return (int) this.getMetric(Mode.DIRECTION);
+    }
+
+    @Override
+    public double getFuelQuantity() {
+        return this.getMetric(Mode.FUEL_QUANTITY);
+    }
+}
@@ -0,0 +1,354 @@
+package components.Airplane;
+
+import java.lang.invoke.VarHandle;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import components.Airplane.AirplaneKernel.Mode;
+
+/**
+ * Immutable point-in-time view of an {@link AirplaneFleet}, returned by
+ * {@link AirplaneFleet#snapshot()}. Taking one copies nothing: the fleet is
+ * divided into pages of {@value #PAGE_SIZE} slots, and the first write to a
+ * page after the snapshot copies that page's metrics into the snapshot before
+ * changing them. A page never written since the snapshot is read from the
+ * fleet itself. The copy is made for the newest snapshot still in use and
+ * shared with every older one that has not copied the page yet, so a page is
+ * copied at most once per snapshot taken, and no snapshot keeps another one
+ * reachable.
+ *
+ * <p>
+ * Any number of threads may read a snapshot while other threads keep updating
+ * the fleet. Reads of a page that has not been copied are validated like an
+ * optimistic read of a StampedLock: the reader reads the fleet, then checks
+ * that the page still has not been copied, and retries if it has. Writers
+ * never wait for readers.
+ * </p>
+ *
+ * @convention: pages.length = ceil(capacity / PAGE_SIZE), and each non-null
+ *              entry is never changed once set. Every page that is null has
+ *              not been written since this snapshot was taken.
+ *
+ * @correspondence: slot s of the snapshot is, if pages[s / PAGE_SIZE] is not
+ *                  null, the slot as copied into that page; otherwise slot s
+ *                  of the fleet.
+ */
+public final class FleetSnapshot {
+
+    /**
+     * log2 of the number of slots per page.
+     */
+    private static final int PAGE_SHIFT = 12;
+
+    /**
+     * Number of slots per page; a multiple of 64, so a page holds whole
+     * bitset words.
+     */
+    static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+
+    /**
+     * log2 of the number of bits in a bitset word.
+     */
+    private static final int WORD_SHIFT = 6;
+
+    /**
+     * Number of modes.
+     */
+    private static final int MODE_COUNT = Mode.values().length;
+
+    /**
+     * Bits returned by bitsOf for an undefined metric: a NaN that
+     * Double.doubleToLongBits never produces.
+     */
+    static final long UNDEFINED = 0x7FF0_0000_0000_0001L;
+
+    /**
+     * The fleet's live metric columns, indexed by Mode.ordinal() then slot.
+     */
+    private final double[][] columns;
+
+    /**
+     * The fleet's live defined bitsets, indexed by Mode.ordinal() then word.
+     */
+    private final long[][] defined;
+
+    /**
+     * Number of airplanes in the fleet.
+     */
+    private final int capacity;
+
+    /**
+     * Pages copied before their first write since this snapshot.
+     */
+    private final AtomicReferenceArray<Page> pages;
+
+    /**
+     * Constructor.
+     *
+     * @param columns
+     *            The fleet's metric columns.
+     * @param defined
+     *            The fleet's defined bitsets.
+     * @param capacity
+     *            The number of airplanes in the fleet.
+     */
+    FleetSnapshot(double[][] columns, long[][] defined, int capacity) {
+        this.columns = columns;
+        this.defined = defined;
+        this.capacity = capacity;
+        this.pages = new AtomicReferenceArray<>(
+                (capacity + PAGE_SIZE - 1) >>> PAGE_SHIFT);
+    }
+
+    /**
+     * Copies the page holding {@code slot} into every snapshot in
+     * {@code live} that has not copied it yet; called by a writer before it
+     * changes the slot. The newest snapshot still in use makes the copy and
+     * shares it with the older ones: none of them has seen a write to the
+     * page since it was taken, so the page is the same in all of them.
+     * Writers of the same page may race; one copy wins, it was taken before
+     * any of them wrote, and each of them returns only once it is shared.
+     *
+     * @param live
+     *            The fleet's snapshots that may still be in use, newest first.
+     * @param slot
+     *            The slot about to be written.
+     */
+    static void preserve(List<WeakReference<FleetSnapshot>> live, int slot) {
+        int p = slot >>> PAGE_SHIFT;
+        for (int i = 0; i < live.size(); i++) {
+            FleetSnapshot newest = live.get(i).get();
+            if (newest != null) {
+                Page page = newest.pages.get(p);
+                if (page == null) {
+                    newest.pages.compareAndSet(p, null, new Page(newest, p));
+                    page = newest.pages.get(p);
+                }
+                if (!page.shared) {
+                    for (int j = i + 1; j < live.size(); j++) {
+                        FleetSnapshot older = live.get(j).get();
+                        if (older != null) {
+                            older.pages.compareAndSet(p, null, page);
+                        }
+                    }
+                    page.shared = true;
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Copies every page into every snapshot in {@code live} that has not
+     * copied it yet; called before the whole fleet is cleared.
+     *
+     * @param live
+     *            The fleet's snapshots that may still be in use, newest first.
+     * @param capacity
+     *            The number of airplanes in the fleet.
+     */
+    static void preserveAll(List<WeakReference<FleetSnapshot>> live,
+            int capacity) {
+        for (int slot = 0; slot < capacity; slot += PAGE_SIZE) {
+            preserve(live, slot);
+        }
+    }
+
+    /**
+     * Returns the bits of one metric as of this snapshot, or UNDEFINED.
+     *
+     * @param slot
+     *            The airplane's slot.
+     * @param m
+     *            The mode's ordinal.
+     * @return The metric's bits, or UNDEFINED.
+     */
+    long bitsOf(int slot, int m) {
+        int p = slot >>> PAGE_SHIFT;
+        while (true) {
+            Page page = this.pages.get(p);
+            if (page != null) {
+                return page.bitsOf(slot, m);
+            }
+            long bits = UNDEFINED;
+            if ((this.defined[m][slot >>> WORD_SHIFT] & (1L << slot)) != 0) {
+                bits = Double.doubleToLongBits(this.columns[m][slot]);
+            }
+            // Keep the reads above from moving below the validation
+            VarHandle.acquireFence();
+            if (this.pages.get(p) == null) {
+                return bits;
+            }
+        }
+    }
+
+    /**
+     * Reports the number of airplanes in the fleet.
+     *
+     * @return The capacity.
+     */
+    public int capacity() {
+        return this.capacity;
+    }
+
+    /**
+     * Checks if a metric was defined for the given slot and mode.
+     *
+     * @param slot
+     *            The airplane's slot.
+     * @param mode
+     *            The mode to check.
+     * @return True if the metric was defined, otherwise false.
+     */
+    public boolean isDefined(int slot, Mode mode) {
+        Objects.checkIndex(slot, this.capacity);
+        return this.bitsOf(slot, mode.ordinal()) != UNDEFINED;
+    }
+
+    /**
+     * Retrieves the value a metric had for the given slot and mode.
+     *
+     * @param slot
+     *            The airplane's slot.
+     * @param mode
+     *            The mode to retrieve.
+     * @return The value of the metric.
+     * @throws IllegalStateException
+     *             if the metric was not defined.
+     */
+    public double getMetric(int slot, Mode mode) {
+        Objects.checkIndex(slot, this.capacity);
+        long bits = this.bitsOf(slot, mode.ordinal());
+        if (bits == UNDEFINED) {
+            throw new IllegalStateException(mode.name() + " is not defined.");
+        }
+        return Double.longBitsToDouble(bits);
+    }
+
+    /**
+     * Returns the airplane in the given slot as an immutable Airplane.
+     *
+     * @param slot
+     *            The airplane's slot.
+     * @return The airplane as of this snapshot.
+     */
+    public Airplane airplane(int slot) {
+        Objects.checkIndex(slot, this.capacity);
+        double[] metrics = new double[MODE_COUNT];
+        int mask = 0;
+        for (int m = 0; m < MODE_COUNT; m++) {
+            long bits = this.bitsOf(slot, m);
+            if (bits != UNDEFINED) {
+                metrics[m] = Double.longBitsToDouble(bits);
+                mask |= 1 << m;
+            }
+        }
+        return new FrozenAirplane(metrics, mask);
+    }
+
+    /**
+     * Counts the airplanes that defined the given mode.
+     *
+     * @param mode
+     *            The mode to count.
+     * @return The number of slots in which mode was defined.
+     */
+    public int countDefined(Mode mode) {
+        int count = 0;
+        for (int slot = 0; slot < this.capacity; slot++) {
+            if (this.bitsOf(slot, mode.ordinal()) != UNDEFINED) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Sums the given metric over every airplane that defined it.
+     *
+     * @param mode
+     *            The mode to sum.
+     * @return The sum of the metric over the fleet.
+     */
+    public double sum(Mode mode) {
+        double total = 0.0;
+        for (int slot = 0; slot < this.capacity; slot++) {
+            long bits = this.bitsOf(slot, mode.ordinal());
+            if (bits != UNDEFINED) {
+                total += Double.longBitsToDouble(bits);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Copy of one page of the fleet's columns and bitsets. It does not refer
+     * to the snapshot that made it, since older snapshots share it.
+     */
+    private static final class Page {
+
+        /**
+         * First slot of the page.
+         */
+        private final int base;
+
+        /**
+         * Metrics, indexed by Mode.ordinal() then slot - base.
+         */
+        private final double[][] pageColumns;
+
+        /**
+         * Defined bits, indexed by Mode.ordinal() then word - base / 64.
+         */
+        private final long[][] pageDefined;
+
+        /**
+         * Whether every older snapshot in use has this page or its own copy.
+         */
+        private volatile boolean shared;
+
+        /**
+         * Copies page {@code page} of the fleet.
+         *
+         * @param snap
+         *            A snapshot of the fleet.
+         * @param page
+         *            The page's index.
+         */
+        Page(FleetSnapshot snap, int page) {
+            this.base = page << PAGE_SHIFT;
+            int end = Math.min(this.base + PAGE_SIZE, snap.capacity);
+            int firstWord = this.base >>> WORD_SHIFT;
+            int endWord = (end + (1 << WORD_SHIFT) - 1) >>> WORD_SHIFT;
+            this.pageColumns = new double[MODE_COUNT][];
+            this.pageDefined = new long[MODE_COUNT][];
+            for (int m = 0; m < MODE_COUNT; m++) {
+                this.pageColumns[m] = Arrays.copyOfRange(snap.columns[m],
+                        this.base, end);
+                this.pageDefined[m] = Arrays.copyOfRange(snap.defined[m],
+                        firstWord, endWord);
+            }
+        }
+
+        /**
+         * Returns the bits of one copied metric, or UNDEFINED.
+         *
+         * @param slot
+         *            The airplane's slot, within this page.
+         * @param m
+         *            The mode's ordinal.
+         * @return The metric's bits, or UNDEFINED.
+         */
+        long bitsOf(int slot, int m) {
+            int i = slot - this.base;
+            long bits = UNDEFINED;
+            if ((this.pageDefined[m][i >>> WORD_SHIFT] & (1L << slot)) != 0) {
+                bits = Double.doubleToLongBits(this.pageColumns[m][i]);
+            }
+            return bits;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package components.Airplane;
+
+import components.Airplane.AirplaneKernel.Mode;
+
+/**
+ * Slot-indexed storage of airplane metrics, shared by the fleet
+ * implementations so that {@link FleetSlot} can view a slot of any of them.
+ */
+interface FleetStore {
+
+    /**
+     * Reports the number of airplanes in the store.
+     *
+     * @return the capacity
+     */
+    int capacity();
+
+    /**
+     * Checks if a metric is defined for the given slot and mode.
+     *
+     * @param slot
+     *            the airplane's slot
+     * @param mode
+     *            the mode to check
+     * @return true if the metric is defined, otherwise false
+     */
+    boolean isDefined(int slot, Mode mode);
+
+    /**
+     * Retrieves the value of a metric for the given slot and mode.
+     *
+     * @param slot
+     *            the airplane's slot
+     * @param mode
+     *            the mode to retrieve
+     * @return the value of the metric
+     */
+    double getMetric(int slot, Mode mode);
+
+    /**
+     * Validates and sets a metric value for the given slot and mode.
+     *
+     * @param slot
+     *            the airplane's slot
+     * @param mode
+     *            the mode to set
+     * @param value
+     *            the value to set
+     */
+    void setMetric(int slot, Mode mode, double value);
+
+    /**
+     * Adds delta to a metric for the given slot and mode, or sets it to delta
+     * if it is not defined; a rejected result leaves the metric unchanged.
+     *
+     * @param slot
+     *            the airplane's slot
+     * @param mode
+     *            the mode to update
+     * @param delta
+     *            the change to apply
+     */
+    void addToMetric(int slot, Mode mode, double delta);
+
+    /**
+     * Adds each non-zero delta to the metric of its mode for the given slot,
+     * all or nothing.
+     *
+     * @param slot
+     *            the airplane's slot
+     * @param deltasByOrdinal
+     *            the deltas, indexed by Mode.ordinal()
+     */
+    void applyDeltas(int slot, double[] deltasByOrdinal);
+
+    /**
+     * Clears all metrics of the airplane in the given slot.
+     *
+     * @param slot
+     *            the airplane's slot
+     */
+    void clear(int slot);
+}
@@ -0,0 +1,240 @@
+package components.Airplane;
+
+import java.util.Objects;
+
+import components.Airplane.AirplaneKernel.Mode;
+
+/**
+ * Physics stage that advances a whole {@link AirplaneFleet} by one tick from
+ * each airplane's own state, rather than by the same constant deltas for
+ * every airplane. Per airplane it computes:
+ *
+ * <ul>
+ * <li>climb: the commanded climb rate, reduced in air warmer than the
+ * standard atmosphere, which is thinner; descents are not reduced;</li>
+ * <li>speed: the commanded acceleration;</li>
+ * <li>fuel burn: a fixed rate, plus drag, proportional to air density times
+ * speed squared, plus the energy of the altitude gained;</li>
+ * <li>ground speed: the airspeed along DIRECTION plus the wind, WIND_SPEED
+ * knots blowing from the configured direction.</li>
+ * </ul>
+ *
+ * <p>
+ * SPEED and WIND_SPEED are in knots, DIRECTION in degrees, ALTITUDE in feet
+ * and OUTSIDE_AIR_TEMPERATURE in kelvin; an undefined temperature is taken
+ * as the standard 288.15 K, and other undefined metrics as 0. Altitude, speed
+ * and fuel stop at 0 instead of going negative, so an update is never
+ * rejected.
+ * </p>
+ *
+ * <p>
+ * {@link #integrate} is one pass over the fleet's columns with no branch per
+ * airplane apart from the loop itself: headings index a sine table, limits
+ * are Math.max and Math.min, and frozen airplanes are kept by selecting
+ * bits, so the JIT compiler can unroll and pipeline the loop. Each slot is
+ * computed independently, so any split of the fleet into ranges gives
+ * bit-identical results.
+ * </p>
+ */
+public final class FlightPhysics {
+
+    /**
+     * Temperature of the standard atmosphere at sea level, in kelvin.
+     */
+    private static final double STANDARD_TEMPERATURE = 288.15;
+
+    /**
+     * Fuel burned per second whatever the speed.
+     */
+    private static final double BASE_BURN = 0.5;
+
+    /**
+     * Fuel burned per second per knot squared of speed, at standard density.
+     */
+    private static final double DRAG_BURN = 2e-6;
+
+    /**
+     * Fuel burned per foot of altitude gained.
+     */
+    private static final double CLIMB_BURN = 0.01;
+
+    /**
+     * Number of degrees in a circle.
+     */
+    private static final int DEGREES = 360;
+
+    /**
+     * log2 of the number of bits in a bitset word.
+     */
+    private static final int WORD_SHIFT = 6;
+
+    /**
+     * Number of bits in a bitset word.
+     */
+    private static final int WORD_SIZE = 1 << WORD_SHIFT;
+
+    /**
+     * Sine of each whole degree; also used by PositionTracker.
+     */
+    static final double[] SIN = new double[DEGREES];
+
+    /**
+     * Cosine of each whole degree; also used by PositionTracker.
+     */
+    static final double[] COS = new double[DEGREES];
+
+    static {
+        for (int d = 0; d < DEGREES; d++) {
+            SIN[d] = Math.sin(Math.toRadians(d));
+            COS[d] = Math.cos(Math.toRadians(d));
+        }
+    }
+
+    /**
+     * Simulated length of one tick, in seconds.
+     */
+    private final double seconds;
+
+    /**
+     * East component of the wind for one knot of WIND_SPEED.
+     */
+    private final double windEast;
+
+    /**
+     * North component of the wind for one knot of WIND_SPEED.
+     */
+    private final double windNorth;
+
+    /**
+     * Constructor.
+     *
+     * @param seconds
+     *            The simulated length of one tick, in seconds.
+     * @param windFrom
+     *            The direction the wind blows from, in degrees.
+     * @throws IllegalArgumentException
+     *             if seconds is not positive or windFrom is not a valid
+     *             DIRECTION.
+     */
+    public FlightPhysics(double seconds, int windFrom) {
+        if (!(seconds > 0)) {
+            throw new IllegalArgumentException("Tick must be positive.");
+        }
+        MetricRules.check(Mode.DIRECTION, windFrom);
+        this.seconds = seconds;
+        // Wind from windFrom blows toward the opposite direction
+        this.windEast = -SIN[windFrom];
+        this.windNorth = -COS[windFrom];
+    }
+
+    /**
+     * Advances the airplanes in slots lo up to hi - 1 of {@code fleet} by
+     * one tick, except those whose bit is set in {@code frozen}, and stores
+     * their ground speeds, in knots, in {@code groundSpeeds}. ALTITUDE, SPEED
+     * and FUEL_QUANTITY become defined for every airplane advanced.
+     *
+     * <p>
+     * Different threads may integrate disjoint ranges of the same fleet at
+     * once if the ranges start and end on multiples of 64 (or at the end of
+     * the fleet), since defined bits are written a word at a time.
+     * </p>
+     *
+     * @param fleet
+     *            The fleet.
+     * @param lo
+     *            The first slot.
+     * @param hi
+     *            One past the last slot.
+     * @param climbRate
+     *            The commanded climb rate, in feet per second; negative to
+     *            descend.
+     * @param acceleration
+     *            The commanded acceleration, in knots per second.
+     * @param frozen
+     *            Bitset of slots left unchanged, indexed by slot / 64.
+     * @param groundSpeeds
+     *            Ground speeds, indexed by slot.
+     */
+    public void integrate(AirplaneFleet fleet, int lo, int hi,
+            double climbRate, double acceleration, long[] frozen,
+            double[] groundSpeeds) {
+        Objects.checkFromToIndex(lo, hi, fleet.capacity());
+        fleet.preserveRange(lo, hi);
+        double[] altitude = fleet.column(Mode.ALTITUDE);
+        double[] speed = fleet.column(Mode.SPEED);
+        double[] fuel = fleet.column(Mode.FUEL_QUANTITY);
+        double[] direction = fleet.column(Mode.DIRECTION);
+        double[] temperature = fleet.column(Mode.OUTSIDE_AIR_TEMPERATURE);
+        double[] wind = fleet.column(Mode.WIND_SPEED);
+        long[] altitudeBits = fleet.definedBits(Mode.ALTITUDE);
+        long[] speedBits = fleet.definedBits(Mode.SPEED);
+        long[] fuelBits = fleet.definedBits(Mode.FUEL_QUANTITY);
+        double dt = this.seconds;
+        for (int base = lo & -WORD_SIZE; base < hi; base += WORD_SIZE) {
+            int word = base >>> WORD_SHIFT;
+            int from = Math.max(lo, base);
+            int to = Math.min(hi, base + WORD_SIZE);
+            long frozenWord = frozen[word];
+            for (int s = from; s < to; s++) {
+                double t = temperature[s];
+                // Math.signum(t) is 0 exactly when the temperature is unset
+                double density = STANDARD_TEMPERATURE
+                        / (t + STANDARD_TEMPERATURE * (1 - Math.signum(t)));
+                double climb = Math.min(climbRate, climbRate * density);
+                double oldAltitude = altitude[s];
+                double newAltitude = Math.max(0, oldAltitude + climb * dt);
+                double gained = Math.max(0, newAltitude - oldAltitude);
+                double v = Math.max(0, speed[s] + acceleration * dt);
+                double burn = (BASE_BURN + DRAG_BURN * density * v * v) * dt
+                        + CLIMB_BURN * gained;
+                double newFuel = Math.max(0, fuel[s] - burn);
+                int heading = (int) direction[s];
+                double east = v * SIN[heading] + wind[s] * this.windEast;
+                double north = v * COS[heading] + wind[s] * this.windNorth;
+                double ground = Math.sqrt(east * east + north * north);
+
+                // All ones if the slot is frozen, so the old bits are kept
+                long keep = -((frozenWord >>> s) & 1);
+                altitude[s] = select(keep, oldAltitude, newAltitude);
+                speed[s] = select(keep, speed[s], v);
+                fuel[s] = select(keep, fuel[s], newFuel);
+                groundSpeeds[s] = select(keep, groundSpeeds[s], ground);
+            }
+            long advanced = rangeMask(from, to) & ~frozenWord;
+            altitudeBits[word] |= advanced;
+            speedBits[word] |= advanced;
+            fuelBits[word] |= advanced;
+        }
+    }
+
+    /**
+     * Returns {@code old} where {@code keep} is all ones and {@code updated}
+     * where it is zero, without branching.
+     *
+     * @param keep
+     *            All ones or zero.
+     * @param old
+     *            The value kept.
+     * @param updated
+     *            The value stored otherwise.
+     * @return The selected value.
+     */
+    private static double select(long keep, double old, double updated) {
+        return Double.longBitsToDouble(Double.doubleToRawLongBits(old) & keep
+                | Double.doubleToRawLongBits(updated) & ~keep);
+    }
+
+    /**
+     * Returns the bits of slots from up to to - 1 within their bitset word.
+     *
+     * @param from
+     *            The first slot.
+     * @param to
+     *            One past the last slot, at most one word past from.
+     * @return The mask.
+     */
+    private static long rangeMask(int from, int to) {
+        long upTo = -1L >>> (WORD_SIZE - (to - (from & -WORD_SIZE)));
+        return upTo & (-1L << from);
+    }
+}
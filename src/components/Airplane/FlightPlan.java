@@ -0,0 +1,543 @@
+package components.Airplane;
+
+import java.util.Arrays;
+
+import components.Airplane.AirplaneKernel.Mode;
+
+/**
+ * A sequence of flight phases, each applying the same deltas (as with
+ * {@link Airplane#applyDeltas(double[])}) once per tick for a number of
+ * ticks. The plan is compiled into a table when it is built, so advancing an
+ * airplane by any number of ticks costs O(number of phases) rather than one
+ * applyDeltas call per tick.
+ *
+ * <p>
+ * Within a phase every metric changes linearly, so the first tick at which a
+ * metric would break the setMetric rules (e.g., fuel going negative, or a
+ * direction reaching 360) is found by solving for it. Like applyDeltas, a
+ * failing tick changes nothing: advancing stops just before it, and the
+ * {@link Outcome} reports the tick, phase and mode. When two modes fail at the
+ * same tick, the one with the lower ordinal is reported, as applyDeltas would.
+ * </p>
+ *
+ * <p>
+ * The closed form computes {@code value + delta * ticks} where a tick loop
+ * adds {@code delta} repeatedly. The two agree exactly whenever every sum is
+ * exactly representable, e.g., for whole-number metrics and deltas, as in the
+ * simulators; otherwise they may differ by rounding.
+ * </p>
+ */
+public final class FlightPlan {
+
+    /**
+     * Number of modes.
+     */
+    private static final int MODE_COUNT = Mode.values().length;
+
+    /**
+     * Modes indexed by ordinal.
+     */
+    private static final Mode[] MODES = Mode.values();
+
+    /**
+     * Name of each phase.
+     */
+    private final String[] names;
+
+    /**
+     * Number of ticks in each phase.
+     */
+    private final int[] durations;
+
+    /**
+     * Tick at which each phase ends, i.e., the total duration of it and every
+     * phase before it.
+     */
+    private final long[] ends;
+
+    /**
+     * Per-tick deltas of each phase, MODE_COUNT per phase.
+     */
+    private final double[] deltas;
+
+    /**
+     * Constructor from a finished builder's arrays.
+     *
+     * @param names
+     *            The phase names.
+     * @param durations
+     *            The phase durations.
+     * @param deltas
+     *            The per-tick deltas, MODE_COUNT per phase.
+     */
+    private FlightPlan(String[] names, int[] durations, double[] deltas) {
+        this.names = names;
+        this.durations = durations;
+        this.deltas = deltas;
+        this.ends = new long[names.length];
+        long end = 0;
+        for (int p = 0; p < names.length; p++) {
+            end += durations[p];
+            this.ends[p] = end;
+        }
+    }
+
+    /**
+     * Returns a builder for a new plan.
+     *
+     * @return The builder.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Builder of a FlightPlan, one phase at a time.
+     */
+    public static final class Builder {
+
+        /**
+         * Number of phases added.
+         */
+        private int count;
+
+        /**
+         * Phase names.
+         */
+        private String[] names = new String[0];
+
+        /**
+         * Phase durations.
+         */
+        private int[] durations = new int[0];
+
+        /**
+         * Per-tick deltas, MODE_COUNT per phase.
+         */
+        private double[] deltas = new double[0];
+
+        /**
+         * Constructor.
+         */
+        Builder() {
+        }
+
+        /**
+         * Adds a phase after the ones already added.
+         *
+         * @param name
+         *            The name of the phase (e.g., "Takeoff").
+         * @param duration
+         *            The number of ticks in the phase.
+         * @param deltasByOrdinal
+         *            The change applied each tick, indexed by Mode.ordinal();
+         *            copied.
+         * @return This builder.
+         * @throws IllegalArgumentException
+         *             if duration is negative or deltasByOrdinal does not have
+         *             one entry per mode.
+         */
+        public Builder phase(String name, int duration,
+                double[] deltasByOrdinal) {
+            if (duration < 0) {
+                throw new IllegalArgumentException(
+                        "Duration must be non-negative.");
+            }
+            MetricRules.checkDeltas(deltasByOrdinal);
+            if (this.count == this.names.length) {
+                int grown = Math.max(1, this.count * 2);
+                this.names = Arrays.copyOf(this.names, grown);
+                this.durations = Arrays.copyOf(this.durations, grown);
+                this.deltas = Arrays.copyOf(this.deltas, grown * MODE_COUNT);
+            }
+            this.names[this.count] = name;
+            this.durations[this.count] = duration;
+            System.arraycopy(deltasByOrdinal, 0, this.deltas,
+                    this.count * MODE_COUNT, MODE_COUNT);
+            this.count++;
+            return this;
+        }
+
+        /**
+         * Compiles the phases added so far into a plan.
+         *
+         * @return The plan.
+         */
+        public FlightPlan build() {
+            return new FlightPlan(Arrays.copyOf(this.names, this.count),
+                    Arrays.copyOf(this.durations, this.count),
+                    Arrays.copyOf(this.deltas, this.count * MODE_COUNT));
+        }
+    }
+
+    /**
+     * Returns the number of phases.
+     *
+     * @return The number of phases.
+     */
+    public int phaseCount() {
+        return this.names.length;
+    }
+
+    /**
+     * Returns the name of phase {@code p}.
+     *
+     * @param p
+     *            The phase index.
+     * @return The name.
+     */
+    public String phaseName(int p) {
+        return this.names[p];
+    }
+
+    /**
+     * Returns the number of ticks in phase {@code p}.
+     *
+     * @param p
+     *            The phase index.
+     * @return The duration.
+     */
+    public int phaseDuration(int p) {
+        return this.durations[p];
+    }
+
+    /**
+     * Returns a copy of the per-tick deltas of phase {@code p}.
+     *
+     * @param p
+     *            The phase index.
+     * @return The deltas, indexed by Mode.ordinal().
+     */
+    public double[] phaseDeltas(int p) {
+        return Arrays.copyOfRange(this.deltas, p * MODE_COUNT,
+                (p + 1) * MODE_COUNT);
+    }
+
+    /**
+     * Returns the tick at which phase {@code p} ends; advancing that many
+     * ticks gives the state at the end of the phase.
+     *
+     * @param p
+     *            The phase index.
+     * @return The number of ticks in phases 0 through p.
+     */
+    public long phaseEnd(int p) {
+        return this.ends[p];
+    }
+
+    /**
+     * Returns the total number of ticks in the plan.
+     *
+     * @return The total duration.
+     */
+    public long totalTicks() {
+        long total = 0;
+        if (this.ends.length > 0) {
+            total = this.ends[this.ends.length - 1];
+        }
+        return total;
+    }
+
+    /**
+     * Returns the phase that tick {@code tick} belongs to; ticks are numbered
+     * from 1.
+     *
+     * @param tick
+     *            The tick.
+     * @return The phase index.
+     * @throws IllegalArgumentException
+     *             if tick is not in [1, totalTicks()].
+     */
+    public int phaseOf(long tick) {
+        if (tick < 1 || tick > this.totalTicks()) {
+            throw new IllegalArgumentException(
+                    "Tick must be between 1 and " + this.totalTicks() + ".");
+        }
+        int p = Arrays.binarySearch(this.ends, tick);
+        if (p < 0) {
+            p = -p - 1;
+        } else {
+            // Skip back over empty phases ending at the same tick
+            while (p > 0 && this.ends[p - 1] == tick) {
+                p--;
+            }
+        }
+        return p;
+    }
+
+    /**
+     * Applies the first {@code ticks} ticks of the plan to {@code airplane},
+     * stopping before the first tick that would fail validation.
+     *
+     * @param airplane
+     *            The airplane to advance.
+     * @param ticks
+     *            The number of ticks to apply, from the start of the plan; at
+     *            most totalTicks().
+     * @return The outcome: how many ticks were applied and, if a tick failed,
+     *         which.
+     * @throws IllegalArgumentException
+     *             if ticks is not in [0, totalTicks()].
+     */
+    public Outcome advance(Airplane airplane, long ticks) {
+        double[] values = new double[MODE_COUNT];
+        int defined = 0;
+        for (Mode mode : MODES) {
+            if (airplane.isDefined(mode)) {
+                values[mode.ordinal()] = airplane.getMetric(mode);
+                defined |= 1 << mode.ordinal();
+            }
+        }
+        double[] before = values.clone();
+        Outcome outcome = this.advance(values, defined, ticks);
+        int added = outcome.definedModes() & ~defined;
+        for (Mode mode : MODES) {
+            int m = mode.ordinal();
+            if ((added & (1 << m)) != 0 || values[m] != before[m]) {
+                airplane.setMetric(mode, values[m]);
+            }
+        }
+        return outcome;
+    }
+
+    /**
+     * Applies the first {@code ticks} ticks of the plan to the metrics in
+     * {@code values}, stopping before the first tick that would fail
+     * validation. This is the allocation-light form of
+     * {@link #advance(Airplane, long)} for what-if queries.
+     *
+     * @param values
+     *            The metrics, indexed by Mode.ordinal(), with undefined ones
+     *            0.0; updated in place.
+     * @param definedModes
+     *            The bitmask of defined modes.
+     * @param ticks
+     *            The number of ticks to apply, from the start of the plan.
+     * @return The outcome: how many ticks were applied, the resulting defined
+     *         modes and, if a tick failed, which.
+     * @throws IllegalArgumentException
+     *             if ticks is not in [0, totalTicks()], or values does not
+     *             have one entry per mode.
+     */
+    public Outcome advance(double[] values, int definedModes, long ticks) {
+        if (ticks < 0 || ticks > this.totalTicks()) {
+            throw new IllegalArgumentException(
+                    "Ticks must be between 0 and " + this.totalTicks() + ".");
+        }
+        if (values == null || values.length != MODE_COUNT) {
+            throw new IllegalArgumentException(
+                    "Values must have one entry per mode.");
+        }
+        int defined = definedModes;
+        long done = 0;
+        int p = -1;
+        while (done < ticks) {
+            p++;
+            int base = p * MODE_COUNT;
+            long n = Math.min(this.durations[p], ticks - done);
+            // Find the first tick of the phase that fails, if any
+            long failing = Long.MAX_VALUE;
+            int failedMode = -1;
+            for (int m = 0; m < MODE_COUNT; m++) {
+                double d = this.deltas[base + m];
+                if (d != 0) {
+                    long k = firstInvalidStep(MODES[m], values[m], d);
+                    if (k < failing) {
+                        failing = k;
+                        failedMode = m;
+                    }
+                }
+            }
+            long steps = Math.min(n, failing - 1);
+            if (steps > 0) {
+                for (int m = 0; m < MODE_COUNT; m++) {
+                    double d = this.deltas[base + m];
+                    if (d != 0) {
+                        values[m] += d * steps;
+                        defined |= 1 << m;
+                    }
+                }
+            }
+            done += steps;
+            if (failing <= n) {
+                return new Outcome(this, done, defined, p, MODES[failedMode]);
+            }
+        }
+        return new Outcome(this, done, defined, p, null);
+    }
+
+    /**
+     * Returns the first step k >= 1 at which {@code value + delta * k} is not
+     * a valid metric for {@code mode}. The estimate from dividing is checked
+     * and corrected against the rules, so rounding cannot move it.
+     *
+     * @param mode
+     *            The metric's mode.
+     * @param value
+     *            The metric's value before the first step.
+     * @param delta
+     *            The non-zero change per step.
+     * @return The step, or Long.MAX_VALUE if the metric never fails.
+     */
+    private static long firstInvalidStep(Mode mode, double value,
+            double delta) {
+        double limit;
+        if (delta < 0) {
+            // Fails once below zero
+            limit = Math.floor(value / -delta) + 1;
+        } else if (mode == Mode.DIRECTION) {
+            // Fails once at or above a full turn
+            limit = Math.ceil((MetricRules.FULL_TURN - value) / delta);
+        } else {
+            return Long.MAX_VALUE;
+        }
+        if (!(limit < Long.MAX_VALUE)) {
+            return Long.MAX_VALUE;
+        }
+        long k = Math.max(1, (long) limit);
+        while (k > 1 && !MetricRules.isValid(mode, value + delta * (k - 1))) {
+            k--;
+        }
+        while (MetricRules.isValid(mode, value + delta * k)) {
+            k++;
+        }
+        return k;
+    }
+
+    /**
+     * Result of advancing along a plan.
+     */
+    public static final class Outcome {
+
+        /**
+         * The plan advanced along.
+         */
+        private final FlightPlan plan;
+
+        /**
+         * Number of ticks applied.
+         */
+        private final long ticks;
+
+        /**
+         * Bitmask of modes defined afterwards.
+         */
+        private final int defined;
+
+        /**
+         * Index of the last phase entered, or -1 if none.
+         */
+        private final int lastPhase;
+
+        /**
+         * Mode whose validation failed, or null.
+         */
+        private final Mode failedMode;
+
+        /**
+         * Constructor.
+         *
+         * @param plan
+         *            The plan advanced along.
+         * @param ticks
+         *            The number of ticks applied.
+         * @param defined
+         *            The bitmask of modes defined afterwards.
+         * @param lastPhase
+         *            The index of the last phase entered, or -1.
+         * @param failedMode
+         *            The mode whose validation failed, or null.
+         */
+        Outcome(FlightPlan plan, long ticks, int defined, int lastPhase,
+                Mode failedMode) {
+            this.plan = plan;
+            this.ticks = ticks;
+            this.defined = defined;
+            this.lastPhase = lastPhase;
+            this.failedMode = failedMode;
+        }
+
+        /**
+         * Returns the number of ticks applied.
+         *
+         * @return The ticks applied.
+         */
+        public long ticksApplied() {
+            return this.ticks;
+        }
+
+        /**
+         * Returns the bitmask of modes defined after advancing: bit i is set
+         * iff the mode with ordinal i is defined.
+         *
+         * @return The defined modes.
+         */
+        public int definedModes() {
+            return this.defined;
+        }
+
+        /**
+         * Reports whether a tick failed validation.
+         *
+         * @return True if advancing stopped early.
+         */
+        public boolean failed() {
+            return this.failedMode != null;
+        }
+
+        /**
+         * Returns the tick that failed validation.
+         *
+         * @return The failing tick, numbered from 1.
+         * @throws IllegalStateException
+         *             if no tick failed.
+         */
+        public long failureTick() {
+            this.checkFailed();
+            return this.ticks + 1;
+        }
+
+        /**
+         * Returns the mode whose validation failed.
+         *
+         * @return The mode.
+         * @throws IllegalStateException
+         *             if no tick failed.
+         */
+        public Mode failedMode() {
+            this.checkFailed();
+            return this.failedMode;
+        }
+
+        /**
+         * Returns the name of the phase whose tick failed validation.
+         *
+         * @return The phase name.
+         * @throws IllegalStateException
+         *             if no tick failed.
+         */
+        public String failedPhase() {
+            this.checkFailed();
+            return this.plan.phaseName(this.lastPhase);
+        }
+
+        /**
+         * Checks that a tick failed.
+         */
+        private void checkFailed() {
+            if (!this.failed()) {
+                throw new IllegalStateException("No tick failed.");
+            }
+        }
+
+        @Override
+        public String toString() {
+            if (!this.failed()) {
+                return "Applied " + this.ticks + " ticks.";
+            }
+            return "Applied " + this.ticks + " ticks; tick " + (this.ticks + 1)
+                    + " (" + this.failedPhase() + ") would make "
+                    + this.failedMode.name() + " invalid.";
+        }
+    }
+}
@@ -0,0 +1,298 @@
+package components.Airplane;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.LongSupplier;
+
+import components.Airplane.AirplaneKernel.Mode;
+
+/**
+ * Binary log of metric changes, one fixed-width record per change: timestamp,
+ * airplane id, Mode ordinal and new value. Records are collected in a direct
+ * buffer and written to the file {@value #BATCH_RECORDS} at a time, so
+ * recording costs a few stores per change rather than a system call.
+ *
+ * <p>
+ * Airplanes are recorded by wrapping them with {@link #attach(Airplane)};
+ * {@link FlightReplayer} reads the log back. Timestamps come from the clock
+ * given to the constructor and are read under the recorder's lock, so as long
+ * as the clock never goes backwards neither do the records. One recorder may
+ * be shared by airplanes on several threads.
+ * </p>
+ *
+ * <p>
+ * The file starts with a {@value #FILE_HEADER_SIZE}-byte header (magic number,
+ * format version and record size). Each record is {@value #RECORD_SIZE} bytes:
+ * the timestamp (long), the airplane id (int), the Mode ordinal or
+ * {@value #CLEAR} if every metric of the airplane was cleared (int), and the
+ * value (double). All values are stored little-endian.
+ * </p>
+ */
+public final class FlightRecorder implements Closeable {
+
+    /**
+     * Magic number identifying a flight log ("AREC").
+     */
+    static final int MAGIC = 0x41524543;
+
+    /**
+     * Version of the record layout.
+     */
+    static final int VERSION = 1;
+
+    /**
+     * Size in bytes of the file header.
+     */
+    static final int FILE_HEADER_SIZE = 64;
+
+    /**
+     * Size in bytes of one record.
+     */
+    static final int RECORD_SIZE = 24;
+
+    /**
+     * Offset of the magic number in the file header.
+     */
+    static final int MAGIC_OFFSET = 0;
+
+    /**
+     * Offset of the format version in the file header.
+     */
+    static final int VERSION_OFFSET = 4;
+
+    /**
+     * Offset of the record size in the file header.
+     */
+    static final int RECORD_SIZE_OFFSET = 8;
+
+    /**
+     * Offset of the timestamp in a record.
+     */
+    static final int TIMESTAMP_OFFSET = 0;
+
+    /**
+     * Offset of the airplane id in a record.
+     */
+    static final int ID_OFFSET = 8;
+
+    /**
+     * Offset of the Mode ordinal in a record.
+     */
+    static final int MODE_OFFSET = 12;
+
+    /**
+     * Offset of the value in a record.
+     */
+    static final int VALUE_OFFSET = 16;
+
+    /**
+     * Mode ordinal recorded when every metric of an airplane is cleared.
+     */
+    static final int CLEAR = -1;
+
+    /**
+     * Number of records buffered before they are written to the file.
+     */
+    private static final int BATCH_RECORDS = 4096;
+
+    /**
+     * Channel of the log file.
+     */
+    private final FileChannel channel;
+
+    /**
+     * Records not yet written to the file.
+     */
+    private final ByteBuffer batch;
+
+    /**
+     * Source of record timestamps.
+     */
+    private final LongSupplier clock;
+
+    /**
+     * Id given to the next attached airplane.
+     */
+    private int nextId;
+
+    /**
+     * Creates a new, empty log at {@code file}, replacing any existing file.
+     *
+     * @param file
+     *            The log file.
+     * @param clock
+     *            The source of record timestamps, e.g., simulated milliseconds;
+     *            it should never go backwards.
+     * @throws IOException
+     *             if the file cannot be created.
+     */
+    public FlightRecorder(Path file, LongSupplier clock) throws IOException {
+        this.clock = clock;
+        this.batch = ByteBuffer.allocateDirect(BATCH_RECORDS * RECORD_SIZE)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC_OFFSET, MAGIC);
+            header.putInt(VERSION_OFFSET, VERSION);
+            header.putInt(RECORD_SIZE_OFFSET, RECORD_SIZE);
+            while (header.hasRemaining()) {
+                this.channel.write(header);
+            }
+        } catch (IOException e) {
+            this.channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns an airplane whose changes are recorded under a new id. The
+     * airplane's current metrics are recorded first, so replay does not need
+     * to know how it started.
+     *
+     * @param airplane
+     *            The airplane to record; it must not be changed except
+     *            through the returned wrapper.
+     * @return The recording wrapper.
+     */
+    public synchronized Airplane attach(Airplane airplane) {
+        MetricObserver observer = this.newObserver();
+        for (Mode mode : Mode.values()) {
+            if (airplane.isDefined(mode)) {
+                observer.metricChanged(mode, airplane.getMetric(mode));
+            }
+        }
+        return new ObservedAirplane(airplane, observer);
+    }
+
+    /**
+     * Returns an observer that records under a new id, starting with a clear
+     * record.
+     *
+     * @return The observer.
+     */
+    private synchronized MetricObserver newObserver() {
+        int id = this.nextId;
+        this.nextId++;
+        this.append(id, CLEAR, 0.0);
+        return new Recording(id);
+    }
+
+    /**
+     * Records the changes of one airplane under its id.
+     */
+    private final class Recording implements MetricObserver {
+
+        /**
+         * The id the airplane is recorded under.
+         */
+        private final int id;
+
+        /**
+         * Constructor.
+         *
+         * @param id
+         *            The id the airplane is recorded under.
+         */
+        Recording(int id) {
+            this.id = id;
+        }
+
+        @Override
+        public void metricChanged(Mode mode, double value) {
+            synchronized (FlightRecorder.this) {
+                FlightRecorder.this.append(this.id, mode.ordinal(), value);
+            }
+        }
+
+        @Override
+        public void metricsCleared() {
+            synchronized (FlightRecorder.this) {
+                FlightRecorder.this.append(this.id, CLEAR, 0.0);
+            }
+        }
+
+        @Override
+        public MetricObserver newObserver() {
+            return FlightRecorder.this.newObserver();
+        }
+    }
+
+    /**
+     * Adds one record to the batch, writing the batch out first if it is
+     * full. The caller holds the lock.
+     *
+     * @param id
+     *            The airplane's id.
+     * @param ordinal
+     *            The Mode ordinal, or CLEAR.
+     * @param value
+     *            The value.
+     */
+    private void append(int id, int ordinal, double value) {
+        if (!this.batch.hasRemaining()) {
+            this.writeBatch();
+        }
+        int at = this.batch.position();
+        this.batch.putLong(at + TIMESTAMP_OFFSET, this.clock.getAsLong());
+        this.batch.putInt(at + ID_OFFSET, id);
+        this.batch.putInt(at + MODE_OFFSET, ordinal);
+        this.batch.putDouble(at + VALUE_OFFSET, value);
+        this.batch.position(at + RECORD_SIZE);
+    }
+
+    /**
+     * Writes the buffered records to the file and empties the batch. The
+     * caller holds the lock.
+     *
+     * @throws UncheckedIOException
+     *             if the write fails; recording happens inside setMetric,
+     *             which cannot throw a checked exception.
+     */
+    private void writeBatch() {
+        this.batch.flip();
+        try {
+            while (this.batch.hasRemaining()) {
+                this.channel.write(this.batch);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            this.batch.clear();
+        }
+    }
+
+    /**
+     * Writes every record made so far to the file, so that a replayer opened
+     * afterwards sees them.
+     */
+    public synchronized void flush() {
+        this.writeBatch();
+    }
+
+    /**
+     * Writes the remaining records and closes the file. Attached airplanes
+     * must not be changed after closing.
+     *
+     * @throws IOException
+     *             if writing or closing the file fails.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            this.writeBatch();
+        } catch (UncheckedIOException e) {
+            this.channel.close();
+            throw e.getCause();
+        }
+        this.channel.close();
+    }
+}
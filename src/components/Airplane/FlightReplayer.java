@@ -0,0 +1,219 @@
+package components.Airplane;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import components.Airplane.AirplaneKernel.Mode;
+
+/**
+ * Reads a log written by {@link FlightRecorder} and rebuilds airplane state as
+ * of any timestamp. The log is memory-mapped in windows of
+ * {@value #WINDOW_RECORDS} records and read front to back, stopping at the
+ * first record later than the requested time, so a replay costs one
+ * sequential pass over the part of the file it needs.
+ *
+ * <p>
+ * A partial record at the end of the file (e.g., from a crash while writing)
+ * is ignored.
+ * </p>
+ */
+public final class FlightReplayer implements Closeable {
+
+    /**
+     * Modes indexed by ordinal.
+     */
+    private static final Mode[] MODES = Mode.values();
+
+    /**
+     * log2 of the number of records per mapped window.
+     */
+    private static final int WINDOW_SHIFT = 20;
+
+    /**
+     * Number of records per mapped window.
+     */
+    private static final int WINDOW_RECORDS = 1 << WINDOW_SHIFT;
+
+    /**
+     * Channel of the log file.
+     */
+    private final FileChannel channel;
+
+    /**
+     * Number of complete records in the log.
+     */
+    private final long recordCount;
+
+    /**
+     * Receives the records selected by a replay.
+     */
+    private interface Target {
+
+        /**
+         * Applies one record.
+         *
+         * @param id
+         *            The airplane's id.
+         * @param ordinal
+         *            The Mode ordinal, or FlightRecorder.CLEAR.
+         * @param value
+         *            The value.
+         */
+        void apply(int id, int ordinal, double value);
+    }
+
+    /**
+     * Opens the log at {@code file} for replay.
+     *
+     * @param file
+     *            The log file.
+     * @throws IOException
+     *             if the file cannot be opened or is not a flight log.
+     */
+    public FlightReplayer(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = ByteBuffer
+                    .allocate(FlightRecorder.FILE_HEADER_SIZE)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining()
+                    && this.channel.read(header, header.position()) >= 0) {
+                continue;
+            }
+            if (header.hasRemaining()
+                    || header.getInt(FlightRecorder.MAGIC_OFFSET)
+                            != FlightRecorder.MAGIC
+                    || header.getInt(FlightRecorder.VERSION_OFFSET)
+                            != FlightRecorder.VERSION
+                    || header.getInt(FlightRecorder.RECORD_SIZE_OFFSET)
+                            != FlightRecorder.RECORD_SIZE) {
+                throw new IOException(file + " is not a flight log.");
+            }
+            this.recordCount = (this.channel.size()
+                    - FlightRecorder.FILE_HEADER_SIZE)
+                    / FlightRecorder.RECORD_SIZE;
+        } catch (IOException | RuntimeException e) {
+            this.channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the number of complete records in the log.
+     *
+     * @return The record count.
+     */
+    public long recordCount() {
+        return this.recordCount;
+    }
+
+    /**
+     * Sets every slot of {@code fleet} to the state of the airplane with the
+     * same id as of {@code timestamp}: the fleet is cleared, then every record
+     * up to and including that time is applied.
+     *
+     * @param timestamp
+     *            The time to rebuild the state at.
+     * @param fleet
+     *            The fleet to rebuild; it must have a slot for every recorded
+     *            airplane id.
+     * @return The number of records applied.
+     * @throws IOException
+     *             if the log cannot be read.
+     * @throws IndexOutOfBoundsException
+     *             if the log holds an id that is not a slot of the fleet.
+     */
+    public long replay(long timestamp, AirplaneFleet fleet) throws IOException {
+        fleet.clear();
+        return this.scan(timestamp, (id, ordinal, value) -> {
+            if (ordinal == FlightRecorder.CLEAR) {
+                fleet.clear(id);
+            } else {
+                fleet.setMetric(id, MODES[ordinal], value);
+            }
+        });
+    }
+
+    /**
+     * Sets {@code airplane} to the state of the recorded airplane {@code id}
+     * as of {@code timestamp}.
+     *
+     * @param timestamp
+     *            The time to rebuild the state at.
+     * @param id
+     *            The id of the recorded airplane.
+     * @param airplane
+     *            The airplane to rebuild.
+     * @return The number of records applied.
+     * @throws IOException
+     *             if the log cannot be read.
+     */
+    public long replay(long timestamp, int id, Airplane airplane)
+            throws IOException {
+        airplane.clear();
+        return this.scan(timestamp, (recordId, ordinal, value) -> {
+            if (recordId == id) {
+                if (ordinal == FlightRecorder.CLEAR) {
+                    airplane.clear();
+                } else {
+                    airplane.setMetric(MODES[ordinal], value);
+                }
+            }
+        });
+    }
+
+    /**
+     * Passes every record up to and including {@code timestamp} to
+     * {@code target}, in log order.
+     *
+     * @param timestamp
+     *            The last time to replay.
+     * @param target
+     *            The receiver of the records.
+     * @return The number of records read.
+     * @throws IOException
+     *             if the log cannot be mapped.
+     */
+    private long scan(long timestamp, Target target) throws IOException {
+        long read = 0;
+        while (read < this.recordCount) {
+            int records = (int) Math.min(WINDOW_RECORDS,
+                    this.recordCount - read);
+            MappedByteBuffer window = this.channel.map(
+                    FileChannel.MapMode.READ_ONLY,
+                    FlightRecorder.FILE_HEADER_SIZE
+                            + read * FlightRecorder.RECORD_SIZE,
+                    (long) records * FlightRecorder.RECORD_SIZE);
+            window.order(ByteOrder.LITTLE_ENDIAN);
+            for (int r = 0; r < records; r++) {
+                int at = r * FlightRecorder.RECORD_SIZE;
+                if (window.getLong(
+                        at + FlightRecorder.TIMESTAMP_OFFSET) > timestamp) {
+                    return read;
+                }
+                target.apply(window.getInt(at + FlightRecorder.ID_OFFSET),
+                        window.getInt(at + FlightRecorder.MODE_OFFSET),
+                        window.getDouble(at + FlightRecorder.VALUE_OFFSET));
+                read++;
+            }
+        }
+        return read;
+    }
+
+    /**
+     * Closes the log file.
+     *
+     * @throws IOException
+     *             if closing fails.
+     */
+    @Override
+    public void close() throws IOException {
+        this.channel.close();
+    }
+}
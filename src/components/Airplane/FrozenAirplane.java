@@ -0,0 +1,197 @@
+package components.Airplane;
+
+/**
+ * Immutable Airplane returned by {@link Airplane#snapshot()}. Its metrics
+ * array may be shared with the airplane it was taken from, which copies the
+ * array before its next change instead, so taking a snapshot costs no copy.
+ * Every method that would change the airplane throws
+ * UnsupportedOperationException. Like other implementations, a snapshot is
+ * equal only to other snapshots.
+ *
+ * @convention: metrics.length = Mode.values().length and is never changed
+ *              after construction. defined has no bits set at or above
+ *              position Mode.values().length, and for every mode whose bit is
+ *              clear in defined, metrics[mode.ordinal()] = 0.0.
+ *
+ * @correspondence: Mode m is defined iff bit m.ordinal() of defined is set, in
+ *                  which case its metric is metrics[m.ordinal()].
+ */
+final class FrozenAirplane extends AirplaneSecondary {
+
+    /**
+     * Number of modes, i.e., the length of the metrics array.
+     */
+    private static final int MODE_COUNT = Mode.values().length;
+
+    /**
+     * Metrics indexed by Mode.ordinal(), possibly shared and never changed.
+     */
+    private final double[] metrics;
+
+    /**
+     * Bitmask of defined modes.
+     */
+    private final int defined;
+
+    /**
+     * Constructor.
+     *
+     * @param metrics
+     *            The metrics, indexed by Mode.ordinal(), holding 0.0 for every
+     *            undefined mode; no one may change the array afterwards.
+     * @param defined
+     *            The bitmask of defined modes.
+     */
+    FrozenAirplane(double[] metrics, int defined) {
+        this.metrics = metrics;
+        this.defined = defined;
+    }
+
+    /**
+     * Returns a snapshot of any airplane, copying its defined metrics.
+     *
+     * @param source
+     *            The airplane to copy.
+     * @return The snapshot.
+     */
+    static FrozenAirplane copyOf(Airplane source) {
+        double[] metrics = new double[MODE_COUNT];
+        int defined = 0;
+        for (Mode mode : Mode.values()) {
+            if (source.isDefined(mode)) {
+                metrics[mode.ordinal()] = source.getMetric(mode);
+                defined |= 1 << mode.ordinal();
+            }
+        }
+        return new FrozenAirplane(metrics, defined);
+    }
+
+    /**
+     * Returns the exception thrown by every mutator.
+     *
+     * @return The exception.
+     */
+    private static UnsupportedOperationException immutable() {
+        return new UnsupportedOperationException(
+                "Airplane snapshots are immutable.");
+    }
+
+    @Override
+    public void setMetric(Mode mode, double value) {
+        throw immutable();
+    }
+
+    @Override
+    public double getMetric(Mode mode) {
+        if ((this.defined & (1 << mode.ordinal())) == 0) {
+            throw new IllegalStateException(mode.name() + " is not defined.");
+        }
+        return this.metrics[mode.ordinal()];
+    }
+
+    @Override
+    public boolean isDefined(Mode mode) {
+        return (this.defined & (1 << mode.ordinal())) != 0;
+    }
+
+    @Override
+    public void addToMetric(Mode mode, double delta) {
+        throw immutable();
+    }
+
+    @Override
+    public void applyDeltas(double[] deltasByOrdinal) {
+        throw immutable();
+    }
+
+    @Override
+    public void clear() {
+        throw immutable();
+    }
+
+    @Override
+    public void transferFrom(Airplane source) {
+        throw immutable();
+    }
+
+    /**
+     * Returns an empty snapshot.
+     *
+     * @return A new airplane with no metric defined.
+     */
+    @Override
+    public Airplane newInstance() {
+        return new FrozenAirplane(new double[MODE_COUNT], 0);
+    }
+
+    /**
+     * Returns this airplane, which is already immutable.
+     *
+     * @return This airplane.
+     */
+    @Override
+    public Airplane snapshot() {
+        return this;
+    }
+
+    @Override
+    boolean sameState(AirplaneSecondary other) {
+        FrozenAirplane that = (FrozenAirplane) other;
+        if (this.defined != that.defined) {
+            return false;
+        }
+        for (int i = 0; i < MODE_COUNT; i++) {
+            if (Double.doubleToLongBits(this.metrics[i]) != Double
+                    .doubleToLongBits(that.metrics[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    int stateHash() {
+        long mixed = 0;
+        for (int i = 0; i < MODE_COUNT; i++) {
+            if ((this.defined & (1 << i)) != 0) {
+                mixed = mixMetric(mixed, this.metrics[i]);
+            }
+        }
+        return finishHash(mixed, this.defined);
+    }
+
+    @Override
+    public void setAltitude(double altitude) {
+        this.setMetric(Mode.ALTITUDE, altitude);
+    }
+
+    @Override
+    public double getAltitude() {
+        return this.getMetric(Mode.ALTITUDE);
+    }
+
+    @Override
+    public void setSpeed(double speed) {
+        this.setMetric(Mode.SPEED, speed);
+    }
+
+    @Override
+    public double getSpeed() {
+        return this.getMetric(Mode.SPEED);
+    }
+
+    @Override
+    public void setDirection(int direction) {
+        this.setMetric(Mode.DIRECTION, direction);
+    }
+
+    @Override
+    public int getDirection() {
+        return (int) this.getMetric(Mode.DIRECTION);
+    }
+
+    @Override
+    public double getFuelQuantity() {
+        return this.getMetric(Mode.FUEL_QUANTITY);
+    }
+}
@@ -0,0 +1,193 @@
+package components.Airplane;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of non-negative durations in nanoseconds with bounded relative
+ * error, in the style of HdrHistogram: values below {@value #EXACT} have a
+ * bucket each, and every power-of-two range above that is split into
+ * {@value #SUB_BUCKETS} equal buckets, so a reported value is within about 3%
+ * of the recorded one. Recording is a few arithmetic operations and one
+ * atomic increment, never allocates, and may be called from any thread.
+ */
+public final class LatencyHistogram {
+
+    /**
+     * log2 of the number of sub-buckets per power of two.
+     */
+    private static final int SUB_BITS = 5;
+
+    /**
+     * Number of buckets per power of two.
+     */
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+    /**
+     * Values below this are counted exactly.
+     */
+    private static final int EXACT = SUB_BUCKETS * 2;
+
+    /**
+     * Number of powers of two at or above EXACT that a long can reach.
+     */
+    private static final int RANGES = Long.SIZE - 1 - (SUB_BITS + 1);
+
+    /**
+     * Count of each bucket.
+     */
+    private final AtomicLongArray counts = new AtomicLongArray(
+            EXACT + RANGES * SUB_BUCKETS);
+
+    /**
+     * Number of values recorded.
+     */
+    private final LongAdder total = new LongAdder();
+
+    /**
+     * Sum of the values recorded.
+     */
+    private final LongAdder sum = new LongAdder();
+
+    /**
+     * Largest value recorded.
+     */
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Returns the bucket holding {@code value}.
+     *
+     * @param value
+     *            A non-negative value.
+     * @return The bucket index.
+     */
+    static int bucketOf(long value) {
+        if (value < EXACT) {
+            return (int) value;
+        }
+        int high = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        int shift = high - SUB_BITS;
+        return EXACT + (high - (SUB_BITS + 1)) * SUB_BUCKETS
+                + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    /**
+     * Returns the largest value held by bucket {@code bucket}.
+     *
+     * @param bucket
+     *            The bucket index.
+     * @return The bucket's upper bound.
+     */
+    static long upperBoundOf(int bucket) {
+        if (bucket < EXACT) {
+            return bucket;
+        }
+        int range = (bucket - EXACT) / SUB_BUCKETS;
+        int sub = (bucket - EXACT) % SUB_BUCKETS;
+        int shift = range + 1;
+        long lower = (long) (SUB_BUCKETS + sub) << shift;
+        return lower + (1L << shift) - 1;
+    }
+
+    /**
+     * Records one value; negative values are recorded as 0.
+     *
+     * @param nanos
+     *            The duration, in nanoseconds.
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        this.counts.incrementAndGet(bucketOf(value));
+        this.total.increment();
+        this.sum.add(value);
+        this.max.accumulate(value);
+    }
+
+    /**
+     * Returns the number of values recorded.
+     *
+     * @return The count.
+     */
+    public long count() {
+        return this.total.sum();
+    }
+
+    /**
+     * Returns the largest value recorded, or 0 if there is none.
+     *
+     * @return The maximum.
+     */
+    public long max() {
+        return this.max.get();
+    }
+
+    /**
+     * Returns the mean of the values recorded, or 0 if there is none.
+     *
+     * @return The mean.
+     */
+    public double mean() {
+        long n = this.total.sum();
+        double mean = 0;
+        if (n > 0) {
+            mean = (double) this.sum.sum() / n;
+        }
+        return mean;
+    }
+
+    /**
+     * Returns a value that at least {@code percentile} percent of the
+     * recorded values do not exceed, to within the histogram's precision.
+     *
+     * @param percentile
+     *            The percentile, in [0, 100].
+     * @return The value at that percentile, or 0 if nothing was recorded.
+     * @throws IllegalArgumentException
+     *             if percentile is not in [0, 100].
+     */
+    public long percentile(double percentile) {
+        final double hundred = 100;
+        if (!(percentile >= 0 && percentile <= hundred)) {
+            throw new IllegalArgumentException(
+                    "Percentile must be between 0 and 100.");
+        }
+        long n = 0;
+        for (int b = 0; b < this.counts.length(); b++) {
+            n += this.counts.get(b);
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / hundred * n));
+        long seen = 0;
+        for (int b = 0; b < this.counts.length() && n > 0; b++) {
+            seen += this.counts.get(b);
+            if (seen >= rank) {
+                return Math.min(upperBoundOf(b), this.max());
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Forgets every recorded value. Values recorded concurrently may be
+     * partly kept.
+     */
+    public void reset() {
+        for (int b = 0; b < this.counts.length(); b++) {
+            this.counts.set(b, 0);
+        }
+        this.total.reset();
+        this.sum.reset();
+        this.max.reset();
+    }
+
+    @Override
+    public String toString() {
+        final double p50 = 50;
+        final double p99 = 99;
+        final double p999 = 99.9;
+        return "count=" + this.count() + " mean=" + Math.round(this.mean())
+                + "ns p50=" + this.percentile(p50) + "ns p99="
+                + this.percentile(p99) + "ns p99.9=" + this.percentile(p999)
+                + "ns max=" + this.max() + "ns";
+    }
+}
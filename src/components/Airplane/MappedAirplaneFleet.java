@@ -0,0 +1,449 @@
+package components.Airplane;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+
+import components.Airplane.AirplaneKernel.Mode;
+
+/**
+ * A fixed-capacity fleet of airplanes kept off the Java heap in a
+ * memory-mapped file. Each airplane is a fixed-width record: an 8-byte header
+ * holding the bitmask of defined modes, followed by one double per Mode.
+ * Because the file is the state, reopening it after a crash or restart makes
+ * the whole fleet available again without rebuilding anything.
+ *
+ * <p>
+ * The file starts with a {@value #FILE_HEADER_SIZE}-byte header (magic number,
+ * format version, mode count and capacity) that is checked on reopen. Records
+ * follow, mapped in chunks of {@value #CHUNK_RECORDS} records so that fleets
+ * larger than a single 2 GB mapping are supported. All values are stored
+ * little-endian.
+ * </p>
+ *
+ * @convention: chunks[c] maps records c * CHUNK_RECORDS up to (c + 1) *
+ *              CHUNK_RECORDS - 1 (or capacity - 1) of the file. In every
+ *              record, no header bit at or above Mode.values().length is set.
+ *              A metric whose bit is clear may hold any value (e.g., one left
+ *              by a crash) and is never read.
+ *
+ * @correspondence: slot s of the fleet is an airplane in which Mode m is
+ *                  defined iff bit m.ordinal() of the header of record s is
+ *                  set, in which case its metric is the double at position
+ *                  m.ordinal() of record s.
+ */
+public class MappedAirplaneFleet implements FleetStore, Closeable {
+
+    /**
+     * Magic number identifying a fleet file ("AFLT").
+     */
+    private static final int MAGIC = 0x41464C54;
+
+    /**
+     * Version of the record layout.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * Number of modes, i.e., the number of metrics per record.
+     */
+    private static final int MODE_COUNT = Mode.values().length;
+
+    /**
+     * Modes indexed by ordinal.
+     */
+    private static final Mode[] MODES = Mode.values();
+
+    /**
+     * Size in bytes of the file header.
+     */
+    private static final int FILE_HEADER_SIZE = 64;
+
+    /**
+     * Size in bytes of the defined-mask header of a record.
+     */
+    private static final int RECORD_HEADER_SIZE = Long.BYTES;
+
+    /**
+     * Size in bytes of one record.
+     */
+    private static final int RECORD_SIZE = RECORD_HEADER_SIZE
+            + MODE_COUNT * Double.BYTES;
+
+    /**
+     * log2 of the number of records per mapped chunk.
+     */
+    private static final int CHUNK_SHIFT = 20;
+
+    /**
+     * Number of records per mapped chunk.
+     */
+    private static final int CHUNK_RECORDS = 1 << CHUNK_SHIFT;
+
+    /**
+     * Offset of the magic number in the file header.
+     */
+    private static final int MAGIC_OFFSET = 0;
+
+    /**
+     * Offset of the format version in the file header.
+     */
+    private static final int VERSION_OFFSET = 4;
+
+    /**
+     * Offset of the mode count in the file header.
+     */
+    private static final int MODES_OFFSET = 8;
+
+    /**
+     * Offset of the capacity in the file header.
+     */
+    private static final int CAPACITY_OFFSET = 12;
+
+    /**
+     * Number of airplanes the fleet holds.
+     */
+    private final int capacity;
+
+    /**
+     * Channel of the backing file.
+     */
+    private final FileChannel channel;
+
+    /**
+     * Mapped record chunks.
+     */
+    private final MappedByteBuffer[] chunks;
+
+    /**
+     * Opens the fleet file at {@code file}, creating it with room for
+     * {@code capacity} empty airplanes if it does not exist yet.
+     *
+     * @param file
+     *            The backing file.
+     * @param capacity
+     *            The number of airplanes.
+     * @throws IOException
+     *             if the file cannot be opened or mapped, or if an existing
+     *             file is not a fleet file of the same layout and capacity.
+     * @throws IllegalArgumentException
+     *             if capacity is negative.
+     */
+    public MappedAirplaneFleet(Path file, int capacity) throws IOException {
+        if (capacity < 0) {
+            throw new IllegalArgumentException(
+                    "Capacity must be non-negative.");
+        }
+        this.capacity = capacity;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (this.channel.size() == 0) {
+                this.writeFileHeader();
+            } else {
+                this.checkFileHeader(file);
+            }
+            int chunkCount = (capacity + CHUNK_RECORDS - 1) >>> CHUNK_SHIFT;
+            this.chunks = new MappedByteBuffer[chunkCount];
+            for (int c = 0; c < chunkCount; c++) {
+                long first = (long) c << CHUNK_SHIFT;
+                long records = Math.min(CHUNK_RECORDS, capacity - first);
+                this.chunks[c] = this.channel.map(
+                        FileChannel.MapMode.READ_WRITE,
+                        FILE_HEADER_SIZE + first * RECORD_SIZE,
+                        records * RECORD_SIZE);
+                this.chunks[c].order(ByteOrder.LITTLE_ENDIAN);
+            }
+        } catch (IOException | RuntimeException e) {
+            this.channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Writes the file header of a new fleet file.
+     *
+     * @throws IOException
+     *             if the write fails.
+     */
+    private void writeFileHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC_OFFSET, MAGIC);
+        header.putInt(VERSION_OFFSET, VERSION);
+        header.putInt(MODES_OFFSET, MODE_COUNT);
+        header.putInt(CAPACITY_OFFSET, this.capacity);
+        while (header.hasRemaining()) {
+            this.channel.write(header, header.position());
+        }
+    }
+
+    /**
+     * Checks that an existing file has the header this fleet would write.
+     *
+     * @param file
+     *            The backing file, for error messages.
+     * @throws IOException
+     *             if the header cannot be read or does not match.
+     */
+    private void checkFileHeader(Path file) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        while (header.hasRemaining()
+                && this.channel.read(header, header.position()) >= 0) {
+            continue;
+        }
+        if (header.hasRemaining() || header.getInt(MAGIC_OFFSET) != MAGIC
+                || header.getInt(VERSION_OFFSET) != VERSION
+                || header.getInt(MODES_OFFSET) != MODE_COUNT) {
+            throw new IOException(file + " is not a compatible fleet file.");
+        }
+        if (header.getInt(CAPACITY_OFFSET) != this.capacity) {
+            throw new IOException(file + " holds "
+                    + header.getInt(CAPACITY_OFFSET) + " airplanes, not "
+                    + this.capacity + ".");
+        }
+    }
+
+    /**
+     * Returns the chunk holding the given slot.
+     *
+     * @param slot
+     *            The airplane's slot.
+     * @return The mapped chunk.
+     */
+    private MappedByteBuffer chunk(int slot) {
+        return this.chunks[slot >>> CHUNK_SHIFT];
+    }
+
+    /**
+     * Returns the offset of the given slot's record within its chunk.
+     *
+     * @param slot
+     *            The airplane's slot.
+     * @return The byte offset of the record.
+     */
+    private static int recordOffset(int slot) {
+        return (slot & (CHUNK_RECORDS - 1)) * RECORD_SIZE;
+    }
+
+    /**
+     * Returns the offset of a metric within its chunk.
+     *
+     * @param slot
+     *            The airplane's slot.
+     * @param mode
+     *            The metric's mode.
+     * @return The byte offset of the metric.
+     */
+    private static int metricOffset(int slot, Mode mode) {
+        return recordOffset(slot) + RECORD_HEADER_SIZE
+                + mode.ordinal() * Double.BYTES;
+    }
+
+    @Override
+    public int capacity() {
+        return this.capacity;
+    }
+
+    @Override
+    public boolean isDefined(int slot, Mode mode) {
+        Objects.checkIndex(slot, this.capacity);
+        long mask = this.chunk(slot).getLong(recordOffset(slot));
+        return (mask & (1L << mode.ordinal())) != 0;
+    }
+
+    @Override
+    public double getMetric(int slot, Mode mode) {
+        if (!this.isDefined(slot, mode)) {
+            throw new IllegalStateException(mode.name() + " is not defined.");
+        }
+        return this.chunk(slot).getDouble(metricOffset(slot, mode));
+    }
+
+    /**
+     * Validates and sets a metric value for the given slot and mode. The value
+     * is written before the header bit, so a crash of the JVM between the two
+     * leaves the mode undefined, over a value that is ignored. A crash of the
+     * machine may lose or reorder any change made since the last
+     * {@link #force()}.
+     *
+     * @param slot
+     *            The airplane's slot.
+     * @param mode
+     *            The mode to set.
+     * @param value
+     *            The value to set.
+     */
+    @Override
+    public void setMetric(int slot, Mode mode, double value) {
+        Objects.checkIndex(slot, this.capacity);
+        MetricRules.check(mode, value);
+
+        MappedByteBuffer chunk = this.chunk(slot);
+        int header = recordOffset(slot);
+        chunk.putDouble(metricOffset(slot, mode), value);
+        chunk.putLong(header, chunk.getLong(header) | (1L << mode.ordinal()));
+    }
+
+    /**
+     * Adds delta to a metric for the given slot and mode, or sets it to delta
+     * if it is not defined, whatever value is stored under the clear bit.
+     *
+     * @param slot
+     *            The airplane's slot.
+     * @param mode
+     *            The mode to update.
+     * @param delta
+     *            The change to apply.
+     */
+    @Override
+    public void addToMetric(int slot, Mode mode, double delta) {
+        Objects.checkIndex(slot, this.capacity);
+        MappedByteBuffer chunk = this.chunk(slot);
+        int offset = metricOffset(slot, mode);
+        int header = recordOffset(slot);
+        long mask = chunk.getLong(header);
+        long bit = 1L << mode.ordinal();
+        double value = delta;
+        if ((mask & bit) != 0) {
+            value += chunk.getDouble(offset);
+        }
+        MetricRules.check(mode, value);
+
+        chunk.putDouble(offset, value);
+        chunk.putLong(header, mask | bit);
+    }
+
+    /**
+     * Adds each non-zero delta to the metric of its mode for the given slot,
+     * all or nothing; an undefined metric is taken as 0.0. The header is
+     * written once, after every value.
+     *
+     * @param slot
+     *            The airplane's slot.
+     * @param deltasByOrdinal
+     *            The deltas, indexed by Mode.ordinal().
+     */
+    @Override
+    public void applyDeltas(int slot, double[] deltasByOrdinal) {
+        Objects.checkIndex(slot, this.capacity);
+        MetricRules.checkDeltas(deltasByOrdinal);
+        MappedByteBuffer chunk = this.chunk(slot);
+        int header = recordOffset(slot);
+        int first = header + RECORD_HEADER_SIZE;
+        long mask = chunk.getLong(header);
+        // Validate every result before changing anything
+        for (int m = 0; m < MODE_COUNT; m++) {
+            if (deltasByOrdinal[m] != 0) {
+                MetricRules.check(MODES[m],
+                        storedOrZero(chunk, mask, first, m)
+                                + deltasByOrdinal[m]);
+            }
+        }
+        long updated = mask;
+        for (int m = 0; m < MODE_COUNT; m++) {
+            if (deltasByOrdinal[m] != 0) {
+                chunk.putDouble(first + m * Double.BYTES,
+                        storedOrZero(chunk, mask, first, m)
+                                + deltasByOrdinal[m]);
+                updated |= 1L << m;
+            }
+        }
+        chunk.putLong(header, updated);
+    }
+
+    /**
+     * Returns a metric of a record, or 0.0 if its bit is clear.
+     *
+     * @param chunk
+     *            The record's chunk.
+     * @param mask
+     *            The record's header.
+     * @param first
+     *            The offset of the record's first metric.
+     * @param m
+     *            The metric's Mode.ordinal().
+     * @return The metric, or 0.0.
+     */
+    private static double storedOrZero(MappedByteBuffer chunk, long mask,
+            int first, int m) {
+        double value = 0.0;
+        if ((mask & (1L << m)) != 0) {
+            value = chunk.getDouble(first + m * Double.BYTES);
+        }
+        return value;
+    }
+
+    /**
+     * Clears all metrics of the airplane in the given slot. The header is
+     * cleared first, for the same reason setMetric writes it last.
+     *
+     * @param slot
+     *            The airplane's slot.
+     */
+    @Override
+    public void clear(int slot) {
+        Objects.checkIndex(slot, this.capacity);
+        MappedByteBuffer chunk = this.chunk(slot);
+        int header = recordOffset(slot);
+        chunk.putLong(header, 0L);
+        for (int m = 0; m < MODE_COUNT; m++) {
+            chunk.putDouble(header + RECORD_HEADER_SIZE + m * Double.BYTES,
+                    0.0);
+        }
+    }
+
+    /**
+     * Clears all metrics of every airplane in the fleet.
+     */
+    public void clear() {
+        for (int s = 0; s < this.capacity; s++) {
+            this.clear(s);
+        }
+    }
+
+    /**
+     * Returns an Airplane backed by the given record. Reads and writes
+     * through the view go straight to the mapped file.
+     *
+     * @param slot
+     *            The airplane's slot.
+     * @return A view of the airplane in that slot.
+     */
+    public Airplane view(int slot) {
+        Objects.checkIndex(slot, this.capacity);
+        return new FleetSlot(this, slot);
+    }
+
+    /**
+     * Forces every change made so far out to the backing file. Without this,
+     * changes still survive a crash of the JVM (the operating system owns the
+     * pages), but not a crash of the machine.
+     */
+    public void force() {
+        for (MappedByteBuffer chunk : this.chunks) {
+            chunk.force();
+        }
+    }
+
+    /**
+     * Forces all changes to the file and closes it. The mapping itself is
+     * released when this fleet is garbage collected; the fleet and its views
+     * must not be used after closing.
+     *
+     * @throws IOException
+     *             if closing the file fails.
+     */
+    @Override
+    public void close() throws IOException {
+        this.force();
+        this.channel.close();
+    }
+}
@@ -0,0 +1,517 @@
+package components.Airplane;
+
+import java.util.function.LongSupplier;
+
+import components.Airplane.AirplaneKernel.Mode;
+
+/**
+ * The last {@code capacity} values of each metric of one airplane, kept in
+ * primitive ring buffers and filled as the airplane changes. Airplanes are
+ * tracked by wrapping them with {@link #attach(Airplane)}; every value a
+ * metric takes, through setMetric or any other update, becomes a sample
+ * stamped by the clock given to the constructor. Clearing the airplane adds
+ * no samples.
+ *
+ * <p>
+ * Windows are counted in samples, ending at the latest one. Means and rates
+ * of change take constant time: each sample also stores the running total of
+ * its mode. Minimums and maximums take O(log capacity) time: each mode keeps
+ * a monotonic queue of the samples that are the minimum (or maximum) of some
+ * window, which a query binary-searches for the oldest one inside its
+ * window. Adding a sample takes amortized constant time and, once the
+ * history is constructed, never allocates.
+ * </p>
+ */
+public final class MetricHistory {
+
+    /**
+     * Source of sample timestamps.
+     */
+    private final LongSupplier clock;
+
+    /**
+     * Number of samples kept per mode.
+     */
+    private final int capacity;
+
+    /**
+     * History of each mode, indexed by Mode.ordinal().
+     */
+    private final Series[] series;
+
+    /**
+     * Constructs an empty history.
+     *
+     * @param capacity
+     *            The number of samples kept per mode.
+     * @param clock
+     *            The source of sample timestamps, e.g., simulated
+     *            milliseconds.
+     * @throws IllegalArgumentException
+     *             if capacity is not positive.
+     */
+    public MetricHistory(int capacity, LongSupplier clock) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive.");
+        }
+        this.clock = clock;
+        this.capacity = capacity;
+        this.series = new Series[Mode.values().length];
+        for (int m = 0; m < this.series.length; m++) {
+            this.series[m] = new Series(capacity);
+        }
+    }
+
+    /**
+     * Returns an airplane whose changes are added to this history. The
+     * airplane's current metrics become the first samples.
+     *
+     * @param airplane
+     *            The airplane to track; it must not be changed except through
+     *            the returned wrapper.
+     * @return The tracking wrapper.
+     */
+    public Airplane attach(Airplane airplane) {
+        Tracking observer = new Tracking();
+        for (Mode mode : Mode.values()) {
+            if (airplane.isDefined(mode)) {
+                observer.metricChanged(mode, airplane.getMetric(mode));
+            }
+        }
+        return new ObservedAirplane(airplane, observer);
+    }
+
+    /**
+     * Adds the changes of the tracked airplane to this history.
+     */
+    private final class Tracking implements MetricObserver {
+
+        @Override
+        public void metricChanged(Mode mode, double value) {
+            MetricHistory.this.series[mode.ordinal()].add(value,
+                    MetricHistory.this.clock.getAsLong());
+        }
+
+        @Override
+        public void metricsCleared() {
+            // Past values stay in the history
+        }
+
+        /**
+         * Returns an observer filling a new history with the same capacity
+         * and clock.
+         *
+         * @return The observer.
+         */
+        @Override
+        public MetricObserver newObserver() {
+            return new MetricHistory(MetricHistory.this.capacity,
+                    MetricHistory.this.clock).new Tracking();
+        }
+    }
+
+    /**
+     * Returns the number of samples kept per mode.
+     *
+     * @return The capacity.
+     */
+    public int capacity() {
+        return this.capacity;
+    }
+
+    /**
+     * Returns the number of samples of {@code mode} currently kept.
+     *
+     * @param mode
+     *            The mode.
+     * @return The number of samples, at most capacity().
+     */
+    public int size(Mode mode) {
+        return this.series[mode.ordinal()].size();
+    }
+
+    /**
+     * Returns the sample of {@code mode} taken {@code back} samples before the
+     * latest one.
+     *
+     * @param mode
+     *            The mode.
+     * @param back
+     *            How many samples back; 0 is the latest.
+     * @return The value.
+     * @throws IllegalArgumentException
+     *             if back is not in [0, size(mode)).
+     */
+    public double value(Mode mode, int back) {
+        Series s = this.series[mode.ordinal()];
+        s.checkWindow(back + 1);
+        return s.values[s.index(s.count - 1 - back)];
+    }
+
+    /**
+     * Returns the mean of the last {@code n} samples of {@code mode}.
+     *
+     * @param mode
+     *            The mode.
+     * @param n
+     *            The window size.
+     * @return The mean.
+     * @throws IllegalArgumentException
+     *             if n is not in [1, size(mode)].
+     */
+    public double mean(Mode mode, int n) {
+        Series s = this.series[mode.ordinal()];
+        s.checkWindow(n);
+        return (s.total - s.totalBefore(s.count - n)) / n;
+    }
+
+    /**
+     * Returns the smallest of the last {@code n} samples of {@code mode}.
+     *
+     * @param mode
+     *            The mode.
+     * @param n
+     *            The window size.
+     * @return The minimum.
+     * @throws IllegalArgumentException
+     *             if n is not in [1, size(mode)].
+     */
+    public double min(Mode mode, int n) {
+        Series s = this.series[mode.ordinal()];
+        s.checkWindow(n);
+        return s.values[s.index(s.minima.oldestFrom(s.count - n))];
+    }
+
+    /**
+     * Returns the largest of the last {@code n} samples of {@code mode}.
+     *
+     * @param mode
+     *            The mode.
+     * @param n
+     *            The window size.
+     * @return The maximum.
+     * @throws IllegalArgumentException
+     *             if n is not in [1, size(mode)].
+     */
+    public double max(Mode mode, int n) {
+        Series s = this.series[mode.ordinal()];
+        s.checkWindow(n);
+        return s.values[s.index(s.maxima.oldestFrom(s.count - n))];
+    }
+
+    /**
+     * Returns the average rate of change of {@code mode} over the last
+     * {@code n} samples: the difference between the latest sample and the one
+     * {@code n} - 1 samples before it, divided by the time between them.
+     *
+     * @param mode
+     *            The mode.
+     * @param n
+     *            The window size.
+     * @return The change per unit of clock time.
+     * @throws IllegalArgumentException
+     *             if n is not in [2, size(mode)].
+     * @throws IllegalStateException
+     *             if no clock time passed between the two samples.
+     */
+    public double rateOfChange(Mode mode, int n) {
+        Series s = this.series[mode.ordinal()];
+        if (n < 2) {
+            throw new IllegalArgumentException(
+                    "A rate of change needs at least 2 samples.");
+        }
+        s.checkWindow(n);
+        int last = s.index(s.count - 1);
+        int first = s.index(s.count - n);
+        long elapsed = s.times[last] - s.times[first];
+        if (elapsed == 0) {
+            throw new IllegalStateException(
+                    mode.name() + " samples have the same timestamp.");
+        }
+        return (s.values[last] - s.values[first]) / elapsed;
+    }
+
+    /**
+     * Ring buffer of one mode's samples, indexed by sample number modulo
+     * capacity.
+     *
+     * @convention: the samples kept are those numbered max(0, count -
+     *              capacity) up to count - 1, sample k at index(k). The
+     *              running total of sample k is the sum of every sample up
+     *              to and including k, less the total at the last rebase:
+     *              totals[index(k)] holds it for every kept k, total holds it
+     *              for count - 1, and dropped holds it for count - capacity
+     *              - 1 (0.0 if there is no such sample).
+     */
+    private static final class Series {
+
+        /**
+         * Number of samples kept.
+         */
+        private final int capacity;
+
+        /**
+         * Sample values.
+         */
+        private final double[] values;
+
+        /**
+         * Sample timestamps.
+         */
+        private final long[] times;
+
+        /**
+         * Running totals up to and including each sample.
+         */
+        private final double[] totals;
+
+        /**
+         * Samples that are the minimum of some window ending at the latest.
+         */
+        private final MonotonicQueue minima;
+
+        /**
+         * Samples that are the maximum of some window ending at the latest.
+         */
+        private final MonotonicQueue maxima;
+
+        /**
+         * Number of samples ever added.
+         */
+        private long count;
+
+        /**
+         * Running total up to and including the latest sample.
+         */
+        private double total;
+
+        /**
+         * Running total up to and including the newest dropped sample.
+         */
+        private double dropped;
+
+        /**
+         * Constructor.
+         *
+         * @param capacity
+         *            The number of samples kept.
+         */
+        Series(int capacity) {
+            this.capacity = capacity;
+            this.values = new double[capacity];
+            this.times = new long[capacity];
+            this.totals = new double[capacity];
+            this.minima = new MonotonicQueue(this, capacity, false);
+            this.maxima = new MonotonicQueue(this, capacity, true);
+        }
+
+        /**
+         * Returns the buffer index of a sample.
+         *
+         * @param sample
+         *            The sample number.
+         * @return The index into values, times and totals.
+         */
+        int index(long sample) {
+            return (int) (sample % this.capacity);
+        }
+
+        /**
+         * Returns the number of samples kept.
+         *
+         * @return The size.
+         */
+        int size() {
+            return (int) Math.min(this.count, this.capacity);
+        }
+
+        /**
+         * Checks that a window of n samples is available.
+         *
+         * @param n
+         *            The window size.
+         */
+        void checkWindow(int n) {
+            if (n < 1 || n > this.size()) {
+                throw new IllegalArgumentException("Window must be between 1 "
+                        + "and " + this.size() + " samples.");
+            }
+        }
+
+        /**
+         * Returns the running total of every sample before {@code sample}.
+         *
+         * @param sample
+         *            A kept sample number.
+         * @return The total.
+         */
+        double totalBefore(long sample) {
+            double before = this.dropped;
+            if (sample > this.count - this.capacity && sample > 0) {
+                before = this.totals[this.index(sample - 1)];
+            }
+            return before;
+        }
+
+        /**
+         * Adds a sample, dropping the oldest if the buffer is full.
+         *
+         * @param value
+         *            The sample value.
+         * @param time
+         *            The sample timestamp.
+         */
+        void add(double value, long time) {
+            int i = this.index(this.count);
+            if (this.count >= this.capacity) {
+                this.dropped = this.totals[i];
+            }
+            this.total += value;
+            this.values[i] = value;
+            this.times[i] = time;
+            this.totals[i] = this.total;
+            this.minima.push(this.count);
+            this.maxima.push(this.count);
+            this.count++;
+            if (i == this.capacity - 1) {
+                this.rebase();
+            }
+        }
+
+        /**
+         * Subtracts the dropped total from every running total, so that they
+         * stay as small, and as precise, as the sums they are used for. Runs
+         * once per capacity samples, so its cost is constant amortized.
+         */
+        private void rebase() {
+            double base = this.dropped;
+            for (int i = 0; i < this.capacity; i++) {
+                this.totals[i] -= base;
+            }
+            this.total -= base;
+            this.dropped = 0.0;
+        }
+    }
+
+    /**
+     * Sample numbers in increasing order whose values are strictly
+     * increasing (for minima) or decreasing (for maxima): each is the
+     * extreme of every window that starts after its predecessor and includes
+     * it.
+     */
+    private static final class MonotonicQueue {
+
+        /**
+         * The series whose samples are queued.
+         */
+        private final Series series;
+
+        /**
+         * Queued sample numbers, indexed modulo their length.
+         */
+        private final long[] samples;
+
+        /**
+         * Whether the queue tracks maxima rather than minima.
+         */
+        private final boolean maxima;
+
+        /**
+         * Position of the oldest queued sample.
+         */
+        private long head;
+
+        /**
+         * Position after the newest queued sample.
+         */
+        private long tail;
+
+        /**
+         * Constructor.
+         *
+         * @param series
+         *            The series whose samples are queued.
+         * @param capacity
+         *            The number of samples the series keeps.
+         * @param maxima
+         *            Whether the queue tracks maxima rather than minima.
+         */
+        MonotonicQueue(Series series, int capacity, boolean maxima) {
+            this.series = series;
+            this.samples = new long[capacity];
+            this.maxima = maxima;
+        }
+
+        /**
+         * Returns the sample number at a queue position.
+         *
+         * @param position
+         *            The position.
+         * @return The sample number.
+         */
+        private long at(long position) {
+            return this.samples[(int) (position % this.samples.length)];
+        }
+
+        /**
+         * Reports whether a queued sample no longer needs to be kept because
+         * the new sample is at least as extreme.
+         *
+         * @param queued
+         *            The value of the queued sample.
+         * @param value
+         *            The value of the new sample.
+         * @return True if the queued sample is superseded.
+         */
+        private boolean superseded(double queued, double value) {
+            if (this.maxima) {
+                return queued <= value;
+            }
+            return queued >= value;
+        }
+
+        /**
+         * Adds the sample about to be stored, after removing the samples it
+         * drops or supersedes.
+         *
+         * @param sample
+         *            The new sample number; its value is already stored.
+         */
+        void push(long sample) {
+            Series s = this.series;
+            while (this.head < this.tail
+                    && this.at(this.head) <= sample - s.capacity) {
+                this.head++;
+            }
+            double value = s.values[s.index(sample)];
+            while (this.head < this.tail && this.superseded(
+                    s.values[s.index(this.at(this.tail - 1))], value)) {
+                this.tail--;
+            }
+            this.samples[(int) (this.tail % this.samples.length)] = sample;
+            this.tail++;
+        }
+
+        /**
+         * Returns the oldest queued sample numbered at least {@code first},
+         * which is the extreme of the window starting at {@code first}.
+         *
+         * @param first
+         *            The first sample of the window.
+         * @return The sample number.
+         */
+        long oldestFrom(long first) {
+            long lo = this.head;
+            long hi = this.tail - 1;
+            while (lo < hi) {
+                long mid = (lo + hi) >>> 1;
+                if (this.at(mid) < first) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return this.at(lo);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package components.Airplane;
+
+/**
+ * Callback for changes to the metrics of airplanes attached to a
+ * {@link MetricNotifier}.
+ */
+public interface MetricListener {
+
+    /**
+     * Called when metrics of {@code airplane} changed. A metric that became
+     * undefined counts as changed; use {@code airplane.isDefined} to tell.
+     *
+     * @param airplane
+     *            The airplane whose metrics changed.
+     * @param changedModes
+     *            The bitmask of changed modes: bit i is set iff the metric of
+     *            the mode with ordinal i changed.
+     */
+    void metricsChanged(Airplane airplane, int changedModes);
+}
@@ -0,0 +1,475 @@
+package components.Airplane;
+
+import java.util.Arrays;
+import java.util.Set;
+
+import components.Airplane.AirplaneKernel.Mode;
+
+/**
+ * Notifies subscribed {@link MetricListener}s when metrics of attached
+ * airplanes change, so consumers need not poll getMetric. Airplanes are
+ * attached with {@link #attach(Airplane)} and detached with
+ * {@link #detach(Airplane)}; listeners subscribe to a set of modes with
+ * {@link #subscribe(Set, double, boolean, MetricListener)}.
+ *
+ * <p>
+ * A subscription is notified only when a value actually changes: setting a
+ * metric to the value it already had is not a change. With a threshold, a
+ * change is reported only once the metric has moved by at least that much
+ * since the value last reported. A coalescing subscription collects the
+ * changes of each airplane until {@link #endTick()}, then gets at most one
+ * call per airplane with every mode that changed; other subscriptions are
+ * called as each change is made.
+ * </p>
+ *
+ * <p>
+ * With no subscriptions, a change costs the attached airplane one array
+ * length check. Dispatch never allocates on the write path; subscribing,
+ * cancelling and attaching do. A notifier and its airplanes must be used from
+ * one thread at a time, like the other kernel implementations, and listeners
+ * must not subscribe or cancel from inside a callback.
+ * </p>
+ */
+public final class MetricNotifier {
+
+    /**
+     * Number of modes.
+     */
+    private static final int MODE_COUNT = Mode.values().length;
+
+    /**
+     * Current subscriptions, in subscription order.
+     */
+    private Subscription[] subscriptions = new Subscription[0];
+
+    /**
+     * Attached airplanes, of which the first watchCount are in use.
+     */
+    private Watch[] watches = new Watch[0];
+
+    /**
+     * Number of attached airplanes.
+     */
+    private int watchCount;
+
+    /**
+     * Airplanes with coalesced changes waiting for endTick, of which the first
+     * dirtyCount are in use.
+     */
+    private Watch[] dirty = new Watch[0];
+
+    /**
+     * Number of airplanes with coalesced changes waiting for endTick.
+     */
+    private int dirtyCount;
+
+    /**
+     * Returns an airplane whose changes are reported to this notifier's
+     * subscriptions. The notifier keeps a reference to it until it is
+     * detached.
+     *
+     * @param airplane
+     *            The airplane to watch; it must not be changed except through
+     *            the returned wrapper.
+     * @return The watching wrapper.
+     */
+    public Airplane attach(Airplane airplane) {
+        return new ObservedAirplane(airplane, new Watch());
+    }
+
+    /**
+     * Stops reporting the changes of an airplane returned by attach, and
+     * drops the notifier's reference to it along with its changes not yet
+     * reported. The airplane keeps working. Detaching an airplane that is
+     * not attached to this notifier has no effect.
+     *
+     * @param attached
+     *            The airplane returned by attach.
+     */
+    public void detach(Airplane attached) {
+        if (!(attached instanceof ObservedAirplane)) {
+            return;
+        }
+        MetricObserver observer = ((ObservedAirplane) attached).observer();
+        if (!(observer instanceof Watch)) {
+            return;
+        }
+        Watch watch = (Watch) observer;
+        int index = watch.index;
+        if (watch.owner() != this || index < 0) {
+            return;
+        }
+        // Move the last watch into the freed entry
+        this.watchCount--;
+        Watch moved = this.watches[this.watchCount];
+        this.watches[index] = moved;
+        moved.index = index;
+        this.watches[this.watchCount] = null;
+        watch.index = -1;
+        if (watch.dirty) {
+            int d = Arrays.asList(this.dirty).indexOf(watch);
+            this.dirtyCount--;
+            this.dirty[d] = this.dirty[this.dirtyCount];
+            this.dirty[this.dirtyCount] = null;
+            watch.dirty = false;
+        }
+    }
+
+    /**
+     * Subscribes {@code listener} to every change of the given modes, called
+     * as each change is made.
+     *
+     * @param modes
+     *            The modes to watch.
+     * @param listener
+     *            The listener to call.
+     * @return The subscription, which can be cancelled.
+     */
+    public Subscription subscribe(Set<Mode> modes, MetricListener listener) {
+        return this.subscribe(modes, 0.0, false, listener);
+    }
+
+    /**
+     * Subscribes {@code listener} to changes of the given modes. The current
+     * value of each watched metric of each attached airplane becomes the
+     * value last reported.
+     *
+     * @param modes
+     *            The modes to watch.
+     * @param threshold
+     *            The smallest change reported, measured from the value last
+     *            reported; 0 reports every change.
+     * @param coalesce
+     *            Whether to collect changes until endTick rather than report
+     *            them as they are made.
+     * @param listener
+     *            The listener to call.
+     * @return The subscription, which can be cancelled.
+     * @throws IllegalArgumentException
+     *             if threshold is negative or NaN.
+     */
+    public Subscription subscribe(Set<Mode> modes, double threshold,
+            boolean coalesce, MetricListener listener) {
+        if (!(threshold >= 0)) {
+            throw new IllegalArgumentException(
+                    "Threshold must be non-negative.");
+        }
+        int mask = 0;
+        for (Mode mode : modes) {
+            mask |= 1 << mode.ordinal();
+        }
+        Subscription subscription = new Subscription(mask, threshold,
+                coalesce, listener);
+        int index = this.subscriptions.length;
+        this.subscriptions = Arrays.copyOf(this.subscriptions, index + 1);
+        this.subscriptions[index] = subscription;
+        for (int w = 0; w < this.watchCount; w++) {
+            this.watches[w].resize(index + 1);
+            this.watches[w].resetBaseline(index);
+        }
+        return subscription;
+    }
+
+    /**
+     * Removes a subscription, dropping its changes not yet reported.
+     *
+     * @param subscription
+     *            The subscription to remove.
+     */
+    private void cancel(Subscription subscription) {
+        int index = Arrays.asList(this.subscriptions).indexOf(subscription);
+        if (index < 0) {
+            return;
+        }
+        int last = this.subscriptions.length - 1;
+        System.arraycopy(this.subscriptions, index + 1, this.subscriptions,
+                index, last - index);
+        this.subscriptions = Arrays.copyOf(this.subscriptions, last);
+        for (int w = 0; w < this.watchCount; w++) {
+            this.watches[w].remove(index);
+        }
+    }
+
+    /**
+     * Reports the changes collected for coalescing subscriptions since the
+     * previous call: one call per subscription and airplane, with every mode
+     * that changed.
+     */
+    public void endTick() {
+        for (int d = 0; d < this.dirtyCount; d++) {
+            Watch watch = this.dirty[d];
+            this.dirty[d] = null;
+            watch.dirty = false;
+            for (int s = 0; s < this.subscriptions.length; s++) {
+                int changed = watch.pending[s];
+                if (changed != 0) {
+                    watch.pending[s] = 0;
+                    this.subscriptions[s].listener
+                            .metricsChanged(watch.airplane, changed);
+                }
+            }
+        }
+        this.dirtyCount = 0;
+    }
+
+    /**
+     * A listener's subscription to a set of modes.
+     */
+    public final class Subscription {
+
+        /**
+         * Bitmask of watched modes.
+         */
+        private final int modes;
+
+        /**
+         * Smallest change reported.
+         */
+        private final double threshold;
+
+        /**
+         * Whether changes are collected until endTick.
+         */
+        private final boolean coalesce;
+
+        /**
+         * The listener to call.
+         */
+        private final MetricListener listener;
+
+        /**
+         * Constructor.
+         *
+         * @param modes
+         *            The bitmask of watched modes.
+         * @param threshold
+         *            The smallest change reported.
+         * @param coalesce
+         *            Whether changes are collected until endTick.
+         * @param listener
+         *            The listener to call.
+         */
+        Subscription(int modes, double threshold, boolean coalesce,
+                MetricListener listener) {
+            this.modes = modes;
+            this.threshold = threshold;
+            this.coalesce = coalesce;
+            this.listener = listener;
+        }
+
+        /**
+         * Stops notifying the listener. Changes collected for endTick but
+         * not yet reported are dropped. Cancelling twice has no effect.
+         */
+        public void cancel() {
+            MetricNotifier.this.cancel(this);
+        }
+    }
+
+    /**
+     * Per-airplane state: the values last reported to each subscription and
+     * the coalesced changes waiting for endTick.
+     *
+     * @convention: reported.length = pending.length = subscriptions.length
+     *              and baselines.length = subscriptions.length * MODE_COUNT.
+     *              dirty iff this watch is among the first dirtyCount
+     *              entries of MetricNotifier.dirty. watches[index] = this
+     *              while attached, and index = -1 before and after.
+     */
+    private final class Watch implements MetricObserver {
+
+        /**
+         * The observed airplane passed to listeners.
+         */
+        private Airplane airplane;
+
+        /**
+         * Value last reported to each subscription, MODE_COUNT per
+         * subscription.
+         */
+        private double[] baselines;
+
+        /**
+         * Bitmask, per subscription, of modes that were defined when last
+         * reported.
+         */
+        private int[] reported;
+
+        /**
+         * Bitmask, per subscription, of coalesced changes waiting for
+         * endTick.
+         */
+        private int[] pending;
+
+        /**
+         * Whether this watch is in the dirty list.
+         */
+        private boolean dirty;
+
+        /**
+         * Position in MetricNotifier.watches, or -1 if not attached.
+         */
+        private int index = -1;
+
+        /**
+         * Constructor; the watch is registered once attached.
+         */
+        Watch() {
+            int count = MetricNotifier.this.subscriptions.length;
+            this.baselines = new double[count * MODE_COUNT];
+            this.reported = new int[count];
+            this.pending = new int[count];
+        }
+
+        @Override
+        public void attached(Airplane observed) {
+            this.airplane = observed;
+            MetricNotifier notifier = MetricNotifier.this;
+            if (notifier.watchCount == notifier.watches.length) {
+                notifier.watches = Arrays.copyOf(notifier.watches,
+                        Math.max(1, notifier.watchCount * 2));
+            }
+            notifier.watches[notifier.watchCount] = this;
+            this.index = notifier.watchCount;
+            notifier.watchCount++;
+            for (int s = 0; s < this.reported.length; s++) {
+                this.resetBaseline(s);
+            }
+        }
+
+        /**
+         * Returns the notifier this watch reports to.
+         *
+         * @return The notifier.
+         */
+        MetricNotifier owner() {
+            return MetricNotifier.this;
+        }
+
+        /**
+         * Resizes the per-subscription arrays, keeping existing entries.
+         *
+         * @param count
+         *            The new number of subscriptions.
+         */
+        void resize(int count) {
+            this.baselines = Arrays.copyOf(this.baselines, count * MODE_COUNT);
+            this.reported = Arrays.copyOf(this.reported, count);
+            this.pending = Arrays.copyOf(this.pending, count);
+        }
+
+        /**
+         * Removes the entries of a cancelled subscription.
+         *
+         * @param index
+         *            The index of the cancelled subscription.
+         */
+        void remove(int index) {
+            int count = this.reported.length - 1;
+            System.arraycopy(this.baselines, (index + 1) * MODE_COUNT,
+                    this.baselines, index * MODE_COUNT,
+                    (count - index) * MODE_COUNT);
+            System.arraycopy(this.reported, index + 1, this.reported, index,
+                    count - index);
+            System.arraycopy(this.pending, index + 1, this.pending, index,
+                    count - index);
+            this.resize(count);
+        }
+
+        /**
+         * Makes the airplane's current metrics the values last reported to a
+         * subscription.
+         *
+         * @param s
+         *            The subscription's index.
+         */
+        void resetBaseline(int s) {
+            int mask = 0;
+            for (Mode mode : Mode.values()) {
+                if (this.airplane.isDefined(mode)) {
+                    int at = s * MODE_COUNT + mode.ordinal();
+                    this.baselines[at] = this.airplane.getMetric(mode);
+                    mask |= 1 << mode.ordinal();
+                }
+            }
+            this.reported[s] = mask;
+            this.pending[s] = 0;
+        }
+
+        @Override
+        public void metricChanged(Mode mode, double value) {
+            Subscription[] subs = MetricNotifier.this.subscriptions;
+            if (subs.length == 0 || this.index < 0) {
+                return;
+            }
+            int bit = 1 << mode.ordinal();
+            for (int s = 0; s < subs.length; s++) {
+                Subscription sub = subs[s];
+                if ((sub.modes & bit) != 0) {
+                    int at = s * MODE_COUNT + mode.ordinal();
+                    double diff = Math.abs(value - this.baselines[at]);
+                    if ((this.reported[s] & bit) == 0
+                            || diff > 0 && diff >= sub.threshold) {
+                        this.baselines[at] = value;
+                        this.reported[s] |= bit;
+                        this.deliver(s, sub, bit);
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void metricsCleared() {
+            Subscription[] subs = MetricNotifier.this.subscriptions;
+            if (this.index < 0) {
+                return;
+            }
+            for (int s = 0; s < subs.length; s++) {
+                int changed = this.reported[s] & subs[s].modes;
+                if (changed != 0) {
+                    this.reported[s] &= ~changed;
+                    this.deliver(s, subs[s], changed);
+                }
+            }
+        }
+
+        /**
+         * Reports changes to a subscription now, or collects them for
+         * endTick if it coalesces.
+         *
+         * @param s
+         *            The subscription's index.
+         * @param sub
+         *            The subscription.
+         * @param changed
+         *            The bitmask of changed modes.
+         */
+        private void deliver(int s, Subscription sub, int changed) {
+            if (!sub.coalesce) {
+                sub.listener.metricsChanged(this.airplane, changed);
+                return;
+            }
+            this.pending[s] |= changed;
+            if (!this.dirty) {
+                this.dirty = true;
+                MetricNotifier notifier = MetricNotifier.this;
+                if (notifier.dirtyCount == notifier.dirty.length) {
+                    notifier.dirty = Arrays.copyOf(notifier.dirty,
+                            Math.max(1, notifier.dirtyCount * 2));
+                }
+                notifier.dirty[notifier.dirtyCount] = this;
+                notifier.dirtyCount++;
+            }
+        }
+
+        /**
+         * Returns a watch of the same notifier for a new airplane.
+         *
+         * @return The watch.
+         */
+        @Override
+        public MetricObserver newObserver() {
+            return new Watch();
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package components.Airplane;
+
+import components.Airplane.AirplaneKernel.Mode;
+
+/**
+ * Receives the metric changes of one {@link ObservedAirplane}, after they
+ * have been made.
+ */
+interface MetricObserver {
+
+    /**
+     * Called once, by the constructor of the ObservedAirplane reporting to
+     * this observer, before any change is reported.
+     *
+     * @param observed
+     *            The observed airplane.
+     */
+    default void attached(Airplane observed) {
+        // Most observers only need the changes
+    }
+
+    /**
+     * Called after the metric for {@code mode} was set to {@code value}.
+     *
+     * @param mode
+     *            The metric's mode.
+     * @param value
+     *            The new value.
+     */
+    void metricChanged(Mode mode, double value);
+
+    /**
+     * Called after every metric was cleared.
+     */
+    void metricsCleared();
+
+    /**
+     * Returns the observer for a new, empty airplane made by newInstance.
+     *
+     * @return The observer of the new airplane.
+     */
+    MetricObserver newObserver();
+}
@@ -0,0 +1,93 @@
+package components.Airplane;
+
+import components.Airplane.AirplaneKernel.Mode;
+
+/**
+ * Validation rules shared by every kernel implementation.
+ */
+final class MetricRules {
+
+    /**
+     * Number of degrees in a full turn; directions lie in [0, FULL_TURN).
+     */
+    static final int FULL_TURN = 360;
+
+    /**
+     * Number of modes.
+     */
+    private static final int MODE_COUNT = Mode.values().length;
+
+    /**
+     * No instances.
+     */
+    private MetricRules() {
+    }
+
+    /**
+     * Checks that {@code value} is a valid metric for {@code mode}: every
+     * metric must be non-negative, and a direction must be less than 360.
+     *
+     * @param mode
+     *            The mode being set.
+     * @param value
+     *            The value to check.
+     * @throws IllegalArgumentException
+     *             if the value is not valid for the mode.
+     */
+    static void check(Mode mode, double value) {
+        if (!isValid(mode, value)) {
+            throw new IllegalArgumentException(violation(mode, value));
+        }
+    }
+
+    /**
+     * Reports whether {@code value} is a valid metric for {@code mode}, by the
+     * same rules as check, without building a message.
+     *
+     * @param mode
+     *            The mode being set.
+     * @param value
+     *            The value to check.
+     * @return True if check would accept the value.
+     */
+    static boolean isValid(Mode mode, double value) {
+        return !(value < 0) && !(mode == Mode.DIRECTION && value >= FULL_TURN);
+    }
+
+    /**
+     * Describes why {@code value} is not a valid metric for {@code mode}, for
+     * callers that report bad values instead of throwing.
+     *
+     * @param mode
+     *            The mode being set.
+     * @param value
+     *            The value to check.
+     * @return The reason the value is rejected, or null if it is valid.
+     */
+    static String violation(Mode mode, double value) {
+        // Direction-specific validation
+        if (mode == Mode.DIRECTION && (value < 0 || value >= FULL_TURN)) {
+            return "Direction must be between 0 and 359.";
+        }
+        // Other validations
+        if (value < 0) {
+            return mode.name() + " must be non-negative.";
+        }
+        return null;
+    }
+
+    /**
+     * Checks that {@code deltas} has one entry per Mode.
+     *
+     * @param deltas
+     *            The deltas, indexed by Mode.ordinal().
+     * @throws IllegalArgumentException
+     *             if deltas is null or has the wrong length.
+     */
+    static void checkDeltas(double[] deltas) {
+        if (deltas == null || deltas.length != MODE_COUNT) {
+            throw new IllegalArgumentException(
+                    "Deltas must have one entry per mode.");
+        }
+    }
+}
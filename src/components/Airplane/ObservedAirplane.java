@@ -0,0 +1,164 @@
+package components.Airplane;
+
+/**
+ * Airplane that forwards every call to another airplane and reports each
+ * resulting metric change to a {@link MetricObserver}. Changes that fail
+ * validation are not reported, since they change nothing.
+ */
+final class ObservedAirplane extends AirplaneSecondary {
+
+    /**
+     * Modes indexed by ordinal.
+     */
+    private static final Mode[] MODES = Mode.values();
+
+    /**
+     * The airplane holding the state.
+     */
+    private final Airplane delegate;
+
+    /**
+     * The observer changes are reported to.
+     */
+    private final MetricObserver observer;
+
+    /**
+     * Constructor.
+     *
+     * @param delegate
+     *            The airplane holding the state.
+     * @param observer
+     *            The observer changes are reported to.
+     */
+    ObservedAirplane(Airplane delegate, MetricObserver observer) {
+        this.delegate = delegate;
+        this.observer = observer;
+        observer.attached(this);
+    }
+
+    /**
+     * Returns the observer changes are reported to.
+     *
+     * @return The observer.
+     */
+    MetricObserver observer() {
+        return this.observer;
+    }
+
+    @Override
+    public void setMetric(Mode mode, double value) {
+        this.delegate.setMetric(mode, value);
+        this.observer.metricChanged(mode, value);
+    }
+
+    @Override
+    public double getMetric(Mode mode) {
+        return this.delegate.getMetric(mode);
+    }
+
+    @Override
+    public boolean isDefined(Mode mode) {
+        return this.delegate.isDefined(mode);
+    }
+
+    @Override
+    public void addToMetric(Mode mode, double delta) {
+        this.delegate.addToMetric(mode, delta);
+        this.observer.metricChanged(mode, this.delegate.getMetric(mode));
+    }
+
+    @Override
+    public void applyDeltas(double[] deltasByOrdinal) {
+        this.delegate.applyDeltas(deltasByOrdinal);
+        for (Mode mode : MODES) {
+            if (deltasByOrdinal[mode.ordinal()] != 0) {
+                this.observer.metricChanged(mode,
+                        this.delegate.getMetric(mode));
+            }
+        }
+    }
+
+    @Override
+    public void clear() {
+        this.delegate.clear();
+        this.observer.metricsCleared();
+    }
+
+    /**
+     * Transfers the state of {@code source} to the wrapped airplane and
+     * reports the result as a clear followed by every defined metric. An
+     * observed source is unwrapped first, and its clearing is reported too.
+     *
+     * @param source
+     *            The source airplane to transfer state from.
+     * @throws IllegalArgumentException
+     *             if the wrapped airplane rejects the source.
+     */
+    @Override
+    public void transferFrom(Airplane source) {
+        if (source == this) {
+            return;
+        }
+        if (source instanceof ObservedAirplane) {
+            ObservedAirplane src = (ObservedAirplane) source;
+            this.delegate.transferFrom(src.delegate);
+            src.observer.metricsCleared();
+        } else {
+            this.delegate.transferFrom(source);
+        }
+        this.observer.metricsCleared();
+        for (Mode mode : MODES) {
+            if (this.delegate.isDefined(mode)) {
+                this.observer.metricChanged(mode,
+                        this.delegate.getMetric(mode));
+            }
+        }
+    }
+
+    /**
+     * Creates a fresh, empty airplane of the wrapped kind, reported to the
+     * observer's {@link MetricObserver#newObserver()}.
+     *
+     * @return A new empty airplane.
+     */
+    @Override
+    public Airplane newInstance() {
+        return new ObservedAirplane(this.delegate.newInstance(),
+                this.observer.newObserver());
+    }
+
+    @Override
+    public void setAltitude(double altitude) {
+        this.setMetric(Mode.ALTITUDE, altitude);
+    }
+
+    @Override
+    public double getAltitude() {
+        return this.getMetric(Mode.ALTITUDE);
+    }
+
+    @Override
+    public void setSpeed(double speed) {
+        this.setMetric(Mode.SPEED, speed);
+    }
+
+    @Override
+    public double getSpeed() {
+        return this.getMetric(Mode.SPEED);
+    }
+
+    @Override
+    public void setDirection(int direction) {
+        this.setMetric(Mode.DIRECTION, direction);
+    }
+
+    @Override
+    public int getDirection() {
+        return (int) this.getMetric(Mode.DIRECTION);
+    }
+
+    @Override
+    public double getFuelQuantity() {
+        return this.getMetric(Mode.FUEL_QUANTITY);
+    }
+}
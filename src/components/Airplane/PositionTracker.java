@@ -0,0 +1,170 @@
+package components.Airplane;
+
+import java.util.Objects;
+
+import components.Airplane.AirplaneKernel.Mode;
+
+/**
+ * Horizontal positions of the airplanes of an {@link AirplaneFleet}, moved by
+ * dead reckoning: each tick, every airplane moves SPEED knots along its
+ * DIRECTION. Positions are east and north offsets in nautical miles from an
+ * arbitrary origin, and may be negative, which is why they are kept here
+ * rather than as metrics of the fleet.
+ *
+ * <p>
+ * Like the fleet, the tracker is stored column by column, and different
+ * threads may advance disjoint ranges of slots at once.
+ * </p>
+ *
+ * @convention: east.length = north.length = capacity.
+ */
+public final class PositionTracker {
+
+    /**
+     * Number of seconds in an hour.
+     */
+    private static final double SECONDS_PER_HOUR = 3600;
+
+    /**
+     * log2 of the number of bits in a bitset word.
+     */
+    private static final int WORD_SHIFT = 6;
+
+    /**
+     * Number of airplanes tracked.
+     */
+    private final int capacity;
+
+    /**
+     * East offset of each slot, in nautical miles.
+     */
+    private final double[] east;
+
+    /**
+     * North offset of each slot, in nautical miles.
+     */
+    private final double[] north;
+
+    /**
+     * Constructor for {@code capacity} airplanes, all at the origin.
+     *
+     * @param capacity
+     *            The number of airplanes.
+     * @throws IllegalArgumentException
+     *             if capacity is negative.
+     */
+    public PositionTracker(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException(
+                    "Capacity must be non-negative.");
+        }
+        this.capacity = capacity;
+        this.east = new double[capacity];
+        this.north = new double[capacity];
+    }
+
+    /**
+     * Reports the number of airplanes tracked.
+     *
+     * @return The capacity.
+     */
+    public int capacity() {
+        return this.capacity;
+    }
+
+    /**
+     * Places the airplane in the given slot.
+     *
+     * @param slot
+     *            The airplane's slot.
+     * @param eastMiles
+     *            The east offset, in nautical miles.
+     * @param northMiles
+     *            The north offset, in nautical miles.
+     */
+    public void setPosition(int slot, double eastMiles, double northMiles) {
+        Objects.checkIndex(slot, this.capacity);
+        this.east[slot] = eastMiles;
+        this.north[slot] = northMiles;
+    }
+
+    /**
+     * Reports the east offset of the airplane in the given slot.
+     *
+     * @param slot
+     *            The airplane's slot.
+     * @return The east offset, in nautical miles.
+     */
+    public double east(int slot) {
+        return this.east[slot];
+    }
+
+    /**
+     * Reports the north offset of the airplane in the given slot.
+     *
+     * @param slot
+     *            The airplane's slot.
+     * @return The north offset, in nautical miles.
+     */
+    public double north(int slot) {
+        return this.north[slot];
+    }
+
+    /**
+     * Returns the live east offsets, for checkpoints in this package.
+     *
+     * @return The east offsets, indexed by slot.
+     */
+    double[] eastColumn() {
+        return this.east;
+    }
+
+    /**
+     * Returns the live north offsets, for checkpoints in this package.
+     *
+     * @return The north offsets, indexed by slot.
+     */
+    double[] northColumn() {
+        return this.north;
+    }
+
+    /**
+     * Moves the airplanes in slots lo up to hi - 1 for {@code seconds}
+     * seconds at the SPEED and along the DIRECTION they have in
+     * {@code fleet}, except those whose bit is set in {@code frozen}; an
+     * airplane with no SPEED stays where it is.
+     *
+     * @param fleet
+     *            The fleet, of the same capacity.
+     * @param lo
+     *            The first slot.
+     * @param hi
+     *            One past the last slot.
+     * @param seconds
+     *            The time flown, in seconds.
+     * @param frozen
+     *            Bitset of slots left where they are, indexed by slot / 64.
+     * @throws IllegalArgumentException
+     *             if fleet's capacity differs.
+     */
+    public void advance(AirplaneFleet fleet, int lo, int hi, double seconds,
+            long[] frozen) {
+        if (fleet.capacity() != this.capacity) {
+            throw new IllegalArgumentException(
+                    "Fleet capacity does not match.");
+        }
+        Objects.checkFromToIndex(lo, hi, this.capacity);
+        // Undefined metrics are 0 in the columns, so need no test here
+        double[] speed = fleet.column(Mode.SPEED);
+        double[] direction = fleet.column(Mode.DIRECTION);
+        double hours = seconds / SECONDS_PER_HOUR;
+        for (int s = lo; s < hi; s++) {
+            // 0 if the slot is frozen, so it moves no distance
+            long moving = 1 - ((frozen[s >>> WORD_SHIFT] >>> s) & 1);
+            double miles = speed[s] * hours * moving;
+            int heading = (int) direction[s];
+            this.east[s] += miles * FlightPhysics.SIN[heading];
+            this.north[s] += miles * FlightPhysics.COS[heading];
+        }
+    }
+}
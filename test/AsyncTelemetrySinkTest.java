@@ -0,0 +1,222 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+import components.Airplane.Airplane;
+import components.Airplane.Airplane2;
+
+/**
+ * JUnit test file for AsyncTelemetrySink.
+ */
+public class AsyncTelemetrySinkTest {
+
+        /**
+         * Number of reports the buffer holds in these tests.
+         */
+        private static final int CAPACITY = 8;
+
+        /**
+         * A writer that keeps what it is given, and holds the first write
+         * until released, so that the sink's buffer can be filled.
+         */
+        private static final class GatedWriter extends Writer {
+
+                /**
+                 * Everything written.
+                 */
+                private final StringBuilder text = new StringBuilder();
+
+                /**
+                 * Counted down when the first write arrives.
+                 */
+                private final CountDownLatch entered = new CountDownLatch(1);
+
+                /**
+                 * Counted down to let writes through.
+                 */
+                private final CountDownLatch released = new CountDownLatch(1);
+
+                /**
+                 * Whether the writer has been closed.
+                 */
+                private volatile boolean closed;
+
+                @Override
+                public void write(char[] chars, int offset, int length)
+                                throws IOException {
+                        this.entered.countDown();
+                        try {
+                                this.released.await();
+                        } catch (InterruptedException e) {
+                                throw new IOException(e);
+                        }
+                        synchronized (this.text) {
+                                this.text.append(chars, offset, length);
+                        }
+                }
+
+                @Override
+                public void flush() {
+                }
+
+                @Override
+                public void close() {
+                        this.closed = true;
+                }
+
+                /**
+                 * Returns the lines written so far.
+                 *
+                 * @return the lines
+                 */
+                List<String> lines() {
+                        synchronized (this.text) {
+                                return Arrays.asList(this.text.toString()
+                                                .split(System.lineSeparator()));
+                        }
+                }
+        }
+
+        /**
+         * Returns a sink on {@code out} whose writer thread is held inside
+         * its first write, of message "first", so the buffer is empty and
+         * nothing more is taken out of it until out is released.
+         *
+         * @param out
+         *            the writer
+         * @param backpressure
+         *            the policy
+         * @param closeOut
+         *            whether closing the sink closes out
+         * @return the sink
+         * @throws InterruptedException
+         *                 if the test is interrupted
+         */
+        private static AsyncTelemetrySink heldSink(GatedWriter out,
+                        TelemetrySink.Backpressure backpressure,
+                        boolean closeOut) throws InterruptedException {
+                AsyncTelemetrySink sink = new AsyncTelemetrySink(out,
+                                closeOut, backpressure, CAPACITY);
+                sink.message("first");
+                out.entered.await();
+                return sink;
+        }
+
+        /**
+         * Test that BLOCK makes a producer wait while the buffer is full, and
+         * loses nothing.
+         *
+         * @throws InterruptedException
+         *                 if the test is interrupted
+         */
+        @Test
+        public void testBlock() throws InterruptedException {
+                GatedWriter out = new GatedWriter();
+                AsyncTelemetrySink sink = heldSink(out,
+                                TelemetrySink.Backpressure.BLOCK, false);
+                for (int i = 0; i < CAPACITY; i++) {
+                        sink.message("m" + i);
+                }
+                Thread producer = new Thread(() -> sink.message("last"));
+                producer.start();
+                final long patienceMillis = 100;
+                producer.join(patienceMillis);
+                assertTrue(producer.isAlive());
+
+                out.released.countDown();
+                producer.join();
+                sink.close();
+
+                List<String> expected = new ArrayList<>();
+                expected.add("first");
+                for (int i = 0; i < CAPACITY; i++) {
+                        expected.add("m" + i);
+                }
+                expected.add("last");
+                assertEquals(expected, out.lines());
+                assertEquals(0, sink.dropped());
+                assertFalse(out.closed);
+        }
+
+        /**
+         * Test that DROP_OLDEST discards the oldest buffered reports, and
+         * that close writes the rest and closes the output.
+         *
+         * @throws InterruptedException
+         *                 if the test is interrupted
+         */
+        @Test
+        public void testDropOldest() throws InterruptedException {
+                GatedWriter out = new GatedWriter();
+                AsyncTelemetrySink sink = heldSink(out,
+                                TelemetrySink.Backpressure.DROP_OLDEST, true);
+                final int extra = 3;
+                for (int i = 0; i < CAPACITY + extra; i++) {
+                        sink.message("m" + i);
+                }
+                assertEquals(extra, sink.dropped());
+
+                out.released.countDown();
+                sink.close();
+
+                List<String> expected = new ArrayList<>();
+                expected.add("first");
+                for (int i = extra; i < CAPACITY + extra; i++) {
+                        expected.add("m" + i);
+                }
+                assertEquals(expected, out.lines());
+                assertTrue(out.closed);
+        }
+
+        /**
+         * Test that SAMPLE keeps one metrics report in eight once the buffer
+         * is half full, and never drops a phase.
+         *
+         * @throws InterruptedException
+         *                 if the test is interrupted
+         */
+        @Test
+        public void testSample() throws InterruptedException {
+                GatedWriter out = new GatedWriter();
+                AsyncTelemetrySink sink = heldSink(out,
+                                TelemetrySink.Backpressure.SAMPLE, false);
+                Airplane airplane = new Airplane2();
+                final int half = CAPACITY / 2;
+                final int offered = 16;
+                for (int i = 0; i < half + offered; i++) {
+                        airplane.setAltitude(i);
+                        sink.metrics(airplane);
+                }
+                sink.phase("Landing");
+                assertEquals(offered - 2, sink.dropped());
+
+                out.released.countDown();
+                sink.close();
+
+                List<String> altitudes = new ArrayList<>();
+                for (String line : out.lines()) {
+                        if (line.startsWith("Altitude: ")) {
+                                altitudes.add(line);
+                        }
+                }
+                List<String> expected = new ArrayList<>();
+                for (int i = 0; i < half; i++) {
+                        expected.add("Altitude: " + (double) i);
+                }
+                // The 8th and 16th reports offered while sampling
+                expected.add("Altitude: " + (double) (half + 7));
+                expected.add("Altitude: " + (double) (half + 15));
+                assertEquals(expected, altitudes);
+                List<String> lines = out.lines();
+                assertEquals("Phase: Landing", lines.get(lines.size() - 1));
+        }
+}
@@ -0,0 +1,184 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import components.Airplane.AirplaneFleet;
+import components.Airplane.ConflictGrid;
+import components.Airplane.FleetCheckpoint;
+import components.Airplane.FleetCheckpointWriter;
+import components.Airplane.PositionTracker;
+import components.Airplane.AirplaneKernel.Mode;
+
+/**
+ * JUnit test file for FleetSimulator.
+ */
+public class FleetSimulatorTest {
+
+        /**
+         * Number of airplanes simulated.
+         */
+        private static final int SIZE = 1000;
+
+        /**
+         * Number of threads simulating them.
+         */
+        private static final int THREADS = 2;
+
+        /**
+         * Folder for the checkpoint files, deleted after each test.
+         */
+        @Rule
+        public TemporaryFolder folder = new TemporaryFolder();
+
+        /**
+         * Returns a fleet whose airplanes fly different headings through
+         * different winds and temperatures, with different amounts of fuel.
+         *
+         * @return the fleet
+         */
+        private static AirplaneFleet newFleet() {
+                final int degrees = 360;
+                final int winds = 41;
+                final int temperatures = 60;
+                final double coldest = 250;
+                final int fuels = 100;
+                final double fuelStep = 10;
+                AirplaneFleet fleet = new AirplaneFleet(SIZE);
+                for (int slot = 0; slot < SIZE; slot++) {
+                        fleet.setMetric(slot, Mode.FUEL_QUANTITY,
+                                        slot % fuels * fuelStep);
+                        fleet.setMetric(slot, Mode.DIRECTION, slot % degrees);
+                        fleet.setMetric(slot, Mode.WIND_SPEED, slot % winds);
+                        fleet.setMetric(slot, Mode.OUTSIDE_AIR_TEMPERATURE,
+                                        coldest + slot % temperatures);
+                }
+                return fleet;
+        }
+
+        /**
+         * Returns positions on a square grid, 6 nautical miles apart.
+         *
+         * @return the positions
+         */
+        private static PositionTracker newPositions() {
+                final int side = 32;
+                final double spacing = 6;
+                PositionTracker positions = new PositionTracker(SIZE);
+                for (int slot = 0; slot < SIZE; slot++) {
+                        positions.setPosition(slot, slot % side * spacing,
+                                        slot / side * spacing);
+                }
+                return positions;
+        }
+
+        /**
+         * Makes the simulator move the airplanes in {@code positions}.
+         *
+         * @param simulator
+         *            the simulator
+         * @param positions
+         *            the positions
+         */
+        private static void track(FleetSimulator simulator,
+                        PositionTracker positions) {
+                final double horizontal = 5;
+                final double vertical = 1000;
+                simulator.trackConflicts(positions,
+                                new ConflictGrid(SIZE, horizontal, vertical),
+                                (first, second) -> {
+                                });
+        }
+
+        /**
+         * Simulates the phases of the flight, up to and including phase
+         * {@code last}.
+         *
+         * @param simulator
+         *            the simulator
+         * @param last
+         *            the last phase to simulate
+         */
+        private static void fly(FleetSimulator simulator, int last) {
+                simulator.start();
+                simulator.simulatePhysicsPhase("Takeoff", 5, 20, 1);
+                if (last >= 1) {
+                        // Halts the airplanes whose fuel runs out
+                        simulator.simulatePhase("Cruising", 3, 0, 0, -100);
+                }
+                if (last >= 2) {
+                        simulator.simulatePhysicsPhase("Landing", 4, -20, -1);
+                }
+        }
+
+        /**
+         * Test that a simulator resumed from a checkpoint taken partway
+         * through a phase ends in the same state as one never interrupted,
+         * with its airplanes in the same positions.
+         *
+         * @throws IOException
+         *                 if the checkpoint cannot be used
+         */
+        @Test
+        public void testResumeMatchesUninterruptedRun() throws IOException {
+                ForkJoinPool pool = new ForkJoinPool(THREADS);
+                AirplaneFleet straight = newFleet();
+                FleetSimulator uninterrupted = new FleetSimulator(straight,
+                                pool, SimulationClock.unpaced());
+                PositionTracker straightPositions = newPositions();
+                track(uninterrupted, straightPositions);
+                fly(uninterrupted, 2);
+
+                // The last checkpoint is after tick 1 of the second phase
+                Path file = this.folder.newFile("fleet.ckp").toPath();
+                try (FleetCheckpointWriter writer = new FleetCheckpointWriter(
+                                file, SIZE, 2)) {
+                        FleetSimulator interrupted = new FleetSimulator(
+                                        newFleet(), pool,
+                                        SimulationClock.unpaced());
+                        track(interrupted, newPositions());
+                        interrupted.checkpointTo(writer, 3);
+                        fly(interrupted, 1);
+                }
+                FleetCheckpoint checkpoint = FleetCheckpoint.restore(file);
+                assertEquals(1, checkpoint.phase());
+                assertEquals(1, checkpoint.tick());
+                AirplaneFleet restored = checkpoint.fleet();
+                FleetSimulator resumed = new FleetSimulator(restored, pool,
+                                SimulationClock.unpaced());
+                resumed.resumeFrom(checkpoint);
+                PositionTracker restoredPositions = checkpoint.positions();
+                track(resumed, restoredPositions);
+                fly(resumed, 2);
+                pool.shutdown();
+
+                assertTrue(uninterrupted.haltedCount() > 0);
+                assertEquals(uninterrupted.haltedCount(),
+                                resumed.haltedCount());
+                for (int slot = 0; slot < SIZE; slot++) {
+                        assertEquals(uninterrupted.isHalted(slot),
+                                        resumed.isHalted(slot));
+                        assertEquals(straightPositions.east(slot),
+                                        restoredPositions.east(slot), 0.0);
+                        assertEquals(straightPositions.north(slot),
+                                        restoredPositions.north(slot), 0.0);
+                        for (Mode mode : Mode.values()) {
+                                assertEquals(straight.isDefined(slot, mode),
+                                                restored.isDefined(slot, mode));
+                                if (straight.isDefined(slot, mode)) {
+                                        assertEquals(straight.getMetric(slot,
+                                                        mode),
+                                                        restored.getMetric(slot,
+                                                                        mode),
+                                                        0.0);
+                                }
+                        }
+                }
+        }
+}
@@ -0,0 +1,130 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * JUnit test file for FlightSupervisor.
+ */
+public class FlightSupervisorTest {
+
+        /**
+         * Number of flights started by each test.
+         */
+        private static final int FLIGHTS = 50;
+
+        /**
+         * Returns a flight that counts itself started, waits until its
+         * thread is interrupted, then counts itself exited.
+         *
+         * @param started
+         *            counted down once the flight runs
+         * @param exited
+         *            incremented once the flight stops
+         * @return the flight
+         */
+        private static Runnable blockedFlight(CountDownLatch started,
+                        AtomicInteger exited) {
+                return () -> {
+                        started.countDown();
+                        try {
+                                Thread.sleep(Long.MAX_VALUE);
+                        } catch (InterruptedException e) {
+                                // Cancelled, as expected
+                                Thread.currentThread().interrupt();
+                        } finally {
+                                exited.incrementAndGet();
+                        }
+                };
+        }
+
+        /**
+         * Test that join returns once every flight has finished.
+         *
+         * @throws InterruptedException
+         *                 if the test is interrupted
+         * @throws ExecutionException
+         *                 if a flight fails
+         */
+        @Test
+        public void testJoinWaitsForFlights()
+                        throws InterruptedException, ExecutionException {
+                AtomicInteger finished = new AtomicInteger();
+                try (FlightSupervisor supervisor = new FlightSupervisor()) {
+                        for (int i = 0; i < FLIGHTS; i++) {
+                                supervisor.start(() -> {
+                                        try {
+                                                Thread.sleep(10);
+                                        } catch (InterruptedException e) {
+                                                return;
+                                        }
+                                        finished.incrementAndGet();
+                                });
+                        }
+                        supervisor.join();
+                        assertEquals(FLIGHTS, finished.get());
+                }
+        }
+
+        /**
+         * Test that a failing flight cancels the others, and that join
+         * reports the failure only once they have all exited.
+         *
+         * @throws InterruptedException
+         *                 if the test is interrupted
+         */
+        @Test
+        public void testFailureCancelsOthers() throws InterruptedException {
+                CountDownLatch started = new CountDownLatch(FLIGHTS);
+                AtomicInteger exited = new AtomicInteger();
+                RuntimeException failure = new IllegalStateException();
+                try (FlightSupervisor supervisor = new FlightSupervisor()) {
+                        for (int i = 0; i < FLIGHTS; i++) {
+                                supervisor.start(blockedFlight(started,
+                                                exited));
+                        }
+                        started.await();
+                        supervisor.start(() -> {
+                                throw failure;
+                        });
+                        try {
+                                supervisor.join();
+                                fail("join did not report the failure");
+                        } catch (ExecutionException e) {
+                                assertSame(failure, e.getCause());
+                        }
+                        assertEquals(FLIGHTS, exited.get());
+                }
+        }
+
+        /**
+         * Test that close cancels running flights and waits for them to
+         * exit, and that flights started after cancel do not run.
+         *
+         * @throws InterruptedException
+         *                 if the test is interrupted
+         */
+        @Test
+        public void testCloseWaitsForCancelledFlights()
+                        throws InterruptedException {
+                CountDownLatch started = new CountDownLatch(FLIGHTS);
+                AtomicInteger exited = new AtomicInteger();
+                AtomicInteger late = new AtomicInteger();
+                try (FlightSupervisor supervisor = new FlightSupervisor()) {
+                        for (int i = 0; i < FLIGHTS; i++) {
+                                supervisor.start(blockedFlight(started,
+                                                exited));
+                        }
+                        started.await();
+                        supervisor.cancel();
+                        supervisor.start(late::incrementAndGet);
+                }
+                assertEquals(FLIGHTS, exited.get());
+                assertEquals(0, late.get());
+        }
+}
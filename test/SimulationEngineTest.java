@@ -0,0 +1,297 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import components.Airplane.Airplane;
+import components.Airplane.FlightPlan;
+import components.Airplane.AirplaneKernel.Mode;
+
+/**
+ * JUnit test file for SimulationEngine and the SimulationClocks.
+ */
+public class SimulationEngineTest {
+
+        /**
+         * Simulated milliseconds per step in AirplaneSimulator.
+         */
+        private static final long TIMESTEP_MILLIS = 1000;
+
+        /**
+         * Fuel loaded by AirplaneSimulator before takeoff.
+         */
+        private static final double INITIAL_FUEL = 5000;
+
+        /**
+         * A sink that keeps every report as a line of text.
+         */
+        private static final class CapturingSink implements TelemetrySink {
+
+                /**
+                 * The reports, in order.
+                 */
+                private final List<String> lines = new ArrayList<>();
+
+                @Override
+                public void message(String text) {
+                        this.lines.add("message " + text);
+                }
+
+                @Override
+                public void phase(String phaseName) {
+                        this.lines.add("phase " + phaseName);
+                }
+
+                @Override
+                public void metrics(Airplane airplane) {
+                        this.lines.add(metricsLine(airplane));
+                }
+
+                @Override
+                public void flush() {
+                }
+
+                @Override
+                public void close() {
+                }
+        }
+
+        /**
+         * A clock that never waits, and records the simulated times it is
+         * asked to wait for.
+         */
+        private static final class RecordingClock implements SimulationClock {
+
+                /**
+                 * Number of calls to start.
+                 */
+                private int starts;
+
+                /**
+                 * The simulated times awaited, in order.
+                 */
+                private final List<Long> awaited = new ArrayList<>();
+
+                @Override
+                public void start() {
+                        this.starts++;
+                }
+
+                @Override
+                public void awaitSimulatedTime(long simulatedMillis) {
+                        this.awaited.add(simulatedMillis);
+                }
+        }
+
+        /**
+         * Returns the line a CapturingSink records for a metrics report: the
+         * defined metrics, in Mode order.
+         *
+         * @param airplane
+         *            the airplane
+         * @return the line
+         */
+        private static String metricsLine(Airplane airplane) {
+                StringBuilder line = new StringBuilder("metrics");
+                for (Mode mode : Mode.values()) {
+                        if (airplane.isDefined(mode)) {
+                                double value = airplane.getMetric(mode);
+                                line.append(' ').append(mode).append('=')
+                                                .append(value);
+                        }
+                }
+                return line.toString();
+        }
+
+        /**
+         * Returns the reports of a real-time run of AirplaneSimulator,
+         * worked out from its flight plan without running it.
+         *
+         * @return the reports
+         */
+        private static List<String> realTimeReports() {
+                FlightPlan plan = AirplaneSimulator.flightPlan();
+                final int modes = Mode.values().length;
+                double[] values = new double[modes];
+                boolean[] defined = new boolean[modes];
+                values[Mode.FUEL_QUANTITY.ordinal()] = INITIAL_FUEL;
+                defined[Mode.FUEL_QUANTITY.ordinal()] = true;
+
+                List<String> expected = new ArrayList<>();
+                expected.add("message Starting Airplane Simulation...\n");
+                for (int p = 0; p < plan.phaseCount(); p++) {
+                        expected.add("phase " + plan.phaseName(p));
+                        double[] deltas = plan.phaseDeltas(p);
+                        for (int i = 0; i < plan.phaseDuration(p); i++) {
+                                StringBuilder line = new StringBuilder(
+                                                "metrics");
+                                for (Mode mode : Mode.values()) {
+                                        int m = mode.ordinal();
+                                        if (deltas[m] != 0) {
+                                                values[m] += deltas[m];
+                                                defined[m] = true;
+                                        }
+                                        if (defined[m]) {
+                                                line.append(' ').append(mode)
+                                                                .append('=');
+                                                line.append(values[m]);
+                                        }
+                                }
+                                expected.add(line.toString());
+                        }
+                }
+                expected.add("message \nSimulation Complete!");
+                return expected;
+        }
+
+        /**
+         * Runs AirplaneSimulator with the given clock and returns its reports.
+         *
+         * @param clock
+         *            the clock
+         * @return the reports
+         */
+        private static List<String> run(SimulationClock clock) {
+                CapturingSink sink = new CapturingSink();
+                new AirplaneSimulator(clock, sink).startSimulation();
+                return sink.lines;
+        }
+
+        /**
+         * Test that an unpaced run reports exactly what a real-time run
+         * does.
+         */
+        @Test
+        public void testUnpacedMatchesRealTime() {
+                assertEquals(realTimeReports(),
+                                run(SimulationClock.unpaced()));
+        }
+
+        /**
+         * Test that a scaled run reports exactly what a real-time run does.
+         */
+        @Test
+        public void testScaledMatchesRealTime() {
+                final double factor = 1e6;
+                assertEquals(realTimeReports(),
+                                run(SimulationClock.scaled(factor)));
+        }
+
+        /**
+         * Test that AirplaneSimulator waits for one timestep more per
+         * iteration of its flight plan, whatever the clock.
+         */
+        @Test
+        public void testSimulatorAwaitsEveryTimestep() {
+                FlightPlan plan = AirplaneSimulator.flightPlan();
+                List<Long> expected = new ArrayList<>();
+                long tick = 0;
+                for (int p = 0; p < plan.phaseCount(); p++) {
+                        for (int i = 0; i < plan.phaseDuration(p); i++) {
+                                tick++;
+                                expected.add(tick * TIMESTEP_MILLIS);
+                        }
+                }
+                RecordingClock clock = new RecordingClock();
+                run(clock);
+                assertEquals(1, clock.starts);
+                assertEquals(expected, clock.awaited);
+        }
+
+        /**
+         * Test that the engine counts fixed timesteps, and that start
+         * resets them.
+         */
+        @Test
+        public void testFixedTimestepTicks() {
+                final long timestep = 250;
+                final int steps = 7;
+                RecordingClock clock = new RecordingClock();
+                SimulationEngine engine = new SimulationEngine(clock,
+                                timestep);
+                engine.start();
+                assertEquals(0, engine.tick());
+                assertEquals(0, engine.simulatedMillis());
+                for (int i = 1; i <= steps; i++) {
+                        engine.advance();
+                        assertEquals(i, engine.tick());
+                        assertEquals(i * timestep, engine.simulatedMillis());
+                        assertEquals(i * timestep,
+                                        (long) clock.awaited.get(i - 1));
+                }
+                assertEquals(timestep, engine.timestepMillis());
+
+                engine.start();
+                assertEquals(2, clock.starts);
+                assertEquals(0, engine.tick());
+                engine.advance();
+                assertEquals(timestep, engine.simulatedMillis());
+        }
+
+        /**
+         * Test that a scaled clock waits until the wall clock has caught up
+         * with simulated time, measured from start.
+         *
+         * @throws InterruptedException
+         *                 if the test is interrupted
+         */
+        @Test
+        public void testScaledClockWaits() throws InterruptedException {
+                final double factor = 1000;
+                final long timestep = 1000;
+                final int steps = 20;
+                SimulationEngine engine = new SimulationEngine(
+                                SimulationClock.scaled(factor), timestep);
+                long startNanos = System.nanoTime();
+                engine.start();
+                for (int i = 0; i < steps; i++) {
+                        engine.advance();
+                }
+                long elapsedMillis = (System.nanoTime() - startNanos)
+                                / 1_000_000;
+                // 20 simulated seconds at 1000 times wall-clock speed
+                assertTrue(elapsedMillis >= steps * timestep / (long) factor);
+        }
+
+        /**
+         * Test that a scaled clock stops waiting when interrupted, and
+         * keeps the interrupt status.
+         */
+        @Test
+        public void testScaledClockInterrupted() {
+                final long oneHourMillis = 3_600_000;
+                SimulationClock clock = SimulationClock.realTime();
+                clock.start();
+                Thread.currentThread().interrupt();
+                try {
+                        clock.awaitSimulatedTime(oneHourMillis);
+                } finally {
+                        assertTrue(Thread.interrupted());
+                }
+        }
+
+        /**
+         * Test that the engine rejects a timestep that is not positive.
+         *
+         * @throws IllegalArgumentException
+         *                 expected
+         */
+        @Test(expected = IllegalArgumentException.class)
+        public void testZeroTimestep() {
+                new SimulationEngine(SimulationClock.unpaced(), 0);
+        }
+
+        /**
+         * Test that a scaled clock rejects a factor that is not positive.
+         *
+         * @throws IllegalArgumentException
+         *                 expected
+         */
+        @Test(expected = IllegalArgumentException.class)
+        public void testNaNFactor() {
+                SimulationClock.scaled(Double.NaN);
+        }
+}
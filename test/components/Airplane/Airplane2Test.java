@@ -0,0 +1,343 @@
+package components.Airplane;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import components.Airplane.AirplaneKernel.Mode;
+
+/**
+ * JUnit test file for Airplane2, mirroring AirplaneTest.
+ */
+public class Airplane2Test {
+
+        /**
+         * Single shared instance of Airplane for testing.
+         */
+        private static final Airplane airplaneTest = new Airplane2();
+
+        /**
+         * Test for getting and setting metrics.
+         */
+        @Test
+        public void testSetAndGetMetric() {
+                airplaneTest.clear(); // Reset state before test
+                final int alt = 35000;
+                final int speed = 550;
+
+                airplaneTest.setMetric(Mode.ALTITUDE, alt);
+                airplaneTest.setMetric(Mode.SPEED, speed);
+
+                assertTrue(airplaneTest.isDefined(Mode.ALTITUDE));
+                assertTrue(airplaneTest.isDefined(Mode.SPEED));
+                assertEquals(alt, airplaneTest.getMetric(Mode.ALTITUDE), 0.001);
+                assertEquals(speed, airplaneTest.getMetric(Mode.SPEED), 0.001);
+        }
+
+        /**
+         * Test for checking if a metric is defined.
+         */
+        @Test
+        public void testIsDefined() {
+                airplaneTest.clear(); // Reset state before test
+                final int alt = 35000;
+
+                airplaneTest.setMetric(Mode.ALTITUDE, alt);
+
+                assertTrue(airplaneTest.isDefined(Mode.ALTITUDE));
+                assertFalse(airplaneTest.isDefined(Mode.SPEED));
+        }
+
+        /**
+         * Test for clearing all metrics.
+         */
+        @Test
+        public void testClear() {
+                airplaneTest.clear(); // Reset state before test
+                final int alt = 35000;
+                final int speed = 1;
+
+                airplaneTest.setMetric(Mode.ALTITUDE, alt);
+                airplaneTest.setMetric(Mode.SPEED, speed);
+
+                airplaneTest.clear();
+
+                assertFalse(airplaneTest.isDefined(Mode.ALTITUDE));
+                assertFalse(airplaneTest.isDefined(Mode.SPEED));
+        }
+
+        /**
+         * Test for the toString() method.
+         */
+        @Test
+        public void testToString() {
+                airplaneTest.clear(); // Reset state before test
+                airplaneTest.setMetric(Mode.ALTITUDE, 35000);
+                airplaneTest.setMetric(Mode.DIRECTION, 90);
+
+                String expected = "Airplane [Altitude=35000.0,Direction=90.0]";
+                assertEquals("toString() should return a formatted string.",
+                                expected, airplaneTest.toString());
+        }
+
+        /**
+         * Test for equals() method with the same object.
+         */
+        @Test
+        public void testEqualsSameObject() {
+                airplaneTest.clear(); // Reset state before test
+                assertTrue(airplaneTest.equals(airplaneTest));
+        }
+
+        /**
+         * Test for equals() method with objects having the same state.
+         */
+        @Test
+        public void testEqualsSameState() {
+                airplaneTest.clear(); // Reset state before test
+                this.setUpAirplane(35000, 90);
+
+                Airplane airplane2 = new Airplane2();
+                airplane2.setMetric(Mode.ALTITUDE, 35000);
+                airplane2.setMetric(Mode.DIRECTION, 90);
+
+                assertTrue(airplaneTest.equals(airplane2));
+        }
+
+        /**
+         * Test for equals() method with objects having different states.
+         */
+        @Test
+        public void testEqualsDifferentState() {
+                airplaneTest.clear(); // Reset state before test
+                this.setUpAirplane(35000, 90);
+
+                airplaneTest.setMetric(Mode.ALTITUDE, 30000); // Change state
+
+                Airplane airplane2 = new Airplane2();
+                airplane2.setMetric(Mode.ALTITUDE, 35000);
+                airplane2.setMetric(Mode.DIRECTION, 90);
+
+                assertFalse(airplaneTest.equals(airplane2));
+        }
+
+        /**
+         * Test for consistent hashCode() method.
+         */
+        @Test
+        public void testHashCodeConsistency() {
+                airplaneTest.clear(); // Reset state before test
+                airplaneTest.setMetric(Mode.ALTITUDE, 35000);
+                airplaneTest.setMetric(Mode.DIRECTION, 90);
+
+                int hashCode1 = airplaneTest.hashCode();
+                int hashCode2 = airplaneTest.hashCode();
+
+                assertEquals("hashCode should be consistent across multiple calls.",
+                                hashCode1, hashCode2);
+        }
+
+        /**
+         * Test for transferring metrics between two airplane objects.
+         */
+        @Test
+        public void testTransferFrom() {
+                airplaneTest.clear(); // Reset state before test
+                this.setUpAirplane(35000, 90);
+
+                Airplane airplane2 = new Airplane2();
+                airplane2.setMetric(Mode.ALTITUDE, 30000);
+                airplane2.setMetric(Mode.SPEED, 550);
+
+                airplaneTest.transferFrom(airplane2);
+
+                // After transfer, airplaneTest should have airplane2's metrics
+                assertEquals("Altitude should be transferred.", 30000,
+                                airplaneTest.getMetric(Mode.ALTITUDE), 0.001);
+                assertEquals("Speed should be transferred.", 550,
+                                airplaneTest.getMetric(Mode.SPEED), 0.001);
+
+                // airplane2 should now be cleared
+                assertFalse("Altitude should not be defined in source after transfer.",
+                                airplane2.isDefined(Mode.ALTITUDE));
+                assertFalse("Speed should not be defined in source after transfer.",
+                                airplane2.isDefined(Mode.SPEED));
+        }
+
+        /**
+         * Test that a cleared mode is undefined and can be set again.
+         */
+        @Test
+        public void testClearThenSetAgain() {
+                airplaneTest.clear(); // Reset state before test
+                airplaneTest.setMetric(Mode.FUEL_QUANTITY, 1200);
+                airplaneTest.clear();
+                airplaneTest.setMetric(Mode.WIND_SPEED, 15);
+
+                assertFalse(airplaneTest.isDefined(Mode.FUEL_QUANTITY));
+                assertTrue(airplaneTest.isDefined(Mode.WIND_SPEED));
+                assertEquals(15, airplaneTest.getMetric(Mode.WIND_SPEED), 0.001);
+        }
+
+        /**
+         * Test that the source remains usable after a transfer.
+         */
+        @Test
+        public void testTransferFromSourceReusable() {
+                airplaneTest.clear(); // Reset state before test
+                this.setUpAirplane(35000, 90);
+
+                Airplane airplane2 = new Airplane2();
+                airplane2.transferFrom(airplaneTest);
+                airplaneTest.setMetric(Mode.SPEED, 550);
+
+                assertEquals(35000, airplane2.getMetric(Mode.ALTITUDE), 0.001);
+                assertFalse(airplane2.isDefined(Mode.SPEED));
+                assertFalse(airplaneTest.isDefined(Mode.ALTITUDE));
+                assertEquals(550, airplaneTest.getMetric(Mode.SPEED), 0.001);
+        }
+
+        /**
+         * Test that an invalid direction is rejected.
+         */
+        @Test(expected = IllegalArgumentException.class)
+        public void testSetDirectionOutOfRange() {
+                airplaneTest.clear(); // Reset state before test
+                airplaneTest.setMetric(Mode.DIRECTION, 360);
+        }
+
+        /**
+         * Test for adding to defined and undefined metrics.
+         */
+        @Test
+        public void testAddToMetric() {
+                airplaneTest.clear(); // Reset state before test
+                airplaneTest.setMetric(Mode.ALTITUDE, 35000);
+
+                airplaneTest.addToMetric(Mode.ALTITUDE, -5000);
+                airplaneTest.addToMetric(Mode.SPEED, 550);
+
+                assertEquals(30000, airplaneTest.getMetric(Mode.ALTITUDE), 0.001);
+                assertEquals(550, airplaneTest.getMetric(Mode.SPEED), 0.001);
+        }
+
+        /**
+         * Test that a rejected addition leaves the metric unchanged.
+         */
+        @Test
+        public void testAddToMetricRejected() {
+                airplaneTest.clear(); // Reset state before test
+                airplaneTest.setMetric(Mode.DIRECTION, 350);
+
+                try {
+                        airplaneTest.addToMetric(Mode.DIRECTION, 20);
+                        fail("Direction 370 should be rejected.");
+                } catch (IllegalArgumentException e) {
+                        assertEquals(350, airplaneTest.getMetric(Mode.DIRECTION),
+                                        0.001);
+                }
+        }
+
+        /**
+         * Test that applyDeltas skips zero deltas and is all or nothing.
+         */
+        @Test
+        public void testApplyDeltas() {
+                airplaneTest.clear(); // Reset state before test
+                airplaneTest.setMetric(Mode.FUEL_QUANTITY, 100);
+                double[] deltas = new double[Mode.values().length];
+                deltas[Mode.ALTITUDE.ordinal()] = 2000;
+                deltas[Mode.FUEL_QUANTITY.ordinal()] = -50;
+
+                airplaneTest.applyDeltas(deltas);
+                assertEquals(2000, airplaneTest.getMetric(Mode.ALTITUDE), 0.001);
+                assertEquals(50, airplaneTest.getMetric(Mode.FUEL_QUANTITY), 0.001);
+                assertFalse(airplaneTest.isDefined(Mode.SPEED));
+
+                deltas[Mode.FUEL_QUANTITY.ordinal()] = -100;
+                try {
+                        airplaneTest.applyDeltas(deltas);
+                        fail("Fuel -50 should be rejected.");
+                } catch (IllegalArgumentException e) {
+                        assertEquals(2000, airplaneTest.getMetric(Mode.ALTITUDE),
+                                        0.001);
+                }
+        }
+
+        /**
+         * Test that the cached hashCode follows every kind of change.
+         */
+        @Test
+        public void testHashCodeTracksChanges() {
+                Airplane fresh = new Airplane2();
+                Airplane other = new Airplane2();
+                airplaneTest.clear(); // Reset state before test
+                int empty = airplaneTest.hashCode();
+                assertEquals(fresh.hashCode(), empty);
+
+                airplaneTest.setMetric(Mode.ALTITUDE, 1000);
+                fresh.setMetric(Mode.ALTITUDE, 1000);
+                assertEquals(fresh.hashCode(), airplaneTest.hashCode());
+                airplaneTest.addToMetric(Mode.ALTITUDE, 500);
+                fresh.setMetric(Mode.ALTITUDE, 1500);
+                assertEquals(fresh.hashCode(), airplaneTest.hashCode());
+                double[] deltas = new double[Mode.values().length];
+                deltas[Mode.ALTITUDE.ordinal()] = 500;
+                airplaneTest.applyDeltas(deltas);
+                fresh.setMetric(Mode.ALTITUDE, 2000);
+                assertEquals(fresh.hashCode(), airplaneTest.hashCode());
+
+                other.transferFrom(airplaneTest);
+                assertEquals(fresh.hashCode(), other.hashCode());
+                assertEquals(empty, airplaneTest.hashCode());
+        }
+
+        /**
+         * Test that a snapshot keeps its state through every kind of change
+         * to the airplane it was taken from.
+         */
+        @Test
+        public void testSnapshotCopyOnWrite() {
+                Airplane other = new Airplane2();
+                airplaneTest.clear(); // Reset state before test
+                airplaneTest.setMetric(Mode.ALTITUDE, 1000);
+                Airplane first = airplaneTest.snapshot();
+                airplaneTest.setMetric(Mode.ALTITUDE, 2000);
+                Airplane second = airplaneTest.snapshot();
+                airplaneTest.addToMetric(Mode.SPEED, 5);
+                Airplane third = airplaneTest.snapshot();
+                other.transferFrom(airplaneTest);
+                other.clear();
+
+                assertEquals(1000, first.getAltitude(), 0);
+                assertEquals(2000, second.getAltitude(), 0);
+                assertFalse(second.isDefined(Mode.SPEED));
+                assertEquals(5, third.getSpeed(), 0);
+                assertTrue(third.snapshot() == third);
+                assertFalse(airplaneTest.isDefined(Mode.ALTITUDE));
+                assertFalse(other.isDefined(Mode.SPEED));
+                try {
+                        third.clear();
+                        fail("Snapshots should be immutable.");
+                } catch (UnsupportedOperationException e) {
+                        assertEquals(2000, third.getAltitude(), 0);
+                }
+        }
+
+        /**
+         * Helper method to set up an Airplane with given metrics.
+         *
+         * @param altitude
+         *                Altitude value.
+         * @param direction
+         *                Direction value.
+         */
+        private void setUpAirplane(double altitude, double direction) {
+                airplaneTest.clear(); // Reset state before setup
+                airplaneTest.setMetric(Mode.ALTITUDE, altitude);
+                airplaneTest.setMetric(Mode.DIRECTION, direction);
+        }
+}
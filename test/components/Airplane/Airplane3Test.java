@@ -0,0 +1,294 @@
+package components.Airplane;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import components.Airplane.AirplaneKernel.Mode;
+
+/**
+ * JUnit test file for Airplane3, mirroring AirplaneTest.
+ */
+public class Airplane3Test {
+
+        /**
+         * Single shared instance of Airplane for testing.
+         */
+        private static final Airplane airplaneTest = new Airplane3();
+
+        /**
+         * Test for getting and setting metrics.
+         */
+        @Test
+        public void testSetAndGetMetric() {
+                airplaneTest.clear(); // Reset state before test
+                final int alt = 35000;
+                final int speed = 550;
+
+                airplaneTest.setMetric(Mode.ALTITUDE, alt);
+                airplaneTest.setMetric(Mode.SPEED, speed);
+
+                assertTrue(airplaneTest.isDefined(Mode.ALTITUDE));
+                assertTrue(airplaneTest.isDefined(Mode.SPEED));
+                assertEquals(alt, airplaneTest.getMetric(Mode.ALTITUDE), 0.001);
+                assertEquals(speed, airplaneTest.getMetric(Mode.SPEED), 0.001);
+        }
+
+        /**
+         * Test for checking if a metric is defined.
+         */
+        @Test
+        public void testIsDefined() {
+                airplaneTest.clear(); // Reset state before test
+                final int alt = 35000;
+
+                airplaneTest.setMetric(Mode.ALTITUDE, alt);
+
+                assertTrue(airplaneTest.isDefined(Mode.ALTITUDE));
+                assertFalse(airplaneTest.isDefined(Mode.SPEED));
+        }
+
+        /**
+         * Test for clearing all metrics.
+         */
+        @Test
+        public void testClear() {
+                airplaneTest.clear(); // Reset state before test
+                final int alt = 35000;
+                final int speed = 1;
+
+                airplaneTest.setMetric(Mode.ALTITUDE, alt);
+                airplaneTest.setMetric(Mode.SPEED, speed);
+
+                airplaneTest.clear();
+
+                assertFalse(airplaneTest.isDefined(Mode.ALTITUDE));
+                assertFalse(airplaneTest.isDefined(Mode.SPEED));
+        }
+
+        /**
+         * Test for the toString() method.
+         */
+        @Test
+        public void testToString() {
+                airplaneTest.clear(); // Reset state before test
+                airplaneTest.setMetric(Mode.ALTITUDE, 35000);
+                airplaneTest.setMetric(Mode.DIRECTION, 90);
+
+                String expected = "Airplane [Altitude=35000.0,Direction=90.0]";
+                assertEquals("toString() should return a formatted string.",
+                                expected, airplaneTest.toString());
+        }
+
+        /**
+         * Test for equals() method with the same object.
+         */
+        @Test
+        public void testEqualsSameObject() {
+                airplaneTest.clear(); // Reset state before test
+                assertTrue(airplaneTest.equals(airplaneTest));
+        }
+
+        /**
+         * Test for equals() method with objects having the same state.
+         */
+        @Test
+        public void testEqualsSameState() {
+                airplaneTest.clear(); // Reset state before test
+                this.setUpAirplane(35000, 90);
+
+                Airplane airplane2 = new Airplane3();
+                airplane2.setMetric(Mode.ALTITUDE, 35000);
+                airplane2.setMetric(Mode.DIRECTION, 90);
+
+                assertTrue(airplaneTest.equals(airplane2));
+        }
+
+        /**
+         * Test for equals() method with objects having different states.
+         */
+        @Test
+        public void testEqualsDifferentState() {
+                airplaneTest.clear(); // Reset state before test
+                this.setUpAirplane(35000, 90);
+
+                airplaneTest.setMetric(Mode.ALTITUDE, 30000); // Change state
+
+                Airplane airplane2 = new Airplane3();
+                airplane2.setMetric(Mode.ALTITUDE, 35000);
+                airplane2.setMetric(Mode.DIRECTION, 90);
+
+                assertFalse(airplaneTest.equals(airplane2));
+        }
+
+        /**
+         * Test for consistent hashCode() method.
+         */
+        @Test
+        public void testHashCodeConsistency() {
+                airplaneTest.clear(); // Reset state before test
+                airplaneTest.setMetric(Mode.ALTITUDE, 35000);
+                airplaneTest.setMetric(Mode.DIRECTION, 90);
+
+                int hashCode1 = airplaneTest.hashCode();
+                int hashCode2 = airplaneTest.hashCode();
+
+                assertEquals("hashCode should be consistent across multiple calls.",
+                                hashCode1, hashCode2);
+        }
+
+        /**
+         * Test for transferring metrics between two airplane objects.
+         */
+        @Test
+        public void testTransferFrom() {
+                airplaneTest.clear(); // Reset state before test
+                this.setUpAirplane(35000, 90);
+
+                Airplane airplane2 = new Airplane3();
+                airplane2.setMetric(Mode.ALTITUDE, 30000);
+                airplane2.setMetric(Mode.SPEED, 550);
+
+                airplaneTest.transferFrom(airplane2);
+
+                // After transfer, airplaneTest should have airplane2's metrics
+                assertEquals("Altitude should be transferred.", 30000,
+                                airplaneTest.getMetric(Mode.ALTITUDE), 0.001);
+                assertEquals("Speed should be transferred.", 550,
+                                airplaneTest.getMetric(Mode.SPEED), 0.001);
+
+                // airplane2 should now be cleared
+                assertFalse("Altitude should not be defined in source after transfer.",
+                                airplane2.isDefined(Mode.ALTITUDE));
+                assertFalse("Speed should not be defined in source after transfer.",
+                                airplane2.isDefined(Mode.SPEED));
+        }
+
+        /**
+         * Test for adding to defined and undefined metrics.
+         */
+        @Test
+        public void testAddToMetric() {
+                airplaneTest.clear(); // Reset state before test
+                airplaneTest.setMetric(Mode.ALTITUDE, 35000);
+
+                airplaneTest.addToMetric(Mode.ALTITUDE, -5000);
+                airplaneTest.addToMetric(Mode.SPEED, 550);
+
+                assertEquals(30000, airplaneTest.getMetric(Mode.ALTITUDE), 0.001);
+                assertEquals(550, airplaneTest.getMetric(Mode.SPEED), 0.001);
+        }
+
+        /**
+         * Test that a rejected addition leaves the metric unchanged.
+         */
+        @Test
+        public void testAddToMetricRejected() {
+                airplaneTest.clear(); // Reset state before test
+                airplaneTest.setMetric(Mode.DIRECTION, 350);
+
+                try {
+                        airplaneTest.addToMetric(Mode.DIRECTION, 20);
+                        fail("Direction 370 should be rejected.");
+                } catch (IllegalArgumentException e) {
+                        assertEquals(350, airplaneTest.getMetric(Mode.DIRECTION),
+                                        0.001);
+                }
+        }
+
+        /**
+         * Test that applyDeltas skips zero deltas and is all or nothing.
+         */
+        @Test
+        public void testApplyDeltas() {
+                airplaneTest.clear(); // Reset state before test
+                airplaneTest.setMetric(Mode.FUEL_QUANTITY, 100);
+                double[] deltas = new double[Mode.values().length];
+                deltas[Mode.ALTITUDE.ordinal()] = 2000;
+                deltas[Mode.FUEL_QUANTITY.ordinal()] = -50;
+
+                airplaneTest.applyDeltas(deltas);
+                assertEquals(2000, airplaneTest.getMetric(Mode.ALTITUDE), 0.001);
+                assertEquals(50, airplaneTest.getMetric(Mode.FUEL_QUANTITY), 0.001);
+                assertFalse(airplaneTest.isDefined(Mode.SPEED));
+
+                deltas[Mode.FUEL_QUANTITY.ordinal()] = -100;
+                try {
+                        airplaneTest.applyDeltas(deltas);
+                        fail("Fuel -50 should be rejected.");
+                } catch (IllegalArgumentException e) {
+                        assertEquals(2000, airplaneTest.getMetric(Mode.ALTITUDE),
+                                        0.001);
+                }
+        }
+
+        /**
+         * Test that a snapshot copies the defined metrics.
+         */
+        @Test
+        public void testSnapshot() {
+                Airplane3 airplane = new Airplane3();
+                airplane.setMetric(Mode.ALTITUDE, 35000);
+                airplane.setMetric(Mode.FUEL_QUANTITY, 0);
+
+                Airplane copy = airplane.snapshot();
+                airplane.setMetric(Mode.ALTITUDE, 30000);
+
+                assertEquals(35000, copy.getMetric(Mode.ALTITUDE), 0.001);
+                assertTrue(copy.isDefined(Mode.FUEL_QUANTITY));
+                assertFalse(copy.isDefined(Mode.SPEED));
+        }
+
+        /**
+         * Test that snapshots never see half of an applyDeltas while another
+         * thread keeps applying them.
+         *
+         * @throws InterruptedException
+         *                 if interrupted while joining the writer
+         */
+        @Test
+        public void testSnapshotConsistentUnderWrites()
+                        throws InterruptedException {
+                final int rounds = 100_000;
+                Airplane3 airplane = new Airplane3();
+                double[] deltas = new double[Mode.values().length];
+                deltas[Mode.ALTITUDE.ordinal()] = 1;
+                deltas[Mode.SPEED.ordinal()] = 1;
+                deltas[Mode.FUEL_QUANTITY.ordinal()] = 1;
+                Thread writer = new Thread(() -> {
+                        for (int i = 0; i < rounds; i++) {
+                                airplane.applyDeltas(deltas);
+                        }
+                });
+
+                writer.start();
+                double[] values = new double[Mode.values().length];
+                while (writer.isAlive()) {
+                        airplane.snapshotInto(values);
+                        double alt = values[Mode.ALTITUDE.ordinal()];
+                        assertEquals(alt, values[Mode.SPEED.ordinal()], 0);
+                        assertEquals(alt, values[Mode.FUEL_QUANTITY.ordinal()],
+                                        0);
+                }
+                writer.join();
+
+                assertEquals(rounds, airplane.getMetric(Mode.SPEED), 0);
+        }
+
+        /**
+         * Helper method to set up an Airplane with given metrics.
+         *
+         * @param altitude
+         *                Altitude value.
+         * @param direction
+         *                Direction value.
+         */
+        private void setUpAirplane(double altitude, double direction) {
+                airplaneTest.clear(); // Reset state before setup
+                airplaneTest.setMetric(Mode.ALTITUDE, altitude);
+                airplaneTest.setMetric(Mode.DIRECTION, direction);
+        }
+}
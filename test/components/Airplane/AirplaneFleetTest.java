@@ -0,0 +1,267 @@
+package components.Airplane;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.junit.Test;
+
+import components.Airplane.AirplaneKernel.Mode;
+
+/**
+ * JUnit test file for AirplaneFleet and its slot views.
+ */
+public class AirplaneFleetTest {
+
+        /**
+         * Fleet size used by the tests; spans more than one bitset word.
+         */
+        private static final int CAPACITY = 130;
+
+        /**
+         * Test for setting and getting metrics by slot.
+         */
+        @Test
+        public void testSetAndGetMetric() {
+                AirplaneFleet fleet = new AirplaneFleet(CAPACITY);
+                fleet.setMetric(0, Mode.ALTITUDE, 35000);
+                fleet.setMetric(129, Mode.SPEED, 550);
+
+                assertTrue(fleet.isDefined(0, Mode.ALTITUDE));
+                assertFalse(fleet.isDefined(0, Mode.SPEED));
+                assertTrue(fleet.isDefined(129, Mode.SPEED));
+                assertFalse(fleet.isDefined(128, Mode.SPEED));
+                assertEquals(35000, fleet.getMetric(0, Mode.ALTITUDE), 0.001);
+                assertEquals(550, fleet.getMetric(129, Mode.SPEED), 0.001);
+        }
+
+        /**
+         * Test for clearing one slot without touching its neighbours.
+         */
+        @Test
+        public void testClearSlot() {
+                AirplaneFleet fleet = new AirplaneFleet(CAPACITY);
+                fleet.setMetric(64, Mode.FUEL_QUANTITY, 1000);
+                fleet.setMetric(65, Mode.FUEL_QUANTITY, 2000);
+
+                fleet.clear(64);
+
+                assertFalse(fleet.isDefined(64, Mode.FUEL_QUANTITY));
+                assertEquals(2000, fleet.getMetric(65, Mode.FUEL_QUANTITY),
+                                0.001);
+        }
+
+        /**
+         * Test for the column scans.
+         */
+        @Test
+        public void testCountAndSum() {
+                AirplaneFleet fleet = new AirplaneFleet(CAPACITY);
+                for (int s = 0; s < CAPACITY; s += 2) {
+                        fleet.setMetric(s, Mode.FUEL_QUANTITY, 10);
+                }
+
+                assertEquals(65, fleet.countDefined(Mode.FUEL_QUANTITY));
+                assertEquals(650, fleet.sum(Mode.FUEL_QUANTITY), 0.001);
+                assertEquals(0, fleet.countDefined(Mode.SPEED));
+        }
+
+        /**
+         * Test that writes through a view land in the fleet.
+         */
+        @Test
+        public void testViewWritesThrough() {
+                AirplaneFleet fleet = new AirplaneFleet(CAPACITY);
+                Airplane view = fleet.view(7);
+                view.setAltitude(30000);
+                view.setDirection(90);
+
+                assertEquals(30000, fleet.getMetric(7, Mode.ALTITUDE), 0.001);
+                assertEquals("Airplane [Altitude=30000.0,Direction=90.0]",
+                                view.toString());
+        }
+
+        /**
+         * Test that views of equal slots are equal.
+         */
+        @Test
+        public void testViewEquals() {
+                AirplaneFleet fleet = new AirplaneFleet(CAPACITY);
+                fleet.setMetric(1, Mode.SPEED, 550);
+                fleet.setMetric(2, Mode.SPEED, 550);
+
+                assertTrue(fleet.view(1).equals(fleet.view(2)));
+                assertEquals(fleet.view(1).hashCode(),
+                                fleet.view(2).hashCode());
+        }
+
+        /**
+         * Test for transferring an Airplane1 into a slot.
+         */
+        @Test
+        public void testViewTransferFrom() {
+                AirplaneFleet fleet = new AirplaneFleet(CAPACITY);
+                Airplane view = fleet.view(3);
+                view.setMetric(Mode.WIND_SPEED, 20);
+                Airplane source = new Airplane1();
+                source.setMetric(Mode.ALTITUDE, 30000);
+
+                view.transferFrom(source);
+
+                assertEquals(30000, view.getMetric(Mode.ALTITUDE), 0.001);
+                assertFalse(view.isDefined(Mode.WIND_SPEED));
+                assertFalse(source.isDefined(Mode.ALTITUDE));
+        }
+
+        /**
+         * Test for the slot-indexed delta updates.
+         */
+        @Test
+        public void testAddToMetricAndApplyDeltas() {
+                AirplaneFleet fleet = new AirplaneFleet(CAPACITY);
+                fleet.addToMetric(70, Mode.SPEED, 100);
+                fleet.addToMetric(70, Mode.SPEED, 50);
+                double[] deltas = new double[Mode.values().length];
+                deltas[Mode.SPEED.ordinal()] = -200;
+                deltas[Mode.ALTITUDE.ordinal()] = 1000;
+
+                try {
+                        fleet.applyDeltas(70, deltas);
+                        fail("Speed -50 should be rejected.");
+                } catch (IllegalArgumentException e) {
+                        assertFalse(fleet.isDefined(70, Mode.ALTITUDE));
+                }
+                assertEquals(150, fleet.getMetric(70, Mode.SPEED), 0.001);
+                assertFalse(fleet.isDefined(71, Mode.SPEED));
+        }
+
+        /**
+         * Test that snapshots keep their point in time across pages, newer
+         * snapshots and a full clear.
+         */
+        @Test
+        public void testSnapshot() {
+                final int capacity = 3 * FleetSnapshot.PAGE_SIZE + 5;
+                final int last = capacity - 1;
+                AirplaneFleet fleet = new AirplaneFleet(capacity);
+                fleet.setMetric(0, Mode.ALTITUDE, 100);
+                fleet.setMetric(last, Mode.ALTITUDE, 200);
+
+                FleetSnapshot first = fleet.snapshot();
+                fleet.setMetric(0, Mode.ALTITUDE, 110);
+                fleet.setMetric(FleetSnapshot.PAGE_SIZE, Mode.SPEED, 5);
+                FleetSnapshot second = fleet.snapshot();
+                fleet.setMetric(last, Mode.ALTITUDE, 220);
+                fleet.clear(0);
+
+                assertEquals(100, first.getMetric(0, Mode.ALTITUDE), 0);
+                assertEquals(200, first.getMetric(last, Mode.ALTITUDE), 0);
+                assertFalse(first.isDefined(FleetSnapshot.PAGE_SIZE,
+                                Mode.SPEED));
+                assertEquals(300, first.sum(Mode.ALTITUDE), 0);
+                assertEquals(110, second.getMetric(0, Mode.ALTITUDE), 0);
+                assertEquals(200, second.getMetric(last, Mode.ALTITUDE), 0);
+                assertEquals(1, second.countDefined(Mode.SPEED));
+                assertFalse(fleet.isDefined(0, Mode.ALTITUDE));
+
+                fleet.clear();
+                Airplane airplane = first.airplane(last);
+                assertEquals(200, airplane.getAltitude(), 0);
+                assertFalse(airplane.isDefined(Mode.SPEED));
+                assertEquals(2, second.countDefined(Mode.ALTITUDE));
+                try {
+                        airplane.setAltitude(1);
+                        fail("Snapshots should be immutable.");
+                } catch (UnsupportedOperationException e) {
+                        assertEquals(200, airplane.getAltitude(), 0);
+                }
+        }
+
+        /**
+         * Test that holding an old snapshot does not keep newer snapshots
+         * reachable, and that the old one keeps its point in time after they
+         * are gone.
+         */
+        @Test
+        public void testOldSnapshotKeepsNoNewerOne() {
+                final int capacity = 2 * FleetSnapshot.PAGE_SIZE;
+                final int last = capacity - 1;
+                final int attempts = 100;
+                AirplaneFleet fleet = new AirplaneFleet(capacity);
+                fleet.setMetric(0, Mode.ALTITUDE, 100);
+                fleet.setMetric(last, Mode.ALTITUDE, 200);
+                FleetSnapshot old = fleet.snapshot();
+                WeakReference<FleetSnapshot> newer = new WeakReference<>(
+                                fleet.snapshot());
+                fleet.setMetric(0, Mode.ALTITUDE, 110);
+
+                for (int i = 0; i < attempts && newer.get() != null; i++) {
+                        System.gc();
+                }
+                assertTrue(newer.get() == null);
+                fleet.snapshot();
+                fleet.setMetric(last, Mode.ALTITUDE, 220);
+                assertEquals(100, old.getMetric(0, Mode.ALTITUDE), 0);
+                assertEquals(200, old.getMetric(last, Mode.ALTITUDE), 0);
+        }
+
+        /**
+         * Test that a reader never sees a snapshot mixing two sweeps of a
+         * writer that keeps updating every airplane.
+         *
+         * @throws InterruptedException
+         *                 if interrupted while waiting for the writer
+         */
+        @Test
+        public void testSnapshotConsistentUnderWrites()
+                        throws InterruptedException {
+                final int capacity = 2 * FleetSnapshot.PAGE_SIZE + 100;
+                final int sweeps = 300;
+                AirplaneFleet fleet = new AirplaneFleet(capacity);
+                BlockingQueue<FleetSnapshot> snapshots =
+                                new LinkedBlockingQueue<>();
+                Thread writer = new Thread(() -> {
+                        for (int sweep = 0; sweep < sweeps; sweep++) {
+                                for (int slot = capacity - 1; slot >= 0;
+                                                slot--) {
+                                        fleet.addToMetric(slot, Mode.ALTITUDE,
+                                                        1);
+                                }
+                                // Between sweeps, as a simulator between ticks
+                                snapshots.add(fleet.snapshot());
+                        }
+                });
+
+                writer.start();
+                for (int n = 0; n < sweeps; n++) {
+                        FleetSnapshot snapshot = snapshots.take();
+                        double first = snapshot.getMetric(0, Mode.ALTITUDE);
+                        assertEquals(first * capacity,
+                                        snapshot.sum(Mode.ALTITUDE), 0);
+                }
+                writer.join();
+        }
+
+        /**
+         * Test that an invalid direction is rejected.
+         */
+        @Test(expected = IllegalArgumentException.class)
+        public void testSetDirectionOutOfRange() {
+                AirplaneFleet fleet = new AirplaneFleet(CAPACITY);
+                fleet.setMetric(0, Mode.DIRECTION, 360);
+        }
+
+        /**
+         * Test that a slot past the capacity is rejected.
+         */
+        @Test(expected = IndexOutOfBoundsException.class)
+        public void testSlotOutOfRange() {
+                AirplaneFleet fleet = new AirplaneFleet(CAPACITY);
+                fleet.isDefined(CAPACITY, Mode.ALTITUDE);
+        }
+}
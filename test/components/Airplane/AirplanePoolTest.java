@@ -0,0 +1,76 @@
+package components.Airplane;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import components.Airplane.AirplaneKernel.Mode;
+
+/**
+ * JUnit test file for AirplanePool.
+ */
+public class AirplanePoolTest {
+
+        /**
+         * Test that released airplanes come back cleared and are reused.
+         */
+        @Test
+        public void testReuse() {
+                AirplanePool pool = new AirplanePool(new Airplane2(), 4);
+                Airplane first = pool.acquire();
+                first.setAltitude(1000);
+                pool.release(first);
+                assertEquals(1, pool.idleCount());
+
+                Airplane second = pool.acquire();
+                assertTrue(second == first);
+                assertFalse(second.isDefined(Mode.ALTITUDE));
+                assertEquals(1, pool.createdCount());
+        }
+
+        /**
+         * Test that a warm pool creates nothing more, and keeps at most
+         * maxIdle airplanes.
+         */
+        @Test
+        public void testWarmPoolAndLimit() {
+                final int maxIdle = 20;
+                final int live = 30;
+                AirplanePool pool = new AirplanePool(new Airplane1(), maxIdle);
+                Airplane source = new Airplane3();
+                source.setMetric(Mode.FUEL_QUANTITY, 500);
+                for (int round = 0; round < 1000; round++) {
+                        Airplane[] scratch = new Airplane[maxIdle];
+                        for (int i = 0; i < maxIdle; i++) {
+                                scratch[i] = pool.acquireCopyOf(source);
+                                assertEquals(500, scratch[i].getFuelQuantity(),
+                                                0);
+                        }
+                        for (Airplane airplane : scratch) {
+                                pool.release(airplane);
+                        }
+                }
+                assertEquals(maxIdle, pool.createdCount());
+                assertTrue(source.isDefined(Mode.FUEL_QUANTITY));
+
+                Airplane[] scratch = new Airplane[live];
+                for (int i = 0; i < live; i++) {
+                        scratch[i] = pool.acquire();
+                }
+                for (Airplane airplane : scratch) {
+                        pool.release(airplane);
+                }
+                assertEquals(maxIdle, pool.idleCount());
+        }
+
+        /**
+         * Test that an airplane of another implementation is refused.
+         */
+        @Test(expected = IllegalArgumentException.class)
+        public void testReleaseForeign() {
+                AirplanePool pool = new AirplanePool(new Airplane2(), 4);
+                pool.release(new Airplane1());
+        }
+}
@@ -0,0 +1,93 @@
+package components.Airplane;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import components.Airplane.AirplaneKernel.Mode;
+
+/**
+ * JUnit test file for AirplaneStats. The counters only move when the JVM is
+ * started with -Dairplane.stats=true, so these tests are skipped otherwise.
+ */
+public class AirplaneStatsTest {
+
+        /**
+         * Test that setMetric counts every call per mode, and the rejected
+         * ones separately.
+         */
+        @Test
+        public void testSetMetricRejections() {
+                Assume.assumeTrue(AirplaneStats.ENABLED);
+                AirplaneStats.reset();
+                Airplane airplane = new Airplane2();
+                airplane.setMetric(Mode.ALTITUDE, 100);
+                airplane.setMetric(Mode.DIRECTION, 90);
+                try {
+                        airplane.setMetric(Mode.DIRECTION, 360);
+                        fail("setMetric accepted an invalid direction");
+                } catch (IllegalArgumentException e) {
+                        // Rejected, as expected
+                }
+                assertEquals(1, AirplaneStats.count(
+                                AirplaneStats.Op.SET_METRIC, Mode.ALTITUDE));
+                assertEquals(2, AirplaneStats.count(
+                                AirplaneStats.Op.SET_METRIC, Mode.DIRECTION));
+                assertEquals(0, AirplaneStats.count(
+                                AirplaneStats.Op.SET_METRIC_REJECTED,
+                                Mode.ALTITUDE));
+                assertEquals(1, AirplaneStats.count(
+                                AirplaneStats.Op.SET_METRIC_REJECTED,
+                                Mode.DIRECTION));
+                assertEquals(1, AirplaneStats.total(
+                                AirplaneStats.Op.SET_METRIC_REJECTED));
+        }
+
+        /**
+         * Test that isDefined counts every call per mode, and the misses
+         * separately.
+         */
+        @Test
+        public void testIsDefinedMisses() {
+                Assume.assumeTrue(AirplaneStats.ENABLED);
+                Airplane airplane = new Airplane2();
+                airplane.setMetric(Mode.SPEED, 250);
+                AirplaneStats.reset();
+                airplane.isDefined(Mode.SPEED);
+                airplane.isDefined(Mode.SPEED);
+                airplane.isDefined(Mode.ALTITUDE);
+                assertEquals(2, AirplaneStats.count(
+                                AirplaneStats.Op.IS_DEFINED, Mode.SPEED));
+                assertEquals(0, AirplaneStats.count(
+                                AirplaneStats.Op.IS_DEFINED_MISS, Mode.SPEED));
+                assertEquals(1, AirplaneStats.count(
+                                AirplaneStats.Op.IS_DEFINED, Mode.ALTITUDE));
+                assertEquals(1, AirplaneStats.count(
+                                AirplaneStats.Op.IS_DEFINED_MISS,
+                                Mode.ALTITUDE));
+        }
+
+        /**
+         * Test that transferFrom is counted, and its latency recorded, once
+         * per call in every implementation.
+         */
+        @Test
+        public void testTransferFrom() {
+                Assume.assumeTrue(AirplaneStats.ENABLED);
+                Airplane[][] pairs = {
+                                { new Airplane1(), new Airplane1() },
+                                { new Airplane2(), new Airplane2() },
+                                { new Airplane3(), new Airplane3() } };
+                AirplaneStats.reset();
+                for (Airplane[] pair : pairs) {
+                        pair[1].setMetric(Mode.FUEL_QUANTITY, 1000);
+                        pair[0].transferFrom(pair[1]);
+                }
+                assertEquals(pairs.length, AirplaneStats.total(
+                                AirplaneStats.Op.TRANSFER_FROM));
+                assertEquals(pairs.length,
+                                AirplaneStats.transferLatency().count());
+        }
+}
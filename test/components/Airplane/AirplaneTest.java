@@ -3,6 +3,10 @@ package components.Airplane;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.HashSet;
+import java.util.Set;
 
 import org.junit.Test;
 
@@ -166,6 +170,126 @@ public class AirplaneTest {
                                 airplane2.isDefined(Mode.SPEED));
         }
 
+        /**
+         * Test for adding to defined and undefined metrics.
+         */
+        @Test
+        public void testAddToMetric() {
+                airplaneTest.clear(); // Reset state before test
+                airplaneTest.setMetric(Mode.ALTITUDE, 35000);
+
+                airplaneTest.addToMetric(Mode.ALTITUDE, -5000);
+                airplaneTest.addToMetric(Mode.SPEED, 550);
+
+                assertEquals(30000, airplaneTest.getMetric(Mode.ALTITUDE), 0.001);
+                assertEquals(550, airplaneTest.getMetric(Mode.SPEED), 0.001);
+        }
+
+        /**
+         * Test that a rejected addition leaves the metric unchanged.
+         */
+        @Test
+        public void testAddToMetricRejected() {
+                airplaneTest.clear(); // Reset state before test
+                airplaneTest.setMetric(Mode.DIRECTION, 350);
+
+                try {
+                        airplaneTest.addToMetric(Mode.DIRECTION, 20);
+                        fail("Direction 370 should be rejected.");
+                } catch (IllegalArgumentException e) {
+                        assertEquals(350, airplaneTest.getMetric(Mode.DIRECTION),
+                                        0.001);
+                }
+        }
+
+        /**
+         * Test that applyDeltas skips zero deltas and is all or nothing.
+         */
+        @Test
+        public void testApplyDeltas() {
+                airplaneTest.clear(); // Reset state before test
+                airplaneTest.setMetric(Mode.FUEL_QUANTITY, 100);
+                double[] deltas = new double[Mode.values().length];
+                deltas[Mode.ALTITUDE.ordinal()] = 2000;
+                deltas[Mode.FUEL_QUANTITY.ordinal()] = -50;
+
+                airplaneTest.applyDeltas(deltas);
+                assertEquals(2000, airplaneTest.getMetric(Mode.ALTITUDE), 0.001);
+                assertEquals(50, airplaneTest.getMetric(Mode.FUEL_QUANTITY), 0.001);
+                assertFalse(airplaneTest.isDefined(Mode.SPEED));
+
+                deltas[Mode.FUEL_QUANTITY.ordinal()] = -100;
+                try {
+                        airplaneTest.applyDeltas(deltas);
+                        fail("Fuel -50 should be rejected.");
+                } catch (IllegalArgumentException e) {
+                        assertEquals(2000, airplaneTest.getMetric(Mode.ALTITUDE),
+                                        0.001);
+                }
+        }
+
+        /**
+         * Test that equal states hash alike in every implementation, and
+         * that states with the same defined modes still spread out.
+         */
+        @Test
+        public void testHashCodeSpread() {
+                final int n = 10_000;
+                final int maxCollisions = 10;
+                Airplane[] impls = { new Airplane1(), new Airplane2(),
+                                new Airplane3() };
+                Set<Integer> hashes = new HashSet<>();
+                for (int k = 0; k < n; k++) {
+                        int hash = 0;
+                        for (int i = 0; i < impls.length; i++) {
+                                impls[i].clear();
+                                impls[i].setMetric(Mode.ALTITUDE, 1000 + k);
+                                impls[i].setMetric(Mode.DIRECTION, k % 360);
+                                if (i == 0) {
+                                        hash = impls[i].hashCode();
+                                }
+                                assertEquals(hash, impls[i].hashCode());
+                        }
+                        hashes.add(hash);
+                }
+                assertTrue(hashes.size() >= n - maxCollisions);
+
+                // Same values under different modes differ too
+                Airplane a = new Airplane1();
+                Airplane b = new Airplane1();
+                a.setMetric(Mode.ALTITUDE, 5);
+                b.setMetric(Mode.SPEED, 5);
+                assertFalse(a.equals(b));
+                assertFalse(a.hashCode() == b.hashCode());
+        }
+
+        /**
+         * Test copyFrom between every pair of implementations.
+         */
+        @Test
+        public void testCopyFromAcrossImplementations() {
+                Airplane[] targets = { new Airplane1(), new Airplane2(),
+                                new Airplane3() };
+                Airplane[] sources = { new Airplane1(), new Airplane2(),
+                                new Airplane3(), new AirplaneFleet(2).view(1) };
+                for (Airplane source : sources) {
+                        source.setMetric(Mode.ALTITUDE, 1000);
+                        source.setMetric(Mode.DIRECTION, 90);
+                        for (Airplane target : targets) {
+                                target.clear();
+                                target.setMetric(Mode.SPEED, 300);
+                                target.copyFrom(source);
+
+                                assertEquals(1000, target.getAltitude(), 0);
+                                assertEquals(90, target.getDirection());
+                                assertFalse(target.isDefined(Mode.SPEED));
+                                assertEquals(source.hashCode(),
+                                                target.hashCode());
+                        }
+                        assertEquals(1000, source.getAltitude(), 0);
+                }
+        }
+
         /**
          * Helper method to set up an Airplane with given metrics.
          *
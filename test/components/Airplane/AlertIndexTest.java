@@ -0,0 +1,184 @@
+package components.Airplane;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import components.Airplane.AirplaneKernel.Mode;
+
+/**
+ * JUnit test file for AlertIndex.
+ */
+public class AlertIndexTest {
+
+        /**
+         * Returns the fuel quantities of airplanes, in order.
+         *
+         * @param airplanes
+         *            the airplanes
+         * @return their fuel quantities
+         */
+        private static List<Double> fuel(List<Airplane> airplanes) {
+                List<Double> fuel = new ArrayList<>();
+                for (Airplane airplane : airplanes) {
+                        fuel.add(airplane.getFuelQuantity());
+                }
+                return fuel;
+        }
+
+        /**
+         * Test that lowest and below match a sort after many random changes.
+         */
+        @Test
+        public void testMatchesSort() {
+                AlertIndex index = new AlertIndex(
+                                EnumSet.of(Mode.FUEL_QUANTITY));
+                List<Airplane> fleet = new ArrayList<>();
+                final int size = 500;
+                for (int i = 0; i < size; i++) {
+                        fleet.add(index.attach(new Airplane2()));
+                }
+                Random random = new Random(1);
+                final int changes = 20000;
+                final int range = 10000;
+                final int clears = 20;
+                for (int i = 0; i < changes; i++) {
+                        Airplane airplane = fleet.get(random.nextInt(size));
+                        if (random.nextInt(clears) == 0) {
+                                airplane.clear();
+                        } else {
+                                airplane.setMetric(Mode.FUEL_QUANTITY,
+                                                random.nextInt(range));
+                        }
+                }
+
+                List<Double> sorted = new ArrayList<>();
+                for (Airplane airplane : fleet) {
+                        if (airplane.isDefined(Mode.FUEL_QUANTITY)) {
+                                sorted.add(airplane.getFuelQuantity());
+                        }
+                }
+                sorted.sort(null);
+                final int k = 50;
+                final double floor = 700;
+                assertEquals(sorted.size(),
+                                index.size(Mode.FUEL_QUANTITY));
+                assertEquals(sorted.subList(0, k),
+                                fuel(index.lowest(Mode.FUEL_QUANTITY, k)));
+                List<Double> below = fuel(
+                                index.below(Mode.FUEL_QUANTITY, floor));
+                below.sort(null);
+                int under = 0;
+                while (under < sorted.size() && sorted.get(under) < floor) {
+                        under++;
+                }
+                assertEquals(sorted.subList(0, under), below);
+                assertEquals(sorted, fuel(index.lowest(Mode.FUEL_QUANTITY,
+                                size + 1)));
+        }
+
+        /**
+         * Test that subscriptions are called exactly on crossings, and not
+         * after being cancelled.
+         */
+        @Test
+        public void testThresholdCrossings() {
+                AlertIndex index = new AlertIndex(
+                                EnumSet.of(Mode.FUEL_QUANTITY));
+                Airplane airplane = index.attach(new Airplane1());
+                List<String> events = new ArrayList<>();
+                index.subscribe(Mode.FUEL_QUANTITY, 500,
+                                (a, mode, below) -> events
+                                                .add("500 " + below));
+                AlertIndex.Alert low = index.subscribe(Mode.FUEL_QUANTITY,
+                                100, (a, mode, below) -> events
+                                                .add("100 " + below));
+
+                airplane.setMetric(Mode.FUEL_QUANTITY, 1000);
+                airplane.setMetric(Mode.FUEL_QUANTITY, 499);
+                airplane.addToMetric(Mode.FUEL_QUANTITY, -1);
+                airplane.setMetric(Mode.FUEL_QUANTITY, 50);
+                airplane.clear();
+                airplane.setMetric(Mode.FUEL_QUANTITY, 500);
+                low.cancel();
+                airplane.setMetric(Mode.FUEL_QUANTITY, 0);
+
+                assertEquals(List.of("500 true", "100 true", "100 false",
+                                "500 false", "500 true"), events);
+        }
+
+        /**
+         * Test that a NaN metric sorts last and hides no airplane from below.
+         */
+        @Test
+        public void testNaN() {
+                AlertIndex index = new AlertIndex(
+                                EnumSet.of(Mode.FUEL_QUANTITY));
+                List<Airplane> fleet = new ArrayList<>();
+                final int size = 10;
+                final double floor = 50;
+                for (int i = 0; i < size; i++) {
+                        Airplane airplane = index.attach(new Airplane2());
+                        airplane.setMetric(Mode.FUEL_QUANTITY, i * 10);
+                        fleet.add(airplane);
+                }
+                List<String> events = new ArrayList<>();
+                index.subscribe(Mode.FUEL_QUANTITY, floor,
+                                (a, mode, below) -> events.add("" + below));
+
+                fleet.get(size - 1).setMetric(Mode.FUEL_QUANTITY, Double.NaN);
+                fleet.get(0).setMetric(Mode.FUEL_QUANTITY, Double.NaN);
+
+                assertEquals(4, index.below(Mode.FUEL_QUANTITY, floor).size());
+                assertEquals(List.of(10.0, 20.0), fuel(
+                                index.lowest(Mode.FUEL_QUANTITY, 2)));
+                assertEquals(Double.NaN, fuel(index.lowest(Mode.FUEL_QUANTITY,
+                                size)).get(size - 1), 0);
+                assertEquals(List.of("false"), events);
+        }
+
+        /**
+         * Test that a detached airplane leaves the index and is no longer
+         * followed.
+         */
+        @Test
+        public void testDetach() {
+                AlertIndex index = new AlertIndex(
+                                EnumSet.of(Mode.FUEL_QUANTITY));
+                Airplane first = index.attach(new Airplane1());
+                Airplane second = index.attach(new Airplane3());
+                first.setMetric(Mode.FUEL_QUANTITY, 10);
+                second.setMetric(Mode.FUEL_QUANTITY, 20);
+                List<String> events = new ArrayList<>();
+                index.subscribe(Mode.FUEL_QUANTITY, 100,
+                                (a, mode, below) -> events.add("" + below));
+
+                index.detach(first);
+                index.detach(first);
+                first.setMetric(Mode.FUEL_QUANTITY, 500);
+                first.setMetric(Mode.FUEL_QUANTITY, 5);
+
+                assertEquals(1, index.size(Mode.FUEL_QUANTITY));
+                assertEquals(List.of(second),
+                                index.lowest(Mode.FUEL_QUANTITY, 2));
+                assertEquals(List.of(), events);
+                assertEquals(5, first.getFuelQuantity(), 0);
+        }
+
+        /**
+         * Test that querying a mode that is not indexed is rejected.
+         *
+         * @throws IllegalArgumentException
+         *                 if the mode is not indexed
+         */
+        @Test(expected = IllegalArgumentException.class)
+        public void testNotIndexed() {
+                AlertIndex index = new AlertIndex(EnumSet.of(Mode.ALTITUDE));
+                index.lowest(Mode.FUEL_QUANTITY, 1);
+        }
+}
@@ -0,0 +1,210 @@
+package components.Airplane;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import components.Airplane.AirplaneKernel.Mode;
+
+/**
+ * JUnit test file for ConflictGrid and PositionTracker.
+ */
+public class ConflictGridTest {
+
+        /**
+         * Horizontal separation minimum, in nautical miles.
+         */
+        private static final double HORIZONTAL = 5;
+
+        /**
+         * Vertical separation minimum, in feet.
+         */
+        private static final double VERTICAL = 1000;
+
+        /**
+         * Returns every conflicting pair by comparing all pairs.
+         *
+         * @param tracker
+         *            the positions
+         * @param fleet
+         *            the fleet
+         * @return the pairs, as first * capacity + second
+         */
+        private static Set<Long> allPairs(PositionTracker tracker,
+                        AirplaneFleet fleet) {
+                Set<Long> pairs = new HashSet<>();
+                int size = fleet.capacity();
+                for (int a = 0; a < size; a++) {
+                        for (int b = a + 1; b < size; b++) {
+                                if (conflict(tracker, fleet, a, b)) {
+                                        pairs.add((long) a * size + b);
+                                }
+                        }
+                }
+                return pairs;
+        }
+
+        /**
+         * Reports whether two airplanes are both flying and closer than both
+         * minima.
+         *
+         * @param tracker
+         *            the positions
+         * @param fleet
+         *            the fleet
+         * @param a
+         *            one slot
+         * @param b
+         *            the other slot
+         * @return whether they conflict
+         */
+        private static boolean conflict(PositionTracker tracker,
+                        AirplaneFleet fleet, int a, int b) {
+                if (!fleet.isDefined(a, Mode.ALTITUDE)
+                                || !fleet.isDefined(b, Mode.ALTITUDE)) {
+                        return false;
+                }
+                double dx = tracker.east(a) - tracker.east(b);
+                double dy = tracker.north(a) - tracker.north(b);
+                double dz = fleet.getMetric(a, Mode.ALTITUDE)
+                                - fleet.getMetric(b, Mode.ALTITUDE);
+                return dx * dx + dy * dy < HORIZONTAL * HORIZONTAL
+                                && Math.abs(dz) < VERTICAL;
+        }
+
+        /**
+         * Test that dead reckoning moves along the heading at the speed.
+         */
+        @Test
+        public void testAdvance() {
+                AirplaneFleet fleet = new AirplaneFleet(2);
+                fleet.setMetric(0, Mode.SPEED, 360);
+                fleet.setMetric(0, Mode.DIRECTION, 90);
+                PositionTracker tracker = new PositionTracker(2);
+                tracker.setPosition(1, -3, 4);
+
+                tracker.advance(fleet, 0, 2, 60, new long[1]);
+
+                assertEquals(6, tracker.east(0), 1e-9);
+                assertEquals(0, tracker.north(0), 1e-9);
+                assertEquals(-3, tracker.east(1), 0);
+                assertEquals(4, tracker.north(1), 0);
+        }
+
+        /**
+         * Test that frozen airplanes neither move nor stay in the grid.
+         */
+        @Test
+        public void testFrozen() {
+                AirplaneFleet fleet = new AirplaneFleet(2);
+                for (int slot = 0; slot < 2; slot++) {
+                        fleet.setMetric(slot, Mode.SPEED, 360);
+                        fleet.setMetric(slot, Mode.DIRECTION, 90);
+                        fleet.setMetric(slot, Mode.ALTITUDE, 1000);
+                }
+                PositionTracker tracker = new PositionTracker(2);
+                ConflictGrid grid = new ConflictGrid(2, HORIZONTAL, VERTICAL);
+                long[] frozen = { 1L << 1 };
+
+                tracker.advance(fleet, 0, 2, 60, frozen);
+                grid.update(tracker, fleet, frozen);
+
+                assertEquals(6, tracker.east(0), 1e-9);
+                assertEquals(0, tracker.east(1), 0);
+                assertTrue(grid.contains(0));
+                assertFalse(grid.contains(1));
+                assertEquals(0, grid.conflicts((a, b) -> {
+                }));
+        }
+
+        /**
+         * Test that conflicts and neighbours match an all-pairs check while
+         * airplanes move, climb and land.
+         */
+        @Test
+        public void testMatchesAllPairs() {
+                final int size = 400;
+                final int area = 60;
+                final int ceiling = 8000;
+                final int ticks = 20;
+                Random random = new Random(1);
+                AirplaneFleet fleet = new AirplaneFleet(size);
+                PositionTracker tracker = new PositionTracker(size);
+                ConflictGrid grid = new ConflictGrid(size, HORIZONTAL,
+                                VERTICAL);
+                long[] none = new long[(size + Long.SIZE - 1) / Long.SIZE];
+                for (int slot = 0; slot < size; slot++) {
+                        tracker.setPosition(slot,
+                                        random.nextDouble() * area - area / 2,
+                                        random.nextDouble() * area - area / 2);
+                        fleet.setMetric(slot, Mode.SPEED,
+                                        random.nextInt(500));
+                        fleet.setMetric(slot, Mode.DIRECTION,
+                                        random.nextInt(360));
+                        fleet.setMetric(slot, Mode.ALTITUDE,
+                                        random.nextInt(ceiling));
+                }
+                for (int tick = 0; tick < ticks; tick++) {
+                        tracker.advance(fleet, 0, size, 10, none);
+                        for (int i = 0; i < size / 10; i++) {
+                                int slot = random.nextInt(size);
+                                if (random.nextBoolean()) {
+                                        fleet.clear(slot);
+                                } else {
+                                        int altitude = random.nextInt(ceiling);
+                                        fleet.setMetric(slot, Mode.ALTITUDE,
+                                                        altitude);
+                                }
+                        }
+                        grid.update(tracker, fleet, none);
+
+                        Set<Long> found = new HashSet<>();
+                        int count = grid.conflicts(
+                                        (a, b) -> found.add((long) a * size
+                                                        + b));
+                        Set<Long> expected = allPairs(tracker, fleet);
+                        assertEquals(expected, found);
+                        assertEquals(expected.size(), count);
+                        assertFalse(expected.isEmpty());
+                }
+
+                int slot = 0;
+                while (!grid.contains(slot)) {
+                        slot++;
+                }
+                int[] neighbours = grid.neighbours(slot);
+                int n = 0;
+                for (int other = 0; other < size; other++) {
+                        boolean near = conflict(tracker, fleet, slot, other);
+                        if (other != slot && near) {
+                                n++;
+                        }
+                }
+                assertEquals(n, neighbours.length);
+        }
+
+        /**
+         * Test that a removed airplane is no longer in the grid.
+         */
+        @Test
+        public void testRemove() {
+                ConflictGrid grid = new ConflictGrid(3, HORIZONTAL,
+                                VERTICAL);
+                grid.move(0, 0, 0, 1000);
+                grid.move(1, 1, 1, 1200);
+                grid.move(2, 2, 2, 1400);
+                grid.remove(1);
+
+                assertFalse(grid.contains(1));
+                assertArrayEquals(new int[] {2}, grid.neighbours(0));
+                assertEquals(1, grid.conflicts((a, b) -> {
+                }));
+        }
+}
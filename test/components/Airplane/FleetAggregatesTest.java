@@ -0,0 +1,226 @@
+package components.Airplane;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import components.Airplane.AirplaneKernel.Mode;
+
+/**
+ * JUnit test file for FleetAggregates and FleetScan.
+ */
+public class FleetAggregatesTest {
+
+        /**
+         * Number of histogram bands.
+         */
+        private static final int BANDS = 10;
+
+        /**
+         * Returns aggregates with bands 1000 wide for every mode.
+         *
+         * @return the aggregates
+         */
+        private static FleetAggregates newAggregates() {
+                double[] widths = new double[Mode.values().length];
+                Arrays.fill(widths, 1000);
+                return new FleetAggregates(BANDS, widths);
+        }
+
+        /**
+         * Test that every kind of change to an attached airplane updates the
+         * aggregates.
+         */
+        @Test
+        public void testUpdates() {
+                FleetAggregates aggregates = newAggregates();
+                Airplane initial = new Airplane1();
+                initial.setAltitude(2500);
+                Airplane first = aggregates.attach(initial);
+                Airplane second = aggregates.attach(new Airplane2());
+                Airplane third = aggregates.attach(new Airplane2());
+
+                second.setAltitude(500);
+                third.setAltitude(20000);
+                first.addToMetric(Mode.ALTITUDE, 1000);
+                third.transferFrom(second);
+
+                assertEquals(3, aggregates.airplaneCount());
+                assertEquals(2, aggregates.count(Mode.ALTITUDE));
+                assertEquals(4000, aggregates.sum(Mode.ALTITUDE), 0);
+                assertEquals(2000, aggregates.mean(Mode.ALTITUDE), 0);
+                assertEquals(500, aggregates.min(Mode.ALTITUDE), 0);
+                assertEquals(3500, aggregates.max(Mode.ALTITUDE), 0);
+                long[] expected = new long[BANDS];
+                expected[0] = 1;
+                expected[3] = 1;
+                assertArrayEquals(expected,
+                                aggregates.histogram(Mode.ALTITUDE));
+                assertEquals(0, aggregates.count(Mode.SPEED));
+        }
+
+        /**
+         * Test that a detached airplane no longer counts, even when it
+         * changes afterwards.
+         */
+        @Test
+        public void testDetach() {
+                FleetAggregates aggregates = newAggregates();
+                Airplane first = aggregates.attach(new Airplane1());
+                Airplane second = aggregates.attach(new Airplane3());
+                first.setAltitude(30000);
+                second.setAltitude(1000);
+
+                aggregates.detach(first);
+                aggregates.detach(first);
+                first.setAltitude(40000);
+
+                assertEquals(1, aggregates.airplaneCount());
+                assertEquals(1, aggregates.count(Mode.ALTITUDE));
+                assertEquals(1000, aggregates.sum(Mode.ALTITUDE), 0);
+                assertEquals(1000, aggregates.max(Mode.ALTITUDE), 0);
+                assertEquals(40000, first.getAltitude(), 0);
+        }
+
+        /**
+         * Test that a NaN metric is left out of the statistics, and that
+         * they recover once it is replaced by a number.
+         */
+        @Test
+        public void testNaN() {
+                FleetAggregates aggregates = newAggregates();
+                Airplane first = aggregates.attach(new Airplane2());
+                Airplane second = aggregates.attach(new Airplane2());
+                first.setAltitude(100);
+                second.setAltitude(Double.NaN);
+
+                assertEquals(1, aggregates.count(Mode.ALTITUDE));
+                assertEquals(100, aggregates.sum(Mode.ALTITUDE), 0);
+                assertEquals(100, aggregates.max(Mode.ALTITUDE), 0);
+
+                first.setAltitude(Double.NaN);
+                second.setAltitude(50);
+                assertEquals(1, aggregates.count(Mode.ALTITUDE));
+                assertEquals(50, aggregates.sum(Mode.ALTITUDE), 0);
+                assertEquals(50, aggregates.min(Mode.ALTITUDE), 0);
+                assertEquals(50, aggregates.max(Mode.ALTITUDE), 0);
+
+                first.setAltitude(150);
+                assertEquals(200, aggregates.sum(Mode.ALTITUDE), 0);
+                assertEquals(100, aggregates.mean(Mode.ALTITUDE), 0);
+                assertEquals(2, aggregates.bandCount(Mode.ALTITUDE, 0));
+        }
+
+        /**
+         * Test that the aggregates match a recount after many random changes,
+         * including removal of the extremes.
+         */
+        @Test
+        public void testMatchesRecount() {
+                FleetAggregates aggregates = newAggregates();
+                List<Airplane> fleet = new ArrayList<>();
+                final int size = 200;
+                for (int i = 0; i < size; i++) {
+                        fleet.add(aggregates.attach(new Airplane2()));
+                }
+                Random random = new Random(1);
+                final int changes = 20000;
+                final int range = 12000;
+                final int clears = 50;
+                for (int i = 0; i < changes; i++) {
+                        Airplane airplane = fleet.get(random.nextInt(size));
+                        if (random.nextInt(clears) == 0) {
+                                airplane.clear();
+                        } else {
+                                airplane.setMetric(Mode.FUEL_QUANTITY,
+                                                random.nextInt(range));
+                        }
+                }
+
+                int count = 0;
+                double sum = 0;
+                double min = Double.POSITIVE_INFINITY;
+                double max = Double.NEGATIVE_INFINITY;
+                long[] histogram = new long[BANDS];
+                for (Airplane airplane : fleet) {
+                        if (airplane.isDefined(Mode.FUEL_QUANTITY)) {
+                                double fuel = airplane.getFuelQuantity();
+                                count++;
+                                sum += fuel;
+                                min = Math.min(min, fuel);
+                                max = Math.max(max, fuel);
+                                histogram[(int) Math.min(BANDS - 1,
+                                                fuel / 1000)]++;
+                        }
+                }
+                assertEquals(count, aggregates.count(Mode.FUEL_QUANTITY));
+                assertEquals(sum, aggregates.sum(Mode.FUEL_QUANTITY), 0);
+                assertEquals(min, aggregates.min(Mode.FUEL_QUANTITY), 0);
+                assertEquals(max, aggregates.max(Mode.FUEL_QUANTITY), 0);
+                assertArrayEquals(histogram,
+                                aggregates.histogram(Mode.FUEL_QUANTITY));
+        }
+
+        /**
+         * Test that min of an undefined mode is rejected.
+         *
+         * @throws IllegalStateException
+         *                 if no airplane defines the mode
+         */
+        @Test(expected = IllegalStateException.class)
+        public void testMinOfEmpty() {
+                FleetAggregates aggregates = newAggregates();
+                Airplane airplane = aggregates.attach(new Airplane1());
+                airplane.setSpeed(100);
+                airplane.clear();
+                aggregates.min(Mode.SPEED);
+        }
+
+        /**
+         * Test that parallel scans of a fleet find exactly the matching
+         * slots, in order.
+         */
+        @Test
+        public void testScan() {
+                final int size = 100_000;
+                final int threads = 4;
+                final int lowFuel = 500;
+                final int every = 7;
+                AirplaneFleet fleet = new AirplaneFleet(size);
+                List<Integer> expected = new ArrayList<>();
+                for (int slot = 0; slot < size; slot++) {
+                        if (slot % every != 0) {
+                                fleet.setMetric(slot, Mode.FUEL_QUANTITY,
+                                                slot % (lowFuel * 2));
+                                if (slot % (lowFuel * 2) < lowFuel) {
+                                        expected.add(slot);
+                                }
+                        }
+                }
+                ForkJoinPool pool = new ForkJoinPool(threads);
+                try {
+                        FleetScan scan = new FleetScan(pool);
+                        int[] selected = scan.select(fleet,
+                                        Mode.FUEL_QUANTITY,
+                                        fuel -> fuel < lowFuel);
+                        assertEquals(expected.size(), selected.length);
+                        for (int i = 0; i < selected.length; i++) {
+                                assertEquals((int) expected.get(i),
+                                                selected[i]);
+                        }
+                        assertEquals(expected.size(), scan.count(fleet,
+                                        Mode.FUEL_QUANTITY,
+                                        fuel -> fuel < lowFuel));
+                        assertEquals(0, scan.count(0, slot -> true));
+                } finally {
+                        pool.shutdown();
+                }
+        }
+}
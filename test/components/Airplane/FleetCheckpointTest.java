@@ -0,0 +1,246 @@
+package components.Airplane;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import components.Airplane.AirplaneKernel.Mode;
+
+/**
+ * JUnit test file for FleetCheckpoint and FleetCheckpointWriter.
+ */
+public class FleetCheckpointTest {
+
+        /**
+         * Folder for the checkpoint files, deleted after each test.
+         */
+        @Rule
+        public TemporaryFolder folder = new TemporaryFolder();
+
+        /**
+         * Test that a keyframe followed by deltas restores the last
+         * checkpoint, including metrics cleared and flags reset since the
+         * keyframe.
+         *
+         * @throws IOException
+         *                 if the checkpoint cannot be used
+         */
+        @Test
+        public void testRoundTrip() throws IOException {
+                final int size = 200;
+                final int keyframes = 3;
+                Path file = this.folder.newFile("fleet.ckp").toPath();
+                AirplaneFleet fleet = new AirplaneFleet(size);
+                long[] flags = new long[(size + 63) / 64];
+                try (FleetCheckpointWriter writer = new FleetCheckpointWriter(
+                                file, size, keyframes)) {
+                        for (int slot = 0; slot < size; slot++) {
+                                fleet.setMetric(slot, Mode.ALTITUDE, slot);
+                        }
+                        fleet.setMetric(7, Mode.DIRECTION, 90);
+                        flags[1] = 1L << 3;
+                        writer.write(fleet.snapshot(), 0, 1, flags);
+
+                        fleet.clear(7);
+                        fleet.setMetric(150, Mode.SPEED, 250);
+                        flags[1] = 0;
+                        flags[3] = 1;
+                        writer.write(fleet.snapshot(), 0, 2, flags);
+
+                        fleet.setMetric(199, Mode.ALTITUDE, 1.5);
+                        writer.write(fleet.snapshot(), 1, 0, flags).join();
+                }
+
+                FleetCheckpoint checkpoint = FleetCheckpoint.restore(file);
+                AirplaneFleet copy = checkpoint.fleet();
+                assertEquals(1, checkpoint.phase());
+                assertEquals(0, checkpoint.tick());
+                assertEquals(size, copy.capacity());
+                assertFalse(copy.isDefined(7, Mode.ALTITUDE));
+                assertFalse(copy.isDefined(7, Mode.DIRECTION));
+                assertEquals(250, copy.getMetric(150, Mode.SPEED), 0.0);
+                assertEquals(1.5, copy.getMetric(199, Mode.ALTITUDE), 0.0);
+                assertEquals(8, copy.getMetric(8, Mode.ALTITUDE), 0.0);
+                assertEquals(size - 1, copy.countDefined(Mode.ALTITUDE));
+                assertFalse(checkpoint.isFlagged(64 + 3));
+                assertTrue(checkpoint.isFlagged(3 * 64));
+                assertArrayEquals(flags, checkpoint.flags());
+        }
+
+        /**
+         * Test that a last checkpoint cut short is ignored in favour of the
+         * one before it.
+         *
+         * @throws IOException
+         *                 if the checkpoint cannot be used
+         */
+        @Test
+        public void testTornLastFrame() throws IOException {
+                final int size = 100;
+                Path file = this.folder.newFile("fleet.ckp").toPath();
+                AirplaneFleet fleet = new AirplaneFleet(size);
+                long[] flags = new long[2];
+                long lengthAfterFirst;
+                try (FleetCheckpointWriter writer = new FleetCheckpointWriter(
+                                file, size, 2)) {
+                        fleet.setMetric(5, Mode.SPEED, 100);
+                        writer.write(fleet.snapshot(), 0, 4, flags).join();
+                        lengthAfterFirst = Files.size(file);
+                        fleet.setMetric(5, Mode.SPEED, 200);
+                        writer.write(fleet.snapshot(), 0, 5, flags);
+                }
+                byte[] bytes = Files.readAllBytes(file);
+                Files.write(file, Arrays.copyOf(bytes,
+                                (int) (bytes.length + lengthAfterFirst) / 2));
+
+                FleetCheckpoint checkpoint = FleetCheckpoint.restore(file);
+                assertEquals(4, checkpoint.tick());
+                assertEquals(100, checkpoint.fleet().getMetric(5, Mode.SPEED),
+                                0.0);
+        }
+
+        /**
+         * Test that a keyframe replaces the frames before it, so the file
+         * does not grow from one keyframe to the next.
+         *
+         * @throws IOException
+         *                 if the checkpoint cannot be used
+         */
+        @Test
+        public void testKeyframeStartsNewFile() throws IOException {
+                final int size = 100;
+                Path file = this.folder.newFile("fleet.ckp").toPath();
+                AirplaneFleet fleet = new AirplaneFleet(size);
+                long[] flags = new long[2];
+                long keyframeLength;
+                try (FleetCheckpointWriter writer = new FleetCheckpointWriter(
+                                file, size, 2)) {
+                        fleet.setMetric(5, Mode.SPEED, 100);
+                        writer.write(fleet.snapshot(), 0, 1, flags).join();
+                        keyframeLength = Files.size(file);
+                        fleet.setMetric(6, Mode.SPEED, 100);
+                        writer.write(fleet.snapshot(), 0, 2, flags).join();
+                        assertTrue(Files.size(file) > keyframeLength);
+                        fleet.clear(6);
+                        writer.write(fleet.snapshot(), 0, 3, flags).join();
+                }
+
+                assertEquals(keyframeLength, Files.size(file));
+                assertFalse(Files.exists(
+                                file.resolveSibling("fleet.ckp.next")));
+                FleetCheckpoint checkpoint = FleetCheckpoint.restore(file);
+                assertEquals(3, checkpoint.tick());
+                assertFalse(checkpoint.fleet().isDefined(6, Mode.SPEED));
+        }
+
+        /**
+         * Test that positions are restored, and that a delta frame of small
+         * changes takes fewer bytes per change than the raw values would.
+         *
+         * @throws IOException
+         *                 if the checkpoint cannot be used
+         */
+        @Test
+        public void testPositionsAndCompactDeltas() throws IOException {
+                final int size = 1000;
+                final double fuel = 1000;
+                final double burn = 0.5;
+                final double drift = 1.0 / 64;
+                Path file = this.folder.newFile("fleet.ckp").toPath();
+                AirplaneFleet fleet = new AirplaneFleet(size);
+                PositionTracker positions = new PositionTracker(size);
+                long[] flags = new long[(size + 63) / 64];
+                long keyframeLength;
+                try (FleetCheckpointWriter writer = new FleetCheckpointWriter(
+                                file, size, 2)) {
+                        for (int slot = 0; slot < size; slot++) {
+                                fleet.setMetric(slot, Mode.FUEL_QUANTITY,
+                                                fuel);
+                                positions.setPosition(slot, slot, -slot);
+                        }
+                        writer.write(fleet.snapshot(), 0, 1, flags, positions)
+                                        .join();
+                        keyframeLength = Files.size(file);
+
+                        for (int slot = 0; slot < size; slot++) {
+                                fleet.setMetric(slot, Mode.FUEL_QUANTITY,
+                                                fuel - burn);
+                        }
+                        positions.setPosition(3, 3 + drift, -3);
+                        writer.write(fleet.snapshot(), 0, 2, flags, positions)
+                                        .join();
+                }
+
+                // One change per slot: far less than the 8 raw bytes each
+                long deltaLength = Files.size(file) - keyframeLength;
+                assertTrue(deltaLength < size * Integer.BYTES);
+                FleetCheckpoint checkpoint = FleetCheckpoint.restore(file);
+                PositionTracker restored = checkpoint.positions();
+                assertEquals(size, restored.capacity());
+                for (int slot = 0; slot < size; slot++) {
+                        assertEquals(fuel - burn, checkpoint.fleet().getMetric(
+                                        slot, Mode.FUEL_QUANTITY), 0.0);
+                        assertEquals(positions.east(slot),
+                                        restored.east(slot), 0.0);
+                        assertEquals(positions.north(slot),
+                                        restored.north(slot), 0.0);
+                }
+        }
+
+        /**
+         * Test that once a checkpoint has failed, later ones are rejected.
+         *
+         * @throws IOException
+         *                 if the writer cannot be created
+         */
+        @Test(expected = IllegalStateException.class)
+        public void testFailureRejectsLaterWrites() throws IOException {
+                final int size = 10;
+                Path file = this.folder.newFolder("gone").toPath()
+                                .resolve("fleet.ckp");
+                AirplaneFleet fleet = new AirplaneFleet(size);
+                long[] flags = new long[1];
+                try (FleetCheckpointWriter writer = new FleetCheckpointWriter(
+                                file, size, 1)) {
+                        // The keyframe cannot be written beside a lost file
+                        Files.delete(file);
+                        Files.delete(file.getParent());
+                        CompletableFuture<Void> failed = writer
+                                        .write(fleet.snapshot(), 0, 1, flags);
+                        try {
+                                failed.join();
+                        } catch (CompletionException e) {
+                                assertTrue(e.getCause()
+                                                instanceof UncheckedIOException);
+                        }
+                        assertTrue(failed.isCompletedExceptionally());
+                        writer.write(fleet.snapshot(), 0, 2, flags);
+                }
+        }
+
+        /**
+         * Test that a file that is not a checkpoint is rejected.
+         *
+         * @throws IOException
+         *                 expected
+         */
+        @Test(expected = IOException.class)
+        public void testNotACheckpoint() throws IOException {
+                Path file = this.folder.newFile("fleet.ckp").toPath();
+                Files.write(file, new byte[] { 1, 2, 3 });
+                FleetCheckpoint.restore(file);
+        }
+}
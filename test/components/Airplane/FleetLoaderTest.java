@@ -0,0 +1,153 @@
+package components.Airplane;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+
+import components.Airplane.AirplaneKernel.Mode;
+
+/**
+ * JUnit test file for FleetLoader.
+ */
+public class FleetLoaderTest {
+
+        /**
+         * Fleet size used by the tests.
+         */
+        private static final int CAPACITY = 10;
+
+        /**
+         * Writes {@code text} to a new temporary file.
+         *
+         * @param text
+         *                the file contents
+         * @return the path of the file
+         * @throws IOException
+         *                 if the file cannot be written
+         */
+        private static Path write(String text) throws IOException {
+                Path file = Files.createTempFile("flights", ".txt");
+                file.toFile().deleteOnExit();
+                Files.write(file, text.getBytes(StandardCharsets.US_ASCII));
+                return file;
+        }
+
+        /**
+         * Test that valid rows are loaded and bad rows are reported with
+         * their line numbers.
+         *
+         * @throws IOException
+         *                 if the file cannot be used
+         */
+        @Test
+        public void testCsv() throws IOException {
+                Path file = write("slot,altitude,direction,speed,fuel,oat,wind\n"
+                                + "0,35000,90,550,1200.5,,\r\n"
+                                + "1,1000,400,,,,\n"
+                                + "2,abc,,,,,\n"
+                                + "\n"
+                                + "3,-5,,,,,\n"
+                                + "4,1,2\n"
+                                + "99,,,,,,\n"
+                                + "5,,,,,15,7\n");
+                AirplaneFleet fleet = new AirplaneFleet(CAPACITY);
+
+                FleetLoader.Report report = FleetLoader.csv().load(file, fleet);
+
+                assertEquals(2, report.rowsLoaded());
+                assertEquals(5, report.rowsRejected());
+                assertEquals("Line 3: Direction must be between 0 and 359.",
+                                report.rejections().get(0));
+                assertEquals("Line 4: Field 2 is not a number.",
+                                report.rejections().get(1));
+                assertEquals("Line 6: ALTITUDE must be non-negative.",
+                                report.rejections().get(2));
+                assertEquals("Line 7: Expected 7 fields.",
+                                report.rejections().get(3));
+                assertEquals(1200.5, fleet.getMetric(0, Mode.FUEL_QUANTITY),
+                                0.0);
+                assertFalse(fleet.isDefined(0, Mode.WIND_SPEED));
+                assertFalse(fleet.isDefined(1, Mode.ALTITUDE));
+                assertEquals(7, fleet.getMetric(5, Mode.WIND_SPEED), 0.0);
+        }
+
+        /**
+         * Test that fixed-width rows are loaded, and that a later row for the
+         * same slot replaces the earlier one.
+         *
+         * @throws IOException
+         *                 if the file cannot be used
+         */
+        @Test
+        public void testFixedWidth() throws IOException {
+                Path file = write("  1  35000 90  550\n"
+                                + "  1  36000    \n");
+                AirplaneFleet fleet = new AirplaneFleet(CAPACITY);
+
+                FleetLoader.Report report = FleetLoader
+                                .fixedWidth(3, 7, 3, 5, 6, 4, 4)
+                                .load(file, fleet);
+
+                assertEquals(2, report.rowsLoaded());
+                assertEquals(36000, fleet.getMetric(1, Mode.ALTITUDE), 0.0);
+                assertFalse(fleet.isDefined(1, Mode.DIRECTION));
+        }
+
+        /**
+         * Test that rows split across many small chunks are all loaded and
+         * numbered correctly.
+         *
+         * @throws IOException
+         *                 if the file cannot be used
+         */
+        @Test
+        public void testManyChunks() throws IOException {
+                StringBuilder text = new StringBuilder();
+                final int rows = 1000;
+                for (int i = 0; i < rows; i++) {
+                        text.append(i % CAPACITY).append(',').append(i)
+                                        .append(",,,,,\n");
+                }
+                text.append("0,-1,,,,,\n");
+                AirplaneFleet fleet = new AirplaneFleet(CAPACITY);
+                final int chunkBytes = 64;
+
+                FleetLoader.Report report = new FleetLoader((byte) ',', null,
+                                chunkBytes).load(write(text.toString()), fleet);
+
+                assertEquals(rows, report.rowsLoaded());
+                assertEquals("Line 1001: ALTITUDE must be non-negative.",
+                                report.rejections().get(0));
+                assertEquals(rows - 1, fleet.getMetric(CAPACITY - 1,
+                                Mode.ALTITUDE), 0.0);
+        }
+
+        /**
+         * Test that parseNumber matches Double.parseDouble.
+         */
+        @Test
+        public void testParseNumber() {
+                String[] numbers = { "0", "35000", "0.1", "-12.75", "+3.",
+                                ".5", "123456789.123456", "1e3", "2.5E-3",
+                                "0.30000000000000004" };
+                for (String number : numbers) {
+                        byte[] bytes = number
+                                        .getBytes(StandardCharsets.US_ASCII);
+                        assertEquals(number, Double.parseDouble(number),
+                                        FleetLoader.parseNumber(
+                                                        ByteBuffer.wrap(bytes),
+                                                        0, bytes.length),
+                                        0.0);
+                }
+                byte[] bad = "1.2.3".getBytes(StandardCharsets.US_ASCII);
+                assertEquals(Double.NaN, FleetLoader.parseNumber(
+                                ByteBuffer.wrap(bad), 0, bad.length), 0.0);
+        }
+}
@@ -0,0 +1,137 @@
+package components.Airplane;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import components.Airplane.AirplaneKernel.Mode;
+
+/**
+ * JUnit test file for FlightPhysics.
+ */
+public class FlightPhysicsTest {
+
+        /**
+         * Standard temperature, in kelvin.
+         */
+        private static final double STANDARD = 288.15;
+
+        /**
+         * Test climb, headwind and temperature effects on single airplanes,
+         * and that frozen airplanes are left alone.
+         */
+        @Test
+        public void testPhysics() {
+                AirplaneFleet fleet = new AirplaneFleet(3);
+                for (int slot = 0; slot < 3; slot++) {
+                        fleet.setMetric(slot, Mode.SPEED, 100);
+                        fleet.setMetric(slot, Mode.DIRECTION, 90);
+                        fleet.setMetric(slot, Mode.FUEL_QUANTITY, 1000);
+                }
+                fleet.setMetric(1, Mode.WIND_SPEED, 20);
+                fleet.setMetric(1, Mode.OUTSIDE_AIR_TEMPERATURE,
+                                2 * STANDARD);
+                long[] frozen = {1L << 2};
+                double[] ground = new double[3];
+                FlightPhysics physics = new FlightPhysics(1, 90);
+
+                physics.integrate(fleet, 0, 3, 10, 0, frozen, ground);
+
+                assertEquals(10, fleet.getMetric(0, Mode.ALTITUDE), 0);
+                assertEquals(5, fleet.getMetric(1, Mode.ALTITUDE), 0);
+                assertEquals(100, ground[0], 1e-9);
+                assertEquals(80, ground[1], 1e-9);
+                final double burn = 0.5 + 2e-6 * 100 * 100 + 0.01 * 10;
+                assertEquals(1000 - burn,
+                                fleet.getMetric(0, Mode.FUEL_QUANTITY), 1e-9);
+                assertFalse(fleet.isDefined(2, Mode.ALTITUDE));
+                assertEquals(1000, fleet.getMetric(2, Mode.FUEL_QUANTITY), 0);
+                assertEquals(0, ground[2], 0);
+        }
+
+        /**
+         * Test that altitude, speed and fuel stop at zero.
+         */
+        @Test
+        public void testLimits() {
+                AirplaneFleet fleet = new AirplaneFleet(1);
+                fleet.setMetric(0, Mode.ALTITUDE, 50);
+                fleet.setMetric(0, Mode.SPEED, 5);
+                fleet.setMetric(0, Mode.FUEL_QUANTITY, 0.1);
+                FlightPhysics physics = new FlightPhysics(1, 0);
+
+                physics.integrate(fleet, 0, 1, -100, -10, new long[1],
+                                new double[1]);
+
+                assertEquals(0, fleet.getMetric(0, Mode.ALTITUDE), 0);
+                assertEquals(0, fleet.getMetric(0, Mode.SPEED), 0);
+                assertEquals(0, fleet.getMetric(0, Mode.FUEL_QUANTITY), 0);
+        }
+
+        /**
+         * Test that integrating a fleet in ranges, in any order, gives the
+         * same bits as integrating it in one pass.
+         */
+        @Test
+        public void testRangesMatchOnePass() {
+                final int size = 1000;
+                final int speed = 500;
+                final int wind = 80;
+                final int temperature = 100;
+                Random random = new Random(1);
+                AirplaneFleet whole = new AirplaneFleet(size);
+                AirplaneFleet split = new AirplaneFleet(size);
+                long[] frozen = new long[(size + 63) / 64];
+                for (int slot = 0; slot < size; slot++) {
+                        double[] metrics = {random.nextInt(speed),
+                                        random.nextInt(360),
+                                        random.nextInt(wind),
+                                        STANDARD + random.nextInt(
+                                                        temperature)};
+                        Mode[] modes = {Mode.SPEED, Mode.DIRECTION,
+                                        Mode.WIND_SPEED,
+                                        Mode.OUTSIDE_AIR_TEMPERATURE};
+                        for (int m = 0; m < modes.length; m++) {
+                                whole.setMetric(slot, modes[m], metrics[m]);
+                                split.setMetric(slot, modes[m], metrics[m]);
+                        }
+                        whole.setMetric(slot, Mode.FUEL_QUANTITY, speed);
+                        split.setMetric(slot, Mode.FUEL_QUANTITY, speed);
+                        if (random.nextInt(10) == 0) {
+                                frozen[slot / 64] |= 1L << slot;
+                        }
+                }
+                double[] wholeGround = new double[size];
+                double[] splitGround = new double[size];
+                FlightPhysics physics = new FlightPhysics(1, 270);
+                final int[] cuts = {0, 128, 333, 704, size};
+
+                physics.integrate(whole, 0, size, 20, 3, frozen,
+                                wholeGround);
+                for (int c = cuts.length - 1; c > 0; c--) {
+                        physics.integrate(split, cuts[c - 1], cuts[c], 20,
+                                        3, frozen, splitGround);
+                }
+
+                for (int slot = 0; slot < size; slot++) {
+                        assertEquals(Double.doubleToLongBits(
+                                        wholeGround[slot]),
+                                        Double.doubleToLongBits(
+                                                        splitGround[slot]));
+                        for (Mode mode : Mode.values()) {
+                                assertEquals(whole.isDefined(slot, mode),
+                                                split.isDefined(slot, mode));
+                                if (whole.isDefined(slot, mode)) {
+                                        assertEquals(whole.getMetric(slot,
+                                                        mode),
+                                                        split.getMetric(slot,
+                                                                        mode),
+                                                        0);
+                                }
+                        }
+                }
+        }
+}
@@ -0,0 +1,151 @@
+package components.Airplane;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import components.Airplane.AirplaneKernel.Mode;
+
+/**
+ * JUnit test file for FlightPlan.
+ */
+public class FlightPlanTest {
+
+        /**
+         * Returns deltas for altitude, direction and fuel.
+         *
+         * @param altitude
+         *                the altitude change
+         * @param direction
+         *                the direction change
+         * @param fuel
+         *                the fuel change
+         * @return the deltas, indexed by Mode.ordinal()
+         */
+        private static double[] deltas(double altitude, double direction,
+                        double fuel) {
+                double[] deltas = new double[Mode.values().length];
+                deltas[Mode.ALTITUDE.ordinal()] = altitude;
+                deltas[Mode.DIRECTION.ordinal()] = direction;
+                deltas[Mode.FUEL_QUANTITY.ordinal()] = fuel;
+                return deltas;
+        }
+
+        /**
+         * Plan used by the tests.
+         */
+        private static final FlightPlan PLAN = FlightPlan.builder()
+                        .phase("Takeoff", 5, deltas(2000, 0, -50))
+                        .phase("Empty", 0, deltas(0, 0, -1e9))
+                        .phase("Turn", 40, deltas(0, 10, -20))
+                        .phase("Descent", 12, deltas(-1000, 0, -100)).build();
+
+        /**
+         * Applies the first {@code ticks} ticks of PLAN one applyDeltas call
+         * at a time, stopping at the first rejected tick.
+         *
+         * @param airplane
+         *                the airplane to advance
+         * @param ticks
+         *                the number of ticks to apply
+         * @return the number of ticks applied
+         */
+        private static long tickLoop(Airplane airplane, long ticks) {
+                long applied = 0;
+                for (int p = 0; p < PLAN.phaseCount(); p++) {
+                        double[] deltas = PLAN.phaseDeltas(p);
+                        for (int i = 0; i < PLAN.phaseDuration(p); i++) {
+                                if (applied == ticks) {
+                                        return applied;
+                                }
+                                try {
+                                        airplane.applyDeltas(deltas);
+                                } catch (IllegalArgumentException e) {
+                                        return applied;
+                                }
+                                applied++;
+                        }
+                }
+                return applied;
+        }
+
+        /**
+         * Test that advancing agrees with applying the deltas tick by tick,
+         * for every tick count and several fuel loads, including where a
+         * tick fails.
+         */
+        @Test
+        public void testAgainstTickLoop() {
+                final double[] fuels = { 0, 240, 1000, 2000, 5000 };
+                for (double fuel : fuels) {
+                        for (long t = 0; t <= PLAN.totalTicks(); t++) {
+                                Airplane expected = new Airplane2();
+                                expected.setMetric(Mode.FUEL_QUANTITY, fuel);
+                                expected.setMetric(Mode.DIRECTION, 20);
+                                long applied = tickLoop(expected, t);
+
+                                Airplane actual = new Airplane2();
+                                actual.setMetric(Mode.FUEL_QUANTITY, fuel);
+                                actual.setMetric(Mode.DIRECTION, 20);
+                                FlightPlan.Outcome outcome = PLAN
+                                                .advance(actual, t);
+
+                                assertEquals(applied, outcome.ticksApplied());
+                                assertEquals(applied < t, outcome.failed());
+                                assertEquals(expected, actual);
+                        }
+                }
+        }
+
+        /**
+         * Test that a failure is reported at its exact tick, phase and mode.
+         */
+        @Test
+        public void testFailureReport() {
+                Airplane airplane = new Airplane1();
+                airplane.setMetric(Mode.FUEL_QUANTITY, 5000);
+                airplane.setMetric(Mode.DIRECTION, 0);
+
+                FlightPlan.Outcome outcome = PLAN.advance(airplane,
+                                PLAN.totalTicks());
+
+                // Direction reaches 360 at the 36th tick of the turn
+                assertTrue(outcome.failed());
+                assertEquals(5 + 36, outcome.failureTick());
+                assertEquals("Turn", outcome.failedPhase());
+                assertEquals(Mode.DIRECTION, outcome.failedMode());
+                assertEquals(350, airplane.getMetric(Mode.DIRECTION), 0.0);
+                assertEquals(10000, airplane.getAltitude(), 0.0);
+        }
+
+        /**
+         * Test phase lookup and end ticks.
+         */
+        @Test
+        public void testPhases() {
+                assertEquals(57, PLAN.totalTicks());
+                assertEquals(5, PLAN.phaseEnd(1));
+                assertEquals(0, PLAN.phaseOf(5));
+                assertEquals(2, PLAN.phaseOf(6));
+                assertEquals(3, PLAN.phaseOf(57));
+                assertFalse(PLAN.advance(new double[Mode.values().length], 0,
+                                0).failed());
+        }
+
+        /**
+         * Test that a values array of the wrong length is reported as such.
+         */
+        @Test
+        public void testWrongValuesLength() {
+                try {
+                        PLAN.advance(new double[1], 0, 0);
+                        fail("advance accepted one value");
+                } catch (IllegalArgumentException e) {
+                        assertEquals("Values must have one entry per mode.",
+                                        e.getMessage());
+                }
+        }
+}
@@ -0,0 +1,147 @@
+package components.Airplane;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+
+import components.Airplane.AirplaneKernel.Mode;
+
+/**
+ * JUnit test file for FlightRecorder and FlightReplayer.
+ */
+public class FlightRecorderTest {
+
+        /**
+         * Creates a path for a log file that does not exist yet.
+         *
+         * @return the path
+         * @throws IOException
+         *                 if the temporary directory cannot be created
+         */
+        private static Path newFile() throws IOException {
+                Path dir = Files.createTempDirectory("flight");
+                dir.toFile().deleteOnExit();
+                Path file = dir.resolve("flight.log");
+                file.toFile().deleteOnExit();
+                return file;
+        }
+
+        /**
+         * Test that replay rebuilds the state as of each timestamp.
+         *
+         * @throws IOException
+         *                 if the log cannot be used
+         */
+        @Test
+        public void testReplayAtTimestamp() throws IOException {
+                Path file = newFile();
+                long[] now = new long[1];
+                try (FlightRecorder recorder = new FlightRecorder(file,
+                                () -> now[0])) {
+                        Airplane airplane = recorder.attach(new Airplane1());
+                        airplane.setMetric(Mode.ALTITUDE, 1000);
+                        now[0] = 10;
+                        airplane.addToMetric(Mode.ALTITUDE, 500);
+                        airplane.setMetric(Mode.SPEED, 200);
+                        now[0] = 20;
+                        airplane.clear();
+                        airplane.setDirection(90);
+                }
+
+                try (FlightReplayer replayer = new FlightReplayer(file)) {
+                        Airplane copy = new Airplane2();
+                        replayer.replay(5, 0, copy);
+                        assertEquals(1000, copy.getAltitude(), 0.001);
+                        assertFalse(copy.isDefined(Mode.SPEED));
+
+                        replayer.replay(19, 0, copy);
+                        assertEquals(1500, copy.getAltitude(), 0.001);
+                        assertEquals(200, copy.getSpeed(), 0.001);
+
+                        replayer.replay(Long.MAX_VALUE, 0, copy);
+                        assertFalse(copy.isDefined(Mode.ALTITUDE));
+                        assertEquals(90, copy.getDirection());
+                }
+        }
+
+        /**
+         * Test that replay into a fleet rebuilds every recorded airplane,
+         * including state the airplane had before it was attached and
+         * changes made by applyDeltas and transferFrom.
+         *
+         * @throws IOException
+         *                 if the log cannot be used
+         */
+        @Test
+        public void testReplayFleet() throws IOException {
+                Path file = newFile();
+                Airplane initial = new Airplane2();
+                initial.setMetric(Mode.FUEL_QUANTITY, 5000);
+                try (FlightRecorder recorder = new FlightRecorder(file,
+                                () -> 0)) {
+                        Airplane first = recorder.attach(initial);
+                        Airplane second = first.newInstance();
+                        double[] deltas = new double[Mode.values().length];
+                        deltas[Mode.FUEL_QUANTITY.ordinal()] = -50;
+                        first.applyDeltas(deltas);
+                        second.transferFrom(first);
+                }
+
+                try (FlightReplayer replayer = new FlightReplayer(file)) {
+                        AirplaneFleet fleet = new AirplaneFleet(2);
+                        replayer.replay(0, fleet);
+                        assertFalse(fleet.isDefined(0, Mode.FUEL_QUANTITY));
+                        assertEquals(4950, fleet.getMetric(1,
+                                        Mode.FUEL_QUANTITY), 0.001);
+                }
+        }
+
+        /**
+         * Test that more records than fit in one batch are all written.
+         *
+         * @throws IOException
+         *                 if the log cannot be used
+         */
+        @Test
+        public void testManyRecords() throws IOException {
+                final int count = 10_000;
+                Path file = newFile();
+                long[] now = new long[1];
+                try (FlightRecorder recorder = new FlightRecorder(file,
+                                () -> now[0])) {
+                        Airplane airplane = recorder.attach(new Airplane1());
+                        for (int i = 0; i < count; i++) {
+                                now[0] = i;
+                                airplane.setMetric(Mode.SPEED, i);
+                        }
+                }
+
+                try (FlightReplayer replayer = new FlightReplayer(file)) {
+                        // One clear record from attach, then every change
+                        assertEquals(count + 1, replayer.recordCount());
+                        Airplane copy = new Airplane1();
+                        replayer.replay(count / 2, 0, copy);
+                        assertEquals(count / 2, copy.getSpeed(), 0.001);
+                        assertTrue(copy.isDefined(Mode.SPEED));
+                }
+        }
+
+        /**
+         * Test that a file that is not a flight log is rejected.
+         *
+         * @throws IOException
+         *                 expected
+         */
+        @Test(expected = IOException.class)
+        public void testNotALog() throws IOException {
+                Path file = newFile();
+                Files.write(file, new byte[] { 1, 2, 3 });
+                new FlightReplayer(file).close();
+        }
+}
@@ -0,0 +1,194 @@
+package components.Airplane;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+
+import org.junit.Test;
+
+import components.Airplane.AirplaneKernel.Mode;
+
+/**
+ * JUnit test file checking that the hot-path kernel and secondary methods
+ * (getMetric, setMetric, isDefined, getModeValue, equals and hashCode) of
+ * every implementation neither allocate nor write to System.out.
+ */
+public class HotPathTest {
+
+        /**
+         * Number of times each batch of calls is repeated.
+         */
+        private static final int ROUNDS = 1_000_000;
+
+        /**
+         * Modes indexed by ordinal.
+         */
+        private static final Mode[] MODES = Mode.values();
+
+        /**
+         * Bytes the measurement itself may allocate; any allocation per call
+         * would be millions of times more.
+         */
+        private static final long SLACK_BYTES = 4096;
+
+        /**
+         * The current thread's allocation counter.
+         */
+        private static final com.sun.management.ThreadMXBean THREADS =
+                        (com.sun.management.ThreadMXBean) ManagementFactory
+                                        .getThreadMXBean();
+
+        /**
+         * Writes go nowhere but are counted.
+         */
+        private static final class CountingStream extends OutputStream {
+
+                /**
+                 * Number of bytes written.
+                 */
+                private long written;
+
+                @Override
+                public void write(int b) {
+                        this.written++;
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) {
+                        this.written += len;
+                }
+        }
+
+        /**
+         * Returns the bytes allocated so far by the current thread.
+         *
+         * @return The byte count.
+         */
+        private static long allocatedBytes() {
+                return THREADS.getCurrentThreadAllocatedBytes();
+        }
+
+        /**
+         * Sets every metric of two airplanes to 1, then makes the hot-path
+         * calls ROUNDS times on them, cycling through every Mode.
+         *
+         * @param a
+         *            An airplane.
+         * @param b
+         *            Another airplane of the same implementation.
+         * @return A value depending on every result, so no call is dead code.
+         */
+        private static long calls(Airplane a, Airplane b) {
+                final int turn = 360;
+                for (Mode mode : MODES) {
+                        a.setMetric(mode, 1);
+                        b.setMetric(mode, 1);
+                }
+                long sink = 0;
+                for (int round = 0; round < ROUNDS; round++) {
+                        Mode mode = MODES[round % MODES.length];
+                        // Valid for every mode, DIRECTION included
+                        int value = round % turn;
+                        a.setMetric(mode, value);
+                        b.setMetric(mode, value);
+                        sink += (long) a.getMetric(mode);
+                        sink += mode.getModeValue();
+                        if (a.isDefined(Mode.FUEL_QUANTITY)) {
+                                sink++;
+                        }
+                        if (a.equals(b)) {
+                                sink++;
+                        }
+                        sink += a.hashCode();
+                }
+                return sink;
+        }
+
+        /**
+         * Checks that the hot-path calls on two new airplanes of the same
+         * implementation neither allocate nor print.
+         *
+         * @param prototype
+         *            An airplane of the implementation to check.
+         */
+        private static void checkQuiet(Airplane prototype) {
+                Airplane a = prototype.newInstance();
+                Airplane b = prototype.newInstance();
+                assertTrue(THREADS.isThreadAllocatedMemorySupported());
+                THREADS.setThreadAllocatedMemoryEnabled(true);
+
+                PrintStream out = System.out;
+                CountingStream counter = new CountingStream();
+                PrintStream intercept = new PrintStream(counter);
+                System.setOut(intercept);
+                try {
+                        // Once to load and initialize every class involved
+                        long expected = calls(a, b);
+                        long before = allocatedBytes();
+                        long sink = calls(a, b);
+                        long allocated = allocatedBytes() - before;
+
+                        assertEquals(expected, sink);
+                        assertTrue(prototype.getClass().getSimpleName()
+                                        + " allocated " + allocated + " bytes",
+                                        allocated <= SLACK_BYTES);
+                } finally {
+                        System.setOut(out);
+                }
+                assertEquals(0, counter.written);
+        }
+
+        /**
+         * Test Airplane1.
+         */
+        @Test
+        public void testAirplane1() {
+                checkQuiet(new Airplane1());
+        }
+
+        /**
+         * Test Airplane2.
+         */
+        @Test
+        public void testAirplane2() {
+                checkQuiet(new Airplane2());
+        }
+
+        /**
+         * Test Airplane3.
+         */
+        @Test
+        public void testAirplane3() {
+                checkQuiet(new Airplane3());
+        }
+
+        /**
+         * Test that Airplane3.applyDeltas, which validates against a
+         * consistent read of every metric, does not allocate.
+         */
+        @Test
+        public void testAirplane3ApplyDeltas() {
+                Airplane a = new Airplane3();
+                a.setMetric(Mode.ALTITUDE, 0);
+                double[] up = new double[Mode.values().length];
+                double[] down = new double[Mode.values().length];
+                up[Mode.ALTITUDE.ordinal()] = 1;
+                down[Mode.ALTITUDE.ordinal()] = -1;
+                THREADS.setThreadAllocatedMemoryEnabled(true);
+                // Once to load and initialize every class involved
+                a.applyDeltas(up);
+                a.applyDeltas(down);
+                long before = allocatedBytes();
+                for (int round = 0; round < ROUNDS; round++) {
+                        a.applyDeltas(up);
+                        a.applyDeltas(down);
+                }
+                long allocated = allocatedBytes() - before;
+                assertEquals(0, a.getMetric(Mode.ALTITUDE), 0.0);
+                assertTrue("applyDeltas allocated " + allocated + " bytes",
+                                allocated <= SLACK_BYTES);
+        }
+}
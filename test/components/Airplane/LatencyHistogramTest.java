@@ -0,0 +1,94 @@
+package components.Airplane;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * JUnit test file for LatencyHistogram.
+ */
+public class LatencyHistogramTest {
+
+        /**
+         * Test that the buckets tile the non-negative longs with no gaps,
+         * and that each bucket is within about 3% of its values.
+         */
+        @Test
+        public void testBuckets() {
+                final int buckets = LatencyHistogram.bucketOf(Long.MAX_VALUE)
+                                + 1;
+                final double precision = 1.0 / 32;
+                assertEquals(0, LatencyHistogram.bucketOf(0));
+                for (int b = 0; b < buckets - 1; b++) {
+                        long upper = LatencyHistogram.upperBoundOf(b);
+                        assertEquals(b, LatencyHistogram.bucketOf(upper));
+                        assertEquals(b + 1,
+                                        LatencyHistogram.bucketOf(upper + 1));
+                        long lower = 0;
+                        if (b > 0) {
+                                lower = LatencyHistogram.upperBoundOf(b - 1)
+                                                + 1;
+                        }
+                        assertTrue(upper - lower <= precision * upper);
+                }
+                assertEquals(Long.MAX_VALUE,
+                                LatencyHistogram.upperBoundOf(buckets - 1));
+        }
+
+        /**
+         * Test percentiles against the exact ones of random values.
+         */
+        @Test
+        public void testPercentiles() {
+                final int n = 100_000;
+                final double[] percentiles = { 1, 50, 90, 99, 99.9, 100 };
+                final double tolerance = 0.035;
+                LatencyHistogram histogram = new LatencyHistogram();
+                long[] values = new long[n];
+                Random random = new Random(42);
+                long sum = 0;
+                for (int i = 0; i < n; i++) {
+                        // Log-uniform from 1ns to about 1s
+                        values[i] = (long) Math.exp(random.nextDouble() * 21);
+                        sum += values[i];
+                        histogram.record(values[i]);
+                }
+                Arrays.sort(values);
+
+                assertEquals(n, histogram.count());
+                assertEquals(values[n - 1], histogram.max());
+                assertEquals((double) sum / n, histogram.mean(), 1e-6);
+                for (double p : percentiles) {
+                        int rank = (int) Math.max(1, Math.ceil(p / 100 * n));
+                        long exact = values[rank - 1];
+                        long reported = histogram.percentile(p);
+                        assertTrue(reported >= exact);
+                        assertTrue(reported <= exact + tolerance * exact);
+                }
+        }
+
+        /**
+         * Test an empty histogram and reset.
+         */
+        @Test
+        public void testEmptyAndReset() {
+                LatencyHistogram histogram = new LatencyHistogram();
+                assertEquals(0, histogram.percentile(50));
+                assertEquals(0, histogram.mean(), 0.0);
+
+                histogram.record(1000);
+                histogram.record(-5);
+                assertEquals(2, histogram.count());
+                assertEquals(0, histogram.percentile(50));
+                assertEquals(1000, histogram.percentile(100));
+
+                histogram.reset();
+                assertEquals(0, histogram.count());
+                assertEquals(0, histogram.max());
+                assertEquals(0, histogram.percentile(99));
+        }
+}
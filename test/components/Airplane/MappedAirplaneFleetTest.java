@@ -0,0 +1,148 @@
+package components.Airplane;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.Test;
+
+import components.Airplane.AirplaneKernel.Mode;
+
+/**
+ * JUnit test file for MappedAirplaneFleet.
+ */
+public class MappedAirplaneFleetTest {
+
+        /**
+         * Fleet size used by the tests.
+         */
+        private static final int CAPACITY = 100;
+
+        /**
+         * Creates a path for a fleet file that does not exist yet.
+         *
+         * @return the path
+         * @throws IOException
+         *                 if the temporary directory cannot be created
+         */
+        private static Path newFile() throws IOException {
+                Path dir = Files.createTempDirectory("fleet");
+                dir.toFile().deleteOnExit();
+                Path file = dir.resolve("fleet.bin");
+                file.toFile().deleteOnExit();
+                return file;
+        }
+
+        /**
+         * Test for setting and getting metrics by slot.
+         *
+         * @throws IOException
+         *                 if the fleet file cannot be used
+         */
+        @Test
+        public void testSetAndGetMetric() throws IOException {
+                try (MappedAirplaneFleet fleet = new MappedAirplaneFleet(
+                                newFile(), CAPACITY)) {
+                        fleet.setMetric(99, Mode.ALTITUDE, 35000);
+
+                        assertTrue(fleet.isDefined(99, Mode.ALTITUDE));
+                        assertFalse(fleet.isDefined(99, Mode.SPEED));
+                        assertFalse(fleet.isDefined(98, Mode.ALTITUDE));
+                        assertEquals(35000, fleet.getMetric(99, Mode.ALTITUDE),
+                                        0.001);
+                }
+        }
+
+        /**
+         * Test that the state survives closing and reopening the file.
+         *
+         * @throws IOException
+         *                 if the fleet file cannot be used
+         */
+        @Test
+        public void testReopen() throws IOException {
+                Path file = newFile();
+                try (MappedAirplaneFleet fleet = new MappedAirplaneFleet(file,
+                                CAPACITY)) {
+                        fleet.view(5).setDirection(270);
+                        fleet.setMetric(6, Mode.FUEL_QUANTITY, 1000);
+                        fleet.clear(6);
+                }
+                try (MappedAirplaneFleet fleet = new MappedAirplaneFleet(file,
+                                CAPACITY)) {
+                        assertEquals(270, fleet.view(5).getDirection());
+                        assertFalse(fleet.isDefined(6, Mode.FUEL_QUANTITY));
+                }
+        }
+
+        /**
+         * Test that a value left under a clear bit, as by a crash between
+         * setMetric's two writes, is ignored by the updates.
+         *
+         * @throws IOException
+         *                 if the fleet file cannot be used
+         */
+        @Test
+        public void testStaleValueIgnored() throws IOException {
+                final int metrics = 64 + 8;
+                Path file = newFile();
+                new MappedAirplaneFleet(file, CAPACITY).close();
+                ByteBuffer stale = ByteBuffer.allocate(Double.BYTES)
+                                .order(ByteOrder.LITTLE_ENDIAN);
+                stale.putDouble(0, 1000);
+                try (FileChannel channel = FileChannel.open(file,
+                                StandardOpenOption.WRITE)) {
+                        channel.write(stale, metrics
+                                        + Mode.SPEED.ordinal() * Double.BYTES);
+                        stale.clear();
+                        channel.write(stale, metrics + Mode.ALTITUDE.ordinal()
+                                        * Double.BYTES);
+                }
+                try (MappedAirplaneFleet fleet = new MappedAirplaneFleet(file,
+                                CAPACITY)) {
+                        assertFalse(fleet.isDefined(0, Mode.SPEED));
+                        fleet.addToMetric(0, Mode.SPEED, 5);
+                        assertEquals(5, fleet.getMetric(0, Mode.SPEED), 0.0);
+                        double[] deltas = new double[Mode.values().length];
+                        deltas[Mode.ALTITUDE.ordinal()] = 7;
+                        fleet.applyDeltas(0, deltas);
+                        assertEquals(7, fleet.getMetric(0, Mode.ALTITUDE),
+                                        0.0);
+                }
+        }
+
+        /**
+         * Test that a file of a different capacity is rejected.
+         *
+         * @throws IOException
+         *                 expected
+         */
+        @Test(expected = IOException.class)
+        public void testReopenWrongCapacity() throws IOException {
+                Path file = newFile();
+                new MappedAirplaneFleet(file, CAPACITY).close();
+                new MappedAirplaneFleet(file, CAPACITY + 1).close();
+        }
+
+        /**
+         * Test that a negative value is rejected.
+         *
+         * @throws IOException
+         *                 if the fleet file cannot be used
+         */
+        @Test(expected = IllegalArgumentException.class)
+        public void testSetNegative() throws IOException {
+                try (MappedAirplaneFleet fleet = new MappedAirplaneFleet(
+                                newFile(), CAPACITY)) {
+                        fleet.setMetric(0, Mode.SPEED, -1);
+                }
+        }
+}
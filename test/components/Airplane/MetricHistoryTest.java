@@ -0,0 +1,113 @@
+package components.Airplane;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import components.Airplane.AirplaneKernel.Mode;
+
+/**
+ * JUnit test file for MetricHistory.
+ */
+public class MetricHistoryTest {
+
+        /**
+         * Test windowed queries on a history that has not wrapped yet.
+         */
+        @Test
+        public void testWindows() {
+                long[] now = new long[1];
+                MetricHistory history = new MetricHistory(8, () -> now[0]);
+                Airplane airplane = history.attach(new Airplane2());
+                final double[] altitudes = { 1000, 3000, 2000, 6000 };
+                for (double altitude : altitudes) {
+                        now[0] += 10;
+                        airplane.setAltitude(altitude);
+                }
+
+                assertEquals(4, history.size(Mode.ALTITUDE));
+                assertEquals(0, history.size(Mode.SPEED));
+                assertEquals(6000, history.value(Mode.ALTITUDE, 0), 0.0);
+                assertEquals(3000, history.mean(Mode.ALTITUDE, 4), 0.0);
+                assertEquals(4000, history.mean(Mode.ALTITUDE, 2), 0.0);
+                assertEquals(1000, history.min(Mode.ALTITUDE, 4), 0.0);
+                assertEquals(2000, history.min(Mode.ALTITUDE, 2), 0.0);
+                assertEquals(6000, history.max(Mode.ALTITUDE, 3), 0.0);
+                assertEquals(6000, history.max(Mode.ALTITUDE, 1), 0.0);
+                // (6000 - 1000) over 30 time units
+                assertEquals(5000.0 / 30,
+                                history.rateOfChange(Mode.ALTITUDE, 4), 1e-9);
+        }
+
+        /**
+         * Test that every kind of update adds samples.
+         */
+        @Test
+        public void testUpdatesAddSamples() {
+                MetricHistory history = new MetricHistory(4, () -> 0);
+                Airplane initial = new Airplane1();
+                initial.setMetric(Mode.FUEL_QUANTITY, 100);
+                Airplane airplane = history.attach(initial);
+
+                airplane.addToMetric(Mode.FUEL_QUANTITY, -10);
+                double[] deltas = new double[Mode.values().length];
+                deltas[Mode.FUEL_QUANTITY.ordinal()] = -10;
+                airplane.applyDeltas(deltas);
+                airplane.clear();
+
+                assertEquals(3, history.size(Mode.FUEL_QUANTITY));
+                assertEquals(90, history.mean(Mode.FUEL_QUANTITY, 3), 0.0);
+        }
+
+        /**
+         * Test the queries against brute force after the buffer has wrapped
+         * many times.
+         */
+        @Test
+        public void testAgainstBruteForce() {
+                final int capacity = 16;
+                final int samples = 1000;
+                long[] now = new long[1];
+                MetricHistory history = new MetricHistory(capacity,
+                                () -> now[0]);
+                Airplane airplane = history.attach(new Airplane2());
+                double[] all = new double[samples];
+                Random random = new Random(42);
+                for (int k = 0; k < samples; k++) {
+                        now[0] = k;
+                        all[k] = random.nextInt(100);
+                        airplane.setMetric(Mode.SPEED, all[k]);
+                        int size = Math.min(k + 1, capacity);
+                        for (int n = 1; n <= size; n++) {
+                                double sum = 0;
+                                double min = Double.MAX_VALUE;
+                                double max = -Double.MAX_VALUE;
+                                for (int j = k - n + 1; j <= k; j++) {
+                                        sum += all[j];
+                                        min = Math.min(min, all[j]);
+                                        max = Math.max(max, all[j]);
+                                }
+                                assertEquals(sum / n,
+                                                history.mean(Mode.SPEED, n),
+                                                1e-9);
+                                assertEquals(min, history.min(Mode.SPEED, n),
+                                                0.0);
+                                assertEquals(max, history.max(Mode.SPEED, n),
+                                                0.0);
+                        }
+                }
+        }
+
+        /**
+         * Test that a window larger than the history is rejected.
+         */
+        @Test(expected = IllegalArgumentException.class)
+        public void testWindowTooLarge() {
+                MetricHistory history = new MetricHistory(4, () -> 0);
+                Airplane airplane = history.attach(new Airplane2());
+                airplane.setSpeed(100);
+                history.mean(Mode.SPEED, 2);
+        }
+}
@@ -0,0 +1,126 @@
+package components.Airplane;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+
+import org.junit.Test;
+
+import components.Airplane.AirplaneKernel.Mode;
+
+/**
+ * JUnit test file for MetricNotifier.
+ */
+public class MetricNotifierTest {
+
+        /**
+         * Bit of the altitude mode in a changed-modes mask.
+         */
+        private static final int ALTITUDE = 1 << Mode.ALTITUDE.ordinal();
+
+        /**
+         * Bit of the speed mode in a changed-modes mask.
+         */
+        private static final int SPEED = 1 << Mode.SPEED.ordinal();
+
+        /**
+         * Test that only actual changes of watched modes are reported.
+         */
+        @Test
+        public void testOnlyActualChanges() {
+                MetricNotifier notifier = new MetricNotifier();
+                Airplane initial = new Airplane2();
+                initial.setAltitude(1000);
+                Airplane airplane = notifier.attach(initial);
+                List<Integer> events = new ArrayList<>();
+                notifier.subscribe(EnumSet.of(Mode.ALTITUDE),
+                                (a, changed) -> events.add(changed));
+
+                airplane.setAltitude(1000);
+                airplane.setSpeed(200);
+                airplane.addToMetric(Mode.ALTITUDE, 5);
+                airplane.clear();
+                airplane.clear();
+
+                assertEquals(List.of(ALTITUDE, ALTITUDE), events);
+        }
+
+        /**
+         * Test that small changes are held back until they add up to the
+         * threshold.
+         */
+        @Test
+        public void testThreshold() {
+                MetricNotifier notifier = new MetricNotifier();
+                Airplane airplane = notifier.attach(new Airplane1());
+                airplane.setAltitude(1000);
+                List<Double> events = new ArrayList<>();
+                notifier.subscribe(EnumSet.of(Mode.ALTITUDE), 100, false,
+                                (a, changed) -> events.add(a.getAltitude()));
+
+                final int steps = 10;
+                for (int i = 0; i < steps; i++) {
+                        airplane.addToMetric(Mode.ALTITUDE, 40);
+                }
+
+                assertEquals(List.of(1120.0, 1240.0, 1360.0), events);
+        }
+
+        /**
+         * Test that a coalescing subscription gets one call per airplane per
+         * tick, and that cancelling stops the calls.
+         */
+        @Test
+        public void testCoalesce() {
+                MetricNotifier notifier = new MetricNotifier();
+                Airplane first = notifier.attach(new Airplane2());
+                Airplane second = first.newInstance();
+                List<Integer> events = new ArrayList<>();
+                MetricNotifier.Subscription subscription = notifier.subscribe(
+                                EnumSet.of(Mode.ALTITUDE, Mode.SPEED), 0, true,
+                                (a, changed) -> events.add(changed));
+
+                double[] deltas = new double[Mode.values().length];
+                deltas[Mode.ALTITUDE.ordinal()] = 100;
+                deltas[Mode.SPEED.ordinal()] = 10;
+                first.applyDeltas(deltas);
+                first.applyDeltas(deltas);
+                second.setSpeed(5);
+                assertEquals(0, events.size());
+
+                notifier.endTick();
+                assertEquals(List.of(ALTITUDE | SPEED, SPEED), events);
+
+                notifier.endTick();
+                subscription.cancel();
+                first.applyDeltas(deltas);
+                notifier.endTick();
+                assertEquals(2, events.size());
+        }
+
+        /**
+         * Test that a detached airplane is no longer reported, drops its
+         * coalesced changes, and leaves the other airplanes reported.
+         */
+        @Test
+        public void testDetach() {
+                MetricNotifier notifier = new MetricNotifier();
+                Airplane first = notifier.attach(new Airplane1());
+                Airplane second = notifier.attach(new Airplane3());
+                List<Airplane> events = new ArrayList<>();
+                notifier.subscribe(EnumSet.of(Mode.SPEED), 0, true,
+                                (a, changed) -> events.add(a));
+
+                first.setSpeed(100);
+                notifier.detach(first);
+                notifier.detach(first);
+                first.setSpeed(200);
+                second.setSpeed(300);
+                notifier.endTick();
+
+                assertEquals(List.of(second), events);
+                assertEquals(200, first.getSpeed(), 0.0);
+        }
+}